@@ -125,11 +125,47 @@ void loadFuelFillDataFromEEPROM();
 void resetFuelFillData();
 void saveResetCountToEEPROM();
 void saveTotalDistanceToEEPROM();
+char maneuverToDirection(const char* maneuver);
+int applyNavigationStepFrame(const String& frame);
+int applyNavigationDeltaFrame(const String& frame);
+void recordHistory();
+void handleHistory();
 
 // Add server declaration at the top
 ESP8266WebServer server(80);
 ESP8266HTTPUpdateServer httpUpdater;  // Add this line
 
+// Telemetry stream: one long-lived TCP client receives a newline-delimited
+// JSON sample every streamInterval, so the app doesn't have to poll. The app
+// adapts the rate to the vehicle state by sending "interval <ms>\n".
+WiFiServer streamServer(81);
+WiFiClient streamClient;
+unsigned long lastStreamPush = 0;
+const unsigned long DEFAULT_STREAM_INTERVAL = 1000;
+const unsigned long MIN_STREAM_INTERVAL = 200;
+const unsigned long MAX_STREAM_INTERVAL = 10000;
+unsigned long streamInterval = DEFAULT_STREAM_INTERVAL;
+String streamCommand;
+
+// Sample history: a ring of compact records the app fetches from /history
+// after its link drops, so a Wi-Fi blip doesn't leave a hole in its log.
+struct HistoryRecord {
+  uint32_t at;              // millis()
+  uint16_t speed10;         // km/h x 10
+  uint16_t fuelLiters1000;  // litres x 1000
+  uint16_t fuelPercent100;  // % x 100
+  uint16_t economy10;       // km/L x 10
+  uint32_t odometer100;     // km x 100
+  uint32_t trip1_100;
+  uint32_t trip2_100;
+};
+const int HISTORY_SIZE = 150;                 // 5 minutes at one record every 2 seconds, 3.6 KB
+const unsigned long HISTORY_INTERVAL = 2000;
+HistoryRecord history[HISTORY_SIZE];
+int historyHead = 0;                          // Next slot to write
+int historyCount = 0;
+unsigned long lastHistoryRecord = 0;
+
 // Constants
 const int FUEL_READING_SAMPLES = 20;  // Increased number of samples for better smoothing
 const float FUEL_CHANGE_THRESHOLD = 0.05;  // Minimum change in liters to consider valid
@@ -1555,6 +1591,147 @@ void restartLCD() {
 String currentNavInstruction = "";
 const unsigned long NAV_DISPLAY_INTERVAL = 3000;  // Show nav instructions for 3 seconds
 
+// Fill a JSON document with the current dashboard values. Shared by the
+// /dashboard-data endpoint and the telemetry stream.
+void fillDashboardJson(JsonDocument& doc) {
+  // Ensure speed is properly formatted and not zero
+  float speedToSend = (currentSpeed > 0) ? currentSpeed : 0;
+  doc["speed"] = speedToSend;
+  doc["fuelPercentage"] = (lastDisplayedFuelLiters / maxFuelLiters) * 100.0;
+  doc["fuelLiters"] = lastDisplayedFuelLiters;
+  doc["instantEconomy"] = instantFuelEconomy;
+  doc["odometer"] = totalDistanceKm;  // Changed from totalDistance to odometer
+  doc["trip1"] = trip1DistanceKm;     // Changed from trip1Distance to trip1
+  doc["trip1Fuel"] = trip1FuelUsed;
+  doc["trip1Average"] = trip1FuelAverage;
+  doc["trip1Started"] = trip1Started;
+  doc["trip2"] = trip2DistanceKm;     // Changed from trip2Distance to trip2
+  doc["trip2Fuel"] = trip2FuelUsed;
+  doc["trip2Average"] = trip2FuelAverage;
+  doc["trip2Started"] = trip2Started;
+  doc["fuelFillAverage"] = fuelFillAverage;
+  doc["fuelFillDistance"] = fuelFillDistance;
+  doc["lastFuelFill"] = lastFuelFillLiters;
+  doc["fuelFillStarted"] = fuelFillStarted;
+  doc["fuelUsedSinceFill"] = lastFuelFillLiters - lastDisplayedFuelLiters;
+  doc["resetCount"] = resetCount;
+  doc["has_navigation"] = hasNavigation;
+  doc["lcd_auto_restart"] = autoRestartEnabled;
+  
+  if (hasNavigation) {
+    doc["nav_direction"] = String(currentNavigation.direction);
+    doc["nav_distance"] = currentNavigation.distance;
+    doc["nav_street"] = currentNavigation.streetName;
+    doc["nav_instruction"] = currentNavigation.instruction;
+    doc["nav_step"] = currentNavigation.currentStep;
+    doc["nav_total_steps"] = currentNavigation.totalSteps;
+    doc["nav_speed"] = currentNavigation.speed;
+  }
+}
+
+// Append the current values to the history ring every HISTORY_INTERVAL
+void recordHistory() {
+  unsigned long now = millis();
+  if (historyCount > 0 && now - lastHistoryRecord < HISTORY_INTERVAL) return;
+  lastHistoryRecord = now;
+
+  HistoryRecord& record = history[historyHead];
+  record.at = now;
+  record.speed10 = (uint16_t)constrain(currentSpeed * 10.0, 0.0, 65535.0);
+  record.fuelLiters1000 = (uint16_t)constrain(lastDisplayedFuelLiters * 1000.0, 0.0, 65535.0);
+  record.fuelPercent100 = (uint16_t)constrain(lastDisplayedFuelLiters / maxFuelLiters * 10000.0, 0.0, 65535.0);
+  record.economy10 = (uint16_t)constrain(instantFuelEconomy * 10.0, 0.0, 65535.0);
+  record.odometer100 = (uint32_t)(totalDistanceKm * 100.0);
+  record.trip1_100 = (uint32_t)(trip1DistanceKm * 100.0);
+  record.trip2_100 = (uint32_t)(trip2DistanceKm * 100.0);
+
+  historyHead = (historyHead + 1) % HISTORY_SIZE;
+  if (historyCount < HISTORY_SIZE) historyCount++;
+}
+
+// GET /history?maxAge=<ms> sends the records younger than maxAge, oldest first,
+// one per line: age ms,speed10,fuelLiters1000,fuelPercent100,economy10,odometer100,trip1_100,trip2_100
+void handleHistory() {
+  unsigned long maxAge = server.hasArg("maxAge") ? strtoul(server.arg("maxAge").c_str(), NULL, 10) : 0xFFFFFFFFUL;
+  unsigned long now = millis();
+
+  // Chunked, so the response never needs the whole history in one String
+  server.setContentLength(CONTENT_LENGTH_UNKNOWN);
+  server.send(200, "text/plain", "");
+  String chunk;
+  chunk.reserve(1024);
+  char line[96];
+  for (int i = 0; i < historyCount; i++) {
+    const HistoryRecord& record = history[(historyHead - historyCount + i + HISTORY_SIZE) % HISTORY_SIZE];
+    unsigned long age = now - record.at;
+    if (age > maxAge) continue;
+    snprintf(line, sizeof(line), "%lu,%u,%u,%u,%u,%lu,%lu,%lu\n",
+             age, record.speed10, record.fuelLiters1000, record.fuelPercent100, record.economy10,
+             (unsigned long)record.odometer100, (unsigned long)record.trip1_100, (unsigned long)record.trip2_100);
+    chunk += line;
+    if (chunk.length() > 900) {
+      server.sendContent(chunk);
+      chunk = "";
+    }
+  }
+  if (chunk.length() > 0) {
+    server.sendContent(chunk);
+  }
+  server.sendContent("");
+}
+
+// Apply one command line received from the stream subscriber
+void handleStreamCommand(const String& command) {
+  if (command.startsWith("interval ")) {
+    long requested = command.substring(9).toInt();
+    if (requested > 0) {
+      streamInterval = constrain((unsigned long)requested, MIN_STREAM_INTERVAL, MAX_STREAM_INTERVAL);
+      Serial.println("Telemetry stream interval: " + String(streamInterval) + "ms");
+    }
+  }
+}
+
+// Accept a telemetry stream subscriber and push one sample per interval.
+// Only a single subscriber is kept; a new connection replaces the old one.
+void handleTelemetryStream() {
+  if (streamServer.hasClient()) {
+    WiFiClient incoming = streamServer.available();
+    if (streamClient && streamClient.connected()) {
+      streamClient.stop();
+    }
+    streamClient = incoming;
+    streamClient.setNoDelay(true);
+    lastStreamPush = 0;
+    streamInterval = DEFAULT_STREAM_INTERVAL;
+    streamCommand = "";
+    Serial.println("Telemetry stream client connected");
+  }
+
+  if (!streamClient || !streamClient.connected()) {
+    return;
+  }
+
+  while (streamClient.available()) {
+    char c = streamClient.read();
+    if (c == '\n') {
+      handleStreamCommand(streamCommand);
+      streamCommand = "";
+    } else if (c != '\r' && streamCommand.length() < 32) {
+      streamCommand += c;
+    }
+  }
+
+  if (millis() - lastStreamPush < streamInterval) {
+    return;
+  }
+  lastStreamPush = millis();
+
+  StaticJsonDocument<1024> doc;
+  fillDashboardJson(doc);
+  serializeJson(doc, streamClient);
+  streamClient.print('\n');
+}
+
 void setup() {
   Serial.begin(115200);
   
@@ -1742,40 +1919,7 @@ void setup() {
     
     // Create JSON response with increased buffer for more data
     StaticJsonDocument<1024> doc;
-    
-    // Ensure speed is properly formatted and not zero
-    float speedToSend = (currentSpeed > 0) ? currentSpeed : 0;
-    doc["speed"] = speedToSend;
-    doc["fuelPercentage"] = (lastDisplayedFuelLiters / maxFuelLiters) * 100.0;
-    doc["fuelLiters"] = lastDisplayedFuelLiters;
-    doc["instantEconomy"] = instantFuelEconomy;
-    doc["odometer"] = totalDistanceKm;  // Changed from totalDistance to odometer
-    doc["trip1"] = trip1DistanceKm;     // Changed from trip1Distance to trip1
-    doc["trip1Fuel"] = trip1FuelUsed;
-    doc["trip1Average"] = trip1FuelAverage;
-    doc["trip1Started"] = trip1Started;
-    doc["trip2"] = trip2DistanceKm;     // Changed from trip2Distance to trip2
-    doc["trip2Fuel"] = trip2FuelUsed;
-    doc["trip2Average"] = trip2FuelAverage;
-    doc["trip2Started"] = trip2Started;
-    doc["fuelFillAverage"] = fuelFillAverage;
-    doc["fuelFillDistance"] = fuelFillDistance;
-    doc["lastFuelFill"] = lastFuelFillLiters;
-    doc["fuelFillStarted"] = fuelFillStarted;
-    doc["fuelUsedSinceFill"] = lastFuelFillLiters - lastDisplayedFuelLiters;
-    doc["resetCount"] = resetCount;
-    doc["has_navigation"] = hasNavigation;
-    doc["lcd_auto_restart"] = autoRestartEnabled;
-    
-    if (hasNavigation) {
-      doc["nav_direction"] = String(currentNavigation.direction);
-      doc["nav_distance"] = currentNavigation.distance;
-      doc["nav_street"] = currentNavigation.streetName;
-      doc["nav_instruction"] = currentNavigation.instruction;
-      doc["nav_step"] = currentNavigation.currentStep;
-      doc["nav_total_steps"] = currentNavigation.totalSteps;
-      doc["nav_speed"] = currentNavigation.speed;
-    }
+    fillDashboardJson(doc);
     
     String jsonString;
     serializeJson(doc, jsonString);
@@ -1787,6 +1931,9 @@ void setup() {
     server.send(200, "application/json", jsonString);
   });
 
+  // Recent samples for the app to backfill a link drop
+  server.on("/history", HTTP_GET, handleHistory);
+
   // Add status endpoint
   server.on("/status", [&]() {
     String status = "{\"connected_clients\": " + String(WiFi.softAPgetStationNum()) + "}";
@@ -1834,19 +1981,7 @@ void setup() {
     
     // Get the maneuver type and convert to direction
     const char* maneuver = doc["maneuver"] | "straight";
-    if (strcmp(maneuver, "turn-right") == 0) {
-        currentNavigation.direction = 'R';
-    } else if (strcmp(maneuver, "turn-left") == 0) {
-        currentNavigation.direction = 'L';
-    } else if (strcmp(maneuver, "uturn-right") == 0 || strcmp(maneuver, "uturn-left") == 0) {
-        currentNavigation.direction = 'T';
-    } else if (strcmp(maneuver, "roundabout-right") == 0 || strcmp(maneuver, "roundabout-left") == 0) {
-        currentNavigation.direction = 'A';
-    } else if (strcmp(maneuver, "straight") == 0) {
-        currentNavigation.direction = 'U';
-    } else {
-        currentNavigation.direction = 'U'; // Default to straight/up
-    }
+    currentNavigation.direction = maneuverToDirection(maneuver);
 
     // Get distance to next turn
     const char* distanceStr = doc["distance_to_next"] | "0 m";
@@ -1896,6 +2031,43 @@ void setup() {
     server.send(200, "application/json", "{\"status\":\"success\",\"message\":\"Navigation updated\"}");
   });
   
+  // Compact frames from the app's NavigationFrameEncoder:
+  //   S,<step>,<total>,<maneuver>,<distance m>,<bearing>,<speed km/h>,<instruction>
+  //   D,<step>[,d<distance m>][,b<bearing>][,v<speed km/h>]
+  // The instruction arrives once per step; deltas only carry what changed. While
+  // nothing changes the app still sends a bare D,<step> every 10 s to keep this screen up.
+  server.on("/navigation/frame", HTTP_POST, []() {
+    if (!server.hasArg("plain")) {
+      server.send(400, "text/plain", "No data received");
+      return;
+    }
+
+    String frame = server.arg("plain");
+    int status;
+    if (frame.startsWith("S,")) {
+      status = applyNavigationStepFrame(frame);
+    } else if (frame.startsWith("D,")) {
+      status = applyNavigationDeltaFrame(frame);
+    } else {
+      status = 400;
+    }
+
+    if (status != 200) {
+      // 409 tells the app we don't have its step (e.g. after a restart) and it should resend it
+      Serial.println("Navigation frame rejected (" + String(status) + "): " + frame);
+      server.send(status, "text/plain", status == 409 ? "Unknown step" : "Invalid frame");
+      return;
+    }
+
+    // Keep the navigation screen up while frames are arriving, like full updates do
+    navScreenStartTime = millis();
+    if (currentScreen != 4) {
+      currentScreen = 4;
+      screenChanged = true;
+    }
+    server.send(200, "text/plain", "OK");
+  });
+
   server.on("/navigation/clear", HTTP_POST, []() {
     Serial.println("\n=== Navigation Cleared ===");
     Serial.println("Navigation system deactivated");
@@ -1919,7 +2091,13 @@ void setup() {
 
   // ... rest of the existing setup code ...
 
+  // The app keeps one HTTP/1.1 connection open for all its requests; don't close it after every response
+  server.keepAlive(true);
   server.begin();
+
+  // Start telemetry stream server
+  streamServer.begin();
+  streamServer.setNoDelay(true);
 }
 
 void loop() {
@@ -1982,6 +2160,8 @@ void loop() {
   // }
 
   server.handleClient();
+  handleTelemetryStream();
+  recordHistory();
   
   // Update speed and distance calculations more frequently
   static unsigned long lastSpeedUpdate = 0;
@@ -2263,6 +2443,91 @@ void handleData() {
   server.send(200, "text/plain", "Data page");
 }
 
+// Map a Directions maneuver name to the LCD arrow
+char maneuverToDirection(const char* maneuver) {
+  if (strcmp(maneuver, "turn-right") == 0) {
+    return 'R';
+  } else if (strcmp(maneuver, "turn-left") == 0) {
+    return 'L';
+  } else if (strcmp(maneuver, "uturn-right") == 0 || strcmp(maneuver, "uturn-left") == 0) {
+    return 'T';
+  } else if (strcmp(maneuver, "roundabout-right") == 0 || strcmp(maneuver, "roundabout-left") == 0) {
+    return 'A';
+  }
+  return 'U'; // Straight, and the default for anything we don't draw
+}
+
+// Return the comma-separated field starting at pos and move pos past it
+String nextFrameField(const String& frame, int& pos) {
+  int comma = frame.indexOf(',', pos);
+  String field = comma < 0 ? frame.substring(pos) : frame.substring(pos, comma);
+  pos = comma < 0 ? frame.length() : comma + 1;
+  return field;
+}
+
+void applyNavigationSpeed(float speed) {
+  currentNavigation.speed = speed;
+  // Same rule as /navigation: a valid navigation speed drives the speedometer
+  if (speed > 0) {
+    currentSpeed = speed;
+  }
+}
+
+// S,<step>,<total>,<maneuver>,<distance m>,<bearing>,<speed km/h>,<instruction>
+int applyNavigationStepFrame(const String& frame) {
+  int pos = 2;
+  int step = nextFrameField(frame, pos).toInt();
+  int total = nextFrameField(frame, pos).toInt();
+  String maneuver = nextFrameField(frame, pos);
+  float distance = nextFrameField(frame, pos).toFloat();
+  float bearing = nextFrameField(frame, pos).toFloat();
+  float speed = nextFrameField(frame, pos).toFloat();
+  if (maneuver.length() == 0) {
+    return 400;
+  }
+  // The instruction is the rest of the frame, commas and all
+  String instruction = frame.substring(pos);
+
+  hasNavigation = true;
+  currentNavigation.isNavigating = true;
+  currentNavigation.currentStep = step;
+  currentNavigation.totalSteps = total;
+  currentNavigation.direction = maneuverToDirection(maneuver.c_str());
+  currentNavigation.distance = distance;
+  currentNavigation.bearing = bearing;
+  applyNavigationSpeed(speed);
+
+  String cleanedInstruction = cleanHtmlTags(instruction);
+  strncpy(currentNavigation.streetName, cleanedInstruction.c_str(), sizeof(currentNavigation.streetName) - 1);
+  currentNavigation.streetName[sizeof(currentNavigation.streetName) - 1] = '\0';
+
+  Serial.println("Navigation step " + String(step + 1) + " of " + String(total) + ": " + currentNavigation.streetName);
+  return 200;
+}
+
+// D,<step>[,d<distance m>][,b<bearing>][,v<speed km/h>]
+int applyNavigationDeltaFrame(const String& frame) {
+  int pos = 2;
+  int step = nextFrameField(frame, pos).toInt();
+  if (!currentNavigation.isNavigating || step != currentNavigation.currentStep) {
+    return 409;
+  }
+  while (pos < (int)frame.length()) {
+    String field = nextFrameField(frame, pos);
+    if (field.length() < 2) {
+      return 400;
+    }
+    float value = field.substring(1).toFloat();
+    switch (field.charAt(0)) {
+      case 'd': currentNavigation.distance = value; break;
+      case 'b': currentNavigation.bearing = value; break;
+      case 'v': applyNavigationSpeed(value); break;
+      default: break; // Ignore fields from newer apps
+    }
+  }
+  return 200;
+}
+
 // Helper function to clean HTML tags from text
 String cleanHtmlTags(String text) {
   String cleaned = text;
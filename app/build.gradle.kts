@@ -70,6 +70,7 @@ dependencies {
     implementation("com.google.android.gms:play-services-maps:18.2.0")
     
     testImplementation(libs.junit)
+    testImplementation(libs.json)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
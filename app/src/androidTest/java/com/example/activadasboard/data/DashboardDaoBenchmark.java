@@ -0,0 +1,110 @@
+package com.example.activadasboard.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Query latency of the History screen queries on a month of 1 Hz samples
+ * (~2.6M rows) and their rollups, with and without the dashboard_data
+ * indexes. Results are written to logcat under the DashboardDaoBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DashboardDaoBenchmark {
+    private static final String TAG = "DashboardDaoBenchmark";
+    private static final String DB_NAME = "dashboard_benchmark.db";
+    private static final int ROWS = 30 * 24 * 60 * 60;
+    private static final int BATCH = 10000;
+    private static final long ONE_DAY = 24 * 60 * 60 * 1000L;
+
+    private Context context;
+    private AppDatabase database;
+    private DashboardDao dao;
+    private long end;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        database = Room.databaseBuilder(context, AppDatabase.class, DB_NAME).build();
+        dao = database.dashboardDao();
+
+        end = System.currentTimeMillis();
+        long start = end - ROWS * 1000L;
+        List<DashboardData> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < ROWS; i++) {
+            DashboardData data = new DashboardData();
+            data.timestamp = start + i * 1000L;
+            data.speed = (i % 600) / 10.0;
+            data.fuelPercentage = 100 - (i % 100000) / 1000.0;
+            data.instantEconomy = 30 + (i % 50) / 5.0;
+            data.totalDistance = i / 3600.0;
+            data.fuelFillStarted = i % 50000 == 0;
+            batch.add(data);
+            if (batch.size() == BATCH) {
+                // As the service writes them, so the summary queries have rollups to read
+                dao.insertWithRollups(batch);
+                batch.clear();
+            }
+        }
+        dao.insertWithRollups(batch);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void historyQueries() {
+        assertEquals(ROWS, dao.getDataCount());
+        assertFalse(dao.getDailySummaries(end - 7 * ONE_DAY, end).isEmpty());
+
+        runQueries("indexed");
+
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        db.execSQL("DROP INDEX `index_dashboard_data_timestamp_summary`");
+        db.execSQL("DROP INDEX `index_dashboard_data_fuelFillStarted_timestamp`");
+        db.execSQL("DROP INDEX `index_dashboard_data_speed`");
+        db.execSQL("DROP INDEX `index_dashboard_data_instantEconomy`");
+
+        runQueries("unindexed");
+    }
+
+    private void runQueries(String label) {
+        time(label, "getLatestData", () -> assertNotNull(dao.getLatestData()));
+        time(label, "getDataInRange(1 day)", () -> dao.getDataInRange(end - ONE_DAY, end));
+        time(label, "getTripData(1 hour)", () -> dao.getTripData(end - ONE_DAY / 24, end));
+        time(label, "getHourlySummaries(1 day)", () -> dao.getHourlySummaries(end - ONE_DAY, end));
+        time(label, "getDailySummaries(7 days)", () -> dao.getDailySummaries(end - 7 * ONE_DAY, end));
+        time(label, "getTripSummary(1 day)", () -> dao.getTripSummary(end - ONE_DAY, end));
+        time(label, "getFuelFillEvents", () -> dao.getFuelFillEvents());
+        time(label, "getFuelSummary(7 days)", () -> dao.getFuelSummary(end - 7 * ONE_DAY));
+        time(label, "deleteOldData(nothing)", () -> dao.deleteOldData(end - 60 * ONE_DAY));
+    }
+
+    private void time(String label, String name, Runnable query) {
+        // Warm up once so the page cache doesn't dominate the first run
+        query.run();
+        long start = SystemClock.elapsedRealtimeNanos();
+        query.run();
+        long micros = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+        Log.i(TAG, String.format("%-10s %-28s %8d us", label, name, micros));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.activadasboard.data;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cost of loading a 200-step cached route's steps from the old stepsJson text
+ * against the RouteSteps binary format, which also carries each step's
+ * polyline. Results are written to logcat under the RouteStepsBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RouteStepsBenchmark {
+    private static final String TAG = "RouteStepsBenchmark";
+    private static final int STEPS = 200;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    private long sink;
+
+    @Test
+    public void loadComparison() throws Exception {
+        List<RouteSteps.Step> steps = new ArrayList<>();
+        for (int i = 0; i < STEPS; i++) {
+            steps.add(step(i));
+        }
+        byte[] binary = RouteSteps.encode(steps);
+        String json = toJson(steps);
+
+        // Both formats must hold the same route before timing them
+        RouteSteps route = RouteSteps.parse(binary);
+        JSONArray array = new JSONArray(json);
+        assertEquals(array.length(), route.size());
+        assertEquals(array.getJSONObject(STEPS - 1).getString("htmlInstructions"), route.step(STEPS - 1).instructions);
+
+        for (int i = 0; i < WARMUP; i++) {
+            loadJson(json);
+            loadBinary(binary);
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            loadJson(json);
+        }
+        long jsonNs = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            loadBinary(binary);
+        }
+        long binaryNs = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("stepsJson: %d bytes, %d us/load", json.length(), jsonNs / ITERATIONS / 1000));
+        Log.i(TAG, String.format("stepsData: %d bytes, %d us/load", binary.length, binaryNs / ITERATIONS / 1000));
+        Log.i(TAG, "sink " + sink);
+    }
+
+    private void loadJson(String json) throws Exception {
+        JSONArray array = new JSONArray(json);
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject step = array.getJSONObject(i);
+            sink += step.getString("htmlInstructions").length() + step.getString("distance").length()
+                    + (long) step.getDouble("endLat");
+        }
+    }
+
+    private void loadBinary(byte[] binary) {
+        RouteSteps route = RouteSteps.parse(binary);
+        for (int i = 0; i < route.size(); i++) {
+            RouteSteps.Step step = route.step(i);
+            sink += step.instructions.length() + step.distanceText.length() + (long) step.endLatitude;
+        }
+    }
+
+    // The shape MapFragment used to store in stepsJson, which had no step polylines
+    private static String toJson(List<RouteSteps.Step> steps) throws Exception {
+        JSONArray array = new JSONArray();
+        for (RouteSteps.Step step : steps) {
+            JSONObject json = new JSONObject();
+            json.put("htmlInstructions", step.instructions);
+            json.put("distance", step.distanceText);
+            json.put("duration", step.durationText);
+            json.put("travelMode", "DRIVING");
+            json.put("maneuver", step.maneuver);
+            json.put("startLat", step.startLatitude);
+            json.put("startLng", step.startLongitude);
+            json.put("endLat", step.endLatitude);
+            json.put("endLng", step.endLongitude);
+            array.put(json);
+        }
+        return array.toString();
+    }
+
+    private static RouteSteps.Step step(int i) {
+        RouteSteps.Step step = new RouteSteps.Step();
+        step.instructions = "Turn <b>left</b> onto <b>Road " + i + "</b>";
+        step.maneuver = "turn-left";
+        step.distanceText = (i * 10) + " m";
+        step.durationText = "1 min";
+        step.distanceMeters = i * 10L;
+        step.durationSeconds = 60;
+        step.startLatitude = 12.97160 + i * 0.001;
+        step.startLongitude = 77.59460 - i * 0.001;
+        step.endLatitude = 12.97160 + (i + 1) * 0.001;
+        step.endLongitude = 77.59460 - (i + 1) * 0.001;
+        int[] polyline = new int[20];
+        for (int v = 0; v < 10; v++) {
+            polyline[v * 2] = 1297160 + i * 100 + v * 11;
+            polyline[v * 2 + 1] = 7759460 - i * 100 - v * 11;
+        }
+        step.polyline = polyline;
+        return step;
+    }
+}
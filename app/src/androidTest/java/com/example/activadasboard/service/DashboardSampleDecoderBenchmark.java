@@ -0,0 +1,127 @@
+package com.example.activadasboard.service;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.activadasboard.data.DashboardData;
+import com.example.activadasboard.data.DashboardSample;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-sample decode cost of the old org.json path (String, JSONObject, copy
+ * into DashboardData, optDouble lookups for the UI) against
+ * DashboardSampleDecoder. Results are written to logcat under the
+ * DashboardSampleDecoderBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DashboardSampleDecoderBenchmark {
+    private static final String TAG = "DashboardSampleDecoderBenchmark";
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 200000;
+
+    // Same shape as fillDashboardJson() in the firmware, with navigation active
+    private static final byte[] PAYLOAD = ("{\"speed\":42.5,\"fuelPercentage\":63.21429,\"fuelLiters\":3.456,"
+            + "\"instantEconomy\":48.7,\"odometer\":12345.67,\"trip1\":12.34,\"trip1Fuel\":0.251,"
+            + "\"trip1Average\":49.2,\"trip1Started\":true,\"trip2\":104.2,\"trip2Fuel\":2.1,"
+            + "\"trip2Average\":49.6,\"trip2Started\":true,\"fuelFillAverage\":45.1,"
+            + "\"fuelFillDistance\":120.5,\"lastFuelFill\":5.2,\"fuelFillStarted\":true,"
+            + "\"fuelUsedSinceFill\":1.744,\"resetCount\":3,\"has_navigation\":true,"
+            + "\"lcd_auto_restart\":false,\"nav_direction\":\"L\",\"nav_distance\":120,"
+            + "\"nav_street\":\"MG Road\",\"nav_instruction\":\"Turn left onto MG Road\","
+            + "\"nav_step\":3,\"nav_total_steps\":12,\"nav_speed\":42}").getBytes(StandardCharsets.UTF_8);
+
+    private double sink;
+
+    @Test
+    public void decodeComparison() throws Exception {
+        DashboardSampleDecoder decoder = new DashboardSampleDecoder();
+        DashboardSample sample = new DashboardSample();
+
+        // Both paths must agree before timing them
+        decoder.decode(PAYLOAD, 0, PAYLOAD.length, sample);
+        DashboardData viaJson = decodeWithJson();
+        DashboardData viaDecoder = sample.toDashboardData();
+        assertEquals(viaJson.speed, viaDecoder.speed, 0);
+        assertEquals(viaJson.fuelPercentage, viaDecoder.fuelPercentage, 0);
+        assertEquals(viaJson.totalDistance, viaDecoder.totalDistance, 0);
+        assertEquals(viaJson.trip2Average, viaDecoder.trip2Average, 0);
+        assertEquals(viaJson.fuelFillStarted, viaDecoder.fuelFillStarted);
+
+        for (int i = 0; i < WARMUP; i++) {
+            decodeWithJson();
+            decodeWithDecoder(decoder, sample);
+        }
+
+        long gcBefore = gcCount();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            decodeWithJson();
+        }
+        long jsonNs = SystemClock.elapsedRealtimeNanos() - start;
+        long jsonGcs = gcCount() - gcBefore;
+
+        gcBefore = gcCount();
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            decodeWithDecoder(decoder, sample);
+        }
+        long decoderNs = SystemClock.elapsedRealtimeNanos() - start;
+        long decoderGcs = gcCount() - gcBefore;
+
+        Log.i(TAG, String.format("org.json: %d ns/sample, %d GCs", jsonNs / ITERATIONS, jsonGcs));
+        Log.i(TAG, String.format("decoder:  %d ns/sample, %d GCs", decoderNs / ITERATIONS, decoderGcs));
+        Log.i(TAG, "sink " + sink);
+    }
+
+    // What Esp8266Service and DashboardFragment used to do for every sample
+    private DashboardData decodeWithJson() throws Exception {
+        JSONObject json = new JSONObject(new String(PAYLOAD, StandardCharsets.UTF_8));
+        DashboardData data = new DashboardData();
+        data.speed = json.optDouble("speed", 0.0);
+        data.fuelPercentage = json.optDouble("fuelPercentage", 0.0);
+        data.fuelLiters = json.optDouble("fuelLiters", 0.0);
+        data.instantEconomy = json.optDouble("instantEconomy", 0.0);
+        data.totalDistance = json.optDouble("odometer", 0.0);
+        data.trip1Distance = json.optDouble("trip1", 0.0);
+        data.trip1Fuel = json.optDouble("trip1Fuel", 0.0);
+        data.trip1Average = json.optDouble("trip1Average", 0.0);
+        data.trip1Started = json.optBoolean("trip1Started", false);
+        data.trip2Distance = json.optDouble("trip2", 0.0);
+        data.trip2Fuel = json.optDouble("trip2Fuel", 0.0);
+        data.trip2Average = json.optDouble("trip2Average", 0.0);
+        data.trip2Started = json.optBoolean("trip2Started", false);
+        data.fuelFillAverage = json.optDouble("fuelFillAverage", 0.0);
+        data.fuelFillDistance = json.optDouble("fuelFillDistance", 0.0);
+        data.lastFuelFill = json.optDouble("lastFuelFill", 0.0);
+        data.fuelFillStarted = json.optBoolean("fuelFillStarted", false);
+        data.fuelUsedSinceFill = json.optDouble("fuelUsedSinceFill", 0.0);
+        sink += json.optDouble("speed", 0.0) + json.optDouble("trip1", 0.0) + json.optDouble("trip2", 0.0)
+                + json.optDouble("odometer", 0.0) + json.optDouble("fuelLiters", 0.0)
+                + json.optDouble("fuelFillDistance", 0.0) + json.optDouble("fuelFillAverage", 0.0)
+                + json.optDouble("instantEconomy", 0.0);
+        return data;
+    }
+
+    // The new path: one decode, one row object for the write buffer, field reads for the UI
+    private void decodeWithDecoder(DashboardSampleDecoder decoder, DashboardSample sample) throws Exception {
+        decoder.decode(PAYLOAD, 0, PAYLOAD.length, sample);
+        DashboardData data = sample.toDashboardData();
+        sink += sample.speed + sample.trip1 + sample.trip2 + sample.odometer + sample.fuelLiters
+                + sample.fuelFillDistance + sample.fuelFillAverage + sample.instantEconomy + data.speed;
+    }
+
+    private static long gcCount() {
+        String count = Debug.getRuntimeStat("art.gc.gc-count");
+        return count != null ? Long.parseLong(count) : -1;
+    }
+}
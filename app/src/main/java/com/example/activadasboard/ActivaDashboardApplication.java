@@ -4,6 +4,7 @@ import android.app.Application;
 import android.content.Intent;
 import android.os.Build;
 import android.util.Log;
+import com.example.activadasboard.data.MapDataManager;
 import com.example.activadasboard.service.DashboardForegroundService;
 import com.example.activadasboard.service.Esp8266Service;
 
@@ -17,6 +18,7 @@ public class ActivaDashboardApplication extends Application {
         Log.d(TAG, "Application created");
         initializeEsp8266Service();
         startDashboardService();
+        MapDataManager.warmRouteIndex(this);
     }
 
     private void initializeEsp8266Service() {
@@ -1,26 +1,47 @@
 package com.example.activadasboard.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import java.util.Arrays;
 import java.util.concurrent.Executors;
 
-@Database(entities = {DashboardData.class, SearchHistory.class, OfflineDirections.class}, version = 4, exportSchema = false)
+@Database(entities = {DashboardData.class, DashboardRollup.class, SearchHistory.class, OfflineDirections.class,
+        SearchHistoryFts.class, OfflineDestinationFts.class}, version = 9, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     private static volatile AppDatabase INSTANCE;
+    private static final int SUMMARY_CACHE_ENTRIES = 64;
+
+    // Summaries computed from dashboard_data; every writer reports the span it touched
+    private final SummaryCache summaryCache = new SummaryCache(SUMMARY_CACHE_ENTRIES);
+    // Origins of offline_directions, kept in step by MapDataManager
+    private final RouteIndex routeIndex = new RouteIndex();
 
     public abstract DashboardDao dashboardDao();
     public abstract MapDao mapDao();
 
+    public SummaryCache getSummaryCache() {
+        return summaryCache;
+    }
+
+    public RouteIndex getRouteIndex() {
+        return routeIndex;
+    }
+
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                             AppDatabase.class, "dashboard_database")
+                            .addMigrations(MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9)
+                            // History panels read in parallel; WAL lets them run alongside the sample writer
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
                             .fallbackToDestructiveMigration()
                             .addCallback(sRoomDatabaseCallback)
                             .build();
@@ -30,15 +51,117 @@ public abstract class AppDatabase extends RoomDatabase {
         return INSTANCE;
     }
 
+    // Version 5 adds the time-series indexes on dashboard_data
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_dashboard_data_timestamp_summary` " +
+                    "ON `dashboard_data` (`timestamp`, `speed`, `fuelPercentage`, `instantEconomy`, `totalDistance`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_dashboard_data_fuelFillStarted_timestamp` " +
+                    "ON `dashboard_data` (`fuelFillStarted`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_dashboard_data_speed` " +
+                    "ON `dashboard_data` (`speed`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_dashboard_data_instantEconomy` " +
+                    "ON `dashboard_data` (`instantEconomy`)");
+        }
+    };
+
+    // Version 6 adds the minute/hour/day rollups, backfilled from the raw samples
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `dashboard_rollup` (" +
+                    "`resolution` INTEGER NOT NULL, `bucketStart` INTEGER NOT NULL, " +
+                    "`sampleCount` INTEGER NOT NULL, `sumSpeed` REAL NOT NULL, `maxSpeed` REAL NOT NULL, " +
+                    "`sumFuelPercentage` REAL NOT NULL, `sumInstantEconomy` REAL NOT NULL, " +
+                    "`minTotalDistance` REAL NOT NULL, `maxTotalDistance` REAL NOT NULL, " +
+                    "PRIMARY KEY(`resolution`, `bucketStart`))");
+            for (long resolution : DashboardRollup.RESOLUTIONS) {
+                db.execSQL("INSERT INTO `dashboard_rollup` SELECT " + resolution + ", " +
+                        "timestamp - (timestamp % " + resolution + ") AS bucket, COUNT(*), " +
+                        "SUM(speed), MAX(speed), SUM(fuelPercentage), SUM(instantEconomy), " +
+                        "MIN(totalDistance), MAX(totalDistance) " +
+                        "FROM `dashboard_data` GROUP BY bucket");
+            }
+        }
+    };
+
+    // Version 7 flags gaps in the sample stream and rows backfilled from the ESP8266's history
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `dashboard_data` ADD COLUMN `gapBefore` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `dashboard_data` ADD COLUMN `backfilled` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    // Version 8 stores offline route steps in binary, hashed so identical routes are saved once.
+    // Older rows keep their stepsJson and a routeHash of 0, which nothing hashes to in practice.
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `offline_directions` ADD COLUMN `stepsData` BLOB");
+            db.execSQL("ALTER TABLE `offline_directions` ADD COLUMN `routeHash` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_offline_directions_routeHash` " +
+                    "ON `offline_directions` (`routeHash`)");
+        }
+    };
+
+    // Version 9 adds frecency ranking and full-text indexes for search suggestions
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `search_history` ADD COLUMN `frecency` REAL NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_search_history_frecency` " +
+                    "ON `search_history` (`frecency`)");
+            // SQLite here has no ln(), so the backfill is done row by row
+            try (Cursor cursor = db.query("SELECT `id`, `searchCount`, `timestamp` FROM `search_history`")) {
+                while (cursor.moveToNext()) {
+                    db.execSQL("UPDATE `search_history` SET `frecency` = ? WHERE `id` = ?", new Object[]{
+                            SearchRanking.frecency(cursor.getInt(1), cursor.getLong(2)), cursor.getInt(0)});
+                }
+            }
+
+            createContentFts(db, "search_history_fts", "search_history", "placeName", "address");
+            createContentFts(db, "offline_directions_fts", "offline_directions", "destinationName");
+        }
+    };
+
+    /** The FTS4 table and sync triggers Room generates for an external content entity, filled from it. */
+    private static void createContentFts(SupportSQLiteDatabase db, String fts, String content, String... columns) {
+        StringBuilder definitions = new StringBuilder();
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (String column : columns) {
+            definitions.append('`').append(column).append("` TEXT, ");
+            names.append(", `").append(column).append('`');
+            values.append(", NEW.`").append(column).append('`');
+        }
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `" + fts + "` USING FTS4(" + definitions +
+                "tokenize=unicode61, content=`" + content + "`)");
+        for (String when : new String[]{"BEFORE_UPDATE", "BEFORE_DELETE"}) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_" + fts + "_" + when + " " +
+                    when.replace('_', ' ') + " ON `" + content + "` BEGIN DELETE FROM `" + fts + "` " +
+                    "WHERE `docid`=OLD.`rowid`; END");
+        }
+        for (String when : new String[]{"AFTER_UPDATE", "AFTER_INSERT"}) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_" + fts + "_" + when + " " +
+                    when.replace('_', ' ') + " ON `" + content + "` BEGIN INSERT INTO `" + fts + "`(`docid`" +
+                    names + ") VALUES (NEW.`rowid`" + values + "); END");
+        }
+        db.execSQL("INSERT INTO `" + fts + "`(`" + fts + "`) VALUES('rebuild')");
+    }
+
     private static final RoomDatabase.Callback sRoomDatabaseCallback = new RoomDatabase.Callback() {
         @Override
         public void onCreate(@NonNull SupportSQLiteDatabase db) {
             super.onCreate(db);
             Executors.newSingleThreadExecutor().execute(() -> {
                 DashboardDao dao = INSTANCE.dashboardDao();
-                dao.insert(createDummyData(1, 45.5, 120.5));
-                dao.insert(createDummyData(2, 60.2, 150.2));
-                dao.insert(createDummyData(3, 30.0, 95.8));
+                dao.insertWithRollups(Arrays.asList(
+                        createDummyData(1, 45.5, 120.5),
+                        createDummyData(2, 60.2, 150.2),
+                        createDummyData(3, 30.0, 95.8)));
             });
         }
     };
@@ -0,0 +1,234 @@
+package com.example.activadasboard.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * On-disk format shared by {@link ArchiveSegmentWriter} and
+ * {@link ArchiveSegmentReader}. A segment is an immutable file holding one
+ * column block per {@link DashboardData} field:
+ *
+ * <pre>
+ *   int magic, int version, int rowCount, long firstTimestamp, long lastTimestamp,
+ *   int columnCount, columnCount x (int offset, int length), column blocks...
+ * </pre>
+ *
+ * Numeric fields are quantised to fixed point with a per-column scale, delta
+ * encoded and written as zigzag varints. A zero delta is written as 0 followed
+ * by the length of the run of zeros, so a value that doesn't change costs two
+ * bytes per run rather than a byte per sample. Timestamps go through the same
+ * encoder as deltas, which makes a steady 1 Hz stream delta-of-delta encoded.
+ * Flags are stored as run lengths of alternating false/true, starting with false.
+ *
+ * Version 2 appended the gapBefore and backfilled flag columns. Version 1
+ * segments are still read, with those flags false.
+ */
+final class ArchiveSegment {
+    static final int MAGIC = 0x41545331; // "ATS1"
+    static final int VERSION = 2;
+    static final int MIN_VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 4;
+
+    interface Getter {
+        double get(DashboardData data);
+    }
+
+    interface Setter {
+        void set(DashboardData data, double value);
+    }
+
+    interface FlagGetter {
+        boolean get(DashboardData data);
+    }
+
+    interface FlagSetter {
+        void set(DashboardData data, boolean value);
+    }
+
+    static final class NumericColumn {
+        final double scale;
+        final Getter getter;
+        final Setter setter;
+
+        NumericColumn(double scale, Getter getter, Setter setter) {
+            this.scale = scale;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    static final class FlagColumn {
+        final FlagGetter getter;
+        final FlagSetter setter;
+
+        FlagColumn(FlagGetter getter, FlagSetter setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    // Scales match the precision the firmware reports; changing one needs a new VERSION
+    static final NumericColumn[] NUMERIC_COLUMNS = {
+        new NumericColumn(10, d -> d.speed, (d, v) -> d.speed = v),
+        new NumericColumn(10, d -> d.fuelPercentage, (d, v) -> d.fuelPercentage = v),
+        new NumericColumn(1000, d -> d.fuelLiters, (d, v) -> d.fuelLiters = v),
+        new NumericColumn(100, d -> d.instantEconomy, (d, v) -> d.instantEconomy = v),
+        new NumericColumn(1000, d -> d.totalDistance, (d, v) -> d.totalDistance = v),
+        new NumericColumn(1000, d -> d.trip1Distance, (d, v) -> d.trip1Distance = v),
+        new NumericColumn(1000, d -> d.trip1Fuel, (d, v) -> d.trip1Fuel = v),
+        new NumericColumn(100, d -> d.trip1Average, (d, v) -> d.trip1Average = v),
+        new NumericColumn(1000, d -> d.trip2Distance, (d, v) -> d.trip2Distance = v),
+        new NumericColumn(1000, d -> d.trip2Fuel, (d, v) -> d.trip2Fuel = v),
+        new NumericColumn(100, d -> d.trip2Average, (d, v) -> d.trip2Average = v),
+        new NumericColumn(100, d -> d.fuelFillAverage, (d, v) -> d.fuelFillAverage = v),
+        new NumericColumn(1000, d -> d.fuelFillDistance, (d, v) -> d.fuelFillDistance = v),
+        new NumericColumn(1000, d -> d.lastFuelFill, (d, v) -> d.lastFuelFill = v),
+        new NumericColumn(1000, d -> d.fuelUsedSinceFill, (d, v) -> d.fuelUsedSinceFill = v),
+    };
+
+    static final FlagColumn[] FLAG_COLUMNS = {
+        new FlagColumn(d -> d.trip1Started, (d, v) -> d.trip1Started = v),
+        new FlagColumn(d -> d.trip2Started, (d, v) -> d.trip2Started = v),
+        new FlagColumn(d -> d.fuelFillStarted, (d, v) -> d.fuelFillStarted = v),
+        // Version 2
+        new FlagColumn(d -> d.gapBefore, (d, v) -> d.gapBefore = v),
+        new FlagColumn(d -> d.backfilled, (d, v) -> d.backfilled = v),
+    };
+
+    // Flag columns present in each version; new columns are only ever appended
+    static int flagColumnCount(int version) {
+        return version == 1 ? 3 : FLAG_COLUMNS.length;
+    }
+
+    // Timestamp column first, then numeric, then flags
+    static final int COLUMN_COUNT = 1 + NUMERIC_COLUMNS.length + FLAG_COLUMNS.length;
+
+    private ArchiveSegment() {
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(ByteBuffer in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new IOException("Truncated archive column");
+            }
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint in archive column");
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** Delta + zero-run encoder for one long-valued column. */
+    static final class DeltaEncoder {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private long previous = 0;
+        private long zeroRun = 0;
+
+        void add(long value) {
+            long delta = value - previous;
+            previous = value;
+            if (delta == 0) {
+                zeroRun++;
+                return;
+            }
+            flushZeroRun();
+            writeVarint(out, zigzag(delta));
+        }
+
+        void finish() {
+            flushZeroRun();
+        }
+
+        private void flushZeroRun() {
+            if (zeroRun > 0) {
+                writeVarint(out, 0);
+                writeVarint(out, zeroRun - 1);
+                zeroRun = 0;
+            }
+        }
+    }
+
+    static final class DeltaDecoder {
+        private final ByteBuffer in;
+        private long previous = 0;
+        private long pendingZeros = 0;
+
+        DeltaDecoder(ByteBuffer in) {
+            this.in = in;
+        }
+
+        long next() throws IOException {
+            if (pendingZeros > 0) {
+                pendingZeros--;
+                return previous;
+            }
+            long encoded = readVarint(in);
+            if (encoded == 0) {
+                pendingZeros = readVarint(in);
+                return previous;
+            }
+            previous += unzigzag(encoded);
+            return previous;
+        }
+    }
+
+    /** Run-length encoder for a boolean column. */
+    static final class FlagEncoder {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private boolean current = false;
+        private long run = 0;
+
+        void add(boolean value) {
+            if (value != current) {
+                writeVarint(out, run);
+                current = value;
+                run = 0;
+            }
+            run++;
+        }
+
+        void finish() {
+            writeVarint(out, run);
+        }
+    }
+
+    static final class FlagDecoder {
+        private final ByteBuffer in;
+        private boolean current = false;
+        private long remaining;
+
+        FlagDecoder(ByteBuffer in) throws IOException {
+            this.in = in;
+            this.remaining = readVarint(in);
+        }
+
+        boolean next() throws IOException {
+            while (remaining == 0) {
+                current = !current;
+                remaining = readVarint(in);
+            }
+            remaining--;
+            return current;
+        }
+    }
+}
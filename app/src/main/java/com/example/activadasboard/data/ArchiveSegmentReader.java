@@ -0,0 +1,140 @@
+package com.example.activadasboard.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+
+/**
+ * Memory-mapped view of one archive segment. The header is read on open;
+ * columns are decoded lazily, row by row, when a range is read.
+ */
+public class ArchiveSegmentReader {
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final int[] offsets;
+    private final int flagColumnCount;
+    private final int[] lengths;
+
+    public ArchiveSegmentReader(File file) throws IOException {
+        this.file = file;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < ArchiveSegment.HEADER_SIZE
+                || buffer.getInt(0) != ArchiveSegment.MAGIC) {
+            throw new IOException("Not an archive segment: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version < ArchiveSegment.MIN_VERSION || version > ArchiveSegment.VERSION) {
+            throw new IOException("Unsupported archive segment version " + version + ": " + file);
+        }
+        flagColumnCount = ArchiveSegment.flagColumnCount(version);
+        rowCount = buffer.getInt(8);
+        firstTimestamp = buffer.getLong(12);
+        lastTimestamp = buffer.getLong(20);
+        int columnCount = buffer.getInt(28);
+        if (columnCount != 1 + ArchiveSegment.NUMERIC_COLUMNS.length + flagColumnCount) {
+            throw new IOException("Unexpected column count " + columnCount + ": " + file);
+        }
+
+        offsets = new int[columnCount];
+        lengths = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            int entry = ArchiveSegment.HEADER_SIZE + i * 8;
+            offsets[i] = buffer.getInt(entry);
+            lengths[i] = buffer.getInt(entry + 4);
+            if (offsets[i] < 0 || lengths[i] < 0 || (long) offsets[i] + lengths[i] > buffer.capacity()) {
+                throw new IOException("Corrupt column directory: " + file);
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public boolean overlaps(long startTime, long endTime) {
+        return lastTimestamp >= startTime && firstTimestamp <= endTime;
+    }
+
+    /**
+     * Decode every sample with {@code startTime <= timestamp <= endTime} into
+     * {@code sink}, in timestamp order. Each sample is a new object, so the
+     * sink may keep it.
+     *
+     * @return the number of samples delivered
+     */
+    public int read(long startTime, long endTime, Consumer<DashboardData> sink) throws IOException {
+        if (!overlaps(startTime, endTime)) return 0;
+
+        int column = 0;
+        ArchiveSegment.DeltaDecoder timestamps = new ArchiveSegment.DeltaDecoder(column(column++));
+        ArchiveSegment.DeltaDecoder[] numeric = new ArchiveSegment.DeltaDecoder[ArchiveSegment.NUMERIC_COLUMNS.length];
+        for (int i = 0; i < numeric.length; i++) {
+            numeric[i] = new ArchiveSegment.DeltaDecoder(column(column++));
+        }
+        // Flags added after this segment was written stay false
+        ArchiveSegment.FlagDecoder[] flags = new ArchiveSegment.FlagDecoder[flagColumnCount];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = new ArchiveSegment.FlagDecoder(column(column++));
+        }
+
+        // Columns are delta encoded, so rows before the range still have to be decoded
+        int delivered = 0;
+        long timestamp = 0;
+        for (int row = 0; row < rowCount; row++) {
+            timestamp += timestamps.next();
+            if (timestamp > endTime) break;
+
+            boolean inRange = timestamp >= startTime;
+            DashboardData data = inRange ? new DashboardData() : null;
+            for (int i = 0; i < numeric.length; i++) {
+                long quantised = numeric[i].next();
+                if (inRange) {
+                    ArchiveSegment.NumericColumn definition = ArchiveSegment.NUMERIC_COLUMNS[i];
+                    definition.setter.set(data, quantised / definition.scale);
+                }
+            }
+            for (int i = 0; i < flags.length; i++) {
+                boolean value = flags[i].next();
+                if (inRange) {
+                    ArchiveSegment.FLAG_COLUMNS[i].setter.set(data, value);
+                }
+            }
+            if (inRange) {
+                data.timestamp = timestamp;
+                sink.accept(data);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    private ByteBuffer column(int index) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offsets[index]);
+        slice.limit(offsets[index] + lengths[index]);
+        return slice.slice();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.activadasboard.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Builds one archive segment from samples added in timestamp order. Columns
+ * are encoded as samples arrive, so memory use is the size of the encoded
+ * segment, not of the rows. See {@link ArchiveSegment} for the format.
+ */
+public class ArchiveSegmentWriter {
+    private final ArchiveSegment.DeltaEncoder timestamps = new ArchiveSegment.DeltaEncoder();
+    private final ArchiveSegment.DeltaEncoder[] numeric = new ArchiveSegment.DeltaEncoder[ArchiveSegment.NUMERIC_COLUMNS.length];
+    private final ArchiveSegment.FlagEncoder[] flags = new ArchiveSegment.FlagEncoder[ArchiveSegment.FLAG_COLUMNS.length];
+    private int rowCount = 0;
+    private long firstTimestamp = 0;
+    private long lastTimestamp = 0;
+    private boolean finished = false;
+
+    public ArchiveSegmentWriter() {
+        for (int i = 0; i < numeric.length; i++) {
+            numeric[i] = new ArchiveSegment.DeltaEncoder();
+        }
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = new ArchiveSegment.FlagEncoder();
+        }
+    }
+
+    public void add(DashboardData data) {
+        if (finished) {
+            throw new IllegalStateException("Segment already written");
+        }
+        if (rowCount == 0) {
+            firstTimestamp = data.timestamp;
+        }
+        timestamps.add(data.timestamp - (rowCount == 0 ? 0 : lastTimestamp));
+        lastTimestamp = data.timestamp;
+
+        for (int i = 0; i < numeric.length; i++) {
+            ArchiveSegment.NumericColumn column = ArchiveSegment.NUMERIC_COLUMNS[i];
+            numeric[i].add(Math.round(column.getter.get(data) * column.scale));
+        }
+        for (int i = 0; i < flags.length; i++) {
+            flags[i].add(ArchiveSegment.FLAG_COLUMNS[i].getter.get(data));
+        }
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Write the segment to {@code file}. The data goes to a temporary file that
+     * is synced and then renamed, so a reader never sees a partial segment.
+     */
+    public void writeTo(File file) throws IOException {
+        if (!finished) {
+            timestamps.finish();
+            for (ArchiveSegment.DeltaEncoder encoder : numeric) {
+                encoder.finish();
+            }
+            for (ArchiveSegment.FlagEncoder encoder : flags) {
+                encoder.finish();
+            }
+            finished = true;
+        }
+
+        ByteArrayOutputStream[] blocks = new ByteArrayOutputStream[ArchiveSegment.COLUMN_COUNT];
+        int index = 0;
+        blocks[index++] = timestamps.out;
+        for (ArchiveSegment.DeltaEncoder encoder : numeric) {
+            blocks[index++] = encoder.out;
+        }
+        for (ArchiveSegment.FlagEncoder encoder : flags) {
+            blocks[index++] = encoder.out;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(temp);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(ArchiveSegment.MAGIC);
+            out.writeInt(ArchiveSegment.VERSION);
+            out.writeInt(rowCount);
+            out.writeLong(firstTimestamp);
+            out.writeLong(lastTimestamp);
+            out.writeInt(blocks.length);
+
+            int offset = ArchiveSegment.HEADER_SIZE + blocks.length * 8;
+            for (ByteArrayOutputStream block : blocks) {
+                out.writeInt(offset);
+                out.writeInt(block.size());
+                offset += block.size();
+            }
+            for (ByteArrayOutputStream block : blocks) {
+                block.writeTo(out);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not move segment into place: " + file);
+        }
+    }
+}
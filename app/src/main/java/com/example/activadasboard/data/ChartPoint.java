@@ -0,0 +1,16 @@
+package com.example.activadasboard.data;
+
+/**
+ * One pixel-column bucket of dashboard samples for the history charts. Each
+ * bucket keeps its min and max so peaks survive downsampling.
+ */
+public class ChartPoint {
+    public long timestamp;
+    public double minSpeed;
+    public double maxSpeed;
+    public double minEconomy;
+    public double maxEconomy;
+    public double minFuel;
+    public double maxFuel;
+    public double totalDistance;
+}
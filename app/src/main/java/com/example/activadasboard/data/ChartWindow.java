@@ -0,0 +1,26 @@
+package com.example.activadasboard.data;
+
+import java.util.List;
+
+/**
+ * Downsampled chart data for the visible part of a history range. The range
+ * is what the axes span; the window is the part that was resolved in detail.
+ */
+public class ChartWindow {
+    public final long rangeStart;
+    public final long rangeEnd;
+    public final long windowStart;
+    public final long windowEnd;
+    public final long bucketMs;
+    public final List<ChartPoint> points;
+
+    public ChartWindow(long rangeStart, long rangeEnd, long windowStart, long windowEnd,
+                       long bucketMs, List<ChartPoint> points) {
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.bucketMs = bucketMs;
+        this.points = points;
+    }
+}
@@ -2,7 +2,9 @@ package com.example.activadasboard.data;
 
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import java.util.List;
 
 @Dao
@@ -10,6 +12,54 @@ public interface DashboardDao {
     @Insert
     void insert(DashboardData data);
 
+    @Insert
+    void insertAll(List<DashboardData> data);
+
+    // Insert raw samples and fold them into the minute/hour/day rollups in one transaction
+    @Transaction
+    default void insertWithRollups(List<DashboardData> data) {
+        insertAll(data);
+        for (DashboardRollup rollup : DashboardRollup.fromSamples(data)) {
+            insertRollupIfAbsent(new DashboardRollup(rollup.resolution, rollup.bucketStart));
+            mergeRollup(rollup.resolution, rollup.bucketStart, rollup.sampleCount,
+                    rollup.sumSpeed, rollup.maxSpeed, rollup.sumFuelPercentage, rollup.sumInstantEconomy,
+                    rollup.minTotalDistance, rollup.maxTotalDistance);
+        }
+    }
+
+    /**
+     * Insert samples recovered from the ESP8266's history into a gap that ended
+     * at {@code gapEndTimestamp}, and clear that row's gap flag if the recovered
+     * samples close the gap.
+     */
+    @Transaction
+    default void insertBackfill(List<DashboardData> data, long gapEndTimestamp, boolean gapRemains) {
+        insertWithRollups(data);
+        setGapBefore(gapEndTimestamp, gapRemains);
+    }
+
+    @Query("UPDATE dashboard_data SET gapBefore = :gapBefore WHERE timestamp = :timestamp")
+    void setGapBefore(long timestamp, boolean gapBefore);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertRollupIfAbsent(DashboardRollup rollup);
+
+    @Query("UPDATE dashboard_rollup SET " +
+           "minTotalDistance = CASE WHEN sampleCount = 0 THEN :minTotalDistance ELSE MIN(minTotalDistance, :minTotalDistance) END, " +
+           "maxTotalDistance = CASE WHEN sampleCount = 0 THEN :maxTotalDistance ELSE MAX(maxTotalDistance, :maxTotalDistance) END, " +
+           "maxSpeed = CASE WHEN sampleCount = 0 THEN :maxSpeed ELSE MAX(maxSpeed, :maxSpeed) END, " +
+           "sumSpeed = sumSpeed + :sumSpeed, " +
+           "sumFuelPercentage = sumFuelPercentage + :sumFuelPercentage, " +
+           "sumInstantEconomy = sumInstantEconomy + :sumInstantEconomy, " +
+           "sampleCount = sampleCount + :sampleCount " +
+           "WHERE resolution = :resolution AND bucketStart = :bucketStart")
+    void mergeRollup(long resolution, long bucketStart, long sampleCount,
+                     double sumSpeed, double maxSpeed, double sumFuelPercentage, double sumInstantEconomy,
+                     double minTotalDistance, double maxTotalDistance);
+
+    @Query("DELETE FROM dashboard_rollup WHERE resolution = :resolution AND bucketStart < :timestamp")
+    void deleteOldRollups(long resolution, long timestamp);
+
     @Query("SELECT * FROM dashboard_data ORDER BY timestamp DESC LIMIT 1")
     DashboardData getLatestData();
 
@@ -22,6 +72,51 @@ public interface DashboardDao {
     @Query("SELECT * FROM dashboard_data ORDER BY timestamp DESC")
     List<DashboardData> getAllData();
 
+    // Keyset pages for the history list, newest first. (timestamp, id) of the
+    // last loaded row is the cursor, so deep pages cost the same as the first.
+    @Query("SELECT * FROM dashboard_data " +
+           "WHERE timestamp >= :startTime AND timestamp <= :endTime " +
+           "AND (timestamp < :beforeTimestamp OR (timestamp = :beforeTimestamp AND id < :beforeId)) " +
+           "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<DashboardData> getPageBefore(long startTime, long endTime, long beforeTimestamp, long beforeId, int limit);
+
+    // Oldest first; callers reverse it to prepend above the first loaded row
+    @Query("SELECT * FROM dashboard_data " +
+           "WHERE timestamp >= :startTime AND timestamp <= :endTime " +
+           "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)) " +
+           "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<DashboardData> getPageAfter(long startTime, long endTime, long afterTimestamp, long afterId, int limit);
+
+    // The same pages for the fuel fill filter; served by index_dashboard_data_fuelFillStarted_timestamp
+    @Query("SELECT * FROM dashboard_data " +
+           "WHERE fuelFillStarted = 1 AND timestamp >= :startTime AND timestamp <= :endTime " +
+           "AND (timestamp < :beforeTimestamp OR (timestamp = :beforeTimestamp AND id < :beforeId)) " +
+           "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<DashboardData> getFuelFillPageBefore(long startTime, long endTime, long beforeTimestamp, long beforeId, int limit);
+
+    @Query("SELECT * FROM dashboard_data " +
+           "WHERE fuelFillStarted = 1 AND timestamp >= :startTime AND timestamp <= :endTime " +
+           "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)) " +
+           "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<DashboardData> getFuelFillPageAfter(long startTime, long endTime, long afterTimestamp, long afterId, int limit);
+
+    // And for the speed and economy filters; pass a very low bound to leave one open
+    @Query("SELECT * FROM dashboard_data " +
+           "WHERE timestamp >= :startTime AND timestamp <= :endTime " +
+           "AND speed > :minSpeed AND instantEconomy > :minEconomy " +
+           "AND (timestamp < :beforeTimestamp OR (timestamp = :beforeTimestamp AND id < :beforeId)) " +
+           "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<DashboardData> getThresholdPageBefore(long startTime, long endTime, double minSpeed, double minEconomy,
+                                               long beforeTimestamp, long beforeId, int limit);
+
+    @Query("SELECT * FROM dashboard_data " +
+           "WHERE timestamp >= :startTime AND timestamp <= :endTime " +
+           "AND speed > :minSpeed AND instantEconomy > :minEconomy " +
+           "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)) " +
+           "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<DashboardData> getThresholdPageAfter(long startTime, long endTime, double minSpeed, double minEconomy,
+                                              long afterTimestamp, long afterId, int limit);
+
     // New methods for enhanced historical data retrieval
     @Query("SELECT * FROM dashboard_data WHERE timestamp >= :startTime AND timestamp <= :endTime ORDER BY timestamp DESC")
     List<DashboardData> getDataInRange(long startTime, long endTime);
@@ -38,34 +133,67 @@ public interface DashboardDao {
     @Query("SELECT * FROM dashboard_data WHERE totalDistance >= :minDistance ORDER BY timestamp DESC")
     List<DashboardData> getLongTrips(double minDistance);
 
-    // Methods for data visualization
-    @Query("SELECT AVG(speed) as avgSpeed, " +
-           "AVG(fuelPercentage) as avgFuel, " +
-           "AVG(instantEconomy) as avgEconomy, " +
-           "MAX(totalDistance) - MIN(totalDistance) as distanceTraveled, " +
-           "COUNT(*) as dataPoints " +
+    // Methods for data visualization, served from the rollup tables
+    @Query("SELECT sumSpeed / sampleCount as avgSpeed, " +
+           "sumFuelPercentage / sampleCount as avgFuel, " +
+           "sumInstantEconomy / sampleCount as avgEconomy, " +
+           "maxTotalDistance - minTotalDistance as distanceTraveled " +
+           "FROM dashboard_rollup " +
+           "WHERE resolution = :resolution AND sampleCount > 0 " +
+           "AND bucketStart + :resolution > :startTime AND bucketStart <= :endTime " +
+           "ORDER BY bucketStart ASC")
+    List<TripSummary> getRollupSummaries(long resolution, long startTime, long endTime);
+
+    default List<TripSummary> getDailySummaries(long startTime, long endTime) {
+        return getRollupSummaries(DashboardRollup.DAY, startTime, endTime);
+    }
+
+    default List<TripSummary> getHourlySummaries(long startTime, long endTime) {
+        return getRollupSummaries(DashboardRollup.HOUR, startTime, endTime);
+    }
+
+    // One summary over a whole range, so it still covers samples archived off dashboard_data
+    @Query("SELECT SUM(sumSpeed) / SUM(sampleCount) as avgSpeed, " +
+           "SUM(sumFuelPercentage) / SUM(sampleCount) as avgFuel, " +
+           "SUM(sumInstantEconomy) / SUM(sampleCount) as avgEconomy, " +
+           "MAX(maxTotalDistance) - MIN(minTotalDistance) as distanceTraveled " +
+           "FROM dashboard_rollup " +
+           "WHERE resolution = :resolution AND sampleCount > 0 " +
+           "AND bucketStart + :resolution > :startTime AND bucketStart <= :endTime")
+    TripSummary getRollupTripSummary(long resolution, long startTime, long endTime);
+
+    // Hours for a week or less, whole days beyond that, to keep the scan a few hundred rows
+    default TripSummary getRangeSummary(long startTime, long endTime) {
+        long resolution = endTime - startTime > 7 * DashboardRollup.DAY ? DashboardRollup.DAY : DashboardRollup.HOUR;
+        return getRollupTripSummary(resolution, startTime, endTime);
+    }
+
+    // Min/max per bucket for the history charts; answered from the timestamp covering index
+    @Query("SELECT MIN(timestamp) as timestamp, " +
+           "MIN(speed) as minSpeed, MAX(speed) as maxSpeed, " +
+           "MIN(instantEconomy) as minEconomy, MAX(instantEconomy) as maxEconomy, " +
+           "MIN(fuelPercentage) as minFuel, MAX(fuelPercentage) as maxFuel, " +
+           "MAX(totalDistance) as totalDistance " +
            "FROM dashboard_data " +
            "WHERE timestamp >= :startTime AND timestamp <= :endTime " +
-           "GROUP BY strftime('%Y-%m-%d', datetime(timestamp/1000, 'unixepoch'))")
-    List<TripSummary> getDailySummaries(long startTime, long endTime);
-
-    @Query("SELECT AVG(speed) as avgSpeed, " +
-           "AVG(fuelPercentage) as avgFuel, " +
-           "AVG(instantEconomy) as avgEconomy, " +
-           "MAX(totalDistance) - MIN(totalDistance) as distanceTraveled, " +
-           "COUNT(*) as dataPoints " +
-           "FROM dashboard_data " +
-           "WHERE timestamp >= :startTime AND timestamp <= :endTime " +
-           "GROUP BY strftime('%Y-%m-%d %H', datetime(timestamp/1000, 'unixepoch'))")
-    List<TripSummary> getHourlySummaries(long startTime, long endTime);
+           "GROUP BY (timestamp - :startTime) / :bucketMs " +
+           "ORDER BY timestamp ASC")
+    List<ChartPoint> getDownsampledData(long startTime, long endTime, long bucketMs);
 
     // Data retention methods
     @Query("DELETE FROM dashboard_data WHERE timestamp < :timestamp")
     void deleteOldData(long timestamp);
 
+    @Query("DELETE FROM dashboard_data WHERE timestamp >= :startTime AND timestamp <= :endTime")
+    void deleteDataInRange(long startTime, long endTime);
+
     @Query("SELECT COUNT(*) FROM dashboard_data")
     int getDataCount();
 
+    // Served by the timestamp index alone
+    @Query("SELECT timestamp FROM dashboard_data WHERE timestamp >= :startTime AND timestamp <= :endTime")
+    List<Long> getTimestampsBetween(long startTime, long endTime);
+
     @Query("SELECT MIN(timestamp) FROM dashboard_data")
     long getOldestDataTimestamp();
 
@@ -1,9 +1,21 @@
 package com.example.activadasboard.data;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "dashboard_data")
+// Every query filters or sorts on timestamp. The timestamp index also carries
+// the columns the range summaries aggregate, so those never touch the table.
+@Entity(tableName = "dashboard_data",
+        indices = {
+            @Index(name = "index_dashboard_data_timestamp_summary",
+                   value = {"timestamp", "speed", "fuelPercentage", "instantEconomy", "totalDistance"}),
+            @Index(name = "index_dashboard_data_fuelFillStarted_timestamp",
+                   value = {"fuelFillStarted", "timestamp"}),
+            @Index(name = "index_dashboard_data_speed", value = {"speed"}),
+            @Index(name = "index_dashboard_data_instantEconomy", value = {"instantEconomy"})
+        })
 public class DashboardData {
     @PrimaryKey(autoGenerate = true)
     public long id;
@@ -27,6 +39,12 @@ public class DashboardData {
     public boolean fuelFillStarted;
     public double fuelUsedSinceFill;
     public long timestamp;
+    // Samples are missing between the previous row and this one, e.g. the link dropped
+    @ColumnInfo(defaultValue = "0")
+    public boolean gapBefore;
+    // Recovered from the ESP8266's history after a link drop; only the core fields are measured
+    @ColumnInfo(defaultValue = "0")
+    public boolean backfilled;
 
     public DashboardData() {
         this.timestamp = System.currentTimeMillis();
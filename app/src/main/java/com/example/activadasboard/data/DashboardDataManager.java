@@ -8,17 +8,34 @@ import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.Random;
 
 public class DashboardDataManager {
     private static final String TAG = "DashboardDataManager";
     private static final int DATA_RETENTION_DAYS = 30; // Keep data for 30 days
+    private static final int HISTORY_PAGE_SIZE = 100;
+    private static final int HISTORY_MAX_PAGES = 5;
+    // Enough for the list, chart and summary panels to read at once; WAL lets readers run side by side
+    private static final int READ_THREADS = 3;
     private final AppDatabase database;
-    private final ExecutorService executor;
+    private final SummaryCache summaries;
+    private final ExecutorService executor; // Writes and history paging, in order
+    private final ExecutorService readExecutor;
+    // Latest query per panel, so a newer range cancels the one it supersedes
+    private final Map<String, CompletableFuture<?>> latestQueries = new ConcurrentHashMap<>();
     private OnDataUpdateListener listener;
     private final Random random = new Random();
+    private HistoryPager historyPager;  // Only touched on the executor
 
     public interface OnDataUpdateListener {
         void onDataUpdated(List<DashboardData> data);
@@ -26,11 +43,20 @@ public class DashboardDataManager {
         void onFuelSummaryUpdated(FuelSummary summary);
         void onDailySummariesUpdated(List<TripSummary> summaries);
         void onHourlySummariesUpdated(List<TripSummary> summaries);
+        void onChartDataUpdated(ChartWindow window);
+        void onHistoryPageLoaded(HistoryPage page);
     }
 
     public DashboardDataManager(Context context) {
         database = AppDatabase.getDatabase(context);
+        summaries = database.getSummaryCache();
         executor = Executors.newSingleThreadExecutor();
+        AtomicInteger readThreads = new AtomicInteger();
+        readExecutor = Executors.newFixedThreadPool(READ_THREADS, r -> {
+            Thread thread = new Thread(r, "DashboardRead-" + readThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public void setListener(OnDataUpdateListener listener) {
@@ -38,67 +64,43 @@ public class DashboardDataManager {
     }
 
     // Enhanced data retrieval methods
-    public void getDataInRange(long startTime, long endTime) {
+    public CompletableFuture<List<DashboardData>> getDataInRange(long startTime, long endTime) {
         Log.d(TAG, "Fetching data in range: " + startTime + " to " + endTime);
-        executor.execute(() -> {
-            List<DashboardData> data = database.dashboardDao().getDataInRange(startTime, endTime);
-            if (listener != null) {
-                listener.onDataUpdated(data);
-            }
-        });
+        return query("data", readExecutor, () -> database.dashboardDao().getDataInRange(startTime, endTime),
+                this::deliverData);
     }
 
-    public void getFuelFillEvents() {
-        executor.execute(() -> {
-            List<DashboardData> data = database.dashboardDao().getFuelFillEvents();
-            if (listener != null) {
-                listener.onDataUpdated(data);
-            }
-        });
+    public CompletableFuture<List<DashboardData>> getFuelFillEvents() {
+        return query("data", readExecutor, () -> database.dashboardDao().getFuelFillEvents(), this::deliverData);
     }
 
-    public void getHighSpeedEvents(float minSpeed) {
-        executor.execute(() -> {
-            List<DashboardData> data = database.dashboardDao().getHighSpeedEvents(minSpeed);
-            if (listener != null) {
-                listener.onDataUpdated(data);
-            }
-        });
+    public CompletableFuture<List<DashboardData>> getHighSpeedEvents(float minSpeed) {
+        return query("data", readExecutor, () -> database.dashboardDao().getHighSpeedEvents(minSpeed), this::deliverData);
     }
 
-    public void getEfficientTrips(float minEconomy) {
-        executor.execute(() -> {
-            List<DashboardData> data = database.dashboardDao().getEfficientTrips(minEconomy);
-            if (listener != null) {
-                listener.onDataUpdated(data);
-            }
-        });
+    public CompletableFuture<List<DashboardData>> getEfficientTrips(float minEconomy) {
+        return query("data", readExecutor, () -> database.dashboardDao().getEfficientTrips(minEconomy), this::deliverData);
     }
 
-    public void getLongTrips(double minDistance) {
-        executor.execute(() -> {
-            List<DashboardData> data = database.dashboardDao().getLongTrips(minDistance);
-            if (listener != null) {
-                listener.onDataUpdated(data);
-            }
-        });
+    public CompletableFuture<List<DashboardData>> getLongTrips(double minDistance) {
+        return query("data", readExecutor, () -> database.dashboardDao().getLongTrips(minDistance), this::deliverData);
     }
 
     // Data visualization methods
-    public void getDailySummaries(long startTime, long endTime) {
-        executor.execute(() -> {
-            List<TripSummary> summaries = database.dashboardDao().getDailySummaries(startTime, endTime);
+    public CompletableFuture<List<TripSummary>> getDailySummaries(long startTime, long endTime) {
+        return query("daily", readExecutor, () -> summaries.getOrLoad(SummaryCache.Kind.DAILY, startTime, endTime,
+                () -> database.dashboardDao().getDailySummaries(startTime, endTime)), daily -> {
             if (listener != null) {
-                listener.onDailySummariesUpdated(summaries);
+                listener.onDailySummariesUpdated(daily);
             }
         });
     }
 
-    public void getHourlySummaries(long startTime, long endTime) {
-        executor.execute(() -> {
-            List<TripSummary> summaries = database.dashboardDao().getHourlySummaries(startTime, endTime);
+    public CompletableFuture<List<TripSummary>> getHourlySummaries(long startTime, long endTime) {
+        return query("hourly", readExecutor, () -> summaries.getOrLoad(SummaryCache.Kind.HOURLY, startTime, endTime,
+                () -> database.dashboardDao().getHourlySummaries(startTime, endTime)), hourly -> {
             if (listener != null) {
-                listener.onHourlySummariesUpdated(summaries);
+                listener.onHourlySummariesUpdated(hourly);
             }
         });
     }
@@ -108,6 +110,7 @@ public class DashboardDataManager {
         executor.execute(() -> {
             long cutoffTime = System.currentTimeMillis() - (DATA_RETENTION_DAYS * 24 * 60 * 60 * 1000L);
             database.dashboardDao().deleteOldData(cutoffTime);
+            summaries.invalidate(Long.MIN_VALUE, cutoffTime);
         });
     }
 
@@ -115,18 +118,79 @@ public class DashboardDataManager {
         executor.execute(() -> {
             long cutoffTime = System.currentTimeMillis() - (days * 24 * 60 * 60 * 1000L);
             database.dashboardDao().deleteOldData(cutoffTime);
+            summaries.invalidate(Long.MIN_VALUE, cutoffTime);
         });
     }
 
     public void getDataStats() {
-        executor.execute(() -> {
+        readExecutor.execute(() -> {
             int count = database.dashboardDao().getDataCount();
             long oldest = database.dashboardDao().getOldestDataTimestamp();
             long newest = database.dashboardDao().getNewestDataTimestamp();
             Log.d(TAG, String.format("Data stats: count=%d, oldest=%d, newest=%d", count, oldest, newest));
+            Log.d(TAG, "Summary cache: " + summaries.getStats());
+        });
+    }
+
+    /**
+     * Load chart data for part of a history range, at most {@code maxPoints}
+     * buckets wide. A range of 0..Long.MAX_VALUE means all stored data.
+     */
+    public CompletableFuture<ChartWindow> getChartData(long rangeStart, long rangeEnd, long windowStart,
+                                                      long windowEnd, int maxPoints) {
+        return query("chart", readExecutor, () -> {
+            long start = rangeStart;
+            long end = rangeEnd;
+            if (start <= 0 || end == Long.MAX_VALUE) {
+                if (database.dashboardDao().getDataCount() == 0) return null;
+                start = Math.max(start, database.dashboardDao().getOldestDataTimestamp());
+                end = Math.min(end, database.dashboardDao().getNewestDataTimestamp());
+            }
+            long from = Math.max(start, windowStart);
+            long to = Math.min(end, windowEnd);
+            if (to < from) {
+                from = start;
+                to = end;
+            }
+            long bucketMs = Math.max(1000L, (to - from) / Math.max(1, maxPoints) + 1);
+            List<ChartPoint> points = database.dashboardDao().getDownsampledData(from, to, bucketMs);
+            return new ChartWindow(start, end, from, to, bucketMs, points);
+        }, window -> {
+            if (window != null && listener != null) {
+                listener.onChartDataUpdated(window);
+            }
         });
     }
 
+    /**
+     * Run a read for one panel. A newer query for the same panel cancels this
+     * one: if it hasn't started it never runs, and if it has, its result is
+     * dropped instead of delivered. The listener is only told about results
+     * that weren't superseded.
+     */
+    private <T> CompletableFuture<T> query(String panel, Executor on, Supplier<T> read, Consumer<T> deliver) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(read, on);
+        CompletableFuture<?> superseded = latestQueries.put(panel, future);
+        if (superseded != null && superseded.cancel(false)) {
+            Log.d(TAG, "Cancelled superseded " + panel + " query");
+        }
+        future.whenComplete((result, error) -> {
+            latestQueries.remove(panel, future);
+            if (error == null) {
+                deliver.accept(result);
+            } else if (!(error instanceof CancellationException)) {
+                Log.e(TAG, "Error loading " + panel, error);
+            }
+        });
+        return future;
+    }
+
+    private void deliverData(List<DashboardData> data) {
+        if (listener != null) {
+            listener.onDataUpdated(data);
+        }
+    }
+
     // Chart data creation methods
     public LineData createSpeedChartData(List<DashboardData> data) {
         List<Entry> entries = new ArrayList<>();
@@ -193,49 +257,70 @@ public class DashboardDataManager {
     }
 
     // Existing methods...
-    public void getHistoricalData(long startTime, long endTime) {
+    public CompletableFuture<HistoryPage> getHistoricalData(long startTime, long endTime) {
         Log.d(TAG, "Fetching historical data from " + startTime + " to " + endTime);
-        executor.execute(() -> {
-            List<DashboardData> data = database.dashboardDao().getTripData(startTime, endTime);
-            Log.d(TAG, "Retrieved " + (data != null ? data.size() : 0) + " historical data points");
-            if (listener != null) {
-                listener.onDataUpdated(data);
-            }
-        });
+        return openHistory(startTime, endTime, HistoryPager.Filter.ALL);
     }
 
-    public void getAllHistoricalData() {
+    public CompletableFuture<HistoryPage> getAllHistoricalData() {
         Log.d(TAG, "Fetching all historical data");
+        return openHistory(0, Long.MAX_VALUE, HistoryPager.Filter.ALL);
+    }
+
+    /** Like {@link #getHistoricalData}, but only rows the filter keeps, paged the same way. */
+    public CompletableFuture<HistoryPage> getFilteredHistory(long startTime, long endTime, HistoryPager.Filter filter) {
+        return openHistory(startTime, endTime, filter);
+    }
+
+    // History is loaded a page at a time; only a bounded window of rows is ever in memory.
+    // The pager is stateful, so it stays on the ordered executor rather than the read pool.
+    private CompletableFuture<HistoryPage> openHistory(long startTime, long endTime, HistoryPager.Filter filter) {
+        return query("history", executor, () -> {
+            historyPager = new HistoryPager(database.dashboardDao(), filter, startTime, endTime,
+                    HISTORY_PAGE_SIZE, HISTORY_MAX_PAGES);
+            return historyPager.loadInitial();
+        }, this::publishHistoryPage);
+    }
+
+    public void loadOlderHistory() {
         executor.execute(() -> {
-            List<DashboardData> data = database.dashboardDao().getAllData();
-            Log.d(TAG, "Retrieved " + (data != null ? data.size() : 0) + " total data points");
-            if (listener != null) {
-                listener.onDataUpdated(data);
+            if (historyPager != null) {
+                publishHistoryPage(historyPager.loadOlder());
             }
         });
     }
 
-    public void getCurrentTripData(long startTime) {
+    public void loadNewerHistory() {
         executor.execute(() -> {
-            List<DashboardData> data = database.dashboardDao().getCurrentTripData(startTime);
-            if (listener != null) {
-                listener.onDataUpdated(data);
+            if (historyPager != null) {
+                publishHistoryPage(historyPager.loadNewer());
             }
         });
     }
 
-    public void getTripSummary(long startTime, long endTime) {
-        executor.execute(() -> {
-            TripSummary summary = database.dashboardDao().getTripSummary(startTime, endTime);
+    private void publishHistoryPage(HistoryPage page) {
+        Log.d(TAG, "History window: " + page.items.size() + " rows, older=" + page.hasOlder + ", newer=" + page.hasNewer);
+        if (listener != null) {
+            listener.onHistoryPageLoaded(page);
+        }
+    }
+
+    public CompletableFuture<List<DashboardData>> getCurrentTripData(long startTime) {
+        return query("data", readExecutor, () -> database.dashboardDao().getCurrentTripData(startTime), this::deliverData);
+    }
+
+    public CompletableFuture<TripSummary> getTripSummary(long startTime, long endTime) {
+        return query("summary", readExecutor, () -> summaries.getOrLoad(SummaryCache.Kind.TRIP, startTime, endTime,
+                () -> database.dashboardDao().getRangeSummary(startTime, endTime)), summary -> {
             if (listener != null) {
                 listener.onSummaryUpdated(summary);
             }
         });
     }
 
-    public void getFuelSummary(long startTime) {
-        executor.execute(() -> {
-            FuelSummary summary = database.dashboardDao().getFuelSummary(startTime);
+    public CompletableFuture<FuelSummary> getFuelSummary(long startTime) {
+        return query("fuel", readExecutor, () -> summaries.getOrLoad(SummaryCache.Kind.FUEL, startTime, Long.MAX_VALUE,
+                () -> database.dashboardDao().getFuelSummary(startTime)), summary -> {
             if (listener != null) {
                 listener.onFuelSummaryUpdated(summary);
             }
@@ -243,7 +328,11 @@ public class DashboardDataManager {
     }
 
     public void shutdown() {
+        for (CompletableFuture<?> query : latestQueries.values()) {
+            query.cancel(false);
+        }
         executor.shutdown();
+        readExecutor.shutdown();
     }
 
     public void insertDummyData() {
@@ -269,9 +358,8 @@ public class DashboardDataManager {
             }
             
             // Insert all dummy data
-            for (DashboardData data : dummyData) {
-                database.dashboardDao().insert(data);
-            }
+            database.dashboardDao().insertWithRollups(dummyData);
+            summaries.invalidate(dummyData.get(dummyData.size() - 1).timestamp, currentTime);
             
             Log.d(TAG, "Inserted " + dummyData.size() + " dummy data points");
             
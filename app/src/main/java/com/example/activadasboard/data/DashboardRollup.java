@@ -0,0 +1,77 @@
+package com.example.activadasboard.data;
+
+import androidx.room.Entity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-aggregated dashboard samples for one time bucket. Rollups are kept at
+ * minute, hour and day resolution and updated as raw samples are written, so
+ * summaries never have to scan dashboard_data.
+ */
+@Entity(tableName = "dashboard_rollup", primaryKeys = {"resolution", "bucketStart"})
+public class DashboardRollup {
+    public static final long MINUTE = 60 * 1000L;
+    public static final long HOUR = 60 * MINUTE;
+    public static final long DAY = 24 * HOUR;
+    public static final long[] RESOLUTIONS = {MINUTE, HOUR, DAY};
+
+    public long resolution;     // Bucket length in ms
+    public long bucketStart;    // UTC start of the bucket in ms
+    public long sampleCount;
+    public double sumSpeed;
+    public double maxSpeed;
+    public double sumFuelPercentage;
+    public double sumInstantEconomy;
+    public double minTotalDistance;
+    public double maxTotalDistance;
+
+    public DashboardRollup() {
+    }
+
+    public DashboardRollup(long resolution, long bucketStart) {
+        this.resolution = resolution;
+        this.bucketStart = bucketStart;
+    }
+
+    public static long bucketStart(long timestamp, long resolution) {
+        return timestamp - Math.floorMod(timestamp, resolution);
+    }
+
+    void add(DashboardData data) {
+        if (sampleCount == 0) {
+            maxSpeed = data.speed;
+            minTotalDistance = data.totalDistance;
+            maxTotalDistance = data.totalDistance;
+        } else {
+            maxSpeed = Math.max(maxSpeed, data.speed);
+            minTotalDistance = Math.min(minTotalDistance, data.totalDistance);
+            maxTotalDistance = Math.max(maxTotalDistance, data.totalDistance);
+        }
+        sampleCount++;
+        sumSpeed += data.speed;
+        sumFuelPercentage += data.fuelPercentage;
+        sumInstantEconomy += data.instantEconomy;
+    }
+
+    /** Aggregate a batch of samples into one rollup per touched bucket and resolution. */
+    public static List<DashboardRollup> fromSamples(List<DashboardData> samples) {
+        Map<String, DashboardRollup> buckets = new LinkedHashMap<>();
+        for (DashboardData data : samples) {
+            for (long resolution : RESOLUTIONS) {
+                long start = bucketStart(data.timestamp, resolution);
+                String key = resolution + ":" + start;
+                DashboardRollup rollup = buckets.get(key);
+                if (rollup == null) {
+                    rollup = new DashboardRollup(resolution, start);
+                    buckets.put(key, rollup);
+                }
+                rollup.add(data);
+            }
+        }
+        return new ArrayList<>(buckets.values());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.activadasboard.data;
+
+/**
+ * One telemetry sample from the ESP8266, decoded straight into primitive
+ * fields. Instances are reused: whoever hands a sample to a callback owns it
+ * and may overwrite it afterwards, so receivers must copy what they need to
+ * keep rather than hold on to the object.
+ */
+public class DashboardSample {
+    public long timestamp;
+    public double speed;
+    public double fuelPercentage;
+    public double fuelLiters;
+    public double instantEconomy;
+    public double odometer;
+    public double trip1;
+    public double trip1Fuel;
+    public double trip1Average;
+    public boolean trip1Started;
+    public double trip2;
+    public double trip2Fuel;
+    public double trip2Average;
+    public boolean trip2Started;
+    public double fuelFillAverage;
+    public double fuelFillDistance;
+    public double lastFuelFill;
+    public boolean fuelFillStarted;
+    public double fuelUsedSinceFill;
+    public int resetCount;
+    public boolean hasNavigation;
+    public boolean lcdAutoRestart;
+
+    public void reset() {
+        timestamp = 0;
+        speed = 0;
+        fuelPercentage = 0;
+        fuelLiters = 0;
+        instantEconomy = 0;
+        odometer = 0;
+        trip1 = 0;
+        trip1Fuel = 0;
+        trip1Average = 0;
+        trip1Started = false;
+        trip2 = 0;
+        trip2Fuel = 0;
+        trip2Average = 0;
+        trip2Started = false;
+        fuelFillAverage = 0;
+        fuelFillDistance = 0;
+        lastFuelFill = 0;
+        fuelFillStarted = false;
+        fuelUsedSinceFill = 0;
+        resetCount = 0;
+        hasNavigation = false;
+        lcdAutoRestart = false;
+    }
+
+    public void copyFrom(DashboardSample other) {
+        timestamp = other.timestamp;
+        speed = other.speed;
+        fuelPercentage = other.fuelPercentage;
+        fuelLiters = other.fuelLiters;
+        instantEconomy = other.instantEconomy;
+        odometer = other.odometer;
+        trip1 = other.trip1;
+        trip1Fuel = other.trip1Fuel;
+        trip1Average = other.trip1Average;
+        trip1Started = other.trip1Started;
+        trip2 = other.trip2;
+        trip2Fuel = other.trip2Fuel;
+        trip2Average = other.trip2Average;
+        trip2Started = other.trip2Started;
+        fuelFillAverage = other.fuelFillAverage;
+        fuelFillDistance = other.fuelFillDistance;
+        lastFuelFill = other.lastFuelFill;
+        fuelFillStarted = other.fuelFillStarted;
+        fuelUsedSinceFill = other.fuelUsedSinceFill;
+        resetCount = other.resetCount;
+        hasNavigation = other.hasNavigation;
+        lcdAutoRestart = other.lcdAutoRestart;
+    }
+
+    /** A new row for the dashboard_data table; the one allocation persistence needs. */
+    public DashboardData toDashboardData() {
+        DashboardData data = new DashboardData();
+        data.timestamp = timestamp;
+        data.speed = speed;
+        data.fuelPercentage = fuelPercentage;
+        data.fuelLiters = fuelLiters;
+        data.instantEconomy = instantEconomy;
+        data.totalDistance = odometer;
+        data.trip1Distance = trip1;
+        data.trip1Fuel = trip1Fuel;
+        data.trip1Average = trip1Average;
+        data.trip1Started = trip1Started;
+        data.trip2Distance = trip2;
+        data.trip2Fuel = trip2Fuel;
+        data.trip2Average = trip2Average;
+        data.trip2Started = trip2Started;
+        data.fuelFillAverage = fuelFillAverage;
+        data.fuelFillDistance = fuelFillDistance;
+        data.lastFuelFill = lastFuelFill;
+        data.fuelFillStarted = fuelFillStarted;
+        data.fuelUsedSinceFill = fuelUsedSinceFill;
+        return data;
+    }
+}
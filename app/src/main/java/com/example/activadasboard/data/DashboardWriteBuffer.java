@@ -0,0 +1,176 @@
+package com.example.activadasboard.data;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Write-behind buffer for live dashboard samples. Samples are collected in
+ * memory and committed to SQLite, together with their rollup updates, in a
+ * single transaction per batch instead of one insert per sample. The owner
+ * decides when to call {@link #flush()}; flushing must happen off the main
+ * thread.
+ *
+ * Every buffered sample is also appended to a {@link TelemetryJournal}, so
+ * samples not yet committed when the process dies are replayed on the next
+ * start by {@link #recover()}. The buffer is a bounded ring: if SQLite keeps
+ * failing, the oldest samples are dropped and the oldest survivor is flagged
+ * {@link DashboardData#gapBefore}, so the loss shows in the history.
+ */
+public class DashboardWriteBuffer {
+    private static final String TAG = "DashboardWriteBuffer";
+    // Keep at most this many batches around if the database keeps failing
+    private static final int MAX_PENDING_BATCHES = 10;
+
+    private final AppDatabase database;
+    private final TelemetryJournal journal;
+    private final int batchSize;
+    private final int capacity;
+    private final Object lock = new Object();
+    private final ArrayDeque<DashboardData> pending;
+    private long droppedCount = 0;
+
+    public DashboardWriteBuffer(AppDatabase database, TelemetryJournal journal, int batchSize) {
+        this.database = database;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.capacity = batchSize * MAX_PENDING_BATCHES;
+        this.pending = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Buffer a sample. Blocks for the journal append, so call it off the main
+     * thread.
+     *
+     * @return the number of samples now waiting to be written
+     */
+    public int add(DashboardData data) {
+        synchronized (lock) {
+            try {
+                journal.append(data);
+            } catch (IOException e) {
+                // Still worth keeping in memory; it's only unprotected against a crash
+                Log.e(TAG, "Error journaling sample", e);
+            }
+            pending.add(data);
+            trimLocked();
+            return pending.size();
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public boolean isBatchFull() {
+        return size() >= batchSize;
+    }
+
+    /** Samples discarded because the ring overflowed while SQLite was failing. */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * Write every buffered sample in one transaction.
+     *
+     * @return the number of samples written
+     */
+    public int flush() {
+        List<DashboardData> batch;
+        int generation;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            // Samples added during the commit go to a new generation that survives it
+            generation = journal.rotate();
+        }
+
+        try {
+            database.dashboardDao().insertWithRollups(batch);
+            invalidateSummaries(batch);
+            journal.discardThrough(generation);
+            Log.d(TAG, "Flushed " + batch.size() + " samples");
+            return batch.size();
+        } catch (Exception e) {
+            Log.e(TAG, "Error flushing " + batch.size() + " samples", e);
+            // Put the batch back in front of anything buffered meanwhile; its journal files stay until a commit succeeds
+            synchronized (lock) {
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    pending.addFirst(batch.get(i));
+                }
+                trimLocked();
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Put samples journaled by an earlier process, and never committed, back
+     * in front of the buffer. Samples that did reach SQLite before the process
+     * died are skipped. Blocking; call once at startup.
+     *
+     * @return the number of samples recovered
+     */
+    public int recover() {
+        List<DashboardData> journaled = journal.recover();
+        if (journaled.isEmpty()) return 0;
+
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (DashboardData data : journaled) {
+            first = Math.min(first, data.timestamp);
+            last = Math.max(last, data.timestamp);
+        }
+        Set<Long> committed = new HashSet<>(database.dashboardDao().getTimestampsBetween(first, last));
+
+        int recovered = 0;
+        synchronized (lock) {
+            for (int i = journaled.size() - 1; i >= 0; i--) {
+                DashboardData data = journaled.get(i);
+                if (!committed.contains(data.timestamp)) {
+                    pending.addFirst(data);
+                    recovered++;
+                }
+            }
+            trimLocked();
+        }
+        Log.d(TAG, "Recovered " + recovered + " uncommitted samples from the journal");
+        return recovered;
+    }
+
+    private void invalidateSummaries(List<DashboardData> batch) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (DashboardData data : batch) {
+            first = Math.min(first, data.timestamp);
+            last = Math.max(last, data.timestamp);
+        }
+        database.getSummaryCache().invalidate(first, last);
+    }
+
+    // Drop the oldest samples beyond capacity and mark where the hole is
+    private void trimLocked() {
+        if (pending.size() <= capacity) return;
+        int dropped = 0;
+        while (pending.size() > capacity) {
+            pending.removeFirst();
+            dropped++;
+        }
+        droppedCount += dropped;
+        pending.peekFirst().gapBefore = true;
+        Log.w(TAG, "Write buffer full, dropped " + dropped + " oldest samples");
+    }
+}
@@ -1,154 +1,363 @@
 package com.example.activadasboard.data;
 
 import android.content.Context;
-import android.os.Environment;
+import android.util.Base64;
 import android.util.Log;
-import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Backs up the app's data as gzip'd NDJSON: a header line, then one JSON
+ * object per row, each tagged with its {@code type}, then an {@code end} line
+ * with the row count, so a truncated file is easy to spot. Tables are read a
+ * page at a time and written straight to the compressed stream, so memory use
+ * doesn't grow with the amount of data. Archived samples are included, oldest
+ * first, ahead of the ones still in SQLite.
+ */
 public class DataBackupManager {
     private static final String TAG = "DataBackupManager";
+    private static final String BACKUP_DIR = "backups";
+    private static final String BACKUP_SUFFIX = ".ndjson.gz";
+    private static final String LEGACY_BACKUP_SUFFIX = ".json";
+    private static final int FORMAT_VERSION = 2;
+    private static final int PAGE_SIZE = 500;
+    // Offline directions carry whole polylines, so page them in smaller bites
+    private static final int DIRECTIONS_PAGE_SIZE = 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 250;
     private final Context context;
-    private final MapDataManager mapDataManager;
-    private final DashboardDao dashboardDao;
+    private final AppDatabase database;
+    private final TelemetryArchive archive;
     private final ExecutorService executorService;
     
     public DataBackupManager(Context context) {
         this.context = context;
-        this.mapDataManager = new MapDataManager(context);
-        this.dashboardDao = AppDatabase.getDatabase(context).dashboardDao();
+        this.database = AppDatabase.getDatabase(context);
+        this.archive = new TelemetryArchive(context);
         this.executorService = Executors.newSingleThreadExecutor();
     }
     
     public interface BackupCallback {
         void onSuccess(String filePath);
         void onError(String error);
+
+        /** Called on the export thread, at most a few times a second. */
+        default void onProgress(BackupProgress progress) {
+        }
+    }
+
+    public static final class BackupProgress {
+        public final long rowsWritten;
+        public final long totalRows;
+        /** Compressed bytes written so far. */
+        public final long bytesWritten;
+        public final long elapsedMs;
+
+        BackupProgress(long rowsWritten, long totalRows, long bytesWritten, long elapsedMs) {
+            this.rowsWritten = rowsWritten;
+            this.totalRows = totalRows;
+            this.bytesWritten = bytesWritten;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public int getPercent() {
+            if (totalRows <= 0) return 100;
+            return (int) Math.min(100, rowsWritten * 100 / totalRows);
+        }
+
+        public long getRowsPerSecond() {
+            return elapsedMs == 0 ? 0 : rowsWritten * 1000 / elapsedMs;
+        }
+
+        public long getBytesPerSecond() {
+            return elapsedMs == 0 ? 0 : bytesWritten * 1000 / elapsedMs;
+        }
+
+        public String getSummary() {
+            return String.format(Locale.getDefault(), "%d%% - %d/%d rows, %.1f KB, %d rows/s",
+                    getPercent(), rowsWritten, totalRows, bytesWritten / 1024.0, getRowsPerSecond());
+        }
     }
     
     public void exportAllData(BackupCallback callback) {
         executorService.execute(() -> {
+            File tempFile = null;
             try {
-                // Create backup directory
-                File backupDir = new File(context.getExternalFilesDir(null), "backups");
-                if (!backupDir.exists()) {
-                    backupDir.mkdirs();
+                File backupDir = new File(context.getExternalFilesDir(null), BACKUP_DIR);
+                if (!backupDir.exists() && !backupDir.mkdirs()) {
+                    throw new IOException("Could not create " + backupDir);
                 }
-                
-                // Create backup file with timestamp
+
                 String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-                File backupFile = new File(backupDir, "activa_dashboard_backup_" + timestamp + ".json");
-                
-                // Create JSON object for all data
-                JSONObject backupData = new JSONObject();
-                backupData.put("backup_timestamp", System.currentTimeMillis());
-                backupData.put("app_version", "1.0");
-                
-                // Export search history
-                exportSearchHistory(backupData);
-                
-                // Export offline directions
-                exportOfflineDirections(backupData);
-                
-                // Export dashboard data
-                exportDashboardData(backupData);
-                
-                // Write to file
-                FileWriter writer = new FileWriter(backupFile);
-                writer.write(backupData.toString(2)); // Pretty print with 2 spaces
-                writer.close();
-                
-                Log.d(TAG, "Backup created successfully: " + backupFile.getAbsolutePath());
+                File backupFile = new File(backupDir, "activa_dashboard_backup_" + timestamp + BACKUP_SUFFIX);
+                // Written under a temporary name so a failed export never looks like a backup
+                tempFile = new File(backupDir, backupFile.getName() + ".tmp");
+
+                Export export = new Export(tempFile, callback);
+                try {
+                    export.run();
+                } finally {
+                    export.close();
+                }
+                BackupProgress result = export.progress();
+                if (!tempFile.renameTo(backupFile)) {
+                    throw new IOException("Could not rename " + tempFile + " to " + backupFile);
+                }
+
+                Log.d(TAG, "Backup created: " + backupFile.getAbsolutePath() + " in " + result.elapsedMs + "ms, "
+                        + result.getSummary() + ", " + result.getBytesPerSecond() / 1024 + " KB/s");
                 callback.onSuccess(backupFile.getAbsolutePath());
-                
             } catch (Exception e) {
                 Log.e(TAG, "Error creating backup", e);
+                if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                    Log.w(TAG, "Could not delete " + tempFile);
+                }
                 callback.onError("Failed to create backup: " + e.getMessage());
             }
         });
     }
-    
-    private void exportSearchHistory(JSONObject backupData) throws Exception {
-        JSONArray searchHistoryArray = new JSONArray();
-        
-        // Get all search history (we'll need to add a method to get all)
-        List<SearchHistory> searchHistoryList = mapDataManager.getAllSearchHistory();
-        for (SearchHistory history : searchHistoryList) {
-            JSONObject historyObj = new JSONObject();
-            historyObj.put("id", history.id);
-            historyObj.put("placeId", history.placeId);
-            historyObj.put("placeName", history.placeName);
-            historyObj.put("address", history.address);
-            historyObj.put("latitude", history.latitude);
-            historyObj.put("longitude", history.longitude);
-            historyObj.put("timestamp", history.timestamp);
-            historyObj.put("searchCount", history.searchCount);
-            searchHistoryArray.put(historyObj);
-        }
-        
-        backupData.put("search_history", searchHistoryArray);
-        Log.d(TAG, "Exported " + searchHistoryList.size() + " search history entries");
+
+    // One export run; owns the output stream and the progress bookkeeping
+    private final class Export {
+        private final CountingOutputStream counter;
+        private final Writer out;
+        private final BackupCallback callback;
+        private final long startNanos = System.nanoTime();
+        private long totalRows;
+        private long rowsWritten;
+        private long lastProgressMs = 0;
+
+        Export(File file, BackupCallback callback) throws IOException {
+            this.counter = new CountingOutputStream(new FileOutputStream(file));
+            this.out = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(counter, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.callback = callback;
+        }
+
+        void run() throws IOException, JSONException {
+            MapDao mapDao = database.mapDao();
+            DashboardDao dashboardDao = database.dashboardDao();
+            int searchCount = mapDao.getSearchHistoryCount();
+            int directionsCount = mapDao.getOfflineDirectionsCount();
+            long archivedCount = archive.getRowCount();
+            int dashboardCount = dashboardDao.getDataCount();
+            totalRows = searchCount + directionsCount + archivedCount + dashboardCount;
+
+            JSONObject counts = new JSONObject();
+            counts.put("search_history", searchCount);
+            counts.put("offline_directions", directionsCount);
+            counts.put("dashboard_data", archivedCount + dashboardCount);
+            JSONObject header = new JSONObject();
+            header.put("type", "header");
+            header.put("format_version", FORMAT_VERSION);
+            header.put("backup_timestamp", System.currentTimeMillis());
+            header.put("app_version", "1.0");
+            header.put("counts", counts);
+            writeLine(header);
+
+            exportSearchHistory(mapDao);
+            exportOfflineDirections(mapDao);
+            exportDashboardData(dashboardDao);
+
+            JSONObject end = new JSONObject();
+            end.put("type", "end");
+            end.put("rows", rowsWritten);
+            writeLine(end);
+        }
+
+        private void exportSearchHistory(MapDao mapDao) throws IOException, JSONException {
+            int afterId = Integer.MIN_VALUE;
+            List<SearchHistory> page;
+            do {
+                page = mapDao.getSearchHistoryPageAfter(afterId, PAGE_SIZE);
+                for (SearchHistory history : page) {
+                    writeRow(toJson(history));
+                    afterId = history.id;
+                }
+            } while (page.size() == PAGE_SIZE);
+        }
+
+        private void exportOfflineDirections(MapDao mapDao) throws IOException, JSONException {
+            int afterId = Integer.MIN_VALUE;
+            List<OfflineDirections> page;
+            do {
+                page = mapDao.getOfflineDirectionsPageAfter(afterId, DIRECTIONS_PAGE_SIZE);
+                for (OfflineDirections directions : page) {
+                    writeRow(toJson(directions));
+                    afterId = directions.id;
+                }
+            } while (page.size() == DIRECTIONS_PAGE_SIZE);
+        }
+
+        private void exportDashboardData(DashboardDao dao) throws IOException, JSONException {
+            // Archived days first; the archive only hands out one decoded segment at a time
+            try {
+                archive.readRange(Long.MIN_VALUE, Long.MAX_VALUE, data -> {
+                    try {
+                        writeRow(toJson(data));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (JSONException e) {
+                        throw new UncheckedIOException(new IOException(e));
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            long afterTimestamp = Long.MIN_VALUE;
+            long afterId = Long.MIN_VALUE;
+            List<DashboardData> page;
+            do {
+                page = dao.getPageAfter(Long.MIN_VALUE, Long.MAX_VALUE, afterTimestamp, afterId, PAGE_SIZE);
+                for (DashboardData data : page) {
+                    writeRow(toJson(data));
+                    afterTimestamp = data.timestamp;
+                    afterId = data.id;
+                }
+            } while (page.size() == PAGE_SIZE);
+        }
+
+        private void writeRow(JSONObject row) throws IOException {
+            writeLine(row);
+            rowsWritten++;
+            long elapsedMs = elapsedMs();
+            if (elapsedMs - lastProgressMs >= PROGRESS_INTERVAL_MS) {
+                lastProgressMs = elapsedMs;
+                callback.onProgress(progress());
+            }
+        }
+
+        private void writeLine(JSONObject line) throws IOException {
+            out.write(line.toString());
+            out.write('\n');
+        }
+
+        private long elapsedMs() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        BackupProgress progress() {
+            return new BackupProgress(rowsWritten, totalRows, counter.count, elapsedMs());
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
     }
-    
-    private void exportOfflineDirections(JSONObject backupData) throws Exception {
-        JSONArray directionsArray = new JSONArray();
-        
-        // Get all offline directions
-        List<OfflineDirections> directionsList = mapDataManager.getAllOfflineDirections();
-        for (OfflineDirections directions : directionsList) {
-            JSONObject directionsObj = new JSONObject();
-            directionsObj.put("id", directions.id);
-            directionsObj.put("originPlaceId", directions.originPlaceId);
-            directionsObj.put("originName", directions.originName);
-            directionsObj.put("originLatitude", directions.originLatitude);
-            directionsObj.put("originLongitude", directions.originLongitude);
-            directionsObj.put("destinationPlaceId", directions.destinationPlaceId);
-            directionsObj.put("destinationName", directions.destinationName);
-            directionsObj.put("destinationLatitude", directions.destinationLatitude);
-            directionsObj.put("destinationLongitude", directions.destinationLongitude);
-            directionsObj.put("routePolyline", directions.routePolyline);
-            directionsObj.put("routeSummary", directions.routeSummary);
-            directionsObj.put("durationSeconds", directions.durationSeconds);
-            directionsObj.put("distanceMeters", directions.distanceMeters);
-            directionsObj.put("timestamp", directions.timestamp);
-            directionsObj.put("usageCount", directions.usageCount);
-            directionsArray.put(directionsObj);
-        }
-        
-        backupData.put("offline_directions", directionsArray);
-        Log.d(TAG, "Exported " + directionsList.size() + " offline directions");
+
+    private static JSONObject toJson(SearchHistory history) throws JSONException {
+        JSONObject row = new JSONObject();
+        row.put("type", "search_history");
+        row.put("id", history.id);
+        row.put("placeId", history.placeId);
+        row.put("placeName", history.placeName);
+        row.put("address", history.address);
+        putNumber(row, "latitude", history.latitude);
+        putNumber(row, "longitude", history.longitude);
+        row.put("timestamp", history.timestamp);
+        row.put("searchCount", history.searchCount);
+        putNumber(row, "frecency", history.frecency);
+        return row;
     }
-    
-    private void exportDashboardData(JSONObject backupData) throws Exception {
-        JSONArray dashboardArray = new JSONArray();
-        
-        // Get all dashboard data
-        List<DashboardData> dashboardList = dashboardDao.getAllData();
-        for (DashboardData data : dashboardList) {
-            JSONObject dataObj = new JSONObject();
-            dataObj.put("id", data.id);
-            dataObj.put("timestamp", data.timestamp);
-            dataObj.put("speed", data.speed);
-            dataObj.put("totalDistance", data.totalDistance);
-            dataObj.put("fuelLiters", data.fuelLiters);
-            dataObj.put("fuelFillDistance", data.fuelFillDistance);
-            // dataObj.put("economy", data.economy); // Remove or comment out
-            // dataObj.put("tripDistance", data.tripDistance); // Remove or comment out
-            // dataObj.put("tripDuration", data.tripDuration); // Remove or comment out
-            // dataObj.put("odometer", data.odometer); // Remove or comment out
-            dashboardArray.put(dataObj);
-        }
-        
-        backupData.put("dashboard_data", dashboardArray);
-        Log.d(TAG, "Exported " + dashboardList.size() + " dashboard data entries");
+
+    private static JSONObject toJson(OfflineDirections directions) throws JSONException {
+        JSONObject row = new JSONObject();
+        row.put("type", "offline_directions");
+        row.put("id", directions.id);
+        row.put("originPlaceId", directions.originPlaceId);
+        row.put("originName", directions.originName);
+        putNumber(row, "originLatitude", directions.originLatitude);
+        putNumber(row, "originLongitude", directions.originLongitude);
+        row.put("destinationPlaceId", directions.destinationPlaceId);
+        row.put("destinationName", directions.destinationName);
+        putNumber(row, "destinationLatitude", directions.destinationLatitude);
+        putNumber(row, "destinationLongitude", directions.destinationLongitude);
+        row.put("routePolyline", directions.routePolyline);
+        row.put("routeSummary", directions.routeSummary);
+        row.put("stepsJson", directions.stepsJson);
+        if (directions.stepsData != null) {
+            row.put("stepsData", Base64.encodeToString(directions.stepsData, Base64.NO_WRAP));
+        }
+        row.put("routeHash", directions.routeHash);
+        row.put("durationSeconds", directions.durationSeconds);
+        row.put("distanceMeters", directions.distanceMeters);
+        row.put("timestamp", directions.timestamp);
+        row.put("usageCount", directions.usageCount);
+        return row;
+    }
+
+    // Every column, so a restore can rebuild the rollups; archived rows have no id
+    private static JSONObject toJson(DashboardData data) throws JSONException {
+        JSONObject row = new JSONObject();
+        row.put("type", "dashboard_data");
+        if (data.id != 0) {
+            row.put("id", data.id);
+        }
+        row.put("timestamp", data.timestamp);
+        putNumber(row, "speed", data.speed);
+        putNumber(row, "fuelPercentage", data.fuelPercentage);
+        putNumber(row, "fuelLiters", data.fuelLiters);
+        putNumber(row, "instantEconomy", data.instantEconomy);
+        putNumber(row, "totalDistance", data.totalDistance);
+        putNumber(row, "trip1Distance", data.trip1Distance);
+        putNumber(row, "trip1Fuel", data.trip1Fuel);
+        putNumber(row, "trip1Average", data.trip1Average);
+        row.put("trip1Started", data.trip1Started);
+        putNumber(row, "trip2Distance", data.trip2Distance);
+        putNumber(row, "trip2Fuel", data.trip2Fuel);
+        putNumber(row, "trip2Average", data.trip2Average);
+        row.put("trip2Started", data.trip2Started);
+        putNumber(row, "fuelFillAverage", data.fuelFillAverage);
+        putNumber(row, "fuelFillDistance", data.fuelFillDistance);
+        putNumber(row, "lastFuelFill", data.lastFuelFill);
+        row.put("fuelFillStarted", data.fuelFillStarted);
+        putNumber(row, "fuelUsedSinceFill", data.fuelUsedSinceFill);
+        row.put("gapBefore", data.gapBefore);
+        row.put("backfilled", data.backfilled);
+        return row;
+    }
+
+    // JSON has no NaN or infinity; one bad reading shouldn't fail the whole backup
+    private static void putNumber(JSONObject row, String name, double value) throws JSONException {
+        row.put(name, Double.isNaN(value) || Double.isInfinite(value) ? JSONObject.NULL : value);
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
     }
     
     public void importData(String filePath, BackupCallback callback) {
@@ -166,17 +375,18 @@ public class DataBackupManager {
     }
     
     public String getBackupDirectoryPath() {
-        File backupDir = new File(context.getExternalFilesDir(null), "backups");
+        File backupDir = new File(context.getExternalFilesDir(null), BACKUP_DIR);
         return backupDir.getAbsolutePath();
     }
     
     public void cleanupOldBackups(int keepCount) {
         executorService.execute(() -> {
             try {
-                File backupDir = new File(context.getExternalFilesDir(null), "backups");
+                File backupDir = new File(context.getExternalFilesDir(null), BACKUP_DIR);
                 if (!backupDir.exists()) return;
                 
-                File[] backupFiles = backupDir.listFiles((dir, name) -> name.endsWith(".json"));
+                File[] backupFiles = backupDir.listFiles((dir, name) ->
+                        name.endsWith(BACKUP_SUFFIX) || name.endsWith(LEGACY_BACKUP_SUFFIX));
                 if (backupFiles == null || backupFiles.length <= keepCount) return;
                 
                 // Sort by modification time (oldest first)
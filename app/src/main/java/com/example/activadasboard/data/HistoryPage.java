@@ -0,0 +1,16 @@
+package com.example.activadasboard.data;
+
+import java.util.List;
+
+/** Snapshot of the rows currently loaded into the history list. */
+public class HistoryPage {
+    public final List<DashboardData> items;   // Newest first
+    public final boolean hasOlder;
+    public final boolean hasNewer;
+
+    public HistoryPage(List<DashboardData> items, boolean hasOlder, boolean hasNewer) {
+        this.items = items;
+        this.hasOlder = hasOlder;
+        this.hasNewer = hasNewer;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.activadasboard.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyset-paginated window over dashboard_data for one time range, newest
+ * first. Each page is fetched relative to the (timestamp, id) of the first or
+ * last loaded row instead of by OFFSET, so it costs the same index seek however
+ * far the user has scrolled. At most {@code maxPages} pages are held; the far
+ * end of the window is dropped as new pages come in and reloaded on demand.
+ *
+ * An optional {@link Filter} narrows the rows; pages are still keyset queries
+ * with a LIMIT, so a filtered window is bounded the same way.
+ *
+ * Not thread-safe: all calls must come from the same background thread.
+ */
+public class HistoryPager {
+    /** Which rows the history chips show. */
+    public static final class Filter {
+        public static final Filter ALL = new Filter(false, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+        final boolean fuelFillsOnly;
+        final double minSpeed;
+        final double minEconomy;
+
+        private Filter(boolean fuelFillsOnly, double minSpeed, double minEconomy) {
+            this.fuelFillsOnly = fuelFillsOnly;
+            this.minSpeed = minSpeed;
+            this.minEconomy = minEconomy;
+        }
+
+        public static Filter fuelFills() {
+            return new Filter(true, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+        }
+
+        public static Filter speedAbove(double minSpeed) {
+            return new Filter(false, minSpeed, Double.NEGATIVE_INFINITY);
+        }
+
+        public static Filter economyAbove(double minEconomy) {
+            return new Filter(false, Double.NEGATIVE_INFINITY, minEconomy);
+        }
+    }
+
+    private final DashboardDao dao;
+    private final Filter filter;
+    private final long startTime;
+    private final long endTime;
+    private final int pageSize;
+    private final int maxItems;
+    private final ArrayList<DashboardData> window = new ArrayList<>();
+    private boolean hasOlder = false;
+    private boolean hasNewer = false;
+
+    public HistoryPager(DashboardDao dao, long startTime, long endTime, int pageSize, int maxPages) {
+        this(dao, Filter.ALL, startTime, endTime, pageSize, maxPages);
+    }
+
+    public HistoryPager(DashboardDao dao, Filter filter, long startTime, long endTime, int pageSize, int maxPages) {
+        this.dao = dao;
+        this.filter = filter;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.pageSize = pageSize;
+        this.maxItems = pageSize * maxPages;
+    }
+
+    public HistoryPage loadInitial() {
+        window.clear();
+        List<DashboardData> page = pageBefore(Long.MAX_VALUE, Long.MAX_VALUE);
+        window.addAll(page);
+        hasOlder = page.size() == pageSize;
+        hasNewer = false;
+        return snapshot();
+    }
+
+    public HistoryPage loadOlder() {
+        if (!hasOlder || window.isEmpty()) return snapshot();
+
+        DashboardData last = window.get(window.size() - 1);
+        List<DashboardData> page = pageBefore(last.timestamp, last.id);
+        window.addAll(page);
+        hasOlder = page.size() == pageSize;
+
+        int excess = window.size() - maxItems;
+        if (excess > 0) {
+            window.subList(0, excess).clear();
+            hasNewer = true;
+        }
+        return snapshot();
+    }
+
+    public HistoryPage loadNewer() {
+        if (!hasNewer || window.isEmpty()) return snapshot();
+
+        DashboardData first = window.get(0);
+        List<DashboardData> page = pageAfter(first.timestamp, first.id);
+        Collections.reverse(page);
+        window.addAll(0, page);
+        hasNewer = page.size() == pageSize;
+
+        int excess = window.size() - maxItems;
+        if (excess > 0) {
+            window.subList(window.size() - excess, window.size()).clear();
+            hasOlder = true;
+        }
+        return snapshot();
+    }
+
+    private List<DashboardData> pageBefore(long timestamp, long id) {
+        if (filter.fuelFillsOnly) {
+            return dao.getFuelFillPageBefore(startTime, endTime, timestamp, id, pageSize);
+        }
+        if (filter == Filter.ALL) {
+            return dao.getPageBefore(startTime, endTime, timestamp, id, pageSize);
+        }
+        return dao.getThresholdPageBefore(startTime, endTime, filter.minSpeed, filter.minEconomy, timestamp, id, pageSize);
+    }
+
+    private List<DashboardData> pageAfter(long timestamp, long id) {
+        if (filter.fuelFillsOnly) {
+            return dao.getFuelFillPageAfter(startTime, endTime, timestamp, id, pageSize);
+        }
+        if (filter == Filter.ALL) {
+            return dao.getPageAfter(startTime, endTime, timestamp, id, pageSize);
+        }
+        return dao.getThresholdPageAfter(startTime, endTime, filter.minSpeed, filter.minEconomy, timestamp, id, pageSize);
+    }
+
+    private HistoryPage snapshot() {
+        return new HistoryPage(Collections.unmodifiableList(new ArrayList<>(window)), hasOlder, hasNewer);
+    }
+}
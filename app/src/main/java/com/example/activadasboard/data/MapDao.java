@@ -14,17 +14,36 @@ import java.util.List;
 public interface MapDao {
     
     // Search History operations
-    @Query("SELECT * FROM search_history ORDER BY timestamp DESC LIMIT 20")
+    // Most frecent first: places searched often and lately
+    @Query("SELECT * FROM search_history ORDER BY frecency DESC LIMIT 20")
     LiveData<List<SearchHistory>> getRecentSearches();
     
-    @Query("SELECT * FROM search_history WHERE placeName LIKE '%' || :query || '%' OR address LIKE '%' || :query || '%' ORDER BY searchCount DESC, timestamp DESC")
-    LiveData<List<SearchHistory>> searchHistory(String query);
+    // The best :limit matches from history, then every matching destination of cached
+    // routes never searched for, as rows with id 0 counting each use as a search. Routes
+    // without a place id are told apart by name. SQLite has no ln(), so those rows come
+    // back unscored; see SearchRanking.rank. :match is an FTS expression from
+    // SearchRanking.toMatchQuery.
+    @Query("SELECT * FROM (" +
+            "SELECT h.id, h.placeId, h.placeName, h.address, h.latitude, h.longitude, " +
+            "h.timestamp, h.searchCount, h.frecency " +
+            "FROM search_history h JOIN search_history_fts ON h.id = search_history_fts.rowid " +
+            "WHERE search_history_fts MATCH :match " +
+            "ORDER BY h.frecency DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "SELECT 0 AS id, d.destinationPlaceId AS placeId, d.destinationName AS placeName, " +
+            "NULL AS address, d.destinationLatitude AS latitude, d.destinationLongitude AS longitude, " +
+            "MAX(d.timestamp) AS timestamp, SUM(d.usageCount) AS searchCount, 0 AS frecency " +
+            "FROM offline_directions d JOIN offline_directions_fts ON d.id = offline_directions_fts.rowid " +
+            "WHERE offline_directions_fts MATCH :match " +
+            "AND NOT EXISTS (SELECT 1 FROM search_history s WHERE s.placeId = d.destinationPlaceId) " +
+            "GROUP BY COALESCE(d.destinationPlaceId, d.destinationName)")
+    LiveData<List<SearchHistory>> searchHistory(String match, int limit);
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertSearchHistory(SearchHistory searchHistory);
     
-    @Query("UPDATE search_history SET searchCount = searchCount + 1, timestamp = :timestamp WHERE placeId = :placeId")
-    void incrementSearchCount(String placeId, long timestamp);
+    @Query("UPDATE search_history SET searchCount = searchCount + 1, timestamp = :timestamp, frecency = :frecency WHERE placeId = :placeId")
+    void incrementSearchCount(String placeId, long timestamp, double frecency);
     
     @Query("SELECT * FROM search_history WHERE placeId = :placeId LIMIT 1")
     SearchHistory getSearchHistoryByPlaceId(String placeId);
@@ -36,14 +55,21 @@ public interface MapDao {
     void deleteOldSearchHistory(long timestamp);
     
     // Offline Directions operations
-    @Query("SELECT * FROM offline_directions WHERE (originPlaceId = :originPlaceId AND destinationPlaceId = :destinationPlaceId) OR (originPlaceId = :destinationPlaceId AND destinationPlaceId = :originPlaceId) ORDER BY usageCount DESC, timestamp DESC LIMIT 1")
-    OfflineDirections getOfflineDirections(String originPlaceId, String destinationPlaceId);
+    @Query("SELECT * FROM offline_directions WHERE id = :id")
+    OfflineDirections getOfflineDirectionsById(int id);
+
+    @Query("SELECT * FROM offline_directions WHERE routeHash = :routeHash")
+    List<OfflineDirections> getOfflineDirectionsByRouteHash(long routeHash);
+
+    // Just what RouteIndex needs, without the polylines and steps
+    @Query("SELECT id, originLatitude, originLongitude, destinationPlaceId, destinationLatitude, destinationLongitude, usageCount, timestamp FROM offline_directions")
+    List<RouteIndex.Entry> getRouteIndexEntries();
     
     @Query("SELECT * FROM offline_directions ORDER BY usageCount DESC, timestamp DESC LIMIT 10")
     LiveData<List<OfflineDirections>> getRecentDirections();
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertOfflineDirections(OfflineDirections offlineDirections);
+    long insertOfflineDirections(OfflineDirections offlineDirections);
     
     @Query("UPDATE offline_directions SET usageCount = usageCount + 1, timestamp = :timestamp WHERE id = :id")
     void incrementUsageCount(int id, long timestamp);
@@ -66,4 +92,11 @@ public interface MapDao {
     
     @Query("SELECT * FROM offline_directions ORDER BY timestamp DESC")
     List<OfflineDirections> getAllOfflineDirections();
+
+    // Keyset pages by primary key, for streaming exports
+    @Query("SELECT * FROM search_history WHERE id > :afterId ORDER BY id ASC LIMIT :limit")
+    List<SearchHistory> getSearchHistoryPageAfter(int afterId, int limit);
+
+    @Query("SELECT * FROM offline_directions WHERE id > :afterId ORDER BY id ASC LIMIT :limit")
+    List<OfflineDirections> getOfflineDirectionsPageAfter(int afterId, int limit);
 } 
\ No newline at end of file
@@ -2,27 +2,55 @@ package com.example.activadasboard.data;
 
 import android.content.Context;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class MapDataManager {
+    // How far the rider may be from where a cached route starts and still use it
+    public static final double ORIGIN_RADIUS_METERS = 500;
+    // The same destination saved under another place id
+    private static final double DESTINATION_RADIUS_METERS = 100;
+    private static final int SUGGESTION_LIMIT = 20;
+
     private final MapDao mapDao;
+    private final RouteIndex routeIndex;
     private final ExecutorService executorService;
     
     public MapDataManager(Context context) {
         AppDatabase database = AppDatabase.getDatabase(context);
         mapDao = database.mapDao();
+        routeIndex = database.getRouteIndex();
         executorService = Executors.newSingleThreadExecutor();
     }
+
+    /** Load the offline route index in the background so the first lookup doesn't wait on it. */
+    public static void warmRouteIndex(Context context) {
+        new Thread(() -> {
+            try {
+                AppDatabase database = AppDatabase.getDatabase(context);
+                database.getRouteIndex().warm(database.mapDao()::getRouteIndexEntries);
+                android.util.Log.d("MapDataManager", "Route index warmed: " + database.getRouteIndex().size() + " routes");
+            } catch (Exception e) {
+                android.util.Log.e("MapDataManager", "Error warming route index", e);
+            }
+        }, "RouteIndexWarmup").start();
+    }
     
     // Search History operations
     public LiveData<List<SearchHistory>> getRecentSearches() {
         return mapDao.getRecentSearches();
     }
     
+    /** Prefix matches on name and address, best first; the top places if the query has no words. */
     public LiveData<List<SearchHistory>> searchHistory(String query) {
-        return mapDao.searchHistory(query);
+        String match = SearchRanking.toMatchQuery(query);
+        if (match == null) {
+            return mapDao.getRecentSearches();
+        }
+        return Transformations.map(mapDao.searchHistory(match, SUGGESTION_LIMIT),
+                rows -> SearchRanking.rank(rows, SUGGESTION_LIMIT));
     }
     
     public void addSearchHistory(String placeId, String placeName, String address, 
@@ -30,7 +58,8 @@ public class MapDataManager {
         executorService.execute(() -> {
             SearchHistory existing = mapDao.getSearchHistoryByPlaceId(placeId);
             if (existing != null) {
-                mapDao.incrementSearchCount(placeId, System.currentTimeMillis());
+                long now = System.currentTimeMillis();
+                mapDao.incrementSearchCount(placeId, now, SearchRanking.addSearch(existing.frecency, now));
             } else {
                 SearchHistory newSearch = new SearchHistory(placeId, placeName, address, latitude, longitude);
                 mapDao.insertSearchHistory(newSearch);
@@ -39,6 +68,10 @@ public class MapDataManager {
     }
     
     public void deleteSearchHistory(SearchHistory searchHistory) {
+        if (searchHistory.isCachedDestination()) {
+            android.util.Log.d("MapDataManager", "Not deleting " + searchHistory.placeName + ": a cached destination, not a search");
+            return;
+        }
         executorService.execute(() -> mapDao.deleteSearchHistory(searchHistory));
     }
     
@@ -55,49 +88,42 @@ public class MapDataManager {
                                     String destinationPlaceId, String destinationName,
                                     double destinationLatitude, double destinationLongitude,
                                     String routePolyline, String routeSummary,
-                                    long durationSeconds, long distanceMeters, String stepsJson) {
+                                    long durationSeconds, long distanceMeters, byte[] stepsData) {
         executorService.execute(() -> {
             OfflineDirections directions = new OfflineDirections(
                 originPlaceId, originName, originLatitude, originLongitude,
                 destinationPlaceId, destinationName, destinationLatitude, destinationLongitude,
-                routePolyline, routeSummary, durationSeconds, distanceMeters, stepsJson
+                routePolyline, routeSummary, durationSeconds, distanceMeters, stepsData
             );
-            mapDao.insertOfflineDirections(directions);
-        });
-    }
-    
-    public OfflineDirections getOfflineDirections(String originPlaceId, String destinationPlaceId) {
-        try {
-            android.util.Log.d("MapDataManager", "Looking for offline directions from " + originPlaceId + " to " + destinationPlaceId);
-            // Use a synchronous executor to avoid main thread issues
-            java.util.concurrent.CompletableFuture<OfflineDirections> future = new java.util.concurrent.CompletableFuture<>();
-            executorService.execute(() -> {
-                try {
-                    OfflineDirections result = mapDao.getOfflineDirections(originPlaceId, destinationPlaceId);
-                    if (result != null) {
-                        android.util.Log.d("MapDataManager", "Found offline directions: " + result.destinationName);
-                    } else {
-                        android.util.Log.d("MapDataManager", "No offline directions found");
-                    }
-                    future.complete(result);
-                } catch (Exception e) {
-                    android.util.Log.e("MapDataManager", "Error getting offline directions", e);
-                    future.complete(null);
+            // Asking for the same trip again returns the same route; count it instead of storing it twice
+            for (OfflineDirections existing : mapDao.getOfflineDirectionsByRouteHash(directions.routeHash)) {
+                if (sameRoute(existing, directions)) {
+                    mapDao.incrementUsageCount(existing.id, directions.timestamp);
+                    routeIndex.markUsed(existing.id, directions.timestamp);
+                    return;
                 }
-            });
-            return future.get(2, java.util.concurrent.TimeUnit.SECONDS); // 2 second timeout
-        } catch (Exception e) {
-            android.util.Log.e("MapDataManager", "Error getting offline directions", e);
-            return null;
-        }
+            }
+            directions.id = (int) mapDao.insertOfflineDirections(directions);
+            routeIndex.add(toIndexEntry(directions));
+        });
     }
     
-    public void getOfflineDirectionsAsync(String originPlaceId, String destinationPlaceId, 
-                                        java.util.function.Consumer<OfflineDirections> callback) {
+    /**
+     * The best cached route to the destination that starts within
+     * {@link #ORIGIN_RADIUS_METERS} of the rider, or null. Matched against the
+     * in-memory index; only the chosen route is read from the database.
+     */
+    public void findOfflineDirectionsAsync(double latitude, double longitude,
+                                           String destinationPlaceId, double destinationLatitude,
+                                           double destinationLongitude,
+                                           java.util.function.Consumer<OfflineDirections> callback) {
         executorService.execute(() -> {
             try {
-                android.util.Log.d("MapDataManager", "Looking for offline directions from " + originPlaceId + " to " + destinationPlaceId);
-                OfflineDirections result = mapDao.getOfflineDirections(originPlaceId, destinationPlaceId);
+                android.util.Log.d("MapDataManager", "Looking for offline directions to " + destinationPlaceId);
+                routeIndex.warm(mapDao::getRouteIndexEntries);
+                RouteIndex.Entry match = routeIndex.findNearest(latitude, longitude, ORIGIN_RADIUS_METERS,
+                        destinationPlaceId, destinationLatitude, destinationLongitude, DESTINATION_RADIUS_METERS);
+                OfflineDirections result = match != null ? mapDao.getOfflineDirectionsById(match.id) : null;
                 if (result != null) {
                     android.util.Log.d("MapDataManager", "Found offline directions: " + result.destinationName);
                 } else {
@@ -116,18 +142,25 @@ public class MapDataManager {
     }
     
     public void incrementUsageCount(int directionsId) {
-        executorService.execute(() -> 
-            mapDao.incrementUsageCount(directionsId, System.currentTimeMillis()));
+        executorService.execute(() -> {
+            long now = System.currentTimeMillis();
+            mapDao.incrementUsageCount(directionsId, now);
+            routeIndex.markUsed(directionsId, now);
+        });
     }
     
     public void deleteOfflineDirections(OfflineDirections offlineDirections) {
-        executorService.execute(() -> mapDao.deleteOfflineDirections(offlineDirections));
+        executorService.execute(() -> {
+            mapDao.deleteOfflineDirections(offlineDirections);
+            routeIndex.remove(offlineDirections.id);
+        });
     }
     
     public void cleanupOldOfflineDirections(long daysOld) {
         executorService.execute(() -> {
             long cutoffTime = System.currentTimeMillis() - (daysOld * 24 * 60 * 60 * 1000L);
             mapDao.deleteOldOfflineDirections(cutoffTime);
+            routeIndex.removeOlderThan(cutoffTime);
         });
     }
     
@@ -166,6 +199,25 @@ public class MapDataManager {
         }
     }
     
+    private static boolean sameRoute(OfflineDirections a, OfflineDirections b) {
+        return java.util.Objects.equals(a.destinationPlaceId, b.destinationPlaceId)
+            && java.util.Objects.equals(a.routePolyline, b.routePolyline)
+            && java.util.Arrays.equals(a.stepsData, b.stepsData);
+    }
+    
+    private static RouteIndex.Entry toIndexEntry(OfflineDirections directions) {
+        RouteIndex.Entry entry = new RouteIndex.Entry();
+        entry.id = directions.id;
+        entry.originLatitude = directions.originLatitude;
+        entry.originLongitude = directions.originLongitude;
+        entry.destinationPlaceId = directions.destinationPlaceId;
+        entry.destinationLatitude = directions.destinationLatitude;
+        entry.destinationLongitude = directions.destinationLongitude;
+        entry.usageCount = directions.usageCount;
+        entry.timestamp = directions.timestamp;
+        return entry;
+    }
+    
     public void shutdown() {
         executorService.shutdown();
     }
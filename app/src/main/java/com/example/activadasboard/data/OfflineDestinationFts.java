@@ -0,0 +1,15 @@
+package com.example.activadasboard.data;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * Full-text index over the destinations of cached routes, so places with a
+ * route saved show up in suggestions even without a search history row.
+ */
+@Fts4(contentEntity = OfflineDirections.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "offline_directions_fts")
+public class OfflineDestinationFts {
+    public String destinationName;
+}
@@ -2,9 +2,11 @@ package com.example.activadasboard.data;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "offline_directions")
+@Entity(tableName = "offline_directions",
+        indices = {@Index(name = "index_offline_directions_routeHash", value = {"routeHash"})})
 public class OfflineDirections {
     @PrimaryKey(autoGenerate = true)
     public int id;
@@ -26,8 +28,12 @@ public class OfflineDirections {
     public long timestamp;
     public int usageCount;
     
-    // Store detailed step-by-step directions as JSON
+    // Steps as JSON; only rows saved before version 8 still have it
     public String stepsJson;
+    // Steps and their polylines in RouteSteps' binary format
+    public byte[] stepsData;
+    // RouteSteps.hash of the polyline and steps, to find a route saved before
+    public long routeHash;
     
     public OfflineDirections() {}
     
@@ -37,7 +43,7 @@ public class OfflineDirections {
                            String destinationPlaceId, String destinationName,
                            double destinationLatitude, double destinationLongitude,
                            String routePolyline, String routeSummary,
-                           long durationSeconds, long distanceMeters, String stepsJson) {
+                           long durationSeconds, long distanceMeters, byte[] stepsData) {
         this.originPlaceId = originPlaceId;
         this.originName = originName;
         this.originLatitude = originLatitude;
@@ -50,7 +56,8 @@ public class OfflineDirections {
         this.routeSummary = routeSummary;
         this.durationSeconds = durationSeconds;
         this.distanceMeters = distanceMeters;
-        this.stepsJson = stepsJson;
+        this.stepsData = stepsData;
+        this.routeHash = RouteSteps.hash(routePolyline, stepsData);
         this.timestamp = System.currentTimeMillis();
         this.usageCount = 1;
     }
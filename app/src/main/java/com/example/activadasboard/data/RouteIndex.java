@@ -0,0 +1,171 @@
+package com.example.activadasboard.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * In-memory grid over the origins of cached offline routes, so finding one
+ * that starts near the rider only looks at the few cells around the fix
+ * instead of every row.
+ *
+ * Only the coordinates and ranking columns are kept here; the route itself
+ * is read by id once a match is chosen. The index is loaded once with
+ * {@link #warm} and then kept in step by whoever writes offline_directions.
+ */
+public class RouteIndex {
+    // About 1.1 km of latitude; a lookup radius spans at most a few cells
+    static final double CELL_DEGREES = 0.01;
+    private static final double METERS_PER_DEGREE = 111195.0;
+
+    /** The columns the index needs, loaded straight from offline_directions. */
+    public static class Entry {
+        public int id;
+        public double originLatitude;
+        public double originLongitude;
+        public String destinationPlaceId;
+        public double destinationLatitude;
+        public double destinationLongitude;
+        public int usageCount;
+        public long timestamp;
+    }
+
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private final Map<Integer, Entry> byId = new HashMap<>();
+    private boolean warm = false;
+
+    /** Load every entry on first use; later calls return immediately. */
+    public synchronized void warm(Supplier<List<Entry>> loader) {
+        if (warm) return;
+        for (Entry entry : loader.get()) {
+            // A route saved before the index warmed is already here, and newer
+            if (!byId.containsKey(entry.id)) {
+                put(entry);
+            }
+        }
+        warm = true;
+    }
+
+    public synchronized boolean isWarm() {
+        return warm;
+    }
+
+    public synchronized void add(Entry entry) {
+        remove(entry.id);
+        put(entry);
+    }
+
+    public synchronized void remove(int id) {
+        Entry entry = byId.remove(id);
+        if (entry == null) return;
+        long key = cellKey(entry.originLatitude, entry.originLongitude);
+        List<Entry> cell = cells.get(key);
+        cell.remove(entry);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    public synchronized void markUsed(int id, long timestamp) {
+        Entry entry = byId.get(id);
+        if (entry != null) {
+            entry.usageCount++;
+            entry.timestamp = timestamp;
+        }
+    }
+
+    public synchronized void removeOlderThan(long timestamp) {
+        List<Integer> expired = new ArrayList<>();
+        for (Entry entry : byId.values()) {
+            if (entry.timestamp < timestamp) {
+                expired.add(entry.id);
+            }
+        }
+        for (int id : expired) {
+            remove(id);
+        }
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * The cached route to the destination whose origin is closest to the fix
+     * and within {@code originRadiusM} of it, or null. The destination matches
+     * by place id, or by lying within {@code destinationRadiusM} when the same
+     * spot was saved under another id. Ties go to the most used, then the most
+     * recent.
+     */
+    public synchronized Entry findNearest(double latitude, double longitude, double originRadiusM,
+                                          String destinationPlaceId, double destinationLatitude,
+                                          double destinationLongitude, double destinationRadiusM) {
+        double latSpan = originRadiusM / METERS_PER_DEGREE;
+        double lngSpan = latSpan / Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+        int minLat = cell(latitude - latSpan);
+        int maxLat = cell(latitude + latSpan);
+        int minLng = cell(longitude - lngSpan);
+        int maxLng = cell(longitude + lngSpan);
+
+        Entry best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (int latCell = minLat; latCell <= maxLat; latCell++) {
+            for (int lngCell = minLng; lngCell <= maxLng; lngCell++) {
+                List<Entry> cell = cells.get(cellKey(latCell, lngCell));
+                if (cell == null) continue;
+                for (Entry entry : cell) {
+                    double distance = distanceMeters(latitude, longitude,
+                            entry.originLatitude, entry.originLongitude);
+                    if (distance > originRadiusM) continue;
+                    if (!sameDestination(entry, destinationPlaceId, destinationLatitude,
+                            destinationLongitude, destinationRadiusM)) continue;
+                    if (best == null || distance < bestDistance
+                            || (distance == bestDistance && ranksAbove(entry, best))) {
+                        best = entry;
+                        bestDistance = distance;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private void put(Entry entry) {
+        byId.put(entry.id, entry);
+        cells.computeIfAbsent(cellKey(entry.originLatitude, entry.originLongitude),
+                key -> new ArrayList<>()).add(entry);
+    }
+
+    private static boolean sameDestination(Entry entry, String placeId, double latitude,
+                                           double longitude, double radiusM) {
+        if (placeId != null && placeId.equals(entry.destinationPlaceId)) return true;
+        return distanceMeters(latitude, longitude,
+                entry.destinationLatitude, entry.destinationLongitude) <= radiusM;
+    }
+
+    private static boolean ranksAbove(Entry a, Entry b) {
+        if (a.usageCount != b.usageCount) return a.usageCount > b.usageCount;
+        return a.timestamp > b.timestamp;
+    }
+
+    static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(double latitude, double longitude) {
+        return cellKey(cell(latitude), cell(longitude));
+    }
+
+    private static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    /** Equirectangular distance; exact enough at the few hundred metres this compares. */
+    static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double x = (lng2 - lng1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+    }
+}
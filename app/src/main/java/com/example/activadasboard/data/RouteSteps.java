@@ -0,0 +1,261 @@
+package com.example.activadasboard.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Binary encoding of a cached route's steps, stored in
+ * {@link OfflineDirections#stepsData}:
+ *
+ * <pre>
+ *   int magic, int version, int stepCount, stepCount x int offset, step records...
+ * </pre>
+ *
+ * Each record is a varint flags word, the distance in metres and duration in
+ * seconds as varints, the instruction, distance and duration texts, then
+ * whichever of the maneuver, start, end and polyline the flags say are there.
+ * Strings are a varint of the UTF-8 length plus one, 0 meaning null.
+ * Coordinates are 1e-5 degree fixed point, the precision of an encoded
+ * polyline, as zigzag varints: the start absolute, the end and the first
+ * polyline vertex relative to the start, every later vertex relative to the
+ * one before it.
+ *
+ * {@link #parse} only checks the header and offset table; each step is
+ * decoded the first time it's asked for.
+ */
+public final class RouteSteps {
+    static final int MAGIC = 0x52535431; // "RST1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 4;
+
+    private static final int HAS_MANEUVER = 1;
+    private static final int HAS_START = 1 << 1;
+    private static final int HAS_END = 1 << 2;
+    private static final int HAS_POLYLINE = 1 << 3;
+
+    /** One step; coordinates are NaN and the polyline null when not known. */
+    public static final class Step {
+        public String instructions;
+        public String maneuver;
+        public String distanceText;
+        public String durationText;
+        public long distanceMeters;
+        public long durationSeconds;
+        public double startLatitude = Double.NaN;
+        public double startLongitude = Double.NaN;
+        public double endLatitude = Double.NaN;
+        public double endLongitude = Double.NaN;
+        // Latitude, longitude pairs in 1e-5 degrees
+        public int[] polyline;
+    }
+
+    private final byte[] data;
+    private final int[] offsets;
+    private final Step[] steps;
+
+    private RouteSteps(byte[] data, int[] offsets) {
+        this.data = data;
+        this.offsets = offsets;
+        this.steps = new Step[offsets.length];
+    }
+
+    public static byte[] encode(List<Step> steps) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int[] offsets = new int[steps.size()];
+        int base = HEADER_SIZE + 4 * steps.size();
+        for (int i = 0; i < steps.size(); i++) {
+            offsets[i] = base + records.size();
+            writeStep(records, steps.get(i));
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(base);
+        header.putInt(MAGIC).putInt(VERSION).putInt(steps.size());
+        for (int offset : offsets) {
+            header.putInt(offset);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(base + records.size());
+        out.write(header.array(), 0, base);
+        out.write(records.toByteArray(), 0, records.size());
+        return out.toByteArray();
+    }
+
+    /** @throws IllegalArgumentException if this isn't a steps blob of a known version */
+    public static RouteSteps parse(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a route steps blob");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported route steps version " + version);
+        }
+        int count = in.getInt();
+        if (count < 0 || count > (data.length - HEADER_SIZE) / 4) {
+            throw new IllegalArgumentException("Bad step count " + count);
+        }
+        int[] offsets = new int[count];
+        int previous = HEADER_SIZE + 4 * count;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.getInt();
+            if (offsets[i] < previous || offsets[i] >= data.length) {
+                throw new IllegalArgumentException("Bad offset for step " + i);
+            }
+            previous = offsets[i];
+        }
+        return new RouteSteps(data, offsets);
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    /** @throws IllegalArgumentException if the record is truncated or malformed */
+    public Step step(int index) {
+        Step step = steps[index];
+        if (step == null) {
+            ByteBuffer in = ByteBuffer.wrap(data);
+            in.position(offsets[index]);
+            if (index + 1 < offsets.length) {
+                in.limit(offsets[index + 1]);
+            }
+            try {
+                step = readStep(in);
+            } catch (IOException | RuntimeException e) {
+                throw new IllegalArgumentException("Corrupt route step " + index, e);
+            }
+            steps[index] = step;
+        }
+        return step;
+    }
+
+    /** FNV-1a over the overview polyline and steps, to find identical routes. */
+    public static long hash(String polyline, byte[] stepsData) {
+        long hash = 0xcbf29ce484222325L;
+        if (polyline != null) {
+            for (int i = 0; i < polyline.length(); i++) {
+                hash = (hash ^ polyline.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        if (stepsData != null) {
+            for (byte b : stepsData) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static void writeStep(ByteArrayOutputStream out, Step step) {
+        boolean hasStart = !Double.isNaN(step.startLatitude) && !Double.isNaN(step.startLongitude);
+        boolean hasEnd = !Double.isNaN(step.endLatitude) && !Double.isNaN(step.endLongitude);
+        int flags = (step.maneuver != null ? HAS_MANEUVER : 0)
+                | (hasStart ? HAS_START : 0)
+                | (hasEnd ? HAS_END : 0)
+                | (step.polyline != null ? HAS_POLYLINE : 0);
+        ArchiveSegment.writeVarint(out, flags);
+        ArchiveSegment.writeVarint(out, Math.max(step.distanceMeters, 0));
+        ArchiveSegment.writeVarint(out, Math.max(step.durationSeconds, 0));
+        writeString(out, step.instructions);
+        writeString(out, step.distanceText);
+        writeString(out, step.durationText);
+        if (step.maneuver != null) {
+            writeString(out, step.maneuver);
+        }
+
+        long startLat = hasStart ? toE5(step.startLatitude) : 0;
+        long startLng = hasStart ? toE5(step.startLongitude) : 0;
+        if (hasStart) {
+            ArchiveSegment.writeVarint(out, ArchiveSegment.zigzag(startLat));
+            ArchiveSegment.writeVarint(out, ArchiveSegment.zigzag(startLng));
+        }
+        if (hasEnd) {
+            ArchiveSegment.writeVarint(out, ArchiveSegment.zigzag(toE5(step.endLatitude) - startLat));
+            ArchiveSegment.writeVarint(out, ArchiveSegment.zigzag(toE5(step.endLongitude) - startLng));
+        }
+        if (step.polyline != null) {
+            int[] polyline = step.polyline;
+            ArchiveSegment.writeVarint(out, polyline.length / 2);
+            long previousLat = startLat;
+            long previousLng = startLng;
+            for (int i = 0; i + 1 < polyline.length; i += 2) {
+                ArchiveSegment.writeVarint(out, ArchiveSegment.zigzag(polyline[i] - previousLat));
+                ArchiveSegment.writeVarint(out, ArchiveSegment.zigzag(polyline[i + 1] - previousLng));
+                previousLat = polyline[i];
+                previousLng = polyline[i + 1];
+            }
+        }
+    }
+
+    private static Step readStep(ByteBuffer in) throws IOException {
+        Step step = new Step();
+        int flags = (int) ArchiveSegment.readVarint(in);
+        step.distanceMeters = ArchiveSegment.readVarint(in);
+        step.durationSeconds = ArchiveSegment.readVarint(in);
+        step.instructions = readString(in);
+        step.distanceText = readString(in);
+        step.durationText = readString(in);
+        if ((flags & HAS_MANEUVER) != 0) {
+            step.maneuver = readString(in);
+        }
+
+        long startLat = 0;
+        long startLng = 0;
+        if ((flags & HAS_START) != 0) {
+            startLat = ArchiveSegment.unzigzag(ArchiveSegment.readVarint(in));
+            startLng = ArchiveSegment.unzigzag(ArchiveSegment.readVarint(in));
+            step.startLatitude = startLat / 1e5;
+            step.startLongitude = startLng / 1e5;
+        }
+        if ((flags & HAS_END) != 0) {
+            step.endLatitude = (startLat + ArchiveSegment.unzigzag(ArchiveSegment.readVarint(in))) / 1e5;
+            step.endLongitude = (startLng + ArchiveSegment.unzigzag(ArchiveSegment.readVarint(in))) / 1e5;
+        }
+        if ((flags & HAS_POLYLINE) != 0) {
+            long vertices = ArchiveSegment.readVarint(in);
+            // Each vertex takes at least two bytes
+            if (vertices > in.remaining() / 2) {
+                throw new IOException("Polyline longer than its record");
+            }
+            int[] polyline = new int[(int) vertices * 2];
+            long lat = startLat;
+            long lng = startLng;
+            for (int i = 0; i < polyline.length; i += 2) {
+                lat += ArchiveSegment.unzigzag(ArchiveSegment.readVarint(in));
+                lng += ArchiveSegment.unzigzag(ArchiveSegment.readVarint(in));
+                polyline[i] = (int) lat;
+                polyline[i + 1] = (int) lng;
+            }
+            step.polyline = polyline;
+        }
+        return step;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            ArchiveSegment.writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ArchiveSegment.writeVarint(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        long length = ArchiveSegment.readVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        if (length - 1 > in.remaining()) {
+            throw new IOException("String longer than its record");
+        }
+        String value = new String(in.array(), in.position(), (int) (length - 1), StandardCharsets.UTF_8);
+        in.position(in.position() + (int) (length - 1));
+        return value;
+    }
+
+    private static long toE5(double degrees) {
+        return Math.round(degrees * 1e5);
+    }
+}
@@ -2,9 +2,11 @@ package com.example.activadasboard.data;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "search_history")
+@Entity(tableName = "search_history",
+        indices = {@Index(name = "index_search_history_frecency", value = {"frecency"})})
 public class SearchHistory {
     @PrimaryKey(autoGenerate = true)
     public int id;
@@ -16,6 +18,8 @@ public class SearchHistory {
     public double longitude;
     public long timestamp;
     public int searchCount;
+    // See SearchRanking; higher is more recent and frequent
+    public double frecency;
     
     public SearchHistory() {}
     
@@ -29,5 +33,14 @@ public class SearchHistory {
         this.longitude = longitude;
         this.timestamp = System.currentTimeMillis();
         this.searchCount = 1;
+        this.frecency = SearchRanking.frecency(timestamp);
+    }
+
+    /**
+     * True for a suggestion made from a cached route's destination rather than
+     * a stored search; there's no history row behind it to delete.
+     */
+    public boolean isCachedDestination() {
+        return id == 0;
     }
 } 
\ No newline at end of file
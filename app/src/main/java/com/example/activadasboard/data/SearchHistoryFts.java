@@ -0,0 +1,16 @@
+package com.example.activadasboard.data;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * Full-text index over {@link SearchHistory} names and addresses. Room keeps
+ * it in step with search_history through triggers; rows share its ids.
+ */
+@Fts4(contentEntity = SearchHistory.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "search_history_fts")
+public class SearchHistoryFts {
+    public String placeName;
+    public String address;
+}
@@ -0,0 +1,90 @@
+package com.example.activadasboard.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frecency scores and full-text queries for search suggestions.
+ *
+ * A place's frecency is the sum over its searches of a weight that halves
+ * every {@link #HALF_LIFE_MS}. Rather than decaying every stored score as time
+ * passes, scores are kept as the log of that sum scaled to a fixed epoch:
+ * {@code ln(sum of 2^(t / HALF_LIFE_MS))}. Every score then decays at the same
+ * rate, so their order never changes with the clock, a search only touches
+ * its own row, and ORDER BY can use an index.
+ */
+public final class SearchRanking {
+    static final long HALF_LIFE_MS = 14L * 24 * 60 * 60 * 1000;
+    // Natural log of a search's weight per millisecond since the epoch
+    static final double DECAY_PER_MS = Math.log(2) / HALF_LIFE_MS;
+    // More words than this and the rest only narrow an already short list
+    static final int MAX_TERMS = 6;
+
+    private SearchRanking() {}
+
+    /** Score of a single search at {@code timeMs}. */
+    public static double frecency(long timeMs) {
+        return timeMs * DECAY_PER_MS;
+    }
+
+    /** Score after one more search at {@code timeMs}, given the score before it. */
+    public static double addSearch(double frecency, long timeMs) {
+        return logAdd(frecency, frecency(timeMs));
+    }
+
+    /**
+     * Approximate score for a row that only kept a count and its last search,
+     * as if every search had been made then.
+     */
+    public static double frecency(int searchCount, long lastSearchMs) {
+        return frecency(lastSearchMs) + Math.log(Math.max(searchCount, 1));
+    }
+
+    /**
+     * Score the cached destinations among {@code suggestions} from their use
+     * count and last use, then sort best first and keep the top {@code limit}.
+     * Stored searches keep the score they have.
+     */
+    public static List<SearchHistory> rank(List<SearchHistory> suggestions, int limit) {
+        List<SearchHistory> ranked = new ArrayList<>(suggestions);
+        for (SearchHistory suggestion : ranked) {
+            if (suggestion.isCachedDestination()) {
+                suggestion.frecency = frecency(suggestion.searchCount, suggestion.timestamp);
+            }
+        }
+        ranked.sort((a, b) -> Double.compare(b.frecency, a.frecency));
+        return ranked.size() > limit ? ranked.subList(0, limit) : ranked;
+    }
+
+    /**
+     * Turn typed text into an FTS MATCH expression: every word must prefix a
+     * word in the indexed text. Returns null if there's nothing to match.
+     */
+    public static String toMatchQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= query.length() && terms.size() < MAX_TERMS; i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                // Lower case, so a typed OR or NOT isn't read as an operator
+                term.append(Character.toLowerCase(c));
+            } else if (term.length() > 0) {
+                // Anything else, FTS syntax included, only separates words
+                terms.add(term.append('*').toString());
+                term.setLength(0);
+            }
+        }
+        return terms.isEmpty() ? null : String.join(" ", terms);
+    }
+
+    private static double logAdd(double a, double b) {
+        if (Double.isInfinite(a) || Double.isNaN(a)) {
+            return b;
+        }
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(-Math.abs(a - b)));
+    }
+}
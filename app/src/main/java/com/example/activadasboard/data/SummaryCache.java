@@ -0,0 +1,132 @@
+package com.example.activadasboard.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of computed summaries, keyed by kind and time range, so going
+ * back to a range already looked at doesn't aggregate SQLite again.
+ *
+ * Whoever writes or deletes samples reports the time span it touched with
+ * {@link #invalidate}, and only entries whose range overlaps it are dropped.
+ * Rollup-backed kinds are widened by their bucket size, since a sample just
+ * outside the range can still change a bucket the range includes. Cached
+ * values are shared, so callers must not modify them.
+ */
+public class SummaryCache {
+    public enum Kind {
+        TRIP(0),
+        FUEL(0),
+        DAILY(DashboardRollup.DAY),
+        HOURLY(DashboardRollup.HOUR);
+
+        final long bucketMs;
+
+        Kind(long bucketMs) {
+            this.bucketMs = bucketMs;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Object> entries;
+    // Bumped by every invalidation; a load that raced one isn't cached
+    private long generation = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public SummaryCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > SummaryCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * The cached value for the range, or whatever {@code loader} returns,
+     * which is cached unless samples in the range were written meanwhile.
+     * The loader runs without holding the cache lock.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(Kind kind, long startTime, long endTime, Supplier<T> loader) {
+        Key key = new Key(kind, startTime, endTime);
+        long loadGeneration;
+        synchronized (this) {
+            Object cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return (T) cached;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        T value = loader.get();
+        synchronized (this) {
+            if (value != null && generation == loadGeneration) {
+                entries.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /** Drop every entry whose range overlaps {@code startTime..endTime}. */
+    public synchronized void invalidate(long startTime, long endTime) {
+        generation++;
+        Iterator<Key> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().overlaps(startTime, endTime)) {
+                keys.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized String getStats() {
+        return "entries=" + entries.size() + " hits=" + hits + " misses=" + misses;
+    }
+
+    private static final class Key {
+        final Kind kind;
+        final long startTime;
+        final long endTime;
+
+        Key(Kind kind, long startTime, long endTime) {
+            this.kind = kind;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        boolean overlaps(long from, long to) {
+            // Saturate so open-ended ranges don't wrap around
+            long start = startTime - kind.bucketMs <= startTime ? startTime - kind.bucketMs : Long.MIN_VALUE;
+            long end = endTime + kind.bucketMs >= endTime ? endTime + kind.bucketMs : Long.MAX_VALUE;
+            return from <= end && to >= start;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return kind == other.kind && startTime == other.startTime && endTime == other.endTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, startTime, endTime);
+        }
+    }
+}
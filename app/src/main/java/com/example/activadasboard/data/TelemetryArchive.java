@@ -0,0 +1,186 @@
+package com.example.activadasboard.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Archive tier for raw dashboard samples. Rows older than the configured age
+ * are moved out of SQLite into append-only columnar segment files, one per
+ * day per archive run, and can be streamed back out by time range. The
+ * rollups are untouched, so summaries keep working from SQLite alone.
+ *
+ * All methods block and must be called off the main thread.
+ */
+public class TelemetryArchive {
+    private static final String TAG = "TelemetryArchive";
+    private static final String PREF_NAME = "telemetry_archive";
+    private static final String KEY_ARCHIVE_AGE_DAYS = "archive_age_days";
+    private static final int DEFAULT_ARCHIVE_AGE_DAYS = 3;
+    private static final String ARCHIVE_DIR = "telemetry_archive";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ats";
+    private static final int READ_PAGE_SIZE = 1000;
+
+    private final AppDatabase database;
+    private final SharedPreferences preferences;
+    private final File directory;
+
+    public TelemetryArchive(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.database = AppDatabase.getDatabase(appContext);
+        this.preferences = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        this.directory = new File(appContext.getFilesDir(), ARCHIVE_DIR);
+    }
+
+    public int getArchiveAgeDays() {
+        return preferences.getInt(KEY_ARCHIVE_AGE_DAYS, DEFAULT_ARCHIVE_AGE_DAYS);
+    }
+
+    public void setArchiveAgeDays(int days) {
+        preferences.edit().putInt(KEY_ARCHIVE_AGE_DAYS, Math.max(1, days)).apply();
+    }
+
+    /** Archive every raw sample older than the configured age. */
+    public int archiveOldData() {
+        return archiveOlderThan(System.currentTimeMillis() - getArchiveAgeDays() * DashboardRollup.DAY);
+    }
+
+    /**
+     * Move raw samples with {@code timestamp < cutoff} into segment files and
+     * delete them from SQLite. A day's rows are only deleted once its segment is
+     * safely on disk; if anything fails the rest stay in SQLite for the next run.
+     *
+     * @return the number of samples archived
+     */
+    public int archiveOlderThan(long cutoff) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create archive directory " + directory);
+            return 0;
+        }
+
+        DashboardDao dao = database.dashboardDao();
+        int archived = 0;
+        try {
+            while (true) {
+                long oldest = dao.getOldestDataTimestamp();
+                if (dao.getDataCount() == 0 || oldest >= cutoff) break;
+
+                long dayEnd = Math.min(DashboardRollup.bucketStart(oldest, DashboardRollup.DAY) + DashboardRollup.DAY, cutoff);
+                int rows = archiveRange(dao, oldest, dayEnd - 1);
+                if (rows == 0) break;
+                archived += rows;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error archiving dashboard data", e);
+        }
+
+        if (archived > 0) {
+            Log.d(TAG, "Archived " + archived + " samples, archive now " + getSizeBytes() + " bytes");
+        }
+        return archived;
+    }
+
+    private int archiveRange(DashboardDao dao, long startTime, long endTime) throws IOException {
+        ArchiveSegmentWriter writer = new ArchiveSegmentWriter();
+        long afterTimestamp = Long.MIN_VALUE;
+        long afterId = Long.MIN_VALUE;
+        List<DashboardData> page;
+        do {
+            page = dao.getPageAfter(startTime, endTime, afterTimestamp, afterId, READ_PAGE_SIZE);
+            for (DashboardData data : page) {
+                writer.add(data);
+            }
+            if (!page.isEmpty()) {
+                DashboardData last = page.get(page.size() - 1);
+                afterTimestamp = last.timestamp;
+                afterId = last.id;
+            }
+        } while (page.size() == READ_PAGE_SIZE);
+
+        if (writer.getRowCount() == 0) return 0;
+
+        // Named by first timestamp, so a run that dies before the delete rewrites the same file
+        File segment = new File(directory, SEGMENT_PREFIX + writer.getFirstTimestamp() + SEGMENT_SUFFIX);
+        writer.writeTo(segment);
+        dao.deleteDataInRange(startTime, endTime);
+        database.getSummaryCache().invalidate(startTime, endTime);
+        Log.d(TAG, "Wrote " + writer.getRowCount() + " samples to " + segment.getName()
+                + " (" + segment.length() + " bytes)");
+        return writer.getRowCount();
+    }
+
+    /**
+     * Stream archived samples with {@code startTime <= timestamp <= endTime}
+     * into {@code sink}, oldest first. Only segments overlapping the range are
+     * mapped.
+     *
+     * @return the number of samples delivered
+     */
+    public int readRange(long startTime, long endTime, Consumer<DashboardData> sink) {
+        int delivered = 0;
+        for (File file : listSegments()) {
+            try {
+                ArchiveSegmentReader reader = new ArchiveSegmentReader(file);
+                if (reader.getFirstTimestamp() > endTime) break;
+                delivered += reader.read(startTime, endTime, sink);
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading archive segment " + file.getName(), e);
+            }
+        }
+        return delivered;
+    }
+
+    public List<DashboardData> getDataInRange(long startTime, long endTime) {
+        List<DashboardData> data = new ArrayList<>();
+        readRange(startTime, endTime, data::add);
+        return data;
+    }
+
+    /** Samples across all segments; only the segment headers are read. */
+    public long getRowCount() {
+        long rows = 0;
+        for (File file : listSegments()) {
+            try {
+                rows += new ArchiveSegmentReader(file).getRowCount();
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading archive segment " + file.getName(), e);
+            }
+        }
+        return rows;
+    }
+
+    public long getSizeBytes() {
+        long size = 0;
+        for (File file : listSegments()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    // Oldest segment first
+    private List<File> listSegments() {
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) return new ArrayList<>();
+        Arrays.sort(files, Comparator.comparingLong(TelemetryArchive::segmentStart));
+        return Arrays.asList(files);
+    }
+
+    private static long segmentStart(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
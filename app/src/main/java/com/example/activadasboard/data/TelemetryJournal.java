@@ -0,0 +1,191 @@
+package com.example.activadasboard.data;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * On-disk journal of samples that are buffered in memory but not yet
+ * committed to SQLite, so a process death between batches loses nothing.
+ *
+ * Samples are appended to the current generation file and flushed to the OS
+ * one record at a time. When a batch is about to be committed the journal is
+ * rotated, and once the commit succeeds every generation up to the rotated
+ * one is deleted. Whatever is left on disk at startup was never committed and
+ * can be replayed with {@link #recover()}, which only ever returns files left
+ * by an earlier process.
+ *
+ * Records are fixed size: the timestamp, every numeric column of
+ * {@link ArchiveSegment} as a double, then the flag columns as a bit mask. A
+ * record torn by a crash mid-write is ignored. All methods block.
+ */
+public class TelemetryJournal {
+    private static final String TAG = "TelemetryJournal";
+    private static final int MAGIC = 0x41544A31; // "ATJ1"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".atj";
+    static final int RECORD_SIZE = 8 + ArchiveSegment.NUMERIC_COLUMNS.length * 8 + 4;
+
+    private final File directory;
+    private DataOutputStream out;
+    private int generation = -1; // Scanned from disk on first use
+    private int firstOwnGeneration = -1; // Files before this one were left by an earlier process
+
+    public TelemetryJournal(File directory) {
+        this.directory = directory;
+    }
+
+    public synchronized void append(DashboardData data) throws IOException {
+        if (out == null) {
+            out = open(currentGeneration());
+        }
+        out.writeLong(data.timestamp);
+        for (ArchiveSegment.NumericColumn column : ArchiveSegment.NUMERIC_COLUMNS) {
+            out.writeDouble(column.getter.get(data));
+        }
+        int flags = 0;
+        for (int i = 0; i < ArchiveSegment.FLAG_COLUMNS.length; i++) {
+            if (ArchiveSegment.FLAG_COLUMNS[i].getter.get(data)) {
+                flags |= 1 << i;
+            }
+        }
+        out.writeInt(flags);
+        // To the OS, not the disk: enough to survive the process being killed
+        out.flush();
+    }
+
+    /**
+     * Start a new generation for subsequent appends.
+     *
+     * @return the generation that was just closed, for {@link #discardThrough}
+     */
+    public synchronized int rotate() {
+        int closed = currentGeneration();
+        closeQuietly();
+        generation = closed + 1;
+        return closed;
+    }
+
+    /** Delete every generation up to and including {@code lastGeneration}. */
+    public synchronized void discardThrough(int lastGeneration) {
+        for (File file : listGenerations()) {
+            if (generationOf(file) <= lastGeneration && !file.delete()) {
+                Log.w(TAG, "Could not delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Read back every sample still on disk, oldest generation first. The
+     * files are kept until a later commit discards them.
+     */
+    public synchronized List<DashboardData> recover() {
+        List<DashboardData> recovered = new ArrayList<>();
+        for (File file : listGenerations()) {
+            if (generationOf(file) >= currentFirstOwnGeneration()) continue;
+            try {
+                readRecords(file, recovered);
+            } catch (IOException e) {
+                Log.e(TAG, "Skipping unreadable journal " + file, e);
+            }
+        }
+        return recovered;
+    }
+
+    public synchronized void close() {
+        closeQuietly();
+    }
+
+    private int currentGeneration() {
+        if (generation < 0) {
+            int latest = -1;
+            for (File file : listGenerations()) {
+                latest = Math.max(latest, generationOf(file));
+            }
+            // Never append to a file left by an earlier process; it's still to be recovered
+            generation = latest + 1;
+            firstOwnGeneration = generation;
+        }
+        return generation;
+    }
+
+    private int currentFirstOwnGeneration() {
+        currentGeneration();
+        return firstOwnGeneration;
+    }
+
+    private DataOutputStream open(int generation) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File file = new File(directory, PREFIX + generation + SUFFIX);
+        boolean isNew = !file.exists() || file.length() == 0;
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (isNew) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+        }
+        return stream;
+    }
+
+    private void readRecords(File file, List<DashboardData> sink) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a telemetry journal");
+            }
+            long records = (file.length() - 8) / RECORD_SIZE;
+            for (long i = 0; i < records; i++) {
+                DashboardData data = new DashboardData();
+                data.timestamp = in.readLong();
+                for (ArchiveSegment.NumericColumn column : ArchiveSegment.NUMERIC_COLUMNS) {
+                    column.setter.set(data, in.readDouble());
+                }
+                int flags = in.readInt();
+                for (int f = 0; f < ArchiveSegment.FLAG_COLUMNS.length; f++) {
+                    ArchiveSegment.FLAG_COLUMNS[f].setter.set(data, (flags & (1 << f)) != 0);
+                }
+                sink.add(data);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated journal header", e);
+        }
+    }
+
+    private File[] listGenerations() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> Integer.compare(generationOf(a), generationOf(b)));
+        return files;
+    }
+
+    private static int generationOf(File file) {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private void closeQuietly() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing journal", e);
+        }
+        out = null;
+    }
+}
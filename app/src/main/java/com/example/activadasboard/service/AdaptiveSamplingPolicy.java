@@ -0,0 +1,178 @@
+package com.example.activadasboard.service;
+
+import android.content.SharedPreferences;
+
+import java.util.Locale;
+
+/**
+ * Picks how often to sample the ESP8266 from what the scooter is doing.
+ *
+ * While speed or fuel level is changing we sample at the fast interval. Once
+ * consecutive samples agree, the interval grows by the back-off factor, up to
+ * the moving interval while the scooter is under way and up to the idle
+ * interval when it's parked. With the screen off nobody is watching the
+ * gauges, so the interval never drops below the screen-off interval.
+ *
+ * The effective rate is recorded so the saving over a fixed 1 Hz poll can be
+ * measured. Thread safe.
+ */
+public class AdaptiveSamplingPolicy {
+    // What the app did before this policy existed, used as the baseline for the saving
+    static final long BASELINE_INTERVAL_MS = 1000;
+
+    public static class Config {
+        private static final String KEY_FAST_INTERVAL = "fast_interval_ms";
+        private static final String KEY_MOVING_INTERVAL = "moving_interval_ms";
+        private static final String KEY_IDLE_INTERVAL = "idle_interval_ms";
+        private static final String KEY_SCREEN_OFF_INTERVAL = "screen_off_interval_ms";
+        private static final String KEY_BACKOFF_FACTOR = "backoff_factor";
+        private static final String KEY_SPEED_DELTA = "speed_delta_kmh";
+        private static final String KEY_FUEL_DELTA = "fuel_delta_percent";
+        private static final String KEY_MOVING_SPEED = "moving_speed_kmh";
+
+        public long fastIntervalMs = 500;       // While speed or fuel is changing
+        public long movingIntervalMs = 1000;    // Steady cruising
+        public long idleIntervalMs = 5000;      // Parked with nothing changing
+        public long screenOffIntervalMs = 3000; // Floor while the screen is off
+        public float backoffFactor = 1.5f;
+        public float speedDeltaKmh = 1f;        // A change at least this big counts as "changing"
+        public float fuelDeltaPercent = 0.5f;
+        public float movingSpeedKmh = 3f;       // Below this the scooter counts as parked
+
+        public static Config load(SharedPreferences preferences) {
+            Config config = new Config();
+            config.fastIntervalMs = preferences.getLong(KEY_FAST_INTERVAL, config.fastIntervalMs);
+            config.movingIntervalMs = preferences.getLong(KEY_MOVING_INTERVAL, config.movingIntervalMs);
+            config.idleIntervalMs = preferences.getLong(KEY_IDLE_INTERVAL, config.idleIntervalMs);
+            config.screenOffIntervalMs = preferences.getLong(KEY_SCREEN_OFF_INTERVAL, config.screenOffIntervalMs);
+            config.backoffFactor = preferences.getFloat(KEY_BACKOFF_FACTOR, config.backoffFactor);
+            config.speedDeltaKmh = preferences.getFloat(KEY_SPEED_DELTA, config.speedDeltaKmh);
+            config.fuelDeltaPercent = preferences.getFloat(KEY_FUEL_DELTA, config.fuelDeltaPercent);
+            config.movingSpeedKmh = preferences.getFloat(KEY_MOVING_SPEED, config.movingSpeedKmh);
+            return config.sanitized();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "fast=%dms moving=%dms idle=%dms screenOff=%dms backoff=%.2f speedDelta=%.1fkm/h fuelDelta=%.1f%% movingSpeed=%.1fkm/h",
+                fastIntervalMs, movingIntervalMs, idleIntervalMs, screenOffIntervalMs, backoffFactor,
+                speedDeltaKmh, fuelDeltaPercent, movingSpeedKmh);
+        }
+
+        // Keep the intervals ordered so a bad preference can't make the policy poll faster when idle
+        Config sanitized() {
+            fastIntervalMs = Math.max(100, fastIntervalMs);
+            movingIntervalMs = Math.max(fastIntervalMs, movingIntervalMs);
+            idleIntervalMs = Math.max(movingIntervalMs, idleIntervalMs);
+            screenOffIntervalMs = Math.max(fastIntervalMs, screenOffIntervalMs);
+            backoffFactor = Math.max(1f, backoffFactor);
+            return this;
+        }
+    }
+
+    private Config config;
+    private long intervalMs;
+    private boolean screenOn = true;
+    private boolean moving = false;
+    private boolean hasLastSample = false;
+    private double lastSpeed;
+    private double lastFuelPercentage;
+
+    // Effective rate bookkeeping, split by screen state
+    private long lastSampleTime = 0;
+    private long screenOnSamples = 0;
+    private long screenOnElapsedMs = 0;
+    private long screenOffSamples = 0;
+    private long screenOffElapsedMs = 0;
+
+    public AdaptiveSamplingPolicy(Config config) {
+        setConfig(config);
+    }
+
+    public synchronized Config getConfig() {
+        return config;
+    }
+
+    public synchronized void setConfig(Config config) {
+        this.config = config.sanitized();
+        this.intervalMs = this.config.fastIntervalMs;
+    }
+
+    public synchronized void setScreenOn(boolean screenOn) {
+        this.screenOn = screenOn;
+    }
+
+    /** Feed a sample; the interval adapts to how much it differs from the previous one. */
+    public synchronized void onSample(double speed, double fuelPercentage, long timestamp) {
+        moving = speed >= config.movingSpeedKmh;
+        if (hasLastSample) {
+            boolean changing = Math.abs(speed - lastSpeed) >= config.speedDeltaKmh
+                || Math.abs(fuelPercentage - lastFuelPercentage) >= config.fuelDeltaPercent;
+            if (changing) {
+                intervalMs = config.fastIntervalMs;
+            } else {
+                long ceiling = moving ? config.movingIntervalMs : config.idleIntervalMs;
+                intervalMs = Math.min(ceiling, (long) Math.ceil(intervalMs * config.backoffFactor));
+            }
+        }
+        hasLastSample = true;
+        lastSpeed = speed;
+        lastFuelPercentage = fuelPercentage;
+        recordSample(timestamp);
+    }
+
+    /** How long to wait before the next dashboard sample. */
+    public synchronized long getIntervalMs() {
+        return screenOn ? intervalMs : Math.max(intervalMs, config.screenOffIntervalMs);
+    }
+
+    /**
+     * How long to wait before resending navigation. The ESP's LCD shows it
+     * whether or not the phone screen is on, so only the vehicle state counts.
+     */
+    public synchronized long getNavigationIntervalMs(long minimumMs) {
+        return Math.max(minimumMs, intervalMs);
+    }
+
+    private void recordSample(long timestamp) {
+        if (lastSampleTime > 0 && timestamp > lastSampleTime) {
+            // Gaps longer than the idle interval are outages, not sampling choices
+            long elapsed = Math.min(timestamp - lastSampleTime, config.idleIntervalMs * 2);
+            if (screenOn) {
+                screenOnSamples++;
+                screenOnElapsedMs += elapsed;
+            } else {
+                screenOffSamples++;
+                screenOffElapsedMs += elapsed;
+            }
+        }
+        lastSampleTime = timestamp;
+    }
+
+    /** Samples per second actually taken, over the whole session. */
+    public synchronized double getEffectiveRate() {
+        long elapsed = screenOnElapsedMs + screenOffElapsedMs;
+        return elapsed == 0 ? 0 : (screenOnSamples + screenOffSamples) * 1000.0 / elapsed;
+    }
+
+    /** Fraction of the samples a fixed 1 Hz poll would have taken that were skipped. */
+    public synchronized double getSavedFraction() {
+        long elapsed = screenOnElapsedMs + screenOffElapsedMs;
+        if (elapsed == 0) return 0;
+        double baseline = (double) elapsed / BASELINE_INTERVAL_MS;
+        return 1.0 - (screenOnSamples + screenOffSamples) / baseline;
+    }
+
+    public synchronized String getStats() {
+        return String.format(Locale.US,
+            "interval=%dms state=%s screen=%s rate=%.2f/s (on %.2f/s, off %.2f/s) saved=%.0f%% vs 1Hz",
+            getIntervalMs(), moving ? "moving" : "parked", screenOn ? "on" : "off",
+            getEffectiveRate(), rate(screenOnSamples, screenOnElapsedMs),
+            rate(screenOffSamples, screenOffElapsedMs), getSavedFraction() * 100);
+    }
+
+    private static double rate(long samples, long elapsedMs) {
+        return elapsedMs == 0 ? 0 : samples * 1000.0 / elapsedMs;
+    }
+}
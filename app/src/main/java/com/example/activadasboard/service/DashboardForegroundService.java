@@ -21,6 +21,8 @@ import androidx.core.app.NotificationCompat;
 import com.example.activadasboard.MainActivity;
 import com.example.activadasboard.R;
 
+import java.util.Locale;
+
 public class DashboardForegroundService extends Service {
     private static final String TAG = "DashboardService";
     private static final String CHANNEL_ID = "DashboardServiceChannel";
@@ -40,6 +42,11 @@ public class DashboardForegroundService extends Service {
     private long lastNotificationTime = 0;
     private String lastNotificationText = "";
     private android.content.BroadcastReceiver screenStateReceiver;
+    private TelemetryBus.Subscription sampleSubscription;
+    // Written by the telemetry bus on the publishing thread, read by the notification refresh
+    private volatile double latestSpeed;
+    private volatile double latestFuelPercentage;
+    private volatile long latestSampleTime = 0;
 
     public static boolean isServiceRunning() {
         return isRunning;
@@ -143,6 +150,13 @@ public class DashboardForegroundService extends Service {
             }
         });
 
+        // Only copy two numbers per sample, so it's cheap enough to run on the publishing thread
+        sampleSubscription = esp8266Service.getTelemetryBus().subscribe("foregroundService", Runnable::run, sample -> {
+            latestSpeed = sample.speed;
+            latestFuelPercentage = sample.fuelPercentage;
+            latestSampleTime = sample.timestamp;
+        });
+
         // Ensure ESP8266 service is running with sticky connection
         esp8266Service.setStickyConnection(true);
         esp8266Service.connect();
@@ -157,6 +171,7 @@ public class DashboardForegroundService extends Service {
             public void run() {
                 if (isRunning) {
                     notificationUpdateCount = 0; // Reset counter periodically
+                    updateNotificationFromSample();
                     notificationHandler.postDelayed(this, NOTIFICATION_UPDATE_INTERVAL);
                 }
             }
@@ -165,9 +180,6 @@ public class DashboardForegroundService extends Service {
         // Schedule periodic service restart to ensure it stays alive
         schedulePeriodicServiceRestart();
 
-        // Schedule periodic WiFi connection check
-        scheduleWifiConnectionCheck();
-
         // Schedule periodic WiFi lock check
         scheduleWifiLockCheck();
 
@@ -212,48 +224,16 @@ public class DashboardForegroundService extends Service {
         }, 30 * 60 * 1000); // Restart every 30 minutes
     }
 
-    private void scheduleWifiConnectionCheck() {
-        serviceHandler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                if (isRunning) {
-                    // Check WiFi connection every 15 seconds
-                    Log.d(TAG, "Performing WiFi connection check");
-                    if (esp8266Service != null) {
-                        if (!esp8266Service.isConnected()) {
-                            Log.w(TAG, "WiFi connection lost, attempting reconnect");
-                            esp8266Service.connect();
-                        } else {
-                            Log.d(TAG, "WiFi connection is active");
-                        }
-                        
-                        // Force a connection check even if connected
-                        esp8266Service.connect();
-                    }
-                    
-                    // Schedule next WiFi check
-                    serviceHandler.postDelayed(this, 15000); // 15 seconds
-                }
-            }
-        }, 15000); // Start first check after 15 seconds
-    }
-
     private void scheduleWifiLockCheck() {
         serviceHandler.postDelayed(new Runnable() {
             @Override
             public void run() {
                 if (isRunning) {
-                    // Check if WiFi lock is still held every 30 seconds
-                    Log.d(TAG, "Checking WiFi lock status");
-                    if (esp8266Service != null) {
-                        // Force reconnection to ensure WiFi lock is maintained
-                        esp8266Service.connect();
-                        
-                        // Also ensure our service wake lock is held
-                        if (!wakeLock.isHeld()) {
-                            wakeLock.acquire();
-                            Log.d(TAG, "Service wake lock re-acquired");
-                        }
+                    // Reachability is tracked by Esp8266Service's network callback;
+                    // here we only make sure our own wake lock is still held
+                    if (!wakeLock.isHeld()) {
+                        wakeLock.acquire();
+                        Log.d(TAG, "Service wake lock re-acquired");
                     }
                     
                     // Schedule next WiFi lock check
@@ -271,6 +251,11 @@ public class DashboardForegroundService extends Service {
         notificationHandler.removeCallbacksAndMessages(null);
         serviceHandler.removeCallbacksAndMessages(null);
 
+        if (sampleSubscription != null) {
+            sampleSubscription.unsubscribe();
+            sampleSubscription = null;
+        }
+
         if (wakeLock != null && wakeLock.isHeld()) {
             wakeLock.release();
         }
@@ -348,6 +333,10 @@ public class DashboardForegroundService extends Service {
     public void onTrimMemory(int level) {
         super.onTrimMemory(level);
         Log.w(TAG, "Memory trim level: " + level + ", but keeping service alive");
+        // Don't risk losing buffered samples if the process gets killed
+        if (esp8266Service != null) {
+            esp8266Service.flushPendingData();
+        }
     }
 
     @Nullable
@@ -393,6 +382,13 @@ public class DashboardForegroundService extends Service {
             .build();
     }
 
+    private void updateNotificationFromSample() {
+        // Skip if the last sample is stale; the connection listener reports that state
+        if (System.currentTimeMillis() - latestSampleTime > NOTIFICATION_UPDATE_INTERVAL) return;
+        updateNotification(String.format(Locale.getDefault(), "Connected - %.0f km/h, fuel %.0f%%",
+                latestSpeed, latestFuelPercentage));
+    }
+
     private void updateNotification(String status) {
         if (!isRunning) return;
 
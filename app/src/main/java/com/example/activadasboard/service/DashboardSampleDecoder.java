@@ -0,0 +1,347 @@
+package com.example.activadasboard.service;
+
+import com.example.activadasboard.data.DashboardSample;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Single-pass decoder for the ESP8266 /dashboard-data payload. It scans the
+ * raw UTF-8 bytes and writes the fields it knows straight into a
+ * {@link DashboardSample}: keys are matched against byte tables, numbers are
+ * parsed from the digits, and string, object and array values are skipped. In
+ * the common case no Strings or maps are created.
+ *
+ * Not thread-safe; each reader thread should own its decoder.
+ */
+public class DashboardSampleDecoder {
+    private static final int SPEED = 0;
+    private static final int FUEL_PERCENTAGE = 1;
+    private static final int FUEL_LITERS = 2;
+    private static final int INSTANT_ECONOMY = 3;
+    private static final int ODOMETER = 4;
+    private static final int TRIP1 = 5;
+    private static final int TRIP1_FUEL = 6;
+    private static final int TRIP1_AVERAGE = 7;
+    private static final int TRIP1_STARTED = 8;
+    private static final int TRIP2 = 9;
+    private static final int TRIP2_FUEL = 10;
+    private static final int TRIP2_AVERAGE = 11;
+    private static final int TRIP2_STARTED = 12;
+    private static final int FUEL_FILL_AVERAGE = 13;
+    private static final int FUEL_FILL_DISTANCE = 14;
+    private static final int LAST_FUEL_FILL = 15;
+    private static final int FUEL_FILL_STARTED = 16;
+    private static final int FUEL_USED_SINCE_FILL = 17;
+    private static final int RESET_COUNT = 18;
+    private static final int HAS_NAVIGATION = 19;
+    private static final int LCD_AUTO_RESTART = 20;
+
+    // Indexed by the constants above; must match fillDashboardJson() in the firmware
+    private static final byte[][] KEYS = {
+        ascii("speed"),
+        ascii("fuelPercentage"),
+        ascii("fuelLiters"),
+        ascii("instantEconomy"),
+        ascii("odometer"),
+        ascii("trip1"),
+        ascii("trip1Fuel"),
+        ascii("trip1Average"),
+        ascii("trip1Started"),
+        ascii("trip2"),
+        ascii("trip2Fuel"),
+        ascii("trip2Average"),
+        ascii("trip2Started"),
+        ascii("fuelFillAverage"),
+        ascii("fuelFillDistance"),
+        ascii("lastFuelFill"),
+        ascii("fuelFillStarted"),
+        ascii("fuelUsedSinceFill"),
+        ascii("resetCount"),
+        ascii("has_navigation"),
+        ascii("lcd_auto_restart"),
+    };
+
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] NAN = ascii("NaN");
+    private static final byte[] INFINITY = ascii("Infinity");
+
+    // Every power of ten up to 1e22 is exact in a double
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final int MAX_NESTING = 32;
+
+    private byte[] readBuffer = new byte[1024];
+    private byte[] in;
+    private int pos;
+    private int end;
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Read {@code stream} to the end into a reused buffer and decode it. */
+    public void decode(InputStream stream, DashboardSample sample) throws IOException {
+        int length = 0;
+        int n;
+        while ((n = stream.read(readBuffer, length, readBuffer.length - length)) != -1) {
+            length += n;
+            if (length == readBuffer.length) {
+                readBuffer = Arrays.copyOf(readBuffer, readBuffer.length * 2);
+            }
+        }
+        decode(readBuffer, 0, length, sample);
+    }
+
+    /**
+     * Decode one JSON object into {@code sample}. Fields missing from the
+     * payload are left at zero/false, like optDouble(key, 0.0), and the
+     * timestamp is set to the time of decoding.
+     *
+     * @throws IOException if the payload is not a well-formed JSON object
+     */
+    public void decode(byte[] data, int offset, int length, DashboardSample sample) throws IOException {
+        in = data;
+        pos = offset;
+        end = offset + length;
+        sample.reset();
+        sample.timestamp = System.currentTimeMillis();
+
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            expect('"');
+            int keyStart = pos;
+            int keyEnd = skipString();
+            int field = lookupKey(keyStart, keyEnd);
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            readValue(field, sample);
+            skipWhitespace();
+            byte c = next();
+            if (c == ',') continue;
+            if (c == '}') return;
+            throw malformed("Expected ',' or '}'");
+        }
+    }
+
+    private void readValue(int field, DashboardSample sample) throws IOException {
+        byte c = peek();
+        switch (c) {
+            case '"':
+                pos++;
+                skipString();
+                return;
+            case '{':
+            case '[':
+                skipNested();
+                return;
+            case 't':
+                expectLiteral(TRUE);
+                setField(field, 1, sample);
+                return;
+            case 'f':
+                expectLiteral(FALSE);
+                setField(field, 0, sample);
+                return;
+            case 'n':
+                expectLiteral(NULL);
+                return;
+            case 'N':
+                // ArduinoJson writes NaN for an uninitialised float; treat it as missing
+                expectLiteral(NAN);
+                return;
+            case 'I':
+                expectLiteral(INFINITY);
+                return;
+            default:
+                setField(field, readNumber(), sample);
+        }
+    }
+
+    private static void setField(int field, double value, DashboardSample sample) {
+        switch (field) {
+            case SPEED: sample.speed = value; break;
+            case FUEL_PERCENTAGE: sample.fuelPercentage = value; break;
+            case FUEL_LITERS: sample.fuelLiters = value; break;
+            case INSTANT_ECONOMY: sample.instantEconomy = value; break;
+            case ODOMETER: sample.odometer = value; break;
+            case TRIP1: sample.trip1 = value; break;
+            case TRIP1_FUEL: sample.trip1Fuel = value; break;
+            case TRIP1_AVERAGE: sample.trip1Average = value; break;
+            case TRIP1_STARTED: sample.trip1Started = value != 0; break;
+            case TRIP2: sample.trip2 = value; break;
+            case TRIP2_FUEL: sample.trip2Fuel = value; break;
+            case TRIP2_AVERAGE: sample.trip2Average = value; break;
+            case TRIP2_STARTED: sample.trip2Started = value != 0; break;
+            case FUEL_FILL_AVERAGE: sample.fuelFillAverage = value; break;
+            case FUEL_FILL_DISTANCE: sample.fuelFillDistance = value; break;
+            case LAST_FUEL_FILL: sample.lastFuelFill = value; break;
+            case FUEL_FILL_STARTED: sample.fuelFillStarted = value != 0; break;
+            case FUEL_USED_SINCE_FILL: sample.fuelUsedSinceFill = value; break;
+            case RESET_COUNT: sample.resetCount = (int) value; break;
+            case HAS_NAVIGATION: sample.hasNavigation = value != 0; break;
+            case LCD_AUTO_RESTART: sample.lcdAutoRestart = value != 0; break;
+            default: break; // Unknown key, e.g. the nav_* fields
+        }
+    }
+
+    private int lookupKey(int start, int endExclusive) {
+        int length = endExclusive - start;
+        for (int i = 0; i < KEYS.length; i++) {
+            byte[] key = KEYS[i];
+            if (key.length != length) continue;
+            int j = 0;
+            while (j < length && key[j] == in[start + j]) {
+                j++;
+            }
+            if (j == length) return i;
+        }
+        return -1;
+    }
+
+    private double readNumber() throws IOException {
+        int start = pos;
+        boolean negative = false;
+        if (pos < end && in[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        int integerStart = pos;
+        while (pos < end && isDigit(in[pos])) {
+            if (digits < MAX_EXACT_DIGITS) {
+                mantissa = mantissa * 10 + (in[pos] - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exact = false;
+            }
+            pos++;
+        }
+        if (pos == integerStart) {
+            throw malformed("Expected a value");
+        }
+        if (pos < end && in[pos] == '.') {
+            pos++;
+            while (pos < end && isDigit(in[pos])) {
+                if (digits < MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (in[pos] - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+                pos++;
+            }
+        }
+        if (pos < end && (in[pos] == 'e' || in[pos] == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (in[pos] == '-' || in[pos] == '+')) {
+                negativeExponent = in[pos] == '-';
+                pos++;
+            }
+            int value = 0;
+            while (pos < end && isDigit(in[pos])) {
+                if (value < 10000) value = value * 10 + (in[pos] - '0');
+                pos++;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        double result;
+        if (exact && exponent >= -22 && exponent <= 22) {
+            // Mantissa and power of ten are both exact, so one operation rounds correctly
+            result = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+            if (negative) result = -result;
+        } else {
+            // Long or extreme numbers; the firmware never sends these
+            result = Double.parseDouble(new String(in, start, pos - start, StandardCharsets.US_ASCII));
+        }
+        return result;
+    }
+
+    // Returns the index of the closing quote and leaves pos just past it
+    private int skipString() throws IOException {
+        while (pos < end) {
+            byte c = in[pos++];
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return pos - 1;
+            }
+        }
+        throw malformed("Unterminated string");
+    }
+
+    private void skipNested() throws IOException {
+        int depth = 0;
+        while (pos < end) {
+            byte c = in[pos++];
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                if (++depth > MAX_NESTING) throw malformed("Nesting too deep");
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) return;
+            }
+        }
+        throw malformed("Unterminated value");
+    }
+
+    private void expectLiteral(byte[] literal) throws IOException {
+        if (end - pos < literal.length) throw malformed("Truncated literal");
+        for (byte b : literal) {
+            if (in[pos++] != b) throw malformed("Unexpected literal");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte c = in[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return;
+            pos++;
+        }
+    }
+
+    private byte peek() throws IOException {
+        if (pos >= end) throw malformed("Unexpected end of payload");
+        return in[pos];
+    }
+
+    private byte next() throws IOException {
+        byte c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (next() != expected) throw malformed("Expected '" + expected + "'");
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("Malformed dashboard payload: " + message + " at offset " + pos);
+    }
+}
@@ -20,6 +20,10 @@ public interface Esp8266Api {
     @GET("dashboard-data")
     Call<ResponseBody> getDashboardData();
 
+    // Samples the ESP kept while nobody was polling, see HistoryBackfill
+    @GET("history")
+    Call<ResponseBody> getHistory(@Query("maxAge") long maxAgeMs);
+
     @POST("reset-trip/{tripNum}")
     Call<ResponseBody> resetTrip(@Path("tripNum") int tripNum);
 
@@ -48,6 +52,10 @@ public interface Esp8266Api {
 
     @POST("navigation")
     Call<ResponseBody> sendNavigationData(@Body RequestBody data);
+
+    // Compact step/delta frames, see NavigationFrameEncoder
+    @POST("navigation/frame")
+    Call<ResponseBody> sendNavigationFrame(@Body RequestBody frame);
     
     @POST("lcd/restart")
     Call<ResponseBody> restartLcd();
@@ -4,24 +4,33 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.net.NetworkInfo;
+import android.content.SharedPreferences;
+import android.net.Network;
 import android.net.wifi.WifiConfiguration;
-import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
 
 import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.net.SocketFactory;
 
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -46,8 +55,11 @@ import retrofit2.Response;
 
 import com.example.activadasboard.data.AppDatabase;
 import com.example.activadasboard.data.DashboardData;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import com.example.activadasboard.data.DashboardRollup;
+import com.example.activadasboard.data.DashboardSample;
+import com.example.activadasboard.data.DashboardWriteBuffer;
+import com.example.activadasboard.data.TelemetryArchive;
+import com.example.activadasboard.data.TelemetryJournal;
 
 public class Esp8266Service {
     private static final String TAG = "Esp8266Service";
@@ -57,22 +69,42 @@ public class Esp8266Service {
     private static final int CONNECTION_TIMEOUT = 60000; // Increased to 60 seconds
     private static final int MAX_RETRIES = 5;
     private static final int RETRY_DELAY = 5000; // Increased to 5 seconds
-    private static final int CONNECTION_CHECK_INTERVAL = 5000; // Reduced to 5 seconds for faster detection
+    private static final int HOUSEKEEPING_INTERVAL = 30000; // Lock upkeep and stats logging only
+    // With samples every second, this long without a good exchange means the ESP is gone
+    private static final long LIVENESS_TIMEOUT = 10000;
+    // How long stopping may block on the last database write; well short of an ANR
+    private static final long STOP_FLUSH_TIMEOUT = 2000;
     private static final int SOCKET_TIMEOUT = 30000; // Increased to 30 seconds
-    private static final int CONNECT_TIMEOUT = 60; // Increased to 60 seconds
-    private static final int READ_TIMEOUT = 60; // Increased to 60 seconds
-    private static final int WRITE_TIMEOUT = 60; // Increased to 60 seconds
     private static final int RECONNECT_COOLDOWN = 10000; // Increased to 10 seconds
-    private static final int PING_TIMEOUT = 10000; // Increased to 10 seconds
-    private static final int NAVIGATION_UPDATE_INTERVAL = 1000;
-    private static final int MIN_REQUEST_INTERVAL = 1000; // Increased to 1 second
+    private static final int NAVIGATION_UPDATE_INTERVAL = 1000; // Floor; AdaptiveSamplingPolicy backs off from here
+    private static final int MIN_REQUEST_INTERVAL = 500; // Hard floor for polling; the policy picks the actual interval
+    private static final String SAMPLING_PREF_NAME = "sampling_policy";
+    private static final String ESP_HOST = "192.168.4.1";
+    private static final int STREAM_PORT = 81;
+    private static final int STREAM_RETRY_INTERVAL = 15000; // Retry the stream every 15 seconds while polling
+    private static final int WORKER_THREADS = 3;
+    private static final int MAX_QUEUED_TASKS = 32;
+    private static final int COMMAND_ATTEMPTS = 3; // Control commands are idempotent, so a lost reply is retried
+    private static final int WRITE_BATCH_SIZE = 30; // Commit every 30 samples...
+    private static final int WRITE_FLUSH_INTERVAL = 10000; // ...or every 10 seconds, whichever comes first
+    private static final int BACKFILL_ATTEMPTS = 2;
+    private static final String JOURNAL_DIR = "telemetry_journal";
+    private static final int RETENTION_PRUNE_INTERVAL = 60 * 60 * 1000; // Archive old samples once an hour
+    // Raw samples older than the archive age live in TelemetryArchive; summaries are served from the rollups
+    private static final long MINUTE_ROLLUP_RETENTION_PERIOD = 30 * 24 * 60 * 60 * 1000L; // Hour/day rollups are kept
 
     // Add background update handler
     private final Handler backgroundHandler;
     private final HandlerThread backgroundThread;
     private boolean isDashboardUpdateRunning = false;
     private boolean isNavigationUpdateRunning = false;
-    private JSONObject lastNavigationData = null;
+    private volatile NavigationFrameEncoder.Update lastNavigationUpdate = null;
+    private final NavigationFrameEncoder navigationEncoder = new NavigationFrameEncoder();
+    private long navigationFramesSent = 0;
+    private long navigationFramesSkipped = 0;
+    private long navigationBytesSent = 0;
+    private TelemetryStream telemetryStream;
+    private long lastStreamAttempt = 0;
 
     // Singleton instance
     private static volatile Esp8266Service INSTANCE = null;
@@ -81,20 +113,47 @@ public class Esp8266Service {
     private final Context appContext;
     private final WifiManager wifiManager;
     private final Handler handler;
-    private final OkHttpClient client;
-    private final Esp8266Api api;
+    private final OkHttpClient baseClient;
+    private final EspConnectionMetrics connectionMetrics = new EspConnectionMetrics();
+    // One request on the ESP at a time, polls included
+    private final EspRequestGate requestGate = new EspRequestGate();
+    private volatile OkHttpClient client;
+    private volatile Esp8266Api api;
+    private EspNetworkMonitor networkMonitor;
     private final AppDatabase database;
-    private final ExecutorService databaseExecutor;
+    private final EspTaskScheduler scheduler;
+    private final EspCommandQueue commands;
+    private final DashboardWriteBuffer writeBuffer;
+    private final TelemetryArchive archive;
+    private final Runnable retentionPruner;
+    private final DashboardSampleDecoder pollDecoder = new DashboardSampleDecoder();
+    private final DashboardSample pollSample = new DashboardSample();
+    // Per-stage latency; histograms used on the sample path are looked up once here
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final LatencyHistogram statusLatency = metrics.histogram("esp.status");
+    private final LatencyHistogram dashboardGetLatency = metrics.histogram("dashboard.get");
+    private final LatencyHistogram dashboardParseLatency = metrics.histogram("dashboard.parse");
+    private final LatencyHistogram deliverLatency = metrics.histogram("sample.deliver");
+    private final LatencyHistogram dbFlushLatency = metrics.histogram("db.flush");
+    private final AtomicLong polledSamples = metrics.counter("dashboard.samples");
+    private final AtomicLong pollFailures = metrics.counter("dashboard.failures");
+    private final AtomicLong streamedSamples = metrics.counter("stream.samples");
+    private final AtomicLong dbRowsWritten = metrics.counter("db.rows");
+    private final AtomicLong gapsDetected = metrics.counter("gaps.detected");
+    private final AtomicLong backfilledRows = metrics.counter("gaps.backfilled_rows");
+    private final Object gapLock = new Object();
+    private DashboardData lastPersisted; // Newest row handed to the write buffer, guarded by gapLock
+    private final TelemetryBus telemetryBus = new TelemetryBus(metrics);
+    private final AdaptiveSamplingPolicy samplingPolicy;
     private WifiManager.WifiLock wifiLock;
     private PowerManager.WakeLock wifiWakeLock;
     private PowerManager.WakeLock cpuWakeLock;
-    private BroadcastReceiver wifiStateReceiver;
     private BroadcastReceiver screenStateReceiver;
-    private Runnable connectionChecker;
+    private Runnable housekeeping;
+    private Runnable reconnectRunnable;
     private OnConnectionListener connectionListener;
     private OnDataListener dataListener;
-    private boolean isConnected = false;
-    private boolean isReconnecting = false;
+    private volatile boolean isReconnecting = false;
     private boolean isStickyConnection = true;
     private boolean isWifiLockEnabled = true;
     private long lastReconnectAttempt = 0;
@@ -102,9 +161,6 @@ public class Esp8266Service {
     private static long lastDashboardRequestTime = 0;
     private static long lastNavigationUpdateTime = 0;
     private static final int WIFI_LOCK_TIMEOUT = 10 * 60 * 1000; // 10 minutes
-    private static final int PING_INTERVAL = 5000; // 5 seconds
-    private Handler pingHandler;
-    private Runnable pingRunnable;
 
     public interface OnConnectionListener {
         void onConnected();
@@ -112,8 +168,8 @@ public class Esp8266Service {
         void onError(String error);
     }
 
+    // Fetch errors only; live samples are published on getTelemetryBus()
     public interface OnDataListener {
-        void onDashboardData(JSONObject data);
         void onError(String error);
     }
 
@@ -139,44 +195,62 @@ public class Esp8266Service {
         this.wifiManager = (WifiManager) appContext.getSystemService(Context.WIFI_SERVICE);
         this.handler = new Handler(Looper.getMainLooper());
         this.database = AppDatabase.getDatabase(appContext);
-        this.databaseExecutor = Executors.newSingleThreadExecutor();
+        this.scheduler = new EspTaskScheduler("Esp8266Worker", WORKER_THREADS, MAX_QUEUED_TASKS);
+        this.commands = new EspCommandQueue(() -> api, handler, succeeded -> {
+            if (succeeded) {
+                onExchangeSucceeded();
+            } else {
+                onExchangeFailed();
+            }
+        });
+        this.writeBuffer = new DashboardWriteBuffer(database,
+            new TelemetryJournal(new File(appContext.getFilesDir(), JOURNAL_DIR)), WRITE_BATCH_SIZE);
+        this.archive = new TelemetryArchive(appContext);
+        SharedPreferences samplingPreferences = appContext.getSharedPreferences(SAMPLING_PREF_NAME, Context.MODE_PRIVATE);
+        this.samplingPolicy = new AdaptiveSamplingPolicy(AdaptiveSamplingPolicy.Config.load(samplingPreferences));
 
         // Initialize background thread
         backgroundThread = new HandlerThread("Esp8266UpdateThread");
         backgroundThread.start();
         backgroundHandler = new Handler(backgroundThread.getLooper());
-        
-        // Initialize ping handler
-        pingHandler = new Handler(Looper.getMainLooper());
-        pingRunnable = new Runnable() {
+
+        // Retention pruning runs on its own slow schedule rather than after every insert
+        retentionPruner = new Runnable() {
             @Override
             public void run() {
-                if (isStickyConnection && isConnected) {
-                    // Send a ping to keep the connection alive
-                    pingEsp8266();
-                }
-                pingHandler.postDelayed(this, PING_INTERVAL);
+                scheduler.submitUnique("pruneOldData", () -> {
+                    long now = System.currentTimeMillis();
+                    int archived = archive.archiveOldData();
+                    database.dashboardDao().deleteOldRollups(DashboardRollup.MINUTE, now - MINUTE_ROLLUP_RETENTION_PERIOD);
+                    Log.d(TAG, "Archived " + archived + " dashboard samples older than " + archive.getArchiveAgeDays() + " days");
+                });
+                backgroundHandler.postDelayed(this, RETENTION_PRUNE_INTERVAL);
             }
         };
+        backgroundHandler.post(retentionPruner);
 
-        // Initialize OkHttpClient with longer timeouts
-        OkHttpClient.Builder builder = new OkHttpClient.Builder()
-            .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
-            .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
-            .writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS)
-            .retryOnConnectionFailure(true); // Enable automatic retries
-        
-        this.client = builder.build();
-        
-        Retrofit retrofit = new Retrofit.Builder()
-            .baseUrl(ESP_BASE_URL)
-            .client(client)
-            .build();
+        // Commit whatever the last process journaled but never wrote, then take the newest row as
+        // the baseline for spotting a gap when samples resume
+        scheduler.submit("recoverJournal", () -> {
+            if (writeBuffer.recover() > 0) {
+                flushWriteBuffer();
+            }
+            DashboardData latest = database.dashboardDao().getLatestData();
+            synchronized (gapLock) {
+                if (lastPersisted == null) {
+                    lastPersisted = latest;
+                }
+            }
+        });
         
-        this.api = retrofit.create(Esp8266Api.class);
+        // All requests share one base client; bindToNetwork() derives the one bound to the ESP network.
+        // Derived clients share its pool, dispatcher, request gate and metrics.
+        this.baseClient = EspHttpClient.create(connectionMetrics, requestGate);
+        bindToNetwork(null);
 
         // Initialize wake locks
         PowerManager powerManager = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+        samplingPolicy.setScreenOn(powerManager.isInteractive());
         wifiWakeLock = powerManager.newWakeLock(
             PowerManager.PARTIAL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP,
             "ActivaDashboard:WifiLock"
@@ -195,81 +269,40 @@ public class Esp8266Service {
         // Acquire WiFi lock immediately
         wifiLock.acquire();
 
-        // Initialize connection checker with better error handling
-        connectionChecker = new Runnable() {
+        // Reachability is event driven: the network callback reports the access point coming and
+        // going, and liveness is taken from the samples and responses we already exchange
+        networkMonitor = new EspNetworkMonitor(appContext, ESP_HOST, LIVENESS_TIMEOUT, handler,
+            this::onNetworkStateChanged);
+
+        // Housekeeping only - keeps the locks held and logs worker stats, never touches the network
+        housekeeping = new Runnable() {
             @Override
             public void run() {
-                if (!isConnected || isReconnecting) {
-                    // Try to reconnect if not connected
-                    if (!isReconnecting) {
-                        Log.d(TAG, "Connection checker: attempting reconnect");
-                        connect();
-                    }
-                } else {
-                    // Check if still connected to ESP8266 network
-                    verifyConnection();
-                }
-                
-                // Ensure wake locks are held
                 if (isStickyConnection) {
                     if (!wifiWakeLock.isHeld()) {
                         wifiWakeLock.acquire(WIFI_LOCK_TIMEOUT);
-                        Log.d(TAG, "Connection checker: re-acquired WiFi wake lock");
+                        Log.d(TAG, "Housekeeping: re-acquired WiFi wake lock");
                     }
                     if (!cpuWakeLock.isHeld()) {
                         cpuWakeLock.acquire();
-                        Log.d(TAG, "Connection checker: re-acquired CPU wake lock");
+                        Log.d(TAG, "Housekeeping: re-acquired CPU wake lock");
                     }
-                    if (!wifiLock.isHeld()) {
+                    if (isWifiLockEnabled && !wifiLock.isHeld()) {
                         wifiLock.acquire();
-                        Log.d(TAG, "Connection checker: re-acquired WiFi lock");
+                        Log.d(TAG, "Housekeeping: re-acquired WiFi lock");
                     }
                 }
-                
-                // Schedule next check
-                handler.postDelayed(this, CONNECTION_CHECK_INTERVAL);
-            }
-        };
-
-        // Initialize WiFi state receiver with better reconnection logic
-        wifiStateReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(intent.getAction())) {
-                    NetworkInfo networkInfo = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
-                    if (networkInfo != null) {
-                        if (networkInfo.isConnected()) {
-                            WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-                            if (wifiInfo != null) {
-                                String ssid = wifiInfo.getSSID();
-                                if (ssid != null) {
-                                    ssid = ssid.replace("\"", "");
-                                    Log.d(TAG, "Connected to WiFi network: " + ssid);
-                                    
-                                    if (ssid.equals(ESP_SSID)) {
-                                        Log.d(TAG, "Connected to ESP8266 network");
-                                        if (!isConnected && !isReconnecting) {
-                                            connect();
-                                        }
-                                    } else if (isStickyConnection && isWifiLockEnabled) {
-                                        // If we're not on the ESP network but sticky connection is enabled,
-                                        // try to connect to ESP network (only if WiFi lock is enabled)
-                                        Log.d(TAG, "Not on ESP network, but WiFi lock is enabled - attempting to reconnect");
-                                        connectToEspNetwork();
-                                    } else if (!isWifiLockEnabled) {
-                                        Log.d(TAG, "WiFi lock disabled - allowing other WiFi connections");
-                                    }
-                                }
-                            }
-                        } else if (isStickyConnection && isWifiLockEnabled) {
-                            // WiFi disconnected, try to reconnect if sticky and WiFi lock is enabled
-                            Log.d(TAG, "WiFi disconnected, attempting to reconnect to ESP network");
-                            connectToEspNetwork();
-                        } else if (!isWifiLockEnabled) {
-                            Log.d(TAG, "WiFi disconnected, but WiFi lock is disabled - allowing manual connection");
-                        }
-                    }
+                Log.d(TAG, "Connection: " + networkMonitor.describe());
+                Log.d(TAG, "Sampling: " + samplingPolicy.getStats());
+                Log.d(TAG, "Navigation: " + getNavigationStats());
+                Log.d(TAG, "Scheduler: " + scheduler.getStats());
+                Log.d(TAG, "Commands: " + commands.getStats());
+                Log.d(TAG, "HTTP: " + connectionMetrics.getStats());
+                if (requestGate.getMaxInFlight() > 1) {
+                    Log.e(TAG, "Overlapping ESP requests: " + requestGate.getMaxInFlight() + " at once");
                 }
+                Log.d(TAG, "Telemetry bus: " + telemetryBus.getStats());
+                handler.postDelayed(this, HOUSEKEEPING_INTERVAL);
             }
         };
 
@@ -279,35 +312,20 @@ public class Esp8266Service {
             public void onReceive(Context context, Intent intent) {
                 if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
                     Log.d(TAG, "Screen turned off, ensuring WiFi connection");
+                    // Nobody is watching the gauges; sample less often until the screen comes back
+                    samplingPolicy.setScreenOn(false);
                     // Screen turned off, ensure WiFi connection is maintained
                     ensureWifiConnection();
                     
-                    // Force immediate reconnection attempt
-                    if (!isConnected) {
+                    if (!isConnected()) {
                         Log.d(TAG, "Not connected when screen off, forcing immediate reconnect");
                         connect();
                     }
-                    
-                    // Schedule additional connection checks (only if WiFi lock is enabled)
-                    if (isWifiLockEnabled) {
-                        handler.postDelayed(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (isStickyConnection && !isConnected && isWifiLockEnabled) {
-                                    Log.d(TAG, "Screen off - periodic connection check");
-                                    connect();
-                                    handler.postDelayed(this, 10000); // Check every 10 seconds
-                                }
-                            }
-                        }, 10000);
-                    } else {
-                        Log.d(TAG, "WiFi lock disabled - skipping periodic connection checks");
-                    }
-                    
                 } else if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
                     Log.d(TAG, "Screen turned on, checking connection");
+                    samplingPolicy.setScreenOn(true);
                     // Screen turned on, check connection
-                    if (!isConnected) {
+                    if (!isConnected()) {
                         connect();
                     }
                     
@@ -325,24 +343,14 @@ public class Esp8266Service {
             }
         };
 
-        // Register the receivers for more WiFi states
-        IntentFilter wifiFilter = new IntentFilter();
-        wifiFilter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
-        wifiFilter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
-        wifiFilter.addAction(WifiManager.SUPPLICANT_CONNECTION_CHANGE_ACTION);
-        appContext.registerReceiver(wifiStateReceiver, wifiFilter);
-
         // Register screen state receiver
         IntentFilter screenFilter = new IntentFilter();
         screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
         screenFilter.addAction(Intent.ACTION_SCREEN_ON);
         appContext.registerReceiver(screenStateReceiver, screenFilter);
 
-        // Start connection checker
-        startConnectionChecker();
-        
-        // Start ping mechanism
-        pingHandler.post(pingRunnable);
+        networkMonitor.start();
+        startHousekeeping();
     }
 
     // Public singleton getter
@@ -362,10 +370,6 @@ public class Esp8266Service {
         stopNavigationUpdates();
         backgroundThread.quitSafely();
         
-        if (pingHandler != null && pingRunnable != null) {
-            pingHandler.removeCallbacks(pingRunnable);
-        }
-        
         if (wifiWakeLock != null && wifiWakeLock.isHeld()) {
             wifiWakeLock.release();
         }
@@ -379,13 +383,6 @@ public class Esp8266Service {
         }
         
         if (!isStickyConnection) {
-            if (wifiStateReceiver != null) {
-                try {
-                    appContext.unregisterReceiver(wifiStateReceiver);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error unregistering WiFi receiver", e);
-                }
-            }
             if (screenStateReceiver != null) {
                 try {
                     appContext.unregisterReceiver(screenStateReceiver);
@@ -393,11 +390,48 @@ public class Esp8266Service {
                     Log.e(TAG, "Error unregistering screen state receiver", e);
                 }
             }
-            handler.removeCallbacks(connectionChecker);
+            handler.removeCallbacks(housekeeping);
+            cancelReconnect();
             disconnect();
+            networkMonitor.stop();
         }
         
-        databaseExecutor.shutdown();
+        // Queued before cancelAll() so it can't be cancelled, and waited for so it happens
+        flushPendingDataAndWait();
+        // Keep the workers alive - the singleton is reused when the service restarts
+        scheduler.cancelAll();
+    }
+
+    /**
+     * Commit any buffered samples now. Called on service stop and when the
+     * system asks us to trim memory.
+     */
+    public void flushPendingData() {
+        if (writeBuffer.size() == 0) return;
+        scheduler.submit("flushDashboardData", this::flushWriteBuffer);
+    }
+
+    /**
+     * Commit buffered samples on a worker and wait up to
+     * {@link #STOP_FLUSH_TIMEOUT} for it. Whatever misses the deadline is still
+     * in the journal and is recovered on the next start.
+     */
+    private void flushPendingDataAndWait() {
+        if (writeBuffer.size() == 0) return;
+        Future<?> flush = scheduler.submit("flushDashboardData", this::flushWriteBuffer);
+        if (flush == null) {
+            Log.e(TAG, "Could not queue final flush; " + writeBuffer.size() + " samples left to the journal");
+            return;
+        }
+        try {
+            flush.get(STOP_FLUSH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Log.e(TAG, "Final flush still running after " + STOP_FLUSH_TIMEOUT + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Final flush failed", e);
+        }
     }
 
     private OnConnectionListener getConnectionListener() {
@@ -439,9 +473,7 @@ public class Esp8266Service {
         }
 
         // Check if already connected to ESP network
-        WifiInfo currentWifi = wifiManager.getConnectionInfo();
-        String currentSsid = currentWifi != null ? currentWifi.getSSID().replace("\"", "") : "";
-        if (ESP_SSID.equals(currentSsid)) {
+        if (networkMonitor.getNetwork() != null) {
             Log.d(TAG, "Already connected to ESP network");
             return;
         }
@@ -536,7 +568,9 @@ public class Esp8266Service {
     }
 
     public void connect() {
-        if (isConnected) {
+        networkMonitor.start();
+
+        if (isConnected()) {
             if (getConnectionListener() != null) {
                 handler.post(() -> getConnectionListener().onConnected());
             }
@@ -550,8 +584,8 @@ public class Esp8266Service {
 
         isReconnecting = true;
 
-        // Run connection in background thread
-        new Thread(() -> {
+        // Run connection on the shared scheduler
+        Future<?> connectTask = scheduler.submitUnique("connect", () -> {
             try {
                 // Acquire wake locks
                 if (!wifiWakeLock.isHeld()) {
@@ -567,46 +601,33 @@ public class Esp8266Service {
                 // Disable WiFi power saving
                 disableWifiPowerSave();
 
-                // Connect to ESP network
-                connectToEspNetwork();
-
-                // Verify WiFi connection
-                WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-                String currentSsid = wifiInfo != null ? wifiInfo.getSSID().replace("\"", "") : "";
-                
-                if (!ESP_SSID.equals(currentSsid)) {
-                    Log.e(TAG, "Failed to connect to ESP network");
-                    handleConnectionError("Could not connect to ESP network");
+                if (networkMonitor.getNetwork() == null) {
+                    // Ask to join the access point; the network callback resumes the connect once it's up
+                    connectToEspNetwork();
+                    isReconnecting = false;
+                    if (networkMonitor.getNetwork() != null) {
+                        // The callback fired while we were still marked as reconnecting
+                        handler.post(this::connect);
+                    } else {
+                        // Back off and ask again, in case another network won the association
+                        handleConnectionError("Could not connect to ESP network");
+                    }
                     return;
                 }
 
-                // Wait for network to stabilize
-                Thread.sleep(2000);
-
-                // Try to connect to ESP service
+                // The first request on the bound network doubles as the handshake
                 try {
+                    long statusStart = System.nanoTime();
                     Response<ResponseBody> statusResponse = api.getStatus().execute();
+                    statusLatency.recordSince(statusStart);
                     if (!statusResponse.isSuccessful() || statusResponse.body() == null) {
                         throw new IOException("Status check failed");
                     }
-                    
-                    isConnected = true;
-                    currentRetry = 0;
+                    statusResponse.body().close();
+
                     isReconnecting = false;
-                    
                     Log.d(TAG, "Successfully connected to ESP8266");
-                    if (getConnectionListener() != null) {
-                        handler.post(() -> getConnectionListener().onConnected());
-                    }
-                    
-                    // Start background updates
-                    startBackgroundUpdates();
-                    
-                    // Start ping mechanism to keep connection alive
-                    if (pingHandler != null && pingRunnable != null) {
-                        pingHandler.removeCallbacks(pingRunnable);
-                        pingHandler.post(pingRunnable);
-                    }
+                    networkMonitor.onTraffic();
                 } catch (Exception e) {
                     Log.e(TAG, "Status check failed", e);
                     handleConnectionError("ESP8266 not responding");
@@ -615,12 +636,72 @@ public class Esp8266Service {
                 Log.e(TAG, "Connection error", e);
                 handleConnectionError("Connection failed: " + e.getMessage());
             }
-        }).start();
+        });
+        if (connectTask == null) {
+            isReconnecting = false;
+        }
+    }
+
+    // Every reachability change funnels through here, on the main thread
+    private void onNetworkStateChanged(EspNetworkMonitor.State previous, EspNetworkMonitor.State state,
+                                       Network network) {
+        switch (state) {
+            case NO_NETWORK:
+                bindToNetwork(null);
+                stopTelemetryStream();
+                handleConnectionError("Lost WiFi connection");
+                break;
+            case NETWORK_AVAILABLE:
+                if (previous == EspNetworkMonitor.State.NO_NETWORK) {
+                    // A fresh access point: bind to it and handshake straight away
+                    bindToNetwork(network);
+                    currentRetry = 0;
+                    cancelReconnect();
+                    connect();
+                } else {
+                    // Traffic stopped coming back; the stream is dead too if it was open
+                    stopTelemetryStream();
+                }
+                break;
+            case REACHABLE:
+                currentRetry = 0;
+                cancelReconnect();
+                if (getConnectionListener() != null) {
+                    getConnectionListener().onConnected();
+                }
+                startBackgroundUpdates();
+                break;
+        }
+    }
+
+    /**
+     * Rebuild the HTTP client so its sockets go over the given network rather
+     * than the default route, which is often mobile data because the ESP access
+     * point has no internet. Pass null to fall back to the default route.
+     */
+    private void bindToNetwork(Network network) {
+        OkHttpClient previous = client;
+        OkHttpClient.Builder builder = baseClient.newBuilder();
+        if (network != null) {
+            builder.socketFactory(network.getSocketFactory());
+        }
+        OkHttpClient bound = builder.build();
+        client = bound;
+        api = new Retrofit.Builder()
+            .baseUrl(ESP_BASE_URL)
+            .client(bound)
+            .build()
+            .create(Esp8266Api.class);
+        if (previous != null) {
+            // Pooled connections belong to the old network
+            previous.connectionPool().evictAll();
+        }
+        Log.d(TAG, network != null ? "HTTP client bound to " + network : "HTTP client using default network");
     }
 
     public void setStickyConnection(boolean sticky) {
         this.isStickyConnection = sticky;
-        if (sticky && !isConnected) {
+        if (sticky && !isConnected()) {
             connect();
         }
     }
@@ -656,83 +737,20 @@ public class Esp8266Service {
         return isWifiLockEnabled;
     }
 
-    private void verifyConnection() {
-        if (!isConnected || isReconnecting) {
-            return;
-        }
-
-        new Thread(() -> {
-            try {
-                // Add delay before verification
-                Thread.sleep(1000);
-
-                // Try to get status first as it's a simpler endpoint
-                try {
-                    Response<ResponseBody> statusResponse = api.getStatus().execute();
-                    if (!statusResponse.isSuccessful() || statusResponse.body() == null) {
-                        Log.e(TAG, "Status check failed");
-                        if (isStickyConnection) {
-                            handleConnectionError("ESP8266 not responding");
-                        } else {
-                            disconnect();
-                        }
-                        return;
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Status check failed", e);
-                    if (isStickyConnection) {
-                        handleConnectionError("ESP8266 not responding");
-                    } else {
-                        disconnect();
-                    }
-                    return;
-                }
-
-                // After a successful status check in verifyConnection(), log success:
-                Log.d(TAG, "Connection verification successful");
-            } catch (Exception e) {
-                Log.e(TAG, "Connection verification failed", e);
-                if (isStickyConnection) {
-                    handleConnectionError("Connection lost: " + e.getMessage());
-                } else {
-                    disconnect();
-                }
-            }
-        }).start();
+    // Successful and failed exchanges feed the liveness check instead of a separate ping
+    private void onExchangeSucceeded() {
+        networkMonitor.onTraffic();
     }
 
-    private boolean pingEsp8266() {
-        // Run ping on background thread to avoid NetworkOnMainThreadException
-        final boolean[] result = {false};
-        final CountDownLatch latch = new CountDownLatch(1);
-        
-        new Thread(() -> {
-            try {
-                Socket socket = new Socket();
-                socket.connect(new InetSocketAddress("192.168.4.1", 80), PING_TIMEOUT);
-                socket.close();
-                result[0] = true;
-            } catch (Exception e) {
-                Log.e(TAG, "Ping failed", e);
-                result[0] = false;
-            } finally {
-                latch.countDown();
-            }
-        }).start();
-        
-        try {
-            latch.await(PING_TIMEOUT + 1000, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Log.e(TAG, "Ping interrupted", e);
-            Thread.currentThread().interrupt();
+    private void onExchangeFailed() {
+        if (networkMonitor.onTrafficFailed()) {
+            handleConnectionError("ESP8266 not responding");
         }
-        
-        return result[0];
     }
 
     private void handleConnectionError(String error) {
         Log.e(TAG, "Connection error: " + error);
-        isConnected = false;
+        networkMonitor.markUnreachable();
         
         if (getConnectionListener() != null) {
             handler.post(() -> getConnectionListener().onError(error));
@@ -744,9 +762,12 @@ public class Esp8266Service {
         }
         
         long currentTime = System.currentTimeMillis();
-        if ((currentTime - lastReconnectAttempt) < RECONNECT_COOLDOWN) {
-            Log.d(TAG, "Skipping reconnect - in cooldown");
+        long sinceLastAttempt = currentTime - lastReconnectAttempt;
+        if (sinceLastAttempt < RECONNECT_COOLDOWN) {
+            // Nothing polls any more, so a skipped retry has to be rescheduled rather than dropped
+            Log.d(TAG, "Reconnect in cooldown, retrying in " + (RECONNECT_COOLDOWN - sinceLastAttempt) + "ms");
             isReconnecting = false;
+            scheduleReconnect(RECONNECT_COOLDOWN - sinceLastAttempt);
             return;
         }
         
@@ -756,27 +777,38 @@ public class Esp8266Service {
             
             Log.d(TAG, "Attempting to reconnect (attempt " + currentRetry + " of " + MAX_RETRIES + ")");
             
-            // Schedule reconnect attempt
-            handler.postDelayed(() -> {
-                isReconnecting = false; // Reset flag before trying again
-                connect();
-            }, RETRY_DELAY * currentRetry); // Exponential backoff
+            isReconnecting = false;
+            scheduleReconnect(RETRY_DELAY * currentRetry); // Linear backoff
         } else {
             Log.e(TAG, "Max reconnection attempts reached");
             currentRetry = 0;
             isReconnecting = false;
             
             // Reset and try again after cooldown
-            handler.postDelayed(() -> {
-                currentRetry = 0;
-                isReconnecting = false;
-                connect();
-            }, RECONNECT_COOLDOWN * 2);
+            scheduleReconnect(RECONNECT_COOLDOWN * 2);
+        }
+    }
+
+    // At most one pending reconnect; a newer error replaces the older schedule
+    private void scheduleReconnect(long delayMs) {
+        handler.post(() -> {
+            cancelReconnect();
+            reconnectRunnable = this::connect;
+            handler.postDelayed(reconnectRunnable, delayMs);
+        });
+    }
+
+    private void cancelReconnect() {
+        if (reconnectRunnable != null) {
+            handler.removeCallbacks(reconnectRunnable);
+            reconnectRunnable = null;
         }
     }
 
     public void disconnect() {
-        isConnected = false;
+        networkMonitor.markUnreachable();
+        stopTelemetryStream();
+        commands.cancelAll("Disconnected from ESP8266");
         if (wifiLock != null && wifiLock.isHeld()) {
             wifiLock.release();
         }
@@ -789,7 +821,7 @@ public class Esp8266Service {
     }
 
     public void fetchDashboardData() {
-        if (!isConnected) {
+        if (!isConnected()) {
             final OnDataListener currentListener = getDataListener();
             if (currentListener != null) {
                 handler.post(() -> {
@@ -815,49 +847,40 @@ public class Esp8266Service {
         }
         lastDashboardRequestTime = System.currentTimeMillis();
 
-        // First verify connection is still valid
-        new Thread(() -> {
+        // Only one fetch is in flight at a time. The fetch itself is the liveness check.
+        scheduler.submitUnique("fetchDashboardData", () -> {
             try {
-                Response<ResponseBody> statusResponse = api.getStatus().execute();
-                if (!statusResponse.isSuccessful()) {
-                    Log.e(TAG, "Status check failed before dashboard request");
-                    handleConnectionError("Lost connection to ESP8266");
-                    return;
-                }
-
-                // Now fetch dashboard data with retries
+                // Fetch dashboard data with retries
                 int retryCount = 0;
                 while (retryCount < 3) {
                     try {
+                        long requestStart = System.nanoTime();
                         Response<ResponseBody> response = api.getDashboardData().execute();
+                        // Up to the response headers; the small body is read while decoding
+                        dashboardGetLatency.recordSince(requestStart);
                         if (response.isSuccessful() && response.body() != null) {
-                            String jsonString = response.body().string();
-                            JSONObject data = new JSONObject(jsonString);
-                            
-                            // Save to database
-                            saveToDatabase(data);
-                            
-                            // Safely notify listener with proper null check and synchronization
-                            final OnDataListener currentListener = getDataListener();
-                            if (currentListener != null) {
-                                handler.post(() -> {
-                                    try {
-                                        if (currentListener != null) {
-                                            currentListener.onDashboardData(data);
-                                        }
-                                    } catch (Exception e) {
-                                        Log.e(TAG, "Error notifying data listener", e);
-                                    }
-                                });
+                            synchronized (pollDecoder) {
+                                long parseStart = System.nanoTime();
+                                try (ResponseBody body = response.body();
+                                     InputStream in = body.byteStream()) {
+                                    pollDecoder.decode(in, pollSample);
+                                }
+                                dashboardParseLatency.recordSince(parseStart);
+                                polledSamples.incrementAndGet();
+                                deliverDashboardData(pollSample);
                             }
                             return;
                         }
                         retryCount++;
+                        pollFailures.incrementAndGet();
+                        onExchangeFailed();
                         if (retryCount < 3) {
                             Thread.sleep(1000);
                         }
                     } catch (Exception e) {
                         Log.e(TAG, "Error fetching dashboard data (attempt " + (retryCount + 1) + ")", e);
+                        pollFailures.incrementAndGet();
+                        onExchangeFailed();
                         retryCount++;
                         if (retryCount < 3) {
                             Thread.sleep(1000);
@@ -894,175 +917,180 @@ public class Esp8266Service {
                     });
                 }
             }
-        }).start();
+        });
     }
 
-    private void saveToDatabase(JSONObject data) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.execute(() -> {
-            try {
-                DashboardData dashboardData = new DashboardData();
-                dashboardData.speed = data.optDouble("speed", 0.0);
-                dashboardData.fuelPercentage = data.optDouble("fuel", 0.0);
-                dashboardData.fuelLiters = data.optDouble("fuel_liters", 0.0);
-                dashboardData.instantEconomy = data.optDouble("fuel_economy", 0.0);
-                dashboardData.totalDistance = data.optDouble("odometer", 0.0);
-                dashboardData.trip1Distance = data.optDouble("trip1", 0.0);
-                dashboardData.trip1Fuel = data.optDouble("trip1_fuel_used", 0.0);
-                dashboardData.trip1Average = data.optDouble("trip1_fuel_avg", 0.0);
-                dashboardData.trip1Started = data.optBoolean("trip1_started", false);
-                dashboardData.trip2Distance = data.optDouble("trip2", 0.0);
-                dashboardData.trip2Fuel = data.optDouble("trip2_fuel_used", 0.0);
-                dashboardData.trip2Average = data.optDouble("trip2_fuel_avg", 0.0);
-                dashboardData.trip2Started = data.optBoolean("trip2_started", false);
-                dashboardData.fuelFillAverage = data.optDouble("fuel_fill_avg", 0.0);
-                dashboardData.fuelFillDistance = data.optDouble("fuel_fill_distance", 0.0);
-                dashboardData.lastFuelFill = data.optDouble("last_fuel_fill", 0.0);
-                dashboardData.fuelFillStarted = data.optBoolean("fuel_fill_started", false);
-                dashboardData.fuelUsedSinceFill = data.optDouble("fuel_used_since_fill", 0.0);
-
-                database.dashboardDao().insert(dashboardData);
-
-                // Clean up old data (keep last 7 days)
-                long oneWeekAgo = System.currentTimeMillis() - (7 * 24 * 60 * 60 * 1000);
-                database.dashboardDao().deleteOldData(oneWeekAgo);
-            } catch (Exception e) {
-                Log.e(TAG, "Error saving to database", e);
-            } finally {
-                executor.shutdown();
-            }
-        });
+    // Persist a sample and publish it to subscribers, whether it came from polling or the stream.
+    // The caller keeps ownership of the sample; it's copied before this returns.
+    private void deliverDashboardData(DashboardSample sample) {
+        long start = System.nanoTime();
+        onExchangeSucceeded();
+        samplingPolicy.onSample(sample.speed, sample.fuelPercentage, sample.timestamp);
+        saveToDatabase(sample);
+        telemetryBus.publish(sample);
+        deliverLatency.recordSince(start);
     }
 
-    public void startTrip(int tripNumber) {
-        if (!isConnected) {
-            return;
-        }
-        api.startTrip(tripNumber).enqueue(new retrofit2.Callback<ResponseBody>() {
-            @Override
-            public void onResponse(Call<ResponseBody> call, retrofit2.Response<ResponseBody> response) {
-                final OnDataListener currentListener = getDataListener();
-                if (currentListener != null) {
-                    handler.post(() -> fetchDashboardData());
-                }
-            }
-            @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
-                // Silent error handling
-            }
-        });
+    /** Live samples for any number of subscribers, each on its own executor. */
+    public TelemetryBus getTelemetryBus() {
+        return telemetryBus;
     }
 
-    public void resetTrip(int tripNumber) {
-        if (!isConnected) {
-            return;
-        }
-        api.resetTrip(tripNumber).enqueue(new retrofit2.Callback<ResponseBody>() {
-            @Override
-            public void onResponse(Call<ResponseBody> call, retrofit2.Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    startTrip(tripNumber);
-                }
+    private void saveToDatabase(DashboardSample sample) {
+        try {
+            DashboardData dashboardData = sample.toDashboardData();
+            DashboardData beforeGap = checkForGap(dashboardData);
+
+            // Write-behind: commit in batches rather than one transaction per sample
+            int buffered = writeBuffer.add(dashboardData);
+            if (buffered >= WRITE_BATCH_SIZE) {
+                scheduler.submitUnique("flushDashboardData", this::flushWriteBuffer);
+            } else if (buffered == 1) {
+                scheduler.scheduleUnique("flushDashboardDataTimed", this::flushWriteBuffer, WRITE_FLUSH_INTERVAL);
             }
-            @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
-                // Silent error handling
+            if (beforeGap != null) {
+                requestBackfill(beforeGap, dashboardData.timestamp);
             }
-        });
-    }
-
-    public void resetAllTrips() {
-        if (!isConnected) {
-            connect();
-            return;
+        } catch (Exception e) {
+            Log.e(TAG, "Error buffering dashboard data", e);
         }
+    }
 
-        new Thread(() -> {
-            int retryCount = 0;
-            boolean success = false;
-            
-            while (!success && retryCount < 3) {
-                try {
-                    ResponseBody response = api.getStatus().execute().body();
-                    if (response == null) {
-                        disconnect();
-                        connect();
-                        Thread.sleep(2000);
-                        continue;
-                    }
+    // Samples further apart than this mean the link dropped, not that the policy slowed down
+    private long getGapThreshold() {
+        return Math.max(LIVENESS_TIMEOUT, 3 * samplingPolicy.getIntervalMs());
+    }
 
-                    ResponseBody resetResponse = api.resetAllTrips().execute().body();
-                    if (resetResponse != null) {
-                        success = true;
-                        handler.postDelayed(this::fetchDashboardData, 1000);
-                    } else {
-                        retryCount++;
-                        if (retryCount < 3) {
-                            Thread.sleep(1000);
-                        }
-                    }
-                } catch (Exception e) {
-                    retryCount++;
-                    if (retryCount < 3) {
-                        try {
-                            Thread.sleep(1000);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            break;
-                        }
-                    }
-                }
+    // Flags the row if samples stopped for a while before it and returns the last row before the gap
+    private DashboardData checkForGap(DashboardData data) {
+        synchronized (gapLock) {
+            DashboardData previous = lastPersisted;
+            lastPersisted = data;
+            if (previous == null || data.timestamp - previous.timestamp <= getGapThreshold()) {
+                return null;
             }
+            data.gapBefore = true;
+            gapsDetected.incrementAndGet();
+            Log.d(TAG, "Gap of " + (data.timestamp - previous.timestamp) + "ms before sample, requesting history");
+            return previous;
+        }
+    }
 
-            if (!success) {
-                disconnect();
-                connect();
-            }
-        }).start();
+    // Ask the ESP for what it recorded while we weren't listening and fill the gap with it
+    private void requestBackfill(DashboardData beforeGap, long gapEnd) {
+        long maxAge = System.currentTimeMillis() - beforeGap.timestamp;
+        long threshold = getGapThreshold();
+        commands.submit("getHistory", null, api -> api.getHistory(maxAge), BACKFILL_ATTEMPTS)
+            .thenAccept(body -> {
+                long receivedAt = System.currentTimeMillis();
+                scheduler.submit("backfillHistory", () -> backfill(body, receivedAt, beforeGap, gapEnd, threshold));
+            })
+            .exceptionally(error -> {
+                Log.e(TAG, "Could not fetch history to backfill gap", error);
+                return null;
+            });
     }
 
-    public void resetOdometer() {
-        if (!isConnected) {
+    private void backfill(String body, long receivedAt, DashboardData beforeGap, long gapEnd, long threshold) {
+        HistoryBackfill.Result result = HistoryBackfill.parse(body, receivedAt, beforeGap, gapEnd, threshold);
+        if (result.rows.isEmpty()) {
+            Log.d(TAG, "ESP history had nothing inside the gap");
             return;
         }
+        try {
+            // The row that ended the gap has to be in SQLite before its flag can be updated
+            flushWriteBuffer();
+            database.dashboardDao().insertBackfill(result.rows, gapEnd, result.gapRemains);
+            database.getSummaryCache().invalidate(result.rows.get(0).timestamp, gapEnd);
+            backfilledRows.addAndGet(result.rows.size());
+            Log.d(TAG, "Backfilled " + result.rows.size() + " samples" + (result.gapRemains ? ", gap remains" : ""));
+        } catch (Exception e) {
+            Log.e(TAG, "Error backfilling dashboard data", e);
+        }
+    }
 
-        api.resetOdometer().enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    handler.postDelayed(() -> fetchDashboardData(), 500);
-                }
-            }
+    // Runs on a worker; one batched transaction, timed so SQLite stalls show up in the metrics
+    private void flushWriteBuffer() {
+        long start = System.nanoTime();
+        int written = writeBuffer.flush();
+        if (written > 0) {
+            dbFlushLatency.recordSince(start);
+            dbRowsWritten.addAndGet(written);
+        }
+    }
 
-            @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
-                // Silent error handling
+    // Control commands share one queue: the ESP serves a single connection at a time
+    private CompletableFuture<String> sendCommand(String name, String key,
+                                                  Function<Esp8266Api, Call<ResponseBody>> request,
+                                                  int maxAttempts) {
+        if (!isConnected()) {
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("Not connected to ESP8266"));
+            return failed;
+        }
+        return commands.submit(name, key, request, maxAttempts);
+    }
+
+    // Report a failed command to the data listener; the queue has already logged it
+    private void notifyCommandError(String message, Throwable error) {
+        final OnDataListener currentListener = getDataListener();
+        if (currentListener == null) return;
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        handler.post(() -> {
+            try {
+                currentListener.onError(message + ": " + cause.getMessage());
+            } catch (Exception e) {
+                Log.e(TAG, "Error notifying data listener", e);
             }
         });
     }
 
-    public void resetFuelFill() {
-        if (!isConnected) {
-            return;
-        }
+    public CompletableFuture<String> startTrip(int tripNumber) {
+        CompletableFuture<String> result = sendCommand("startTrip", "startTrip/" + tripNumber,
+            api -> api.startTrip(tripNumber), COMMAND_ATTEMPTS);
+        result.thenRun(() -> handler.post(this::fetchDashboardData));
+        return result;
+    }
 
-        api.resetFuelFill().enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    handler.postDelayed(() -> fetchDashboardData(), 500);
-                }
-            }
+    /** Reset a trip, then start it again once the reset has been acknowledged. */
+    public CompletableFuture<String> resetTrip(int tripNumber) {
+        return sendCommand("resetTrip", "resetTrip/" + tripNumber,
+                api -> api.resetTrip(tripNumber), COMMAND_ATTEMPTS)
+            .thenCompose(body -> startTrip(tripNumber));
+    }
 
-            @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
-                // Silent error handling
+    public CompletableFuture<String> resetAllTrips() {
+        if (!isConnected()) {
+            connect();
+        }
+        CompletableFuture<String> result = sendCommand("resetAllTrips", "resetAllTrips",
+            Esp8266Api::resetAllTrips, COMMAND_ATTEMPTS);
+        result.whenComplete((body, error) -> {
+            if (error != null) {
+                notifyCommandError("Failed to reset trips", error);
+            } else {
+                handler.post(this::fetchDashboardData);
             }
         });
+        return result;
+    }
+
+    public CompletableFuture<String> resetOdometer() {
+        CompletableFuture<String> result = sendCommand("resetOdometer", "resetOdometer",
+            Esp8266Api::resetOdometer, COMMAND_ATTEMPTS);
+        result.thenRun(() -> handler.post(this::fetchDashboardData));
+        return result;
+    }
+
+    public CompletableFuture<String> resetFuelFill() {
+        CompletableFuture<String> result = sendCommand("resetFuelFill", "resetFuelFill",
+            Esp8266Api::resetFuelFill, COMMAND_ATTEMPTS);
+        result.thenRun(() -> handler.post(this::fetchDashboardData));
+        return result;
     }
 
     public void uploadFirmware(String username, String password, okhttp3.MultipartBody.Part firmwareFile, FirmwareUpdateCallback callback) {
-        if (!isConnected) {
+        if (!isConnected()) {
             callback.onError("Not connected to ESP8266");
             return;
         }
@@ -1071,41 +1099,69 @@ public class Esp8266Service {
         String encodedAuth = android.util.Base64.encodeToString(
             auth.getBytes(), android.util.Base64.NO_WRAP);
 
-        api.uploadFirmware("Basic " + encodedAuth, firmwareFile).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    callback.onSuccess();
+        // Queued like any other command so it doesn't compete with a pending reset; never retried
+        commands.submit("uploadFirmware", api -> api.uploadFirmware("Basic " + encodedAuth, firmwareFile))
+            .whenComplete((body, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                    callback.onError("Failed to upload firmware: " + cause.getMessage());
                 } else {
-                    callback.onError("Failed to upload firmware: " + response.code());
+                    callback.onSuccess();
                 }
-            }
+            });
+    }
 
-            @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
-                callback.onError("Failed to upload firmware: " + t.getMessage());
+    /** Per-stage latency histograms and counters for the sample pipeline. */
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** The pipeline metrics followed by each component's own counters. */
+    public String getMetricsReport() {
+        return metrics.getReport()
+            + "\nSampling: " + getSamplingStats()
+            + "\nSampling config: " + getSamplingConfig()
+            + "\nNavigation: " + getNavigationStats()
+            + "\nScheduler: " + getSchedulerStats()
+            + "\nCommands: " + getCommandStats()
+            + "\nHTTP: " + getConnectionStats() + "\n";
+    }
+
+    /**
+     * Write the current metrics report to a timestamped file in
+     * {@code directory}, on a worker thread.
+     */
+    public CompletableFuture<File> dumpMetrics(File directory) {
+        CompletableFuture<File> result = new CompletableFuture<>();
+        Future<?> task = scheduler.submit("dumpMetrics", () -> {
+            try {
+                result.complete(metrics.dumpTo(directory, getMetricsReport()));
+            } catch (IOException e) {
+                Log.e(TAG, "Error dumping metrics", e);
+                result.completeExceptionally(e);
             }
         });
+        if (task == null) {
+            result.completeExceptionally(new IOException("Worker queue full"));
+        }
+        return result;
+    }
+
+    public String getConnectionStats() {
+        return connectionMetrics.getStats();
+    }
+
+    public String getCommandStats() {
+        return commands.getStats();
     }
 
     public boolean isConnected() {
-        return isConnected;
+        return networkMonitor.isReachable();
     }
     
     public String getConnectionStatus() {
-        if (!isConnected) {
-            return "Disconnected";
-        }
-        
-        // Check WiFi connection
-        WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-        String currentSsid = wifiInfo != null ? wifiInfo.getSSID().replace("\"", "") : "";
-        
-        if (ESP_SSID.equals(currentSsid)) {
-            return "Connected to ESP8266 (" + ESP_SSID + ")";
-        } else {
-            return "Connected but wrong network (" + currentSsid + ")";
-        }
+        return networkMonitor.describe();
     }
     
     public boolean hasLocationPermission() {
@@ -1133,51 +1189,13 @@ public class Esp8266Service {
         return false; // For now, always show if permission is missing
     }
 
-    private void startConnectionChecker() {
-        handler.removeCallbacks(connectionChecker);
-        connectionChecker = new Runnable() {
-            @Override
-            public void run() {
-                if (isConnected && !isReconnecting) {
-                    // Check if still connected to ESP8266 network
-                    WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-                    if (wifiInfo == null) {
-                        Log.e(TAG, "WiFiInfo is null - WiFi may be disabled or permissions not granted");
-                        handleConnectionError("WiFi not available");
-                        return;
-                    }
-
-                    String ssid = wifiInfo.getSSID();
-                    if (ssid == null) {
-                        Log.e(TAG, "SSID is null - WiFi may be disabled or permissions not granted");
-                        handleConnectionError("WiFi not available");
-                        return;
-                    }
-
-                    // Remove quotes and trim
-                    ssid = ssid.replace("\"", "").trim();
-                    Log.d(TAG, "Current SSID: " + ssid + ", Expected SSID: " + ESP_SSID);
-                    
-                    boolean isConnectedToEsp = ssid.equals(ESP_SSID);
-                    Log.d(TAG, "Is connected to ESP: " + isConnectedToEsp);
-                    
-                    if (!isConnectedToEsp) {
-                        Log.d(TAG, "Lost connection to ESP8266 network");
-                        handleConnectionError("Lost WiFi connection");
-                    } else {
-                        // Only verify connection if we're not already reconnecting
-                        verifyConnection();
-                    }
-                }
-                // Schedule next check
-                handler.postDelayed(this, CONNECTION_CHECK_INTERVAL);
-            }
-        };
-        handler.post(connectionChecker);
+    private void startHousekeeping() {
+        handler.removeCallbacks(housekeeping);
+        handler.postDelayed(housekeeping, HOUSEKEEPING_INTERVAL);
     }
 
     public void syncData(String data, OnSyncListener listener) {
-        if (!isConnected) {
+        if (!isConnected()) {
             if (listener != null) {
                 listener.onSyncError("Not connected to ESP8266");
             }
@@ -1203,6 +1221,7 @@ public class Esp8266Service {
             @Override
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
                 if (response.isSuccessful() && response.body() != null) {
+                    onExchangeSucceeded();
                     try {
                         String responseString = response.body().string();
                         JSONObject jsonResponse = new JSONObject(responseString);
@@ -1226,6 +1245,7 @@ public class Esp8266Service {
             @Override
             public void onFailure(Call<ResponseBody> call, Throwable t) {
                 Log.e(TAG, "Navigation sync network error", t);
+                onExchangeFailed();
                 if (listener != null) {
                     handler.post(() -> listener.onSyncError("Network error: " + t.getMessage()));
                 }
@@ -1234,119 +1254,37 @@ public class Esp8266Service {
     }
 
     // Add methods for backlight control
-    public void toggleBacklight() {
-        // Send GET request to /lcd-backlight?state=on or off (implement toggle logic)
-        // For simplicity, toggle between on and off; in practice, query current state if needed
+    public CompletableFuture<String> toggleBacklight() {
+        // For simplicity, toggle always switches on; in practice, query current state if needed
         String state = "on";  // Default or query logic here
-        api.setBacklightState(state).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    Log.d(TAG, "Backlight toggled");
-                } else {
-                    Log.e(TAG, "Toggle failed");
-                }
-            }
-            @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
-                Log.e(TAG, "Toggle failure: " + t.getMessage());
-            }
-        });
+        return sendCommand("setBacklightState", "backlightState",
+            api -> api.setBacklightState(state), COMMAND_ATTEMPTS);
     }
 
-    public void setBacklightIntensity(int intensity) {
-        api.setBacklightIntensity(String.valueOf(intensity)).enqueue(new Callback<ResponseBody>() {
-            @Override
-            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
-                if (response.isSuccessful()) {
-                    Log.d(TAG, "Backlight intensity set to " + intensity);
-                } else {
-                    Log.e(TAG, "Intensity set failed");
-                }
-            }
-            @Override
-            public void onFailure(Call<ResponseBody> call, Throwable t) {
-                Log.e(TAG, "Intensity failure: " + t.getMessage());
-            }
-        });
+    /** Slider updates coalesce, so only the latest pending intensity is sent. */
+    public CompletableFuture<String> setBacklightIntensity(int intensity) {
+        return sendCommand("setBacklightIntensity", "backlightIntensity",
+            api -> api.setBacklightIntensity(String.valueOf(intensity)), COMMAND_ATTEMPTS);
     }
 
-    public void restartLcd() {
-        if (!isConnected) return;
-        
-        new Thread(() -> {
-            try {
-                Response<ResponseBody> response = api.restartLcd().execute();
-                if (!response.isSuccessful()) {
-                    Log.e(TAG, "Failed to restart LCD");
-                    final OnDataListener currentListener = getDataListener();
-                    if (currentListener != null) {
-                        handler.post(() -> {
-                            try {
-                                if (currentListener != null) {
-                                    currentListener.onError("Failed to restart LCD");
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error notifying data listener", e);
-                            }
-                        });
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error restarting LCD", e);
-                final OnDataListener currentListener = getDataListener();
-                if (currentListener != null) {
-                    handler.post(() -> {
-                        try {
-                            if (currentListener != null) {
-                                currentListener.onError("Error restarting LCD: " + e.getMessage());
-                            }
-                        } catch (Exception ex) {
-                            Log.e(TAG, "Error notifying data listener", ex);
-                        }
-                    });
-                }
-            }
-        }).start();
+    public CompletableFuture<String> restartLcd() {
+        CompletableFuture<String> result = sendCommand("restartLcd", "restartLcd",
+            Esp8266Api::restartLcd, COMMAND_ATTEMPTS);
+        result.exceptionally(error -> {
+            notifyCommandError("Failed to restart LCD", error);
+            return null;
+        });
+        return result;
     }
-    
-    public void setAutoRestartLcd(boolean enabled) {
-        if (!isConnected) return;
-        
-        new Thread(() -> {
-            try {
-                Response<ResponseBody> response = api.setAutoRestart(enabled).execute();
-                if (!response.isSuccessful()) {
-                    Log.e(TAG, "Failed to set LCD auto-restart");
-                    final OnDataListener currentListener = getDataListener();
-                    if (currentListener != null) {
-                        handler.post(() -> {
-                            try {
-                                if (currentListener != null) {
-                                    currentListener.onError("Failed to set LCD auto-restart");
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error notifying data listener", e);
-                            }
-                        });
-                    }
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error setting LCD auto-restart", e);
-                final OnDataListener currentListener = getDataListener();
-                if (currentListener != null) {
-                    handler.post(() -> {
-                        try {
-                            if (currentListener != null) {
-                                currentListener.onError("Error setting LCD auto-restart: " + e.getMessage());
-                            }
-                        } catch (Exception ex) {
-                            Log.e(TAG, "Error notifying data listener", ex);
-                        }
-                    });
-                }
-            }
-        }).start();
+
+    public CompletableFuture<String> setAutoRestartLcd(boolean enabled) {
+        CompletableFuture<String> result = sendCommand("setAutoRestartLcd", "autoRestartLcd",
+            api -> api.setAutoRestart(enabled), COMMAND_ATTEMPTS);
+        result.exceptionally(error -> {
+            notifyCommandError("Failed to set LCD auto-restart", error);
+            return null;
+        });
+        return result;
     }
 
     // Add method to start background updates
@@ -1363,18 +1301,78 @@ public class Esp8266Service {
             public void run() {
                 if (!isDashboardUpdateRunning) return;
 
-                fetchDashboardData();
-                backgroundHandler.postDelayed(this, MIN_REQUEST_INTERVAL);
+                long interval = Math.max(MIN_REQUEST_INTERVAL, samplingPolicy.getIntervalMs());
+                // Samples arrive on the stream while it is open; poll only as a fallback
+                TelemetryStream stream = telemetryStream;
+                if (stream != null && stream.isRunning()) {
+                    stream.requestInterval(interval);
+                } else {
+                    startTelemetryStream();
+                    fetchDashboardData();
+                }
+                backgroundHandler.postDelayed(this, interval);
             }
         });
     }
 
     public void stopDashboardUpdates() {
         isDashboardUpdateRunning = false;
+        scheduler.cancel("fetchDashboardData");
+        stopTelemetryStream();
+    }
+
+    public String getSchedulerStats() {
+        return scheduler.getStats();
+    }
+
+    public AdaptiveSamplingPolicy.Config getSamplingConfig() {
+        return samplingPolicy.getConfig();
+    }
+
+    public String getSamplingStats() {
+        return samplingPolicy.getStats();
     }
 
-    public void updateNavigationData(JSONObject navigationData) {
-        lastNavigationData = navigationData;
+    public boolean isStreaming() {
+        TelemetryStream stream = telemetryStream;
+        return stream != null && stream.isRunning();
+    }
+
+    private void startTelemetryStream() {
+        if (!isConnected() || isStreaming()) return;
+
+        long currentTime = System.currentTimeMillis();
+        if (currentTime - lastStreamAttempt < STREAM_RETRY_INTERVAL) return;
+        lastStreamAttempt = currentTime;
+
+        Network network = networkMonitor.getNetwork();
+        SocketFactory socketFactory = network != null ? network.getSocketFactory() : SocketFactory.getDefault();
+        telemetryStream = new TelemetryStream(ESP_HOST, STREAM_PORT, socketFactory, new TelemetryStream.Listener() {
+            @Override
+            public void onSample(DashboardSample sample) {
+                streamedSamples.incrementAndGet();
+                deliverDashboardData(sample);
+            }
+
+            @Override
+            public void onStreamClosed(String reason) {
+                Log.d(TAG, "Telemetry stream closed (" + reason + "), falling back to polling");
+                onExchangeFailed();
+            }
+        });
+        telemetryStream.start();
+    }
+
+    private void stopTelemetryStream() {
+        TelemetryStream stream = telemetryStream;
+        telemetryStream = null;
+        if (stream != null) {
+            stream.stop();
+        }
+    }
+
+    public void updateNavigation(NavigationFrameEncoder.Update update) {
+        lastNavigationUpdate = update;
         if (!isNavigationUpdateRunning) {
             startNavigationUpdates();
         }
@@ -1387,31 +1385,66 @@ public class Esp8266Service {
         backgroundHandler.post(new Runnable() {
             @Override
             public void run() {
-                if (!isNavigationUpdateRunning || lastNavigationData == null) {
+                NavigationFrameEncoder.Update update = lastNavigationUpdate;
+                if (!isNavigationUpdateRunning || update == null) {
                     isNavigationUpdateRunning = false;
                     return;
                 }
 
-                syncData(lastNavigationData.toString(), new OnSyncListener() {
-                    @Override
-                    public void onSyncSuccess(JSONObject response) {
-                        Log.d(TAG, "Navigation data sent successfully");
+                if (isConnected()) {
+                    String frame = navigationEncoder.encode(update, SystemClock.elapsedRealtime());
+                    if (frame != null) {
+                        sendNavigationFrame(frame);
+                    } else {
+                        navigationFramesSkipped++;
                     }
+                }
 
-                    @Override
-                    public void onSyncError(String error) {
-                        Log.e(TAG, "Error sending navigation data: " + error);
-                    }
-                });
+                // Never so slow that a keep-alive would be late
+                backgroundHandler.postDelayed(this, Math.min(
+                    samplingPolicy.getNavigationIntervalMs(NAVIGATION_UPDATE_INTERVAL),
+                    NavigationFrameEncoder.KEEP_ALIVE_MS));
+            }
+        });
+    }
+
+    private void sendNavigationFrame(String frame) {
+        navigationFramesSent++;
+        navigationBytesSent += frame.length();
+        RequestBody body = RequestBody.create(MediaType.parse("text/plain"), frame);
+        api.sendNavigationFrame(body).enqueue(new Callback<ResponseBody>() {
+            @Override
+            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                if (response.body() != null) {
+                    response.body().close();
+                }
+                if (response.isSuccessful()) {
+                    onExchangeSucceeded();
+                } else {
+                    // 409 means the ESP lost the step (e.g. it restarted); anything else may not have applied either
+                    Log.w(TAG, "Navigation frame rejected with code " + response.code() + ", resending step");
+                    navigationEncoder.reset();
+                }
+            }
 
-                backgroundHandler.postDelayed(this, NAVIGATION_UPDATE_INTERVAL);
+            @Override
+            public void onFailure(Call<ResponseBody> call, Throwable t) {
+                Log.e(TAG, "Navigation frame network error", t);
+                navigationEncoder.reset();
+                onExchangeFailed();
             }
         });
     }
 
+    public String getNavigationStats() {
+        return "framesSent=" + navigationFramesSent + " framesSkipped=" + navigationFramesSkipped
+            + " bytesSent=" + navigationBytesSent;
+    }
+
     public void stopNavigationUpdates() {
         isNavigationUpdateRunning = false;
-        lastNavigationData = null;
+        lastNavigationUpdate = null;
+        navigationEncoder.reset();
     }
 
     private void ensureWifiConnection() {
@@ -1440,46 +1473,9 @@ public class Esp8266Service {
         // Try to disable WiFi power saving using multiple methods
         disableWifiPowerSave();
 
-        // Check if connected to ESP network
-        WifiInfo wifiInfo = wifiManager.getConnectionInfo();
-        String currentSsid = wifiInfo != null ? wifiInfo.getSSID().replace("\"", "") : "";
-        
-        Log.d(TAG, "Current SSID: " + currentSsid + ", Expected SSID: " + ESP_SSID);
-        
-        if (!ESP_SSID.equals(currentSsid)) {
-            Log.d(TAG, "Not connected to ESP network when screen off, reconnecting...");
-            connectToEspNetwork();
-        } else {
-            Log.d(TAG, "Is connected to ESP: " + isConnected);
-        }
-        
-        // Ensure WiFi lock is held and schedule periodic re-acquisition
-        if (!wifiLock.isHeld()) {
-            wifiLock.acquire();
-            Log.d(TAG, "WiFi lock re-acquired in ensureWifiConnection");
-        }
-        
-        // Schedule periodic wake lock refresh
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                if (isStickyConnection) {
-                    // Re-acquire wake locks periodically to prevent timeout
-                    if (!wifiWakeLock.isHeld()) {
-                        wifiWakeLock.acquire(WIFI_LOCK_TIMEOUT);
-                    }
-                    if (!cpuWakeLock.isHeld()) {
-                        cpuWakeLock.acquire();
-                    }
-                    if (!wifiLock.isHeld()) {
-                        wifiLock.acquire();
-                    }
-                    
-                    // Schedule next refresh
-                    handler.postDelayed(this, WIFI_LOCK_TIMEOUT / 2); // Refresh every 5 minutes
-                }
-            }
-        }, WIFI_LOCK_TIMEOUT / 2);
+        // The network callback already knows whether we're on the ESP access point;
+        // the housekeeping runnable keeps the locks held from here on
+        Log.d(TAG, "Connection: " + networkMonitor.describe());
     }
     
     private void disableWifiPowerSave() {
@@ -0,0 +1,247 @@
+package com.example.activadasboard.service;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Serialises control commands (trip resets, backlight, LCD settings, firmware
+ * upload) to the ESP8266. Its web server handles one connection at a time, so
+ * firing each command as an independent call just makes them queue up in the
+ * TCP backlog or time out.
+ *
+ * One command is in flight at a time, in submission order. A command given a
+ * coalescing key replaces a pending command with the same key in place, so a
+ * burst of backlight slider values sends only the last one; every caller in
+ * the burst gets the same future. Failed attempts are retried after a delay
+ * posted to the handler, never by sleeping a thread.
+ *
+ * Futures complete with the response body text, or exceptionally with an
+ * {@link IOException} for a transport error or a non-2xx status.
+ */
+public class EspCommandQueue {
+    private static final String TAG = "EspCommandQueue";
+    private static final long RETRY_DELAY_MS = 1000;
+
+    public interface ExchangeListener {
+        // Every attempt's outcome, so commands count as traffic for liveness
+        void onExchange(boolean succeeded);
+    }
+
+    private static class Command {
+        final String name;
+        final String key;
+        Function<Esp8266Api, Call<ResponseBody>> request;
+        final int maxAttempts;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        int attempts = 0;
+        Call<ResponseBody> call;
+
+        Command(String name, String key, Function<Esp8266Api, Call<ResponseBody>> request, int maxAttempts) {
+            this.name = name;
+            this.key = key;
+            this.request = request;
+            this.maxAttempts = maxAttempts;
+        }
+    }
+
+    private final Supplier<Esp8266Api> apiSupplier;
+    private final Handler handler;
+    private final ExchangeListener listener;
+    private final Object lock = new Object();
+    private final ArrayDeque<Command> pending = new ArrayDeque<>();
+    private Command inFlight;
+
+    private long submittedCount = 0;
+    private long coalescedCount = 0;
+    private long sentCount = 0;
+    private long retriedCount = 0;
+    private long failedCount = 0;
+
+    /**
+     * @param apiSupplier read for every attempt, so a command sent after the
+     *                    client was rebound to a new network uses the new one
+     */
+    public EspCommandQueue(Supplier<Esp8266Api> apiSupplier, Handler handler, ExchangeListener listener) {
+        this.apiSupplier = apiSupplier;
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /** Queue a command that is sent once, without coalescing. */
+    public CompletableFuture<String> submit(String name, Function<Esp8266Api, Call<ResponseBody>> request) {
+        return submit(name, null, request, 1);
+    }
+
+    /**
+     * Queue a command.
+     *
+     * @param key         commands with the same non-null key that are still
+     *                    pending collapse into the latest one
+     * @param maxAttempts how many times to try before failing the future
+     */
+    public CompletableFuture<String> submit(String name, String key,
+                                            Function<Esp8266Api, Call<ResponseBody>> request, int maxAttempts) {
+        synchronized (lock) {
+            submittedCount++;
+            if (key != null) {
+                for (Command queued : pending) {
+                    if (key.equals(queued.key)) {
+                        // Keep the queue position and future, send the newest value
+                        queued.request = request;
+                        coalescedCount++;
+                        return queued.future;
+                    }
+                }
+            }
+            Command command = new Command(name, key, request, Math.max(1, maxAttempts));
+            pending.add(command);
+            dispatchLocked();
+            return command.future;
+        }
+    }
+
+    /** Fail every pending command and cancel the one in flight. */
+    public void cancelAll(String reason) {
+        Command[] cancelled;
+        synchronized (lock) {
+            cancelled = pending.toArray(new Command[0]);
+            pending.clear();
+            if (inFlight != null) {
+                if (inFlight.call != null) {
+                    inFlight.call.cancel();
+                }
+                Command current = inFlight;
+                inFlight = null;
+                cancelled = append(cancelled, current);
+            }
+        }
+        for (Command command : cancelled) {
+            command.future.completeExceptionally(new IOException(reason));
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size() + (inFlight != null ? 1 : 0);
+        }
+    }
+
+    public String getStats() {
+        synchronized (lock) {
+            return String.format(Locale.US,
+                "pending=%d submitted=%d coalesced=%d sent=%d retried=%d failed=%d",
+                pending.size() + (inFlight != null ? 1 : 0), submittedCount, coalescedCount,
+                sentCount, retriedCount, failedCount);
+        }
+    }
+
+    private void dispatchLocked() {
+        if (inFlight != null) return;
+        Iterator<Command> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            Command next = iterator.next();
+            iterator.remove();
+            if (!next.future.isDone()) {
+                inFlight = next;
+                sendLocked(next);
+                return;
+            }
+        }
+    }
+
+    private void sendLocked(Command command) {
+        Esp8266Api api = apiSupplier.get();
+        command.attempts++;
+        sentCount++;
+        try {
+            command.call = command.request.apply(api);
+        } catch (RuntimeException e) {
+            finishLocked(command, null, new IOException("Could not build " + command.name, e));
+            return;
+        }
+        command.call.enqueue(new Callback<ResponseBody>() {
+            @Override
+            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                String body = null;
+                IOException error = null;
+                try (ResponseBody responseBody = response.isSuccessful() ? response.body() : response.errorBody()) {
+                    if (response.isSuccessful()) {
+                        body = responseBody != null ? responseBody.string() : "";
+                    } else {
+                        error = new IOException(command.name + " failed: HTTP " + response.code());
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+                // Any response, even an error status, means the ESP is there
+                listener.onExchange(true);
+                onAttemptFinished(command, body, error, false);
+            }
+
+            @Override
+            public void onFailure(Call<ResponseBody> call, Throwable t) {
+                if (call.isCanceled()) return;
+                listener.onExchange(false);
+                onAttemptFinished(command, null,
+                    new IOException(command.name + " failed: " + t.getMessage(), t), true);
+            }
+        });
+    }
+
+    private void onAttemptFinished(Command command, String body, IOException error, boolean retryable) {
+        synchronized (lock) {
+            if (inFlight != command) return; // Cancelled meanwhile
+            if (error != null && retryable && command.attempts < command.maxAttempts) {
+                retriedCount++;
+                Log.w(TAG, command.name + " attempt " + command.attempts + " failed, retrying");
+                // Hold the slot so later commands keep their order behind this one
+                handler.postDelayed(() -> {
+                    synchronized (lock) {
+                        if (inFlight == command) {
+                            sendLocked(command);
+                        }
+                    }
+                }, RETRY_DELAY_MS * command.attempts);
+                return;
+            }
+            finishLocked(command, body, error);
+        }
+    }
+
+    private void finishLocked(Command command, String body, IOException error) {
+        inFlight = null;
+        if (error != null) {
+            failedCount++;
+            Log.e(TAG, error.getMessage());
+        }
+        // Complete outside the lock so dependent stages can submit follow-up commands
+        handler.post(() -> {
+            if (error != null) {
+                command.future.completeExceptionally(error);
+            } else {
+                command.future.complete(body);
+            }
+        });
+        dispatchLocked();
+    }
+
+    private static Command[] append(Command[] commands, Command command) {
+        Command[] result = new Command[commands.length + 1];
+        result[0] = command;
+        System.arraycopy(commands, 0, result, 1, commands.length);
+        return result;
+    }
+}
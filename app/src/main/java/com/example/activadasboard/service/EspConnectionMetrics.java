@@ -0,0 +1,101 @@
+package com.example.activadasboard.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * Counts how often HTTP calls to the ESP8266 reuse a pooled connection and
+ * how long new TCP connects take. On the ESP's access point a connect costs
+ * more than the request itself, so the reuse ratio is the number to watch.
+ *
+ * Install with {@code OkHttpClient.Builder.eventListenerFactory(metrics.factory())}.
+ */
+public class EspConnectionMetrics {
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong connectionsAcquired = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong failedConnects = new AtomicLong();
+    private final AtomicLong totalConnectTimeMs = new AtomicLong();
+    private final AtomicLong maxConnectTimeMs = new AtomicLong();
+
+    public EventListener.Factory factory() {
+        return call -> new CallListener();
+    }
+
+    // One per call, so the connect start time doesn't need to be keyed
+    private class CallListener extends EventListener {
+        private long connectStartNanos;
+
+        @Override
+        public void callStart(Call call) {
+            calls.incrementAndGet();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            connects.incrementAndGet();
+            recordConnectTime((System.nanoTime() - connectStartNanos) / 1_000_000);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol,
+                                  IOException ioe) {
+            failedConnects.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionsAcquired.incrementAndGet();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            failedCalls.incrementAndGet();
+        }
+    }
+
+    private void recordConnectTime(long elapsedMs) {
+        totalConnectTimeMs.addAndGet(elapsedMs);
+        long max;
+        do {
+            max = maxConnectTimeMs.get();
+        } while (elapsedMs > max && !maxConnectTimeMs.compareAndSet(max, elapsedMs));
+    }
+
+    /** Fraction of acquired connections that came from the pool rather than a new connect. */
+    public double getReuseRatio() {
+        long acquired = connectionsAcquired.get();
+        if (acquired == 0) return 0;
+        return Math.max(0, acquired - connects.get()) / (double) acquired;
+    }
+
+    public long getAverageConnectTimeMs() {
+        long count = connects.get();
+        return count == 0 ? 0 : totalConnectTimeMs.get() / count;
+    }
+
+    public long getMaxConnectTimeMs() {
+        return maxConnectTimeMs.get();
+    }
+
+    public String getStats() {
+        return String.format(Locale.US,
+            "calls=%d failed=%d connects=%d connectFailures=%d reuse=%.0f%% avgConnect=%dms maxConnect=%dms",
+            calls.get(), failedCalls.get(), connects.get(), failedConnects.get(),
+            getReuseRatio() * 100, getAverageConnectTimeMs(), getMaxConnectTimeMs());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.activadasboard.service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Builds the one OkHttpClient used for the ESP8266's web server.
+ *
+ * The ESP serves one connection at a time, so the client keeps a single
+ * HTTP/1.1 connection alive and lets one call at a time reach it, through the
+ * dispatcher for async calls and an {@link EspRequestGate} for every call,
+ * rather than opening sockets the ESP would only queue. Idle connections
+ * are dropped just before the ESP's own keep-alive wait runs out, so a request
+ * rarely lands on a socket the ESP has already closed.
+ *
+ * Timeouts are per endpoint: a poll or navigation frame that hasn't answered
+ * within a couple of seconds is stale anyway, while a firmware upload needs
+ * time to stream and flash.
+ */
+public final class EspHttpClient {
+    // A connect on the ESP's own access point takes milliseconds; longer means it isn't there
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final int DEFAULT_TIMEOUT_MS = 5000;       // Control commands
+    private static final int SAMPLE_TIMEOUT_MS = 3000;        // status, dashboard-data
+    private static final int NAVIGATION_TIMEOUT_MS = 2000;    // Superseded by the next frame anyway
+    private static final int FIRMWARE_TIMEOUT_MS = 120000;    // Upload plus flash write
+    // The ESP waits up to 5 s for the next request on a kept-alive connection
+    private static final long KEEP_ALIVE_MS = 4000;
+
+    private EspHttpClient() {}
+
+    public static OkHttpClient create(EspConnectionMetrics metrics, EspRequestGate gate) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(1);
+        dispatcher.setMaxRequestsPerHost(1);
+
+        return new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            // First, so the permit spans retries and applies to execute() calls as well
+            .addInterceptor(chain -> holdGate(gate, chain))
+            .connectionPool(new ConnectionPool(1, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS))
+            .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+            .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .readTimeout(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .writeTimeout(DEFAULT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .addInterceptor(EspHttpClient::applyEndpointTimeouts)
+            // Replays a request once if the ESP closed the pooled socket under us
+            .retryOnConnectionFailure(true)
+            .eventListenerFactory(metrics.factory())
+            .build();
+    }
+
+    /** Wait for the ESP to be free, then keep it until the response body is closed. */
+    private static Response holdGate(EspRequestGate gate, Interceptor.Chain chain) throws IOException {
+        EspRequestGate.Permit permit = gate.acquire(timeoutFor(chain.request().url().encodedPath()));
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            permit.close();
+            return response;
+        }
+        BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read == -1) {
+                    // Read to the end; the ESP is done with us even if close() comes late
+                    permit.close();
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    permit.close();
+                }
+            }
+        });
+        return response.newBuilder()
+            .body(ResponseBody.create(source, body.contentType(), body.contentLength()))
+            .build();
+    }
+
+    private static Response applyEndpointTimeouts(Interceptor.Chain chain) throws IOException {
+        int timeoutMs = timeoutFor(chain.request().url().encodedPath());
+        return chain
+            .withReadTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+            .withWriteTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+            .proceed(chain.request());
+    }
+
+    static int timeoutFor(String path) {
+        switch (path) {
+            case "/status":
+            case "/dashboard-data":
+                return SAMPLE_TIMEOUT_MS;
+            case "/navigation":
+            case "/navigation/frame":
+                return NAVIGATION_TIMEOUT_MS;
+            case "/update":
+                return FIRMWARE_TIMEOUT_MS;
+            default:
+                return DEFAULT_TIMEOUT_MS;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.activadasboard.service;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.LinkAddress;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * The one place that decides whether the ESP8266 can be reached.
+ *
+ * Network state comes from a {@link ConnectivityManager.NetworkCallback}: the
+ * ESP access point is recognised by the address it hands out, and its
+ * {@link Network} is exposed so HTTP and stream sockets can be bound to it even
+ * when the system default route is mobile data. Liveness comes from real
+ * traffic - callers report successful and failed exchanges - so no dedicated
+ * probe runs while samples are flowing.
+ */
+public class EspNetworkMonitor {
+    private static final String TAG = "EspNetworkMonitor";
+
+    public enum State {
+        NO_NETWORK,         // Not on the ESP access point
+        NETWORK_AVAILABLE,  // On the access point, but the ESP hasn't answered (lately)
+        REACHABLE           // The ESP answered within the liveness timeout
+    }
+
+    public interface Listener {
+        // Called on the monitor's handler, in transition order
+        void onStateChanged(State previous, State state, Network network);
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final String subnetPrefix;
+    private final long livenessTimeoutMs;
+    private final Handler handler;
+    private final Listener listener;
+    private final Object lock = new Object();
+    private State state = State.NO_NETWORK;
+    private Network network;
+    private long lastTrafficTime = 0;
+    private boolean registered = false;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(@NonNull Network available) {
+            // Link properties may not have been delivered yet on older releases, so ask for them
+            onLinkPropertiesChanged(available, connectivityManager.getLinkProperties(available));
+        }
+
+        @Override
+        public void onLinkPropertiesChanged(@NonNull Network changed, LinkProperties linkProperties) {
+            if (isEspNetwork(linkProperties)) {
+                onEspNetworkAvailable(changed);
+            } else {
+                onEspNetworkLost(changed);
+            }
+        }
+
+        @Override
+        public void onLost(@NonNull Network lost) {
+            onEspNetworkLost(lost);
+        }
+    };
+
+    public EspNetworkMonitor(Context context, String espHost, long livenessTimeoutMs,
+                             Handler handler, Listener listener) {
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.subnetPrefix = espHost.substring(0, espHost.lastIndexOf('.') + 1);
+        this.livenessTimeoutMs = livenessTimeoutMs;
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /** Start watching Wi-Fi networks. Safe to call more than once. */
+    public void start() {
+        synchronized (lock) {
+            if (registered) return;
+            registered = true;
+        }
+        // The ESP access point has no internet, so don't let the default INTERNET capability filter it out
+        NetworkRequest request = new NetworkRequest.Builder()
+            .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+            .removeCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+            .build();
+        try {
+            connectivityManager.registerNetworkCallback(request, networkCallback);
+            Log.d(TAG, "Network callback registered");
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to register network callback", e);
+            synchronized (lock) {
+                registered = false;
+            }
+        }
+    }
+
+    public void stop() {
+        synchronized (lock) {
+            if (!registered) return;
+            registered = false;
+        }
+        try {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Error unregistering network callback", e);
+        }
+        synchronized (lock) {
+            network = null;
+            transitionLocked(State.NO_NETWORK);
+        }
+    }
+
+    public State getState() {
+        synchronized (lock) {
+            return state;
+        }
+    }
+
+    public boolean isReachable() {
+        return getState() == State.REACHABLE;
+    }
+
+    /** The ESP access point, or null when we're not on it. */
+    public Network getNetwork() {
+        synchronized (lock) {
+            return network;
+        }
+    }
+
+    public long getLastTrafficTime() {
+        synchronized (lock) {
+            return lastTrafficTime;
+        }
+    }
+
+    /** Report a successful exchange with the ESP8266 (a response or a streamed sample). */
+    public void onTraffic() {
+        synchronized (lock) {
+            lastTrafficTime = System.currentTimeMillis();
+            if (state == State.NETWORK_AVAILABLE) {
+                transitionLocked(State.REACHABLE);
+            }
+        }
+    }
+
+    /**
+     * Report a failed exchange. A single failure doesn't count; the ESP is
+     * only considered gone once nothing has come back for the liveness timeout.
+     *
+     * @return true if this failure made the ESP unreachable
+     */
+    public boolean onTrafficFailed() {
+        synchronized (lock) {
+            if (state != State.REACHABLE
+                    || System.currentTimeMillis() - lastTrafficTime < livenessTimeoutMs) {
+                return false;
+            }
+            transitionLocked(State.NETWORK_AVAILABLE);
+            return true;
+        }
+    }
+
+    /** Drop back to NETWORK_AVAILABLE, e.g. after a failed handshake or an explicit disconnect. */
+    public void markUnreachable() {
+        synchronized (lock) {
+            if (state == State.REACHABLE) {
+                transitionLocked(State.NETWORK_AVAILABLE);
+            }
+        }
+    }
+
+    public String describe() {
+        synchronized (lock) {
+            if (state == State.NO_NETWORK) {
+                return "Not on ESP8266 network";
+            }
+            long sinceTraffic = lastTrafficTime == 0 ? -1 : (System.currentTimeMillis() - lastTrafficTime) / 1000;
+            return (state == State.REACHABLE ? "Connected to ESP8266" : "ESP8266 network, not responding")
+                + (sinceTraffic >= 0 ? " (last data " + sinceTraffic + "s ago)" : "");
+        }
+    }
+
+    private void onEspNetworkAvailable(Network available) {
+        synchronized (lock) {
+            if (available.equals(network)) return;
+            Log.d(TAG, "ESP8266 network available: " + available);
+            network = available;
+            lastTrafficTime = 0;
+            // A new network means a new handshake, even if we were reachable on the old one
+            state = State.NO_NETWORK;
+            transitionLocked(State.NETWORK_AVAILABLE);
+        }
+    }
+
+    private void onEspNetworkLost(Network lost) {
+        synchronized (lock) {
+            if (!lost.equals(network)) return;
+            Log.d(TAG, "ESP8266 network lost: " + lost);
+            network = null;
+            transitionLocked(State.NO_NETWORK);
+        }
+    }
+
+    private void transitionLocked(State next) {
+        if (state == next) return;
+        final State previous = state;
+        final Network current = network;
+        state = next;
+        Log.d(TAG, "State " + previous + " -> " + next);
+        handler.post(() -> listener.onStateChanged(previous, next, current));
+    }
+
+    private boolean isEspNetwork(LinkProperties linkProperties) {
+        if (linkProperties == null) return false;
+        for (LinkAddress linkAddress : linkProperties.getLinkAddresses()) {
+            InetAddress address = linkAddress.getAddress();
+            if (address instanceof Inet4Address && address.getHostAddress().startsWith(subnetPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.activadasboard.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lets one request at a time talk to the ESP8266, however it was started.
+ *
+ * The dispatcher limits only calls made with {@code enqueue()}; polls made
+ * with {@code execute()} run on the caller's thread and would otherwise open a
+ * second socket while a command or navigation frame is in flight. Every call
+ * takes the permit in an interceptor and gives it back when its response body
+ * is closed, so the permit covers reading the body too. Waiters are served in
+ * arrival order.
+ */
+final class EspRequestGate {
+    private final Semaphore permits = new Semaphore(1, true);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /** Held by one request; closing it more than once is harmless. */
+    final class Permit implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                permits.release();
+            }
+        }
+    }
+
+    /** @throws IOException if another request still holds the ESP after {@code timeoutMs} */
+    Permit acquire(long timeoutMs) throws IOException {
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException("ESP busy with another request");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the ESP");
+        }
+        int running = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(running, Math::max);
+        return new Permit();
+    }
+
+    /** Most requests ever in flight together; anything above 1 is a bug. */
+    int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+}
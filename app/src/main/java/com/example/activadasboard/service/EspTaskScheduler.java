@@ -0,0 +1,203 @@
+package com.example.activadasboard.service;
+
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shared, bounded worker pool for all ESP8266 background work. Workers are
+ * named and reused, so a long ride doesn't create a thread per request.
+ *
+ * Backpressure: at most {@code maxQueued} tasks may be pending at once; beyond
+ * that new work is rejected and counted. Tasks submitted with
+ * {@link #submitUnique} are coalesced, so a slow link can't pile up identical
+ * requests.
+ */
+public class EspTaskScheduler {
+    private static final String TAG = "EspTaskScheduler";
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final int maxQueued;
+    private final Map<String, Future<?>> uniqueTasks = new ConcurrentHashMap<>();
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalQueueLatencyMs = new AtomicLong();
+    private final AtomicLong totalRunTimeMs = new AtomicLong();
+    private final AtomicLong maxQueueLatencyMs = new AtomicLong();
+
+    public EspTaskScheduler(String name, int workers, int maxQueued) {
+        this.maxQueued = maxQueued;
+        this.executor = new ScheduledThreadPoolExecutor(workers, new NamedThreadFactory(name));
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Run a task as soon as a worker is free.
+     *
+     * @return the task's future, or null if it was rejected for backpressure
+     */
+    public Future<?> submit(String taskName, Runnable task) {
+        return schedule(taskName, task, 0);
+    }
+
+    /**
+     * Like {@link #submit}, but if a task with the same name is still queued or
+     * running, that task's future is returned instead of queueing a duplicate.
+     */
+    public Future<?> submitUnique(String taskName, Runnable task) {
+        return scheduleUnique(taskName, task, 0);
+    }
+
+    /** Delayed variant of {@link #submitUnique}. */
+    public Future<?> scheduleUnique(String taskName, Runnable task, long delayMs) {
+        AtomicReference<Future<?>> self = new AtomicReference<>();
+        // compute() makes the check and the registration one step, so racing callers share a task
+        return uniqueTasks.compute(taskName, (name, existing) -> {
+            if (existing != null && !existing.isDone()) {
+                return existing;
+            }
+            Future<?> future = schedule(taskName, () -> {
+                try {
+                    task.run();
+                } finally {
+                    // Only our own entry; a newer task may have the name by now. Waits
+                    // for the compute() above, so self is always set here.
+                    uniqueTasks.computeIfPresent(taskName, (key, current) -> current == self.get() ? null : current);
+                }
+            }, delayMs);
+            self.set(future);
+            // Null when rejected, which leaves the name free
+            return future;
+        });
+    }
+
+    /** Cancel a task submitted through {@link #submitUnique}, if it hasn't finished. */
+    public void cancel(String taskName) {
+        Future<?> future = uniqueTasks.remove(taskName);
+        if (future != null && future.cancel(true)) {
+            Log.d(TAG, "Cancelled " + taskName);
+        }
+    }
+
+    /**
+     * Run a task after the given delay.
+     *
+     * @return the task's future, or null if it was rejected for backpressure
+     */
+    public ScheduledFuture<?> schedule(String taskName, Runnable task, long delayMs) {
+        if (executor.getQueue().size() >= maxQueued) {
+            rejectedCount.incrementAndGet();
+            Log.w(TAG, "Rejected " + taskName + " - " + maxQueued + " tasks already pending");
+            return null;
+        }
+
+        final long readyAt = System.currentTimeMillis() + delayMs;
+        try {
+            return executor.schedule(() -> {
+                long start = System.currentTimeMillis();
+                recordQueueLatency(Math.max(0, start - readyAt));
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    Log.e(TAG, "Task " + taskName + " failed", e);
+                } finally {
+                    totalRunTimeMs.addAndGet(System.currentTimeMillis() - start);
+                    completedCount.incrementAndGet();
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            Log.w(TAG, "Rejected " + taskName + " - scheduler shut down");
+            return null;
+        }
+    }
+
+    /** Cancel every queued task. Running tasks are interrupted. */
+    public void cancelAll() {
+        for (Runnable queued : executor.getQueue().toArray(new Runnable[0])) {
+            if (queued instanceof Future) {
+                ((Future<?>) queued).cancel(false);
+            }
+        }
+        for (Future<?> future : uniqueTasks.values()) {
+            future.cancel(true);
+        }
+        uniqueTasks.clear();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getAverageQueueLatencyMs() {
+        long completed = completedCount.get();
+        return completed == 0 ? 0 : totalQueueLatencyMs.get() / completed;
+    }
+
+    public long getMaxQueueLatencyMs() {
+        return maxQueueLatencyMs.get();
+    }
+
+    public long getAverageRunTimeMs() {
+        long completed = completedCount.get();
+        return completed == 0 ? 0 : totalRunTimeMs.get() / completed;
+    }
+
+    public String getStats() {
+        return String.format(java.util.Locale.US,
+            "queued=%d active=%d completed=%d rejected=%d avgWait=%dms maxWait=%dms avgRun=%dms",
+            getQueueDepth(), getActiveCount(), getCompletedCount(), getRejectedCount(),
+            getAverageQueueLatencyMs(), getMaxQueueLatencyMs(), getAverageRunTimeMs());
+    }
+
+    private void recordQueueLatency(long latencyMs) {
+        totalQueueLatencyMs.addAndGet(latencyMs);
+        long max;
+        do {
+            max = maxQueueLatencyMs.get();
+        } while (latencyMs > max && !maxQueueLatencyMs.compareAndSet(max, latencyMs));
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.activadasboard.service;
+
+import com.example.activadasboard.data.DashboardData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns the ESP8266's {@code /history} response into rows that fill a gap in
+ * the local log. Each line of the response is one record,
+ *
+ * <pre>
+ * age ms,speed x10,fuel litres x1000,fuel % x100,economy x10,odometer x100,trip1 x100,trip2 x100
+ * </pre>
+ *
+ * with the age counted back from when the response was sent. The history only
+ * carries the core gauges, so the remaining fields are copied from the last
+ * row before the gap and the rows are marked {@link DashboardData#backfilled}.
+ */
+public final class HistoryBackfill {
+    static final int FIELD_COUNT = 8;
+
+    public static final class Result {
+        /** Rows strictly inside the gap, oldest first. */
+        public final List<DashboardData> rows;
+        /** Whether the row that ended the gap still has a gap before it. */
+        public final boolean gapRemains;
+
+        Result(List<DashboardData> rows, boolean gapRemains) {
+            this.rows = rows;
+            this.gapRemains = gapRemains;
+        }
+    }
+
+    private HistoryBackfill() {}
+
+    /**
+     * @param receivedAt     when the response arrived; ages count back from here
+     * @param before         the last row before the gap
+     * @param gapEnd         timestamp of the first row after the gap
+     * @param gapThresholdMs rows further apart than this still have a gap between them
+     */
+    public static Result parse(String body, long receivedAt, DashboardData before, long gapEnd,
+                               long gapThresholdMs) {
+        List<DashboardData> rows = new ArrayList<>();
+        long[] fields = new long[FIELD_COUNT];
+        for (String line : body.split("\n")) {
+            if (!parseLine(line.trim(), fields)) continue;
+            long timestamp = receivedAt - fields[0];
+            // Only what falls strictly inside the gap; the rest we already have
+            if (timestamp <= before.timestamp || timestamp >= gapEnd) continue;
+            rows.add(toRow(timestamp, fields, before));
+        }
+        if (rows.isEmpty()) {
+            return new Result(Collections.emptyList(), true);
+        }
+        // Lines come oldest first, but don't rely on it for the gap checks
+        Collections.sort(rows, (a, b) -> Long.compare(a.timestamp, b.timestamp));
+
+        long previous = before.timestamp;
+        for (DashboardData row : rows) {
+            // The ring may not reach back far enough, or the ESP may have restarted
+            row.gapBefore = row.timestamp - previous > gapThresholdMs;
+            previous = row.timestamp;
+        }
+        return new Result(rows, gapEnd - previous > gapThresholdMs);
+    }
+
+    static boolean parseLine(String line, long[] fields) {
+        if (line.isEmpty()) return false;
+        int field = 0;
+        long value = 0;
+        boolean hasDigits = false;
+        for (int i = 0; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : ',';
+            if (c == ',') {
+                if (!hasDigits || field >= FIELD_COUNT) return false;
+                fields[field++] = value;
+                value = 0;
+                hasDigits = false;
+            } else if (c >= '0' && c <= '9' && value < Long.MAX_VALUE / 10) {
+                value = value * 10 + (c - '0');
+                hasDigits = true;
+            } else {
+                return false;
+            }
+        }
+        return field == FIELD_COUNT;
+    }
+
+    private static DashboardData toRow(long timestamp, long[] fields, DashboardData before) {
+        DashboardData row = new DashboardData();
+        row.timestamp = timestamp;
+        row.speed = fields[1] / 10.0;
+        row.fuelLiters = fields[2] / 1000.0;
+        row.fuelPercentage = fields[3] / 100.0;
+        row.instantEconomy = fields[4] / 10.0;
+        row.totalDistance = fields[5] / 100.0;
+        row.trip1Distance = fields[6] / 100.0;
+        row.trip2Distance = fields[7] / 100.0;
+        row.trip1Fuel = before.trip1Fuel;
+        row.trip1Average = before.trip1Average;
+        row.trip1Started = before.trip1Started;
+        row.trip2Fuel = before.trip2Fuel;
+        row.trip2Average = before.trip2Average;
+        row.trip2Started = before.trip2Started;
+        row.fuelFillAverage = before.fuelFillAverage;
+        row.fuelFillDistance = before.fuelFillDistance;
+        row.lastFuelFill = before.lastFuelFill;
+        row.fuelFillStarted = before.fuelFillStarted;
+        row.fuelUsedSinceFill = before.fuelUsedSinceFill;
+        row.backfilled = true;
+        return row;
+    }
+}
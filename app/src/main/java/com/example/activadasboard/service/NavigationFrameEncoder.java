@@ -0,0 +1,190 @@
+package com.example.activadasboard.service;
+
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/**
+ * Encodes navigation updates as compact text frames for the ESP8266's
+ * {@code /navigation/frame} endpoint, instead of POSTing the full JSON object
+ * every second.
+ *
+ * <pre>
+ * S,&lt;step&gt;,&lt;total&gt;,&lt;maneuver&gt;,&lt;distance m&gt;,&lt;bearing&gt;,&lt;speed km/h&gt;,&lt;instruction&gt;
+ * D,&lt;step&gt;[,d&lt;distance m&gt;][,b&lt;bearing&gt;][,v&lt;speed km/h&gt;]
+ * </pre>
+ *
+ * A step frame carries the instruction text and is sent once per step. In
+ * between, delta frames carry only the numbers that changed at the precision
+ * the LCD can show, and an update that changes nothing produces no frame,
+ * unless {@link #KEEP_ALIVE_MS} have passed since the last one. Then a bare
+ * {@code D,<step>} goes out, because the firmware drops the navigation screen
+ * 30 s after the last frame it accepted, e.g. while waiting at a light. If a
+ * frame may not have arrived, {@link #reset()} makes the next one a step
+ * frame again.
+ */
+public class NavigationFrameEncoder {
+    // The firmware keeps the instruction in a char[32]
+    static final int MAX_INSTRUCTION_LENGTH = 31;
+    // Well inside the firmware's NAV_SCREEN_DURATION, even if a keep-alive is lost
+    public static final long KEEP_ALIVE_MS = 10000;
+
+    /** One navigation fix, as MapFragment sees it. */
+    public static class Update {
+        public final int step;
+        public final int totalSteps;
+        public final String maneuver;
+        public final String instruction;    // May contain the HTML Directions returns
+        public final double distanceMeters; // To the end of the current step
+        public final double bearing;
+        public final double speedKmh;
+
+        public Update(int step, int totalSteps, String maneuver, String instruction,
+                      double distanceMeters, double bearing, double speedKmh) {
+            this.step = step;
+            this.totalSteps = totalSteps;
+            this.maneuver = maneuver != null ? maneuver : "straight";
+            this.instruction = instruction != null ? instruction : "";
+            this.distanceMeters = distanceMeters;
+            this.bearing = bearing;
+            this.speedKmh = speedKmh;
+        }
+
+        /**
+         * Read the JSON object the app used to POST to {@code /navigation},
+         * interpreting {@code distance_to_next} the way the firmware does.
+         */
+        public static Update fromLegacyJson(JSONObject json) {
+            return new Update(
+                json.optInt("current_step", 0),
+                json.optInt("total_steps", 0),
+                json.optString("maneuver", "straight"),
+                json.optString("next_instruction", ""),
+                parseHumanReadableDistance(json.optString("distance_to_next", "0 m")),
+                json.optDouble("bearing", 0),
+                json.optDouble("speed", 0));
+        }
+    }
+
+    private boolean synced = false;
+    private int step;
+    private int totalSteps;
+    private String maneuver;
+    private String instruction;
+    private int distance;
+    private int bearing;
+    private int speed;
+    private long lastFrameMs;
+
+    /**
+     * Encode an update against what the ESP already has.
+     *
+     * @param nowMs a monotonic clock, to tell when a keep-alive is due
+     * @return the frame to send, or null if the ESP's display wouldn't change
+     *         and a keep-alive isn't due yet
+     */
+    public synchronized String encode(Update update, long nowMs) {
+        String cleaned = cleanInstruction(update.instruction);
+        int newDistance = quantiseDistance(update.distanceMeters);
+        int newBearing = quantiseBearing(update.bearing);
+        int newSpeed = quantiseSpeed(update.speedKmh);
+
+        if (!synced || update.step != step || update.totalSteps != totalSteps
+                || !update.maneuver.equals(maneuver) || !cleaned.equals(instruction)) {
+            synced = true;
+            step = update.step;
+            totalSteps = update.totalSteps;
+            maneuver = update.maneuver;
+            instruction = cleaned;
+            distance = newDistance;
+            bearing = newBearing;
+            speed = newSpeed;
+            lastFrameMs = nowMs;
+            return String.format(Locale.US, "S,%d,%d,%s,%d,%d,%d,%s",
+                step, totalSteps, maneuver, distance, bearing, speed, instruction);
+        }
+
+        StringBuilder frame = new StringBuilder(32).append("D,").append(step);
+        int fields = 0;
+        if (newDistance != distance) {
+            frame.append(",d").append(newDistance);
+            distance = newDistance;
+            fields++;
+        }
+        if (newBearing != bearing) {
+            frame.append(",b").append(newBearing);
+            bearing = newBearing;
+            fields++;
+        }
+        if (newSpeed != speed) {
+            frame.append(",v").append(newSpeed);
+            speed = newSpeed;
+            fields++;
+        }
+        if (fields == 0 && nowMs - lastFrameMs < KEEP_ALIVE_MS) {
+            return null;
+        }
+        lastFrameMs = nowMs;
+        return frame.toString();
+    }
+
+    /** Forget what the ESP has, so the next update is sent as a step frame. */
+    public synchronized void reset() {
+        synced = false;
+    }
+
+    // The LCD shows whole metres under 1 km and tenths of a km above; GPS jitter below that is noise
+    static int quantiseDistance(double meters) {
+        if (meters <= 0 || Double.isNaN(meters)) return 0;
+        int unit = meters < 1000 ? 10 : 100;
+        return (int) (Math.round(meters / unit) * unit);
+    }
+
+    static int quantiseBearing(double degrees) {
+        if (Double.isNaN(degrees)) return 0;
+        int rounded = (int) (Math.round(degrees / 5.0) * 5);
+        return ((rounded % 360) + 360) % 360;
+    }
+
+    static int quantiseSpeed(double kmh) {
+        if (kmh <= 0 || Double.isNaN(kmh)) return 0;
+        return (int) Math.round(kmh);
+    }
+
+    /**
+     * Strip markup the way the firmware's cleanHtmlTags() does (plus any other
+     * tag), flatten whitespace, and cut to what the firmware can hold.
+     */
+    static String cleanInstruction(String html) {
+        String text = html.replaceAll("<[^>]*>", " ")
+            .replace("&nbsp;", " ")
+            .replace("&lt;", "<")
+            .replace("&gt;", ">")
+            .replace("&amp;", "&")
+            .replaceAll("\\s+", " ")
+            .trim();
+        return text.length() > MAX_INSTRUCTION_LENGTH ? text.substring(0, MAX_INSTRUCTION_LENGTH).trim() : text;
+    }
+
+    // Same rules as the firmware: leading number, times 1000 if the text mentions km
+    static double parseHumanReadableDistance(String text) {
+        int end = 0;
+        boolean seenDot = false;
+        while (end < text.length()) {
+            char c = text.charAt(end);
+            if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else if (c < '0' || c > '9') {
+                break;
+            }
+            end++;
+        }
+        double value;
+        try {
+            value = end == 0 ? 0 : Double.parseDouble(text.substring(0, end));
+        } catch (NumberFormatException e) {
+            value = 0;
+        }
+        return text.contains("km") ? value * 1000 : value;
+    }
+}
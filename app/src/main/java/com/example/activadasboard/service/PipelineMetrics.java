@@ -0,0 +1,76 @@
+package com.example.activadasboard.service;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named latency histograms and counters for each stage of the ESP8266 sample
+ * pipeline, so a slow dashboard can be pinned on Wi-Fi, parsing, SQLite or the
+ * main thread rather than guessed at from error logs.
+ *
+ * Stages are created on first use; look them up once and keep the reference
+ * on hot paths. Names are dotted, e.g. {@code dashboard.get}, and are listed
+ * in name order so related stages sit together.
+ */
+public class PipelineMetrics {
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private volatile long since = System.currentTimeMillis();
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public AtomicLong counter(String name) {
+        return counters.computeIfAbsent(name, key -> new AtomicLong());
+    }
+
+    /** Clear every stage; references handed out earlier stay valid. */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : counters.values()) {
+            counter.set(0);
+        }
+        since = System.currentTimeMillis();
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        report.append("Since ").append(format.format(new Date(since))).append('\n');
+        for (LatencyHistogram histogram : new TreeMap<>(histograms).values()) {
+            report.append(histogram.getName()).append(": ").append(histogram.getSummary()).append('\n');
+        }
+        for (Map.Entry<String, AtomicLong> counter : new TreeMap<>(counters).entrySet()) {
+            report.append(counter.getKey()).append(" = ").append(counter.getValue().get()).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * Write {@code report}, this report with anything the caller adds, to a new
+     * timestamped file in {@code directory}. Blocking.
+     */
+    public File dumpTo(File directory, String report) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        File file = new File(directory, "pipeline_metrics_" + timestamp + ".txt");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(report);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.activadasboard.service;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.activadasboard.data.DashboardSample;
+
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Fan-out bus for live dashboard samples. Any number of subscribers can
+ * listen, each on the executor it chooses, so the UI gets samples on the main
+ * thread while the foreground service and others take them elsewhere.
+ *
+ * Delivery is conflated per subscriber. Each subscription holds one pending
+ * sample; if a subscriber is still busy when the next sample arrives, the
+ * pending one is overwritten and the subscriber only sees the latest. A slow
+ * subscriber therefore never queues work on its executor or holds up the
+ * publisher or other subscribers. Calls to one subscriber never overlap, even
+ * on a thread pool.
+ *
+ * For each subscriber the bus records how old a sample is when the subscriber
+ * gets it ({@code bus.<name>.wait}) and how long the callback takes
+ * ({@code bus.<name>.run}).
+ */
+public class TelemetryBus {
+    private static final String TAG = "TelemetryBus";
+
+    public interface Subscriber {
+        // The sample is reused for the next delivery; copy anything kept past the call
+        void onSample(DashboardSample sample);
+    }
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final PipelineMetrics metrics;
+
+    public TelemetryBus(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Subscription subscribe(String name, Executor executor, Subscriber subscriber) {
+        Subscription subscription = new Subscription(name, executor, subscriber);
+        subscriptions.add(subscription);
+        Log.d(TAG, "Subscribed " + name + " (" + subscriptions.size() + " subscribers)");
+        return subscription;
+    }
+
+    /**
+     * Subscribe for as long as {@code owner} lives; the subscription is removed
+     * when it's destroyed. Must be called on the main thread.
+     */
+    public Subscription subscribe(String name, LifecycleOwner owner, Executor executor, Subscriber subscriber) {
+        Subscription subscription = subscribe(name, executor, subscriber);
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            subscription.unsubscribe();
+            return subscription;
+        }
+        lifecycle.addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    source.getLifecycle().removeObserver(this);
+                    subscription.unsubscribe();
+                }
+            }
+        });
+        return subscription;
+    }
+
+    /** Offer a sample to every subscriber. The sample is copied before this returns. */
+    public void publish(DashboardSample sample) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(sample);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public String getStats() {
+        StringBuilder stats = new StringBuilder();
+        for (Subscription subscription : subscriptions) {
+            if (stats.length() > 0) stats.append(", ");
+            stats.append(subscription.getStats());
+        }
+        return stats.toString();
+    }
+
+    public final class Subscription {
+        private final String name;
+        private final Executor executor;
+        private final Subscriber subscriber;
+        private final Runnable drain = this::drain;
+        private final LatencyHistogram waitLatency;
+        private final LatencyHistogram runLatency;
+        // Guarded by this
+        private final DashboardSample pending = new DashboardSample();
+        private boolean hasPending = false;
+        private long pendingSinceNanos;
+        private boolean scheduled = false;
+        private long deliveredCount = 0;
+        private long conflatedCount = 0;
+        // Only touched by the one drain in flight
+        private final DashboardSample delivering = new DashboardSample();
+        private volatile boolean active = true;
+
+        private Subscription(String name, Executor executor, Subscriber subscriber) {
+            this.name = name;
+            this.executor = executor;
+            this.subscriber = subscriber;
+            this.waitLatency = metrics.histogram("bus." + name + ".wait");
+            this.runLatency = metrics.histogram("bus." + name + ".run");
+        }
+
+        public void unsubscribe() {
+            if (!active) return;
+            active = false;
+            subscriptions.remove(this);
+            Log.d(TAG, "Unsubscribed " + name);
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        private void offer(DashboardSample sample) {
+            synchronized (this) {
+                if (!active) return;
+                if (hasPending) {
+                    conflatedCount++;
+                }
+                pending.copyFrom(sample);
+                pendingSinceNanos = System.nanoTime();
+                hasPending = true;
+                if (scheduled) return;
+                scheduled = true;
+            }
+            execute();
+        }
+
+        private void drain() {
+            long offeredAt;
+            synchronized (this) {
+                if (!active || !hasPending) {
+                    scheduled = false;
+                    return;
+                }
+                delivering.copyFrom(pending);
+                offeredAt = pendingSinceNanos;
+                hasPending = false;
+            }
+
+            long start = System.nanoTime();
+            waitLatency.recordNanos(start - offeredAt);
+            try {
+                subscriber.onSample(delivering);
+            } catch (Exception e) {
+                Log.e(TAG, "Subscriber " + name + " failed", e);
+            }
+            runLatency.recordSince(start);
+
+            synchronized (this) {
+                deliveredCount++;
+                // A newer sample arrived while we were delivering; go round again
+                if (!active || !hasPending) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            execute();
+        }
+
+        private void execute() {
+            try {
+                executor.execute(drain);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    scheduled = false;
+                }
+                Log.w(TAG, "Executor for " + name + " rejected delivery", e);
+            }
+        }
+
+        private synchronized String getStats() {
+            return String.format(Locale.US, "%s delivered=%d conflated=%d", name, deliveredCount, conflatedCount);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.activadasboard.service;
+
+import android.util.Log;
+
+import com.example.activadasboard.data.DashboardSample;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.net.SocketFactory;
+
+/**
+ * Long-lived telemetry channel to the ESP8266. The firmware pushes one
+ * newline-delimited JSON sample per second on a raw TCP socket, so a sample
+ * costs no request round trip. When the socket drops the listener is told and
+ * the caller is expected to fall back to polling.
+ *
+ * Frames are split and decoded from a reused byte buffer into one reused
+ * {@link DashboardSample}, so steady-state streaming allocates nothing per sample.
+ *
+ * The socket comes from the given factory, so it can be bound to the ESP
+ * access point's network rather than whatever the default route is. The push
+ * interval can be changed on the fly with {@link #requestInterval}.
+ */
+public class TelemetryStream {
+    private static final String TAG = "TelemetryStream";
+    private static final int CONNECT_TIMEOUT = 3000;
+    // Three missed samples means the stream is dead; never less than this
+    private static final int READ_TIMEOUT = 3000;
+    private static final int MISSED_SAMPLES_TIMEOUT = 3;
+    private static final int MAX_FRAME_SIZE = 16 * 1024;
+
+    private final String host;
+    private final int port;
+    private final SocketFactory socketFactory;
+    private final Listener listener;
+    private volatile boolean running = false;
+    private volatile Socket socket;
+    private Thread readerThread;
+    private final Object writeLock = new Object();
+    private volatile long requestedIntervalMs = 0;
+    private long sentIntervalMs = 0; // Guarded by writeLock
+    private final DashboardSampleDecoder decoder = new DashboardSampleDecoder();
+    private final DashboardSample sample = new DashboardSample();
+
+    public interface Listener {
+        // Called on the reader thread; the sample is reused for the next frame
+        void onSample(DashboardSample sample);
+        void onStreamClosed(String reason);
+    }
+
+    public TelemetryStream(String host, int port, SocketFactory socketFactory, Listener listener) {
+        this.host = host;
+        this.port = port;
+        this.socketFactory = socketFactory;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        readerThread = new Thread(this::readLoop, "Esp8266TelemetryStream");
+        readerThread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        closeSocket();
+        if (readerThread != null) {
+            readerThread.interrupt();
+            readerThread = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ask the firmware to push a sample every {@code intervalMs}. Only sent
+     * when it differs from the last request; if the socket isn't connected yet
+     * it goes out right after connecting. Writes to the socket, so call it off
+     * the main thread.
+     */
+    public void requestInterval(long intervalMs) {
+        requestedIntervalMs = intervalMs;
+        sendRequestedInterval();
+    }
+
+    private void sendRequestedInterval() {
+        Socket s = socket;
+        long intervalMs = requestedIntervalMs;
+        if (s == null || !s.isConnected() || intervalMs <= 0) return;
+        synchronized (writeLock) {
+            if (intervalMs == sentIntervalMs) return;
+            try {
+                // Give slower pushes the same number of missed samples before giving up
+                s.setSoTimeout((int) Math.max(READ_TIMEOUT, intervalMs * MISSED_SAMPLES_TIMEOUT));
+                OutputStream out = s.getOutputStream();
+                out.write(("interval " + intervalMs + "\n").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                sentIntervalMs = intervalMs;
+            } catch (IOException e) {
+                Log.w(TAG, "Error requesting stream interval", e);
+            }
+        }
+    }
+
+    private void readLoop() {
+        String reason = "Stream stopped";
+        try {
+            Socket s = socketFactory.createSocket();
+            socket = s;
+            s.setTcpNoDelay(true);
+            s.setKeepAlive(true);
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            s.setSoTimeout(READ_TIMEOUT);
+            Log.d(TAG, "Telemetry stream connected to " + host + ":" + port);
+            sendRequestedInterval();
+
+            InputStream in = s.getInputStream();
+            byte[] chunk = new byte[4096];
+            byte[] frame = new byte[1024];
+            int frameLength = 0;
+            boolean overflow = false;
+            int n;
+            while (running && (n = in.read(chunk)) != -1) {
+                for (int i = 0; i < n; i++) {
+                    byte b = chunk[i];
+                    if (b == '\n') {
+                        if (overflow) {
+                            Log.w(TAG, "Dropping oversized telemetry frame");
+                        } else if (frameLength > 0) {
+                            deliverFrame(frame, frameLength);
+                        }
+                        frameLength = 0;
+                        overflow = false;
+                    } else if (b != '\r' && !overflow) {
+                        if (frameLength == frame.length) {
+                            if (frame.length >= MAX_FRAME_SIZE) {
+                                overflow = true;
+                                continue;
+                            }
+                            frame = Arrays.copyOf(frame, frame.length * 2);
+                        }
+                        frame[frameLength++] = b;
+                    }
+                }
+            }
+            reason = "Stream closed by ESP8266";
+        } catch (IOException e) {
+            reason = "Stream error: " + e.getMessage();
+        } finally {
+            closeSocket();
+            boolean wasRunning = running;
+            running = false;
+            if (wasRunning) {
+                Log.w(TAG, reason);
+                listener.onStreamClosed(reason);
+            }
+        }
+    }
+
+    private void deliverFrame(byte[] frame, int length) {
+        try {
+            decoder.decode(frame, 0, length, sample);
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping malformed telemetry frame", e);
+            return;
+        }
+        try {
+            listener.onSample(sample);
+        } catch (Exception e) {
+            Log.e(TAG, "Error delivering telemetry sample", e);
+        }
+    }
+
+    private void closeSocket() {
+        Socket s = socket;
+        socket = null;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing telemetry socket", e);
+            }
+        }
+    }
+}
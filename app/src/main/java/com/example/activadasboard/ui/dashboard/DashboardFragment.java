@@ -19,9 +19,11 @@ import android.widget.EditText;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.example.activadasboard.data.DashboardSample;
 import com.example.activadasboard.databinding.FragmentDashboardBinding;
 import com.example.activadasboard.R;
 
@@ -32,7 +34,6 @@ import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.Priority;
 
-import org.json.JSONObject;
 import com.google.android.material.button.MaterialButton;
 
 public class DashboardFragment extends Fragment {
@@ -118,70 +119,11 @@ public class DashboardFragment extends Fragment {
     }
 
     private void setupEsp8266Listeners() {
-        esp8266Service.setDataListener(new Esp8266Service.OnDataListener() {
-            @Override
-            public void onDashboardData(JSONObject data) {
-                // Multiple safety checks to prevent crashes
-                if (!isAdded() || binding == null || getActivity() == null || getActivity().isFinishing()) {
-                    Log.d("DashboardFragment", "Ignoring dashboard data - fragment not ready");
-                    return;
-                }
-                
-                try {
-                    Log.d("DashboardFragment", "Received dashboard data: " + data.toString());
-                    
-                    dashboardViewModel.setIsConnected(true);
-                    updateConnectButtonState(true);
-                    
-                    double speed = data.optDouble("speed", 0.0);
-                    double trip1 = data.optDouble("trip1", 0.0);
-                    double trip2 = data.optDouble("trip2", 0.0);
-                    double odometer = data.optDouble("odometer", 0.0);
-                    
-                    // Get fuel data
-                    double fuelLiters = data.optDouble("fuelLiters", 0.0);
-                    double fuelFillDistance = data.optDouble("fuelFillDistance", 0.0);
-                    double fuelFillAverage = data.optDouble("fuelFillAverage", 0.0);
-                    double economy = data.optDouble("instantEconomy", 0.0);
-                    
-                    Log.d("DashboardFragment", String.format("Updating UI - Speed: %.1f, Trip1: %.1f, Trip2: %.1f, Odo: %.1f, Fuel: %.1fL, FillDist: %.1fkm, FillAvg: %.1fkm/L, Economy: %.1fkm/L",
-                        speed, trip1, trip2, odometer, fuelLiters, fuelFillDistance, fuelFillAverage, economy));
-                    
-                    dashboardViewModel.setCurrentSpeed(speed);
-                    dashboardViewModel.setTrip1Distance(trip1);
-                    dashboardViewModel.setTrip2Distance(trip2);
-                    dashboardViewModel.setOdometer(odometer);
-                    
-                    // Update UI immediately with additional safety check
-                    if (getActivity() != null && !getActivity().isFinishing()) {
-                        getActivity().runOnUiThread(() -> {
-                            // Final safety check before updating UI
-                            if (binding != null && isAdded() && getActivity() != null && !getActivity().isFinishing()) {
-                                binding.speedValue.setText(String.format("%.1f", speed));
-                                binding.trip1DistanceValue.setText(String.format("%.1f km", trip1));
-                                binding.trip2DistanceValue.setText(String.format("%.1f km", trip2));
-                                binding.odometerValue.setText(String.format("%.1f km", odometer));
-                                
-                                // Update fuel data
-                                binding.fuelValue.setText(String.format("%.1f", fuelLiters));
-                                binding.fuelFillDistanceValue.setText(String.format("%.1f km", fuelFillDistance));
-                                binding.fuelFillAverageValue.setText(String.format("%.1f km/L", fuelFillAverage));
-                                binding.economyValue.setText(String.format("%.1f km/L", economy));
-                            }
-                        });
-                    }
-                } catch (Exception e) {
-                    Log.e("DashboardFragment", "Error parsing dashboard data", e);
-                    if (getActivity() != null && !getActivity().isFinishing()) {
-                        getActivity().runOnUiThread(() -> {
-                            if (isAdded()) {
-                                Toast.makeText(requireContext(), "Error updating dashboard", Toast.LENGTH_SHORT).show();
-                            }
-                        });
-                    }
-                }
-            }
+        // Live samples, delivered on the main thread until the view is destroyed
+        esp8266Service.getTelemetryBus().subscribe("dashboard", getViewLifecycleOwner(),
+                ContextCompat.getMainExecutor(requireContext()), this::onDashboardSample);
 
+        esp8266Service.setDataListener(new Esp8266Service.OnDataListener() {
             @Override
             public void onError(String error) {
                 // Multiple safety checks to prevent crashes
@@ -233,6 +175,44 @@ public class DashboardFragment extends Fragment {
         });
     }
 
+    private void onDashboardSample(DashboardSample data) {
+        // Multiple safety checks to prevent crashes
+        if (!isAdded() || binding == null || getActivity() == null || getActivity().isFinishing()) {
+            Log.d("DashboardFragment", "Ignoring dashboard data - fragment not ready");
+            return;
+        }
+
+        try {
+            dashboardViewModel.setIsConnected(true);
+            updateConnectButtonState(true);
+
+            double speed = data.speed;
+            double trip1 = data.trip1;
+            double trip2 = data.trip2;
+            double odometer = data.odometer;
+
+            dashboardViewModel.setCurrentSpeed(speed);
+            dashboardViewModel.setTrip1Distance(trip1);
+            dashboardViewModel.setTrip2Distance(trip2);
+            dashboardViewModel.setOdometer(odometer);
+
+            // Already on the main thread
+            binding.speedValue.setText(String.format("%.1f", speed));
+            binding.trip1DistanceValue.setText(String.format("%.1f km", trip1));
+            binding.trip2DistanceValue.setText(String.format("%.1f km", trip2));
+            binding.odometerValue.setText(String.format("%.1f km", odometer));
+
+            // Update fuel data
+            binding.fuelValue.setText(String.format("%.1f", data.fuelLiters));
+            binding.fuelFillDistanceValue.setText(String.format("%.1f km", data.fuelFillDistance));
+            binding.fuelFillAverageValue.setText(String.format("%.1f km/L", data.fuelFillAverage));
+            binding.economyValue.setText(String.format("%.1f km/L", data.instantEconomy));
+        } catch (Exception e) {
+            Log.e("DashboardFragment", "Error updating dashboard", e);
+            Toast.makeText(requireContext(), "Error updating dashboard", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void setupObservers() {
         // Observe connection status
         dashboardViewModel.getConnectionStatus().observe(getViewLifecycleOwner(), status -> {
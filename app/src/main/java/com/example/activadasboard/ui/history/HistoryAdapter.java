@@ -6,22 +6,39 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.activadasboard.R;
 import com.example.activadasboard.data.DashboardData;
 
 import java.text.SimpleDateFormat;
-import java.util.Collections;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
-public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.HistoryViewHolder> {
+// Pages are submitted as whole lists; DiffUtil works out the inserted and dropped rows off the main thread
+public class HistoryAdapter extends ListAdapter<DashboardData, HistoryAdapter.HistoryViewHolder> {
+
+    private static final DiffUtil.ItemCallback<DashboardData> DIFF_CALLBACK = new DiffUtil.ItemCallback<DashboardData>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull DashboardData oldItem, @NonNull DashboardData newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull DashboardData oldItem, @NonNull DashboardData newItem) {
+            // Stored rows are never updated in place
+            return oldItem.timestamp == newItem.timestamp;
+        }
+    };
 
-    private List<DashboardData> dataList = Collections.emptyList();
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
 
+    public HistoryAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
     @NonNull
     @Override
     public HistoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -32,22 +49,12 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.HistoryV
 
     @Override
     public void onBindViewHolder(@NonNull HistoryViewHolder holder, int position) {
-        DashboardData data = dataList.get(position);
+        DashboardData data = getItem(position);
         holder.tripDate.setText(dateFormat.format(new Date(data.timestamp)));
         holder.tripDistance.setText(String.format(Locale.getDefault(), "Distance: %.2f km", data.totalDistance));
         holder.tripAvgSpeed.setText(String.format(Locale.getDefault(), "Avg Speed: %.1f km/h", data.speed));
     }
 
-    @Override
-    public int getItemCount() {
-        return dataList.size();
-    }
-
-    public void setData(List<DashboardData> data) {
-        this.dataList = data;
-        notifyDataSetChanged();
-    }
-
     static class HistoryViewHolder extends RecyclerView.ViewHolder {
         TextView tripDate;
         TextView tripDistance;
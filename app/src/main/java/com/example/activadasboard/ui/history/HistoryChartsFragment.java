@@ -3,6 +3,7 @@ package com.example.activadasboard.ui.history;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -11,15 +12,19 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
-import com.example.activadasboard.R;
-import com.example.activadasboard.data.DashboardData;
+import com.example.activadasboard.data.ChartPoint;
+import com.example.activadasboard.data.ChartWindow;
 import com.example.activadasboard.databinding.FragmentHistoryChartsBinding;
+import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.components.AxisBase;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
 import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
-import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+import com.github.mikephil.charting.formatter.ValueFormatter;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -27,15 +32,38 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
+/**
+ * History charts. Data is loaded already downsampled to roughly one min/max
+ * bucket per pixel column, and re-queried for the visible window after every
+ * zoom or pan, so the cost of a redraw doesn't depend on how much history
+ * is stored.
+ */
 public class HistoryChartsFragment extends Fragment {
+    private static final int DEFAULT_MAX_POINTS = 500;
+    private static final long ONE_DAY = 24 * 60 * 60 * 1000L;
+
     private FragmentHistoryChartsBinding binding;
     private HistoryViewModel viewModel;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    private final SimpleDateFormat dateTimeFormat = new SimpleDateFormat("MMM dd HH:mm", Locale.getDefault());
+    private LineChart[] charts;
+    private long[] selectedRange;
+    // X values are seconds since axisBase, so float precision holds over long ranges
+    private long axisBase = 0;
+    private long axisEnd = -1;
+
+    private final ValueFormatter timeAxisFormatter = new ValueFormatter() {
+        @Override
+        public String getAxisLabel(float value, AxisBase axis) {
+            SimpleDateFormat format = axisEnd - axisBase > ONE_DAY ? dateTimeFormat : timeFormat;
+            return format.format(new Date(axisBase + (long) (value * 1000)));
+        }
+    };
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        viewModel = new ViewModelProvider(requireActivity()).get(HistoryViewModel.class);
+        viewModel = new ViewModelProvider(requireParentFragment()).get(HistoryViewModel.class);
     }
 
     @Nullable
@@ -53,25 +81,27 @@ public class HistoryChartsFragment extends Fragment {
     }
 
     private void setupCharts() {
-        setupChart(binding.speedChart, "Speed (km/h)", Color.BLUE);
-        setupChart(binding.economyChart, "Fuel Economy (km/L)", Color.GREEN);
-        setupChart(binding.fuelLevelChart, "Fuel Level (%)", Color.RED);
-        setupChart(binding.distanceChart, "Distance (km)", Color.MAGENTA);
+        charts = new LineChart[]{binding.speedChart, binding.economyChart, binding.fuelLevelChart, binding.distanceChart};
+        for (LineChart chart : charts) {
+            setupChart(chart);
+        }
     }
 
-    private void setupChart(com.github.mikephil.charting.charts.LineChart chart, String label, int color) {
+    private void setupChart(LineChart chart) {
         chart.getDescription().setEnabled(false);
         chart.setDrawGridBackground(false);
         chart.setDrawBorders(false);
         chart.setTouchEnabled(true);
         chart.setDragEnabled(true);
-        chart.setScaleEnabled(true);
-        chart.setPinchZoom(true);
+        chart.setScaleXEnabled(true);
+        chart.setScaleYEnabled(false);
+        chart.setPinchZoom(false);
 
         XAxis xAxis = chart.getXAxis();
         xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
         xAxis.setDrawGridLines(false);
-        xAxis.setGranularity(1f);
+        xAxis.setValueFormatter(timeAxisFormatter);
+        xAxis.setLabelCount(4);
 
         YAxis leftAxis = chart.getAxisLeft();
         leftAxis.setDrawGridLines(true);
@@ -79,99 +109,143 @@ public class HistoryChartsFragment extends Fragment {
 
         chart.getAxisRight().setEnabled(false);
         chart.getLegend().setEnabled(true);
+        chart.setOnChartGestureListener(new ViewportGestureListener(chart));
     }
 
     private void observeData() {
-        viewModel.getHistoricalData().observe(getViewLifecycleOwner(), this::updateCharts);
+        viewModel.getSelectedRange().observe(getViewLifecycleOwner(), range -> {
+            selectedRange = range;
+            if (range != null) {
+                requestWindow(range[0], range[1], 1);
+            }
+        });
+        viewModel.getChartData().observe(getViewLifecycleOwner(), this::updateCharts);
     }
 
-    private void updateCharts(List<DashboardData> data) {
-        if (data == null || data.isEmpty()) return;
+    private void requestWindow(long windowStart, long windowEnd, int widthMultiplier) {
+        if (selectedRange == null || binding == null) return;
+        int width = binding.speedChart.getWidth();
+        // Two entries (min and max) per bucket, so one bucket per two pixels
+        int maxPoints = (width > 0 ? width / 2 : DEFAULT_MAX_POINTS) * widthMultiplier;
+        viewModel.fetchChartData(selectedRange[0], selectedRange[1], windowStart, windowEnd, maxPoints);
+    }
 
-        // Create time labels
-        List<String> timeLabels = new ArrayList<>();
-        for (DashboardData point : data) {
-            timeLabels.add(dateFormat.format(new Date(point.timestamp)));
+    private void updateCharts(ChartWindow window) {
+        if (window == null || binding == null) return;
+
+        boolean rangeChanged = window.rangeStart != axisBase || window.rangeEnd != axisEnd;
+        axisBase = window.rangeStart;
+        axisEnd = window.rangeEnd;
+
+        int size = window.points.size();
+        List<Entry> speed = new ArrayList<>(size * 2);
+        List<Entry> economy = new ArrayList<>(size * 2);
+        List<Entry> fuel = new ArrayList<>(size * 2);
+        List<Entry> distance = new ArrayList<>(size);
+        for (ChartPoint point : window.points) {
+            float x = toX(point.timestamp);
+            // Min and max at the same x draw the bucket's full extent as one pixel column
+            speed.add(new Entry(x, (float) point.minSpeed));
+            speed.add(new Entry(x, (float) point.maxSpeed));
+            economy.add(new Entry(x, (float) point.minEconomy));
+            economy.add(new Entry(x, (float) point.maxEconomy));
+            fuel.add(new Entry(x, (float) point.minFuel));
+            fuel.add(new Entry(x, (float) point.maxFuel));
+            distance.add(new Entry(x, (float) point.totalDistance));
         }
 
-        // Update X-axis labels
-        XAxis xAxis = binding.speedChart.getXAxis();
-        xAxis.setValueFormatter(new IndexAxisValueFormatter(timeLabels));
-
-        // Update charts
-        updateSpeedChart(data);
-        updateEconomyChart(data);
-        updateFuelLevelChart(data);
-        updateDistanceChart(data);
+        float axisMax = Math.max(1f, toX(window.rangeEnd));
+        updateChart(binding.speedChart, speed, "Speed", Color.BLUE, axisMax, rangeChanged);
+        updateChart(binding.economyChart, economy, "Fuel Economy", Color.GREEN, axisMax, rangeChanged);
+        updateChart(binding.fuelLevelChart, fuel, "Fuel Level", Color.RED, axisMax, rangeChanged);
+        updateChart(binding.distanceChart, distance, "Distance", Color.MAGENTA, axisMax, rangeChanged);
     }
 
-    private void updateSpeedChart(List<DashboardData> data) {
-        List<Entry> entries = new ArrayList<>();
-        for (int i = 0; i < data.size(); i++) {
-            entries.add(new Entry(i, (float) data.get(i).speed));
-        }
-
-        LineDataSet dataSet = new LineDataSet(entries, "Speed");
-        dataSet.setColor(Color.BLUE);
+    private void updateChart(LineChart chart, List<Entry> entries, String label, int color,
+                             float axisMax, boolean resetViewport) {
+        LineDataSet dataSet = new LineDataSet(entries, label);
+        dataSet.setColor(color);
         dataSet.setDrawCircles(false);
         dataSet.setDrawValues(false);
         dataSet.setLineWidth(2f);
+        dataSet.setHighlightEnabled(false);
+
+        // Pin the x axis to the whole range so zoom survives loading a narrower window
+        chart.getXAxis().setAxisMinimum(0f);
+        chart.getXAxis().setAxisMaximum(axisMax);
+        chart.setData(new LineData(dataSet));
+        if (resetViewport) {
+            chart.fitScreen();
+        }
+        chart.invalidate();
+    }
 
-        binding.speedChart.setData(new LineData(dataSet));
-        binding.speedChart.invalidate();
+    private float toX(long timestamp) {
+        return (timestamp - axisBase) / 1000f;
     }
 
-    private void updateEconomyChart(List<DashboardData> data) {
-        List<Entry> entries = new ArrayList<>();
-        for (int i = 0; i < data.size(); i++) {
-            entries.add(new Entry(i, (float) data.get(i).instantEconomy));
-        }
+    private long toTimestamp(float x) {
+        return axisBase + (long) (x * 1000);
+    }
 
-        LineDataSet dataSet = new LineDataSet(entries, "Fuel Economy");
-        dataSet.setColor(Color.GREEN);
-        dataSet.setDrawCircles(false);
-        dataSet.setDrawValues(false);
-        dataSet.setLineWidth(2f);
+    // Keep all four charts on the same viewport and load detail for it once a gesture ends
+    private void onViewportChanged(LineChart source) {
+        for (LineChart chart : charts) {
+            if (chart != source) {
+                chart.getViewPortHandler().refresh(source.getViewPortHandler().getMatrixTouch(), chart, true);
+            }
+        }
 
-        binding.economyChart.setData(new LineData(dataSet));
-        binding.economyChart.invalidate();
+        long from = toTimestamp(source.getLowestVisibleX());
+        long to = toTimestamp(source.getHighestVisibleX());
+        long span = to - from;
+        // Load one screen either side so short pans are already covered
+        requestWindow(from - span, to + span, 3);
     }
 
-    private void updateFuelLevelChart(List<DashboardData> data) {
-        List<Entry> entries = new ArrayList<>();
-        for (int i = 0; i < data.size(); i++) {
-            entries.add(new Entry(i, (float) data.get(i).fuelPercentage));
+    private class ViewportGestureListener implements OnChartGestureListener {
+        private final LineChart chart;
+
+        ViewportGestureListener(LineChart chart) {
+            this.chart = chart;
         }
 
-        LineDataSet dataSet = new LineDataSet(entries, "Fuel Level");
-        dataSet.setColor(Color.RED);
-        dataSet.setDrawCircles(false);
-        dataSet.setDrawValues(false);
-        dataSet.setLineWidth(2f);
+        @Override
+        public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            if (lastPerformedGesture == ChartTouchListener.ChartGesture.DRAG
+                    || lastPerformedGesture == ChartTouchListener.ChartGesture.X_ZOOM
+                    || lastPerformedGesture == ChartTouchListener.ChartGesture.PINCH_ZOOM
+                    || lastPerformedGesture == ChartTouchListener.ChartGesture.DOUBLE_TAP) {
+                onViewportChanged(chart);
+            }
+        }
 
-        binding.fuelLevelChart.setData(new LineData(dataSet));
-        binding.fuelLevelChart.invalidate();
-    }
+        @Override
+        public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {}
 
-    private void updateDistanceChart(List<DashboardData> data) {
-        List<Entry> entries = new ArrayList<>();
-        for (int i = 0; i < data.size(); i++) {
-            entries.add(new Entry(i, (float) data.get(i).totalDistance));
-        }
+        @Override
+        public void onChartLongPressed(MotionEvent me) {}
 
-        LineDataSet dataSet = new LineDataSet(entries, "Distance");
-        dataSet.setColor(Color.MAGENTA);
-        dataSet.setDrawCircles(false);
-        dataSet.setDrawValues(false);
-        dataSet.setLineWidth(2f);
+        @Override
+        public void onChartDoubleTapped(MotionEvent me) {}
+
+        @Override
+        public void onChartSingleTapped(MotionEvent me) {}
+
+        @Override
+        public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {}
+
+        @Override
+        public void onChartScale(MotionEvent me, float scaleX, float scaleY) {}
 
-        binding.distanceChart.setData(new LineData(dataSet));
-        binding.distanceChart.invalidate();
+        @Override
+        public void onChartTranslate(MotionEvent me, float dX, float dY) {}
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
         binding = null;
+        charts = null;
     }
-} 
\ No newline at end of file
+}
@@ -15,7 +15,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.viewpager2.widget.ViewPager2;
 
 import com.example.activadasboard.R;
-import com.example.activadasboard.data.DashboardDataManager;
+import com.example.activadasboard.data.HistoryPager;
 import com.example.activadasboard.databinding.FragmentHistoryBinding;
 import com.google.android.material.datepicker.MaterialDatePicker;
 import com.google.android.material.tabs.TabLayout;
@@ -28,15 +28,13 @@ public class HistoryFragment extends Fragment {
     private FragmentHistoryBinding binding;
     private HistoryViewModel historyViewModel;
     private HistoryAdapter adapter;
-    private DashboardDataManager dataManager;
     private HistoryPagerAdapter pagerAdapter;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         historyViewModel = new ViewModelProvider(this).get(HistoryViewModel.class);
-        dataManager = new DashboardDataManager(requireContext());
-        dataManager.insertDummyData();
+        historyViewModel.insertDummyData();
     }
 
     public View onCreateView(@NonNull LayoutInflater inflater,
@@ -89,11 +87,11 @@ public class HistoryFragment extends Fragment {
             if (checkedId == R.id.chip_all) {
                 historyViewModel.fetchAllHistoricalData();
             } else if (checkedId == R.id.chip_fuel_fills) {
-                dataManager.getFuelFillEvents();
+                historyViewModel.fetchFilteredHistory(HistoryPager.Filter.fuelFills());
             } else if (checkedId == R.id.chip_high_speed) {
-                dataManager.getHighSpeedEvents(80.0f);
+                historyViewModel.fetchFilteredHistory(HistoryPager.Filter.speedAbove(80.0));
             } else if (checkedId == R.id.chip_efficient) {
-                dataManager.getEfficientTrips(20.0f);
+                historyViewModel.fetchFilteredHistory(HistoryPager.Filter.economyAbove(20.0));
             }
         });
     }
@@ -11,14 +11,19 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.activadasboard.data.HistoryPage;
 import com.example.activadasboard.databinding.FragmentHistoryListBinding;
 
 public class HistoryListFragment extends Fragment {
     private static final String TAG = "HistoryListFragment";
+    // Request the next page while this many rows are still left to scroll through
+    private static final int PREFETCH_DISTANCE = 20;
     private FragmentHistoryListBinding binding;
     private HistoryViewModel historyViewModel;
     private HistoryAdapter adapter;
+    private HistoryPage currentPage;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -38,17 +43,37 @@ public class HistoryListFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
 
         adapter = new HistoryAdapter();
-        binding.historyRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        binding.historyRecyclerView.setLayoutManager(layoutManager);
         binding.historyRecyclerView.setAdapter(adapter);
+        binding.historyRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                loadMoreIfNeeded(layoutManager, dy);
+            }
+        });
 
-        historyViewModel.getHistoricalData().observe(getViewLifecycleOwner(), data -> {
-            Log.d(TAG, "Received historical data in list view, size: " + (data != null ? data.size() : 0));
-            if (data != null) {
-                adapter.setData(data);
+        historyViewModel.getHistoryPage().observe(getViewLifecycleOwner(), page -> {
+            Log.d(TAG, "Received history page in list view, size: " + (page != null ? page.items.size() : 0));
+            if (page != null) {
+                currentPage = page;
+                adapter.submitList(page.items);
             }
         });
     }
 
+    private void loadMoreIfNeeded(LinearLayoutManager layoutManager, int dy) {
+        if (currentPage == null) return;
+
+        if (dy > 0 && currentPage.hasOlder
+                && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+            historyViewModel.loadOlderHistory();
+        } else if (dy < 0 && currentPage.hasNewer
+                && layoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+            historyViewModel.loadNewerHistory();
+        }
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
@@ -12,7 +12,6 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.example.activadasboard.R;
-import com.example.activadasboard.data.DashboardDataManager;
 import com.example.activadasboard.data.TripSummary;
 import com.example.activadasboard.databinding.FragmentHistorySummaryBinding;
 import com.github.mikephil.charting.components.XAxis;
@@ -31,14 +30,13 @@ import java.util.Locale;
 public class HistorySummaryFragment extends Fragment {
     private FragmentHistorySummaryBinding binding;
     private HistoryViewModel viewModel;
-    private DashboardDataManager dataManager;
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd", Locale.getDefault());
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        viewModel = new ViewModelProvider(requireActivity()).get(HistoryViewModel.class);
-        dataManager = new DashboardDataManager(requireContext());
+        // Shared with the other history tabs, which are all children of HistoryFragment
+        viewModel = new ViewModelProvider(requireParentFragment()).get(HistoryViewModel.class);
     }
 
     @Nullable
@@ -86,14 +84,14 @@ public class HistorySummaryFragment extends Fragment {
 
         binding.btnCleanup.setOnClickListener(v -> {
             int days = (int) binding.retentionSlider.getValue();
-            dataManager.setDataRetentionDays(days);
+            viewModel.applyRetention(days);
             Toast.makeText(requireContext(), "Data cleanup scheduled", Toast.LENGTH_SHORT).show();
         });
     }
 
     private void observeData() {
         viewModel.getDailySummaries().observe(getViewLifecycleOwner(), this::updateDailySummary);
-        viewModel.getHistoricalData().observe(getViewLifecycleOwner(), this::updateTripStatistics);
+        viewModel.getTripSummary().observe(getViewLifecycleOwner(), this::updateTripStatistics);
     }
 
     private void updateDailySummary(List<TripSummary> summaries) {
@@ -120,25 +118,14 @@ public class HistorySummaryFragment extends Fragment {
         binding.dailySummaryChart.invalidate();
     }
 
-    private void updateTripStatistics(List<com.example.activadasboard.data.DashboardData> data) {
-        if (data == null || data.isEmpty()) return;
+    // Summed from the hour/day rollups for the selected range (and cached), not here on every update
+    private void updateTripStatistics(TripSummary summary) {
+        if (summary == null) return;
 
-        double totalDistance = 0;
-        double totalSpeed = 0;
-        double totalEconomy = 0;
-        double totalFuel = 0;
-
-        for (com.example.activadasboard.data.DashboardData point : data) {
-            totalDistance += point.totalDistance;
-            totalSpeed += point.speed;
-            totalEconomy += point.instantEconomy;
-            totalFuel += point.fuelUsedSinceFill;
-        }
-
-        int count = data.size();
-        binding.totalDistance.setText(String.format(Locale.getDefault(), "%.1f km", totalDistance));
-        binding.avgSpeed.setText(String.format(Locale.getDefault(), "%.1f km/h", totalSpeed / count));
-        binding.avgEconomy.setText(String.format(Locale.getDefault(), "%.1f km/L", totalEconomy / count));
+        double totalFuel = summary.avgEconomy > 0 ? summary.distanceTraveled / summary.avgEconomy : 0;
+        binding.totalDistance.setText(String.format(Locale.getDefault(), "%.1f km", summary.distanceTraveled));
+        binding.avgSpeed.setText(String.format(Locale.getDefault(), "%.1f km/h", summary.avgSpeed));
+        binding.avgEconomy.setText(String.format(Locale.getDefault(), "%.1f km/L", summary.avgEconomy));
         binding.totalFuel.setText(String.format(Locale.getDefault(), "%.1f L", totalFuel));
     }
 
@@ -6,8 +6,11 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.activadasboard.data.ChartWindow;
 import com.example.activadasboard.data.DashboardData;
 import com.example.activadasboard.data.DashboardDataManager;
+import com.example.activadasboard.data.HistoryPage;
+import com.example.activadasboard.data.HistoryPager;
 import com.example.activadasboard.data.TripSummary;
 
 import java.util.List;
@@ -19,6 +22,12 @@ public class HistoryViewModel extends AndroidViewModel {
     private final MutableLiveData<TripSummary> tripSummary = new MutableLiveData<>();
     private final MutableLiveData<List<TripSummary>> dailySummaries = new MutableLiveData<>();
     private final MutableLiveData<List<TripSummary>> hourlySummaries = new MutableLiveData<>();
+    // {start, end} of the range the user is looking at; 0..Long.MAX_VALUE means everything
+    private final MutableLiveData<long[]> selectedRange = new MutableLiveData<>();
+    private final MutableLiveData<ChartWindow> chartData = new MutableLiveData<>();
+    private final MutableLiveData<HistoryPage> historyPage = new MutableLiveData<>();
+    // Set while a page request is queued, so scrolling doesn't queue the same page repeatedly
+    private volatile boolean pageLoading = false;
 
     public HistoryViewModel(Application application) {
         super(application);
@@ -48,6 +57,18 @@ public class HistoryViewModel extends AndroidViewModel {
             public void onHourlySummariesUpdated(List<TripSummary> summaries) {
                 hourlySummaries.postValue(summaries);
             }
+
+            @Override
+            public void onChartDataUpdated(ChartWindow window) {
+                chartData.postValue(window);
+            }
+
+            @Override
+            public void onHistoryPageLoaded(HistoryPage page) {
+                pageLoading = false;
+                historyPage.postValue(page);
+                historicalData.postValue(page.items);
+            }
         });
     }
 
@@ -67,12 +88,59 @@ public class HistoryViewModel extends AndroidViewModel {
         return hourlySummaries;
     }
 
+    public LiveData<long[]> getSelectedRange() {
+        return selectedRange;
+    }
+
+    public LiveData<ChartWindow> getChartData() {
+        return chartData;
+    }
+
+    public LiveData<HistoryPage> getHistoryPage() {
+        return historyPage;
+    }
+
     public void fetchAllHistoricalData() {
+        selectedRange.setValue(new long[]{0, Long.MAX_VALUE});
         dataManager.getAllHistoricalData();
+        dataManager.getTripSummary(0, Long.MAX_VALUE);
     }
 
     public void fetchHistoricalData(long startTime, long endTime) {
+        selectedRange.setValue(new long[]{startTime, endTime});
         dataManager.getHistoricalData(startTime, endTime);
+        dataManager.getTripSummary(startTime, endTime);
+    }
+
+    /**
+     * Reopen the history list on the selected range with only the rows a
+     * filter chip keeps. Pages arrive through {@link #getHistoryPage()}.
+     */
+    public void fetchFilteredHistory(HistoryPager.Filter filter) {
+        long[] range = selectedRange.getValue();
+        long start = range != null ? range[0] : 0;
+        long end = range != null ? range[1] : Long.MAX_VALUE;
+        dataManager.getFilteredHistory(start, end, filter);
+    }
+
+    public void insertDummyData() {
+        dataManager.insertDummyData();
+    }
+
+    public void loadOlderHistory() {
+        if (pageLoading) return;
+        pageLoading = true;
+        dataManager.loadOlderHistory();
+    }
+
+    public void loadNewerHistory() {
+        if (pageLoading) return;
+        pageLoading = true;
+        dataManager.loadNewerHistory();
+    }
+
+    public void fetchChartData(long rangeStart, long rangeEnd, long windowStart, long windowEnd, int maxPoints) {
+        dataManager.getChartData(rangeStart, rangeEnd, windowStart, windowEnd, maxPoints);
     }
 
     public void fetchDailySummaries(long startTime, long endTime) {
@@ -82,4 +150,13 @@ public class HistoryViewModel extends AndroidViewModel {
     public void fetchHourlySummaries(long startTime, long endTime) {
         dataManager.getHourlySummaries(startTime, endTime);
     }
+
+    public void applyRetention(int days) {
+        dataManager.setDataRetentionDays(days);
+    }
+
+    @Override
+    protected void onCleared() {
+        dataManager.shutdown();
+    }
 } 
\ No newline at end of file
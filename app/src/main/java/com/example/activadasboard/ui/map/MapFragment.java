@@ -26,11 +26,10 @@ import com.example.activadasboard.ActivaDashboardApplication;
 import com.example.activadasboard.R;
 import com.example.activadasboard.databinding.FragmentMapBinding;
 import com.example.activadasboard.service.Esp8266Service;
+import com.example.activadasboard.service.NavigationFrameEncoder;
 import com.example.activadasboard.data.SearchHistory;
 import com.example.activadasboard.data.OfflineDirections;
 import com.example.activadasboard.ui.map.OfflineDirectionsConverter;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import com.google.android.gms.common.api.Status;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
@@ -45,6 +44,7 @@ import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 import com.google.android.libraries.places.api.Places;
 import com.google.android.libraries.places.api.model.Place;
@@ -58,8 +58,6 @@ import com.google.maps.model.DirectionsRoute;
 import com.google.maps.model.DirectionsStep;
 import com.google.maps.model.TravelMode;
 
-import org.json.JSONObject;
-
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -86,6 +84,10 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     private DirectionsResult pendingDirectionsResult = null;
     private Place pendingDestination = null;
     private boolean isMapReady = false;
+    // The route on the map and the zoom band its polyline was built for
+    private RouteGeometry routeGeometry;
+    private Polyline routeLine;
+    private int routeBand = -1;
     private boolean isSearchHistoryVisible = false;
 
     @Override
@@ -223,6 +225,11 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
             @Override
             public void onSearchHistoryLongClick(SearchHistory searchHistory) {
+                if (searchHistory.isCachedDestination()) {
+                    // Suggested from a saved route, so there's no search to remove
+                    Toast.makeText(requireContext(), "Saved route destination", Toast.LENGTH_SHORT).show();
+                    return;
+                }
                 // Show delete confirmation dialog
                 new androidx.appcompat.app.AlertDialog.Builder(requireContext())
                         .setTitle("Delete Search History")
@@ -256,33 +263,26 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
         DirectionsRoute route = directions.routes[0];
         DirectionsStep[] steps = route.legs[0].steps;
-        int currentIndex = viewModel.getCurrentStepIndex().getValue() != null ? 
-                          viewModel.getCurrentStepIndex().getValue() : 0;
+        RouteMatcher matcher = viewModel.getRouteMatcher(directions);
+        int currentIndex = matcher.getStepIndex();
 
         if (currentIndex >= steps.length) return;
 
         DirectionsStep currentStep = steps[currentIndex];
-        
-        try {
-            // Create navigation data JSON
-            JSONObject navigationData = new JSONObject();
-            navigationData.put("latitude", location.getLatitude());
-            navigationData.put("longitude", location.getLongitude());
-            navigationData.put("speed", location.getSpeed() * 3.6); // Convert m/s to km/h
-            navigationData.put("bearing", location.getBearing());
-            navigationData.put("current_step", currentIndex);
-            navigationData.put("total_steps", steps.length);
-            navigationData.put("next_instruction", currentStep.htmlInstructions);
-            navigationData.put("distance_to_next", currentStep.distance.humanReadable);
-            navigationData.put("maneuver", currentStep.maneuver != null ? currentStep.maneuver : "straight");
-            
-            // Get the ESP8266 service from the application
-            Esp8266Service esp8266Service = ActivaDashboardApplication.getEsp8266Service();
-            if (esp8266Service != null) {
-                esp8266Service.updateNavigationData(navigationData);
-            }
-        } catch (Exception e) {
-            Log.e("MapFragment", "Error preparing navigation data", e);
+
+        // The service turns this into a compact step or delta frame, or skips it if nothing visible changed
+        NavigationFrameEncoder.Update update = new NavigationFrameEncoder.Update(
+                currentIndex,
+                steps.length,
+                currentStep.maneuver != null ? currentStep.maneuver : "straight",
+                currentStep.htmlInstructions,
+                matcher.getDistanceToStepEnd(), // Along the road, so the LCD counts down
+                location.getBearing(),
+                location.getSpeed() * 3.6); // Convert m/s to km/h
+
+        Esp8266Service esp8266Service = ActivaDashboardApplication.getEsp8266Service();
+        if (esp8266Service != null) {
+            esp8266Service.updateNavigation(update);
         }
     }
 
@@ -290,35 +290,36 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         DirectionsResult directions = viewModel.getCurrentDirections().getValue();
         if (directions == null || directions.routes.length == 0) return;
 
-        DirectionsRoute route = directions.routes[0];
-        DirectionsStep[] steps = route.legs[0].steps;
-        int currentIndex = viewModel.getCurrentStepIndex().getValue() != null ? 
-                          viewModel.getCurrentStepIndex().getValue() : 0;
-
-        if (currentIndex >= steps.length) {
-            // Navigation completed
-            stopNavigation();
-            Toast.makeText(requireContext(), "You have reached your destination!", Toast.LENGTH_LONG).show();
-            return;
+        // Snapped to the route, so a missed waypoint doesn't stall the steps
+        RouteMatcher matcher = viewModel.getRouteMatcher(directions);
+        RouteMatcher.Event event = matcher.update(location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : 0, location.getTime());
+        switch (event) {
+            case ARRIVED:
+                stopNavigation();
+                Toast.makeText(requireContext(), "You have reached your destination!", Toast.LENGTH_LONG).show();
+                return;
+            case OFF_ROUTE:
+                Log.d("MapFragment", "Off route by " + Math.round(matcher.getOffsetMeters()) + " m");
+                Toast.makeText(requireContext(), "Off route", Toast.LENGTH_SHORT).show();
+                Place destination = viewModel.getCurrentDestination().getValue();
+                if (destination != null && isNetworkAvailable()) {
+                    proceedWithOnlineRequest(destination, location);
+                }
+                break;
+            case BACK_ON_ROUTE:
+                Log.d("MapFragment", "Back on route");
+                break;
+            default:
+                break;
         }
 
-        DirectionsStep currentStep = steps[currentIndex];
-        LatLng stepLocation = new LatLng(
-                currentStep.endLocation.lat,
-                currentStep.endLocation.lng
-        );
-
-        float[] results = new float[1];
-        Location.distanceBetween(
-                location.getLatitude(), location.getLongitude(),
-                stepLocation.latitude, stepLocation.longitude,
-                results
-        );
-
-        // If within 20 meters of the step end point, move to next step
-        if (results[0] < 20 && currentIndex < steps.length - 1) {
-            viewModel.setCurrentStepIndex(currentIndex + 1);
+        Integer currentIndex = viewModel.getCurrentStepIndex().getValue();
+        if (currentIndex == null || currentIndex != matcher.getStepIndex()) {
+            viewModel.setCurrentStepIndex(matcher.getStepIndex());
         }
+        binding.distanceDurationText.setText(formatRemaining(
+                matcher.getRemainingDistance(), matcher.getRemainingSeconds()));
 
         // Update camera to follow user with bearing
         LatLng currentLatLng = new LatLng(location.getLatitude(), location.getLongitude());
@@ -416,115 +417,106 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             return;
         }
 
-        // First check for offline directions before getting location
-        String destinationPlaceId = destination.getId();
-        Log.d("MapFragment", "Checking for offline directions to: " + destinationPlaceId);
-        
-        viewModel.getOfflineDirectionsAsync("current_location", destinationPlaceId, offlineDirections -> {
-            requireActivity().runOnUiThread(() -> {
-                if (offlineDirections != null) {
-                    Log.d("MapFragment", "Found offline directions, using them");
-                    // Use offline directions immediately
-                    viewModel.setIsOfflineMode(true);
-                    Toast.makeText(requireContext(), "Using offline directions", Toast.LENGTH_SHORT).show();
-                    
-                    DirectionsResult offlineResult = OfflineDirectionsConverter.convertToDirectionsResult(offlineDirections);
-                    if (offlineResult != null) {
-                        viewModel.setCurrentDirections(offlineResult);
-                        viewModel.incrementUsageCount(offlineDirections.id);
-                        Log.d("MapFragment", "Offline directions loaded successfully");
-                        return; // Exit early, don't make online request
-                    } else {
-                        Log.e("MapFragment", "Failed to convert offline directions to DirectionsResult");
+        // A cached route is only usable if it starts near where the rider is now
+        fusedLocationClient.getLastLocation()
+                .addOnSuccessListener(requireActivity(), location -> {
+                    if (location == null) {
+                        Toast.makeText(requireContext(), "Current location unavailable", Toast.LENGTH_SHORT).show();
+                        return;
                     }
-                } else {
-                    Log.d("MapFragment", "No offline directions found for: " + destinationPlaceId);
-                    // Continue with online request if no offline directions
-                    proceedWithOnlineRequest(destination);
-                }
-            });
-        });
-        
-        // Don't proceed with online request here, wait for async callback
-        return;
+                    String destinationPlaceId = destination.getId();
+                    Log.d("MapFragment", "Checking for offline directions to: " + destinationPlaceId);
+                    findOfflineDirections(location, destination, offlineDirections -> {
+                        if (!useOfflineDirections(offlineDirections, Toast.LENGTH_SHORT)) {
+                            Log.d("MapFragment", "No offline directions found for: " + destinationPlaceId);
+                            proceedWithOnlineRequest(destination, location);
+                        }
+                    });
+                });
+    }
 
+    // Looks up a cached route from the current fix; the callback runs on the UI thread
+    private void findOfflineDirections(Location location, Place destination,
+                                       java.util.function.Consumer<OfflineDirections> callback) {
+        viewModel.findOfflineDirectionsAsync(location.getLatitude(), location.getLongitude(),
+                destination.getId(), destination.getLatLng().latitude, destination.getLatLng().longitude,
+                offlineDirections -> requireActivity().runOnUiThread(() -> callback.accept(offlineDirections)));
+    }
+
+    private boolean useOfflineDirections(OfflineDirections offlineDirections, int toastLength) {
+        if (offlineDirections == null) {
+            return false;
+        }
+        DirectionsResult offlineResult = OfflineDirectionsConverter.convertToDirectionsResult(offlineDirections);
+        if (offlineResult == null) {
+            Log.e("MapFragment", "Failed to convert offline directions to DirectionsResult");
+            return false;
+        }
+        Log.d("MapFragment", "Found offline directions, using them");
+        viewModel.setIsOfflineMode(true);
+        Toast.makeText(requireContext(), "Using offline directions", toastLength).show();
+        viewModel.setCurrentDirections(offlineResult);
+        viewModel.incrementUsageCount(offlineDirections.id);
+        return true;
     }
     
-    private void proceedWithOnlineRequest(Place destination) {
+    private void proceedWithOnlineRequest(Place destination, Location location) {
         // Check if device is online before making online request
         if (!isNetworkAvailable()) {
             Toast.makeText(requireContext(), "No internet connection. Please check your network settings.", Toast.LENGTH_LONG).show();
             return;
         }
 
-        // If no offline directions, proceed with online request
-        fusedLocationClient.getLastLocation()
-                .addOnSuccessListener(requireActivity(), location -> {
-                    if (location != null) {
-                        com.google.maps.model.LatLng origin =
-                                new com.google.maps.model.LatLng(
-                                        location.getLatitude(),
-                                        location.getLongitude());
-                        
-                        com.google.maps.model.LatLng dest =
-                                new com.google.maps.model.LatLng(
-                                        destination.getLatLng().latitude,
-                                        destination.getLatLng().longitude);
-
-                        String originPlaceId = "current_location";
-                        String destPlaceId = destination.getId();
-
-                        new Thread(() -> {
-                            try {
-                                DirectionsResult result = DirectionsApi.newRequest(geoApiContext)
-                                        .mode(TravelMode.DRIVING)
-                                        .origin(origin)
-                                        .destination(dest)
-                                        .await();
-
-                                requireActivity().runOnUiThread(() -> {
-                                    if (result.routes.length > 0) {
-                                        viewModel.setCurrentDirections(result);
-                                        
-                                        // Save directions for offline use
-                                        DirectionsRoute route = result.routes[0];
-                                        String stepsJson = convertStepsToJson(route.legs[0].steps);
-                                        viewModel.saveOfflineDirections(
-                                            originPlaceId, "Current Location", location.getLatitude(), location.getLongitude(),
-                                            destPlaceId, destination.getName(), destination.getLatLng().latitude, destination.getLatLng().longitude,
-                                            route.overviewPolyline.getEncodedPath(), route.summary,
-                                            route.legs[0].duration.inSeconds, route.legs[0].distance.inMeters,
-                                            stepsJson
-                                        );
-                                    }
-                                });
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                                requireActivity().runOnUiThread(() -> {
-                                    Toast.makeText(getContext(),
-                                            "Error getting directions. Check your internet connection.",
-                                            Toast.LENGTH_SHORT).show();
-                                    
-                                    // Try to use offline directions as fallback
-                                    viewModel.getOfflineDirectionsAsync(originPlaceId, destPlaceId, fallbackDirections -> {
-                                        requireActivity().runOnUiThread(() -> {
-                                            if (fallbackDirections != null) {
-                                                viewModel.setIsOfflineMode(true);
-                                                Toast.makeText(requireContext(), "Using offline directions", Toast.LENGTH_LONG).show();
-                                                
-                                                DirectionsResult fallbackResult = OfflineDirectionsConverter.convertToDirectionsResult(fallbackDirections);
-                                                if (fallbackResult != null) {
-                                                    viewModel.setCurrentDirections(fallbackResult);
-                                                    viewModel.incrementUsageCount(fallbackDirections.id);
-                                                }
-                                            }
-                                        });
-                                    });
-                                });
-                            }
-                        }).start();
+        com.google.maps.model.LatLng origin =
+                new com.google.maps.model.LatLng(
+                        location.getLatitude(),
+                        location.getLongitude());
+
+        com.google.maps.model.LatLng dest =
+                new com.google.maps.model.LatLng(
+                        destination.getLatLng().latitude,
+                        destination.getLatLng().longitude);
+
+        String originPlaceId = "current_location";
+        String destPlaceId = destination.getId();
+
+        new Thread(() -> {
+            try {
+                DirectionsResult result = DirectionsApi.newRequest(geoApiContext)
+                        .mode(TravelMode.DRIVING)
+                        .origin(origin)
+                        .destination(dest)
+                        .await();
+
+                requireActivity().runOnUiThread(() -> {
+                    if (result.routes.length > 0) {
+                        viewModel.setCurrentDirections(result);
+
+                        // Save directions for offline use, keyed by where this fix was
+                        DirectionsRoute route = result.routes[0];
+                        byte[] stepsData = OfflineDirectionsConverter.encodeSteps(route.legs[0].steps);
+                        viewModel.saveOfflineDirections(
+                            originPlaceId, "Current Location", location.getLatitude(), location.getLongitude(),
+                            destPlaceId, destination.getName(), destination.getLatLng().latitude, destination.getLatLng().longitude,
+                            route.overviewPolyline.getEncodedPath(), route.summary,
+                            route.legs[0].duration.inSeconds, route.legs[0].distance.inMeters,
+                            stepsData
+                        );
                     }
                 });
+            } catch (Exception e) {
+                e.printStackTrace();
+                requireActivity().runOnUiThread(() -> {
+                    Toast.makeText(getContext(),
+                            "Error getting directions. Check your internet connection.",
+                            Toast.LENGTH_SHORT).show();
+
+                    // Try again in case a route near this fix was cached meanwhile
+                    findOfflineDirections(location, destination,
+                            fallbackDirections -> useOfflineDirections(fallbackDirections, Toast.LENGTH_LONG));
+                });
+            }
+        }).start();
     }
 
     private void drawRoute(DirectionsResult result) {
@@ -535,28 +527,33 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
         if (result.routes.length > 0) {
             DirectionsRoute route = result.routes[0];
-            List<LatLng> path = new ArrayList<>();
-            
-            // Decode the polyline
-            for (com.google.maps.model.LatLng point : route.overviewPolyline.decodePath()) {
-                path.add(new LatLng(point.lat, point.lng));
-            }
 
             try {
+                // Decoded and simplified once per route, not on every emission
+                RouteGeometry geometry = viewModel.getRouteGeometry(route.overviewPolyline.getEncodedPath());
+                if (geometry == routeGeometry && routeLine != null) {
+                    return;
+                }
+
                 // Clear previous polylines
                 mMap.clear();
+                routeGeometry = geometry;
+                routeBand = RouteGeometry.bandForZoom(mMap.getCameraPosition().zoom);
 
-                // Draw new polyline
+                // Only as many vertices as the current zoom can show; refined as the camera moves
                 PolylineOptions polylineOptions = new PolylineOptions()
-                        .addAll(path)
+                        .addAll(routePoints(geometry, routeBand))
                         .color(ContextCompat.getColor(requireContext(), R.color.primary))
                         .width(12);
-                mMap.addPolyline(polylineOptions);
+                routeLine = mMap.addPolyline(polylineOptions);
 
                 // Add markers
-                if (path.size() > 0) {
-                    mMap.addMarker(new MarkerOptions().position(path.get(0)).title("Start"));
-                    mMap.addMarker(new MarkerOptions().position(path.get(path.size() - 1)).title("Destination"));
+                if (geometry.size() > 0) {
+                    int last = geometry.size() - 1;
+                    mMap.addMarker(new MarkerOptions()
+                            .position(new LatLng(geometry.latitude(0), geometry.longitude(0))).title("Start"));
+                    mMap.addMarker(new MarkerOptions()
+                            .position(new LatLng(geometry.latitude(last), geometry.longitude(last))).title("Destination"));
                 }
             } catch (Exception e) {
                 Log.e("MapFragment", "Error drawing route", e);
@@ -564,6 +561,32 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         }
     }
 
+    private static String formatRemaining(double meters, double seconds) {
+        String distance = meters < 1000
+                ? String.format("%d m", Math.round(meters))
+                : String.format("%.1f km", meters / 1000);
+        return String.format("%s (%d min)", distance, Math.round(seconds / 60));
+    }
+
+    private static List<LatLng> routePoints(RouteGeometry geometry, int band) {
+        int[] vertices = geometry.verticesForBand(band);
+        List<LatLng> points = new ArrayList<>(vertices.length);
+        for (int vertex : vertices) {
+            points.add(new LatLng(geometry.latitude(vertex), geometry.longitude(vertex)));
+        }
+        return points;
+    }
+
+    // Swap in the simplification for the new zoom band, if it changed
+    private void updateRouteDetail() {
+        if (routeLine == null || mMap == null) return;
+        int band = RouteGeometry.bandForZoom(mMap.getCameraPosition().zoom);
+        if (band != routeBand) {
+            routeBand = band;
+            routeLine.setPoints(routePoints(routeGeometry, band));
+        }
+    }
+
     private void showNavigationDetails(Place destination, DirectionsResult result) {
         if (result.routes.length > 0) {
             DirectionsRoute route = result.routes[0];
@@ -600,6 +623,8 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
     private void clearRoute() {
         mMap.clear();
+        routeGeometry = null;
+        routeLine = null;
         viewModel.clearNavigation();
         bottomSheetBehavior.setState(BottomSheetBehavior.STATE_HIDDEN);
         navigationStepsAdapter.clearSteps();
@@ -626,6 +651,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     public void onMapReady(@NonNull GoogleMap googleMap) {
         mMap = googleMap;
         isMapReady = true;
+        mMap.setOnCameraIdleListener(this::updateRouteDetail);
         enableMyLocation();
         
         // Process any pending operations
@@ -691,6 +717,8 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         stopNavigationUpdates();
         isMapReady = false;
         mMap = null;
+        routeGeometry = null;
+        routeLine = null;
         
         // Clean up Places Autocomplete
         if (autocompleteFragment != null) {
@@ -744,33 +772,4 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         }
         return false;
     }
-    
-    private String convertStepsToJson(DirectionsStep[] steps) {
-        try {
-            JSONArray stepsArray = new JSONArray();
-            for (DirectionsStep step : steps) {
-                JSONObject stepObj = new JSONObject();
-                stepObj.put("htmlInstructions", step.htmlInstructions);
-                stepObj.put("distance", step.distance.humanReadable);
-                stepObj.put("duration", step.duration.humanReadable);
-                stepObj.put("travelMode", step.travelMode.name());
-                if (step.maneuver != null) {
-                    stepObj.put("maneuver", step.maneuver.toString());
-                }
-                if (step.startLocation != null) {
-                    stepObj.put("startLat", step.startLocation.lat);
-                    stepObj.put("startLng", step.startLocation.lng);
-                }
-                if (step.endLocation != null) {
-                    stepObj.put("endLat", step.endLocation.lat);
-                    stepObj.put("endLng", step.endLocation.lng);
-                }
-                stepsArray.put(stepObj);
-            }
-            return stepsArray.toString();
-        } catch (Exception e) {
-            Log.e("MapFragment", "Error converting steps to JSON", e);
-            return "[]";
-        }
-    }
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.example.activadasboard.ui.map;
 
 import android.content.Context;
+import android.util.LruCache;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
@@ -9,11 +10,14 @@ import com.example.activadasboard.data.OfflineDirections;
 import com.example.activadasboard.data.SearchHistory;
 import com.google.android.libraries.places.api.model.Place;
 import com.google.maps.model.DirectionsResult;
+import com.google.maps.model.DirectionsRoute;
 import com.google.maps.model.DirectionsStep;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class MapViewModel extends ViewModel {
+    private static final int ROUTE_GEOMETRY_CACHE_SIZE = 8;
     private final MutableLiveData<Boolean> isNavigating = new MutableLiveData<>(false);
     private final MutableLiveData<DirectionsResult> currentDirections = new MutableLiveData<>();
     private final MutableLiveData<Place> currentDestination = new MutableLiveData<>();
@@ -22,12 +26,21 @@ public class MapViewModel extends ViewModel {
     private final MutableLiveData<Boolean> isOfflineMode = new MutableLiveData<>(false);
     
     private MapDataManager mapDataManager;
+    // Decoded routes by encoded polyline, kept across redraws and rotation
+    private final LruCache<String, RouteGeometry> routeGeometries = new LruCache<>(ROUTE_GEOMETRY_CACHE_SIZE);
+    // Progress along the route being navigated, kept across rotation
+    private RouteMatcher routeMatcher;
+    private DirectionsResult matchedDirections;
 
     public LiveData<Boolean> getIsNavigating() {
         return isNavigating;
     }
 
     public void setIsNavigating(boolean navigating) {
+        if (navigating) {
+            // Each start matches from scratch, so a finished trip can be driven again
+            matchedDirections = null;
+        }
         isNavigating.setValue(navigating);
     }
 
@@ -47,6 +60,62 @@ public class MapViewModel extends ViewModel {
         currentDestination.setValue(destination);
     }
 
+    public RouteGeometry getRouteGeometry(String encodedPolyline) {
+        RouteGeometry geometry = routeGeometries.get(encodedPolyline);
+        if (geometry == null) {
+            geometry = RouteGeometry.decode(encodedPolyline);
+            routeGeometries.put(encodedPolyline, geometry);
+        }
+        return geometry;
+    }
+
+    /** The matcher for {@code directions}, built on first use. */
+    public RouteMatcher getRouteMatcher(DirectionsResult directions) {
+        if (directions != matchedDirections) {
+            DirectionsRoute route = directions.routes[0];
+            DirectionsStep[] steps = route.legs[0].steps != null ? route.legs[0].steps : new DirectionsStep[0];
+            double[] stepEnds = new double[steps.length * 2];
+            long[] stepDurations = new long[steps.length];
+            for (int i = 0; i < steps.length; i++) {
+                // Steps rebuilt from offline storage may lack an end or a duration
+                stepEnds[i * 2] = steps[i].endLocation != null ? steps[i].endLocation.lat : Double.NaN;
+                stepEnds[i * 2 + 1] = steps[i].endLocation != null ? steps[i].endLocation.lng : Double.NaN;
+                stepDurations[i] = steps[i].duration != null ? steps[i].duration.inSeconds : 0;
+            }
+            long totalSeconds = route.legs[0].duration != null ? route.legs[0].duration.inSeconds : 0;
+            routeMatcher = new RouteMatcher(matchingGeometry(directions, steps), stepEnds, stepDurations, totalSeconds);
+            matchedDirections = directions;
+        }
+        return routeMatcher;
+    }
+
+    /**
+     * The step paths joined end to end, which follow the road. The overview
+     * polyline is smoothed and can stray past the off-route distance on bends,
+     * so it's only used when a step has no path, as in legacy offline routes.
+     */
+    private RouteGeometry matchingGeometry(DirectionsResult directions, DirectionsStep[] steps) {
+        DirectionsRoute route = directions.routes[0];
+        RouteGeometry joined = matchingPaths(directions, steps);
+        return joined != null && joined.size() > 0 ? joined : getRouteGeometry(route.overviewPolyline.getEncodedPath());
+    }
+
+    private static RouteGeometry matchingPaths(DirectionsResult directions, DirectionsStep[] steps) {
+        // Cached routes hand over their paths already decoded
+        if (directions instanceof OfflineDirectionsConverter.OfflineResult) {
+            int[][] stepPaths = ((OfflineDirectionsConverter.OfflineResult) directions).stepPaths;
+            return stepPaths != null ? RouteGeometry.join(stepPaths) : null;
+        }
+        List<String> paths = new ArrayList<>(steps.length);
+        for (DirectionsStep step : steps) {
+            if (step.polyline == null) {
+                return null;
+            }
+            paths.add(step.polyline.getEncodedPath());
+        }
+        return RouteGeometry.join(paths);
+    }
+
     public LiveData<Integer> getCurrentStepIndex() {
         return currentStepIndex;
     }
@@ -61,6 +130,8 @@ public class MapViewModel extends ViewModel {
         currentDestination.setValue(null);
         currentOrigin.setValue(null);
         currentStepIndex.setValue(0);
+        routeMatcher = null;
+        matchedDirections = null;
     }
     
     // Initialize data manager
@@ -97,31 +168,28 @@ public class MapViewModel extends ViewModel {
         return mapDataManager != null ? mapDataManager.getRecentDirections() : null;
     }
     
-    public void getOfflineDirectionsAsync(String originPlaceId, String destinationPlaceId, 
-                                        java.util.function.Consumer<OfflineDirections> callback) {
+    public void findOfflineDirectionsAsync(double latitude, double longitude,
+                                           String destinationPlaceId, double destinationLatitude,
+                                           double destinationLongitude,
+                                           java.util.function.Consumer<OfflineDirections> callback) {
         if (mapDataManager != null) {
-            mapDataManager.getOfflineDirectionsAsync(originPlaceId, destinationPlaceId, callback);
+            mapDataManager.findOfflineDirectionsAsync(latitude, longitude, destinationPlaceId,
+                destinationLatitude, destinationLongitude, callback);
         } else {
             callback.accept(null);
         }
     }
     
-    // Synchronous version for backward compatibility (use with caution)
-    public OfflineDirections getOfflineDirections(String originPlaceId, String destinationPlaceId) {
-        return mapDataManager != null ? 
-            mapDataManager.getOfflineDirections(originPlaceId, destinationPlaceId) : null;
-    }
-    
     public void saveOfflineDirections(String originPlaceId, String originName,
                                     double originLatitude, double originLongitude,
                                     String destinationPlaceId, String destinationName,
                                     double destinationLatitude, double destinationLongitude,
                                     String routePolyline, String routeSummary,
-                                    long durationSeconds, long distanceMeters, String stepsJson) {
+                                    long durationSeconds, long distanceMeters, byte[] stepsData) {
         if (mapDataManager != null) {
             mapDataManager.saveOfflineDirections(originPlaceId, originName, originLatitude, originLongitude,
                 destinationPlaceId, destinationName, destinationLatitude, destinationLongitude,
-                routePolyline, routeSummary, durationSeconds, distanceMeters, stepsJson);
+                routePolyline, routeSummary, durationSeconds, distanceMeters, stepsData);
         }
     }
     
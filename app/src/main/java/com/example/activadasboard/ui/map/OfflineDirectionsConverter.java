@@ -1,7 +1,7 @@
 package com.example.activadasboard.ui.map;
 
 import com.example.activadasboard.data.OfflineDirections;
-import com.google.android.gms.maps.model.LatLng;
+import com.example.activadasboard.data.RouteSteps;
 import com.google.maps.model.DirectionsResult;
 import com.google.maps.model.DirectionsRoute;
 import com.google.maps.model.DirectionsLeg;
@@ -17,6 +17,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class OfflineDirectionsConverter {
+
+    /**
+     * A cached route, with its step paths kept in the 1e-5 degree form they're
+     * stored in so matching doesn't encode and decode them again.
+     */
+    static final class OfflineResult extends DirectionsResult {
+        // One path per step, or null if any step was saved without one
+        int[][] stepPaths;
+    }
     
     public static DirectionsResult convertToDirectionsResult(OfflineDirections offlineDirections) {
         try {
@@ -33,8 +42,12 @@ public class OfflineDirectionsConverter {
             leg.duration.inSeconds = offlineDirections.durationSeconds;
             leg.duration.humanReadable = formatDuration(offlineDirections.durationSeconds);
             
-            // Reconstruct detailed steps from JSON
-            DirectionsStep[] steps = reconstructStepsFromJson(offlineDirections.stepsJson, offlineDirections);
+            OfflineResult result = new OfflineResult();
+
+            // Rows saved before the binary format still carry JSON
+            DirectionsStep[] steps = offlineDirections.stepsData != null
+                    ? reconstructSteps(offlineDirections.stepsData, result)
+                    : reconstructStepsFromJson(offlineDirections.stepsJson, offlineDirections);
             if (steps != null && steps.length > 0) {
                 leg.steps = steps;
             } else {
@@ -59,8 +72,6 @@ public class OfflineDirectionsConverter {
             route.summary = offlineDirections.routeSummary;
             route.legs = new DirectionsLeg[]{leg};
             
-            // Create the result
-            DirectionsResult result = new DirectionsResult();
             result.routes = new DirectionsRoute[]{route};
             
             return result;
@@ -90,37 +101,74 @@ public class OfflineDirectionsConverter {
         }
     }
     
-    public static List<LatLng> decodePolyline(String encodedPolyline) {
-        List<LatLng> poly = new ArrayList<>();
-        int index = 0, len = encodedPolyline.length();
-        int lat = 0, lng = 0;
-
-        while (index < len) {
-            int b, shift = 0, result = 0;
-            do {
-                b = encodedPolyline.charAt(index++) - 63;
-                result |= (b & 0x1f) << shift;
-                shift += 5;
-            } while (b >= 0x20);
-            int dlat = ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
-            lat += dlat;
-
-            shift = 0;
-            result = 0;
-            do {
-                b = encodedPolyline.charAt(index++) - 63;
-                result |= (b & 0x1f) << shift;
-                shift += 5;
-            } while (b >= 0x20);
-            int dlng = ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
-            lng += dlng;
-
-            LatLng p = new LatLng((((double) lat / 1E5)),
-                    (((double) lng / 1E5)));
-            poly.add(p);
+    /** Steps and their polylines in the binary format {@link OfflineDirections#stepsData} holds. */
+    public static byte[] encodeSteps(DirectionsStep[] steps) {
+        List<RouteSteps.Step> encoded = new ArrayList<>(steps.length);
+        for (DirectionsStep step : steps) {
+            RouteSteps.Step out = new RouteSteps.Step();
+            out.instructions = step.htmlInstructions;
+            out.maneuver = step.maneuver;
+            if (step.distance != null) {
+                out.distanceText = step.distance.humanReadable;
+                out.distanceMeters = step.distance.inMeters;
+            }
+            if (step.duration != null) {
+                out.durationText = step.duration.humanReadable;
+                out.durationSeconds = step.duration.inSeconds;
+            }
+            if (step.startLocation != null) {
+                out.startLatitude = step.startLocation.lat;
+                out.startLongitude = step.startLocation.lng;
+            }
+            if (step.endLocation != null) {
+                out.endLatitude = step.endLocation.lat;
+                out.endLongitude = step.endLocation.lng;
+            }
+            if (step.polyline != null) {
+                out.polyline = RouteGeometry.decodeCoordinates(step.polyline.getEncodedPath());
+            }
+            encoded.add(out);
+        }
+        return RouteSteps.encode(encoded);
+    }
+    
+    private static DirectionsStep[] reconstructSteps(byte[] stepsData, OfflineResult result) {
+        try {
+            RouteSteps routeSteps = RouteSteps.parse(stepsData);
+            DirectionsStep[] steps = new DirectionsStep[routeSteps.size()];
+            int[][] paths = new int[steps.length][];
+            for (int i = 0; i < steps.length; i++) {
+                RouteSteps.Step stored = routeSteps.step(i);
+                DirectionsStep step = new DirectionsStep();
+                step.htmlInstructions = stored.instructions != null ? stored.instructions : "";
+                step.maneuver = stored.maneuver;
+                step.travelMode = TravelMode.DRIVING;
+                step.distance = new Distance();
+                step.distance.inMeters = stored.distanceMeters;
+                step.distance.humanReadable = stored.distanceText != null ? stored.distanceText : "";
+                step.duration = new Duration();
+                step.duration.inSeconds = stored.durationSeconds;
+                step.duration.humanReadable = stored.durationText != null ? stored.durationText : "";
+                if (!Double.isNaN(stored.startLatitude)) {
+                    step.startLocation = new com.google.maps.model.LatLng(stored.startLatitude, stored.startLongitude);
+                }
+                if (!Double.isNaN(stored.endLatitude)) {
+                    step.endLocation = new com.google.maps.model.LatLng(stored.endLatitude, stored.endLongitude);
+                }
+                // Only the matcher reads the path, so it stays as stored
+                if (stored.polyline == null) {
+                    paths = null;
+                } else if (paths != null) {
+                    paths[i] = stored.polyline;
+                }
+                steps[i] = step;
+            }
+            result.stepPaths = paths;
+            return steps;
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
         }
-
-        return poly;
     }
     
     private static DirectionsStep[] reconstructStepsFromJson(String stepsJson, OfflineDirections offlineDirections) {
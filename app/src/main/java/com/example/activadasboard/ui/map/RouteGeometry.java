@@ -0,0 +1,233 @@
+package com.example.activadasboard.ui.map;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A route's polyline decoded once into a packed array of 1e-5 degree fixed
+ * point coordinates, the precision the encoded polyline carries, with
+ * Douglas-Peucker simplifications precomputed per zoom band.
+ *
+ * Simplification runs once for all bands: every vertex is ranked by the
+ * largest tolerance at which Douglas-Peucker would still keep it, and a band
+ * keeps the vertices ranked above its tolerance of about a pixel. The result
+ * is the same as running Douglas-Peucker per band. Immutable, so it can be
+ * shared between redraws and fragments.
+ */
+public final class RouteGeometry {
+    static final double EARTH_RADIUS_M = 6371008.8;
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156543.03392;
+    private static final double TOLERANCE_PX = 1.0;
+    // Band i is used below zoom BAND_MAX_ZOOMS[i]; from the last one up every vertex is drawn
+    static final float[] BAND_MAX_ZOOMS = {6, 8, 10, 12, 14, 16, 18};
+
+    private final int[] coordinates; // lat, lng pairs in 1e-5 degrees
+    private final int[][] bandIndices;
+
+    private RouteGeometry(int[] coordinates) {
+        this.coordinates = coordinates;
+        this.bandIndices = buildBands(coordinates);
+    }
+
+    /** Decode a Google encoded polyline. */
+    public static RouteGeometry decode(String encoded) {
+        return new RouteGeometry(decodeCoordinates(encoded));
+    }
+
+    /**
+     * Decode consecutive encoded polylines, such as a route's step paths, as
+     * one line. A vertex shared by the end of one path and the start of the
+     * next appears once.
+     */
+    public static RouteGeometry join(List<String> encodedPaths) {
+        int[][] paths = new int[encodedPaths.size()][];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = decodeCoordinates(encodedPaths.get(i));
+        }
+        return join(paths);
+    }
+
+    /** Join paths already decoded to lat, lng pairs in 1e-5 degrees. */
+    public static RouteGeometry join(int[][] paths) {
+        int length = 0;
+        for (int[] path : paths) {
+            length += path.length;
+        }
+        int[] joined = new int[length];
+        int count = 0;
+        for (int[] path : paths) {
+            int from = count >= 2 && path.length >= 2
+                    && path[0] == joined[count - 2] && path[1] == joined[count - 1] ? 2 : 0;
+            System.arraycopy(path, from, joined, count, path.length - from);
+            count += path.length - from;
+        }
+        return new RouteGeometry(count == length ? joined : Arrays.copyOf(joined, count));
+    }
+
+    /** Decode a Google encoded polyline to lat, lng pairs in 1e-5 degrees. */
+    public static int[] decodeCoordinates(String encoded) {
+        int length = encoded.length();
+        // Every vertex takes at least two characters
+        int[] coordinates = new int[length + 1];
+        int count = 0;
+        int index = 0;
+        while (index < length) {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (index >= length) {
+                    throw new IllegalArgumentException("Truncated polyline");
+                }
+                b = encoded.charAt(index++) - 63;
+                result |= (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            // Values alternate lat, lng, each a delta from the previous vertex's
+            int previous = count < 2 ? 0 : coordinates[count - 2];
+            coordinates[count] = previous + ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
+            count++;
+        }
+        if (count % 2 != 0) {
+            throw new IllegalArgumentException("Polyline has a latitude without a longitude");
+        }
+        return Arrays.copyOf(coordinates, count);
+    }
+
+    /** Encode lat, lng pairs in 1e-5 degrees as a Google encoded polyline. */
+    public static String encode(int[] coordinates) {
+        StringBuilder encoded = new StringBuilder(coordinates.length * 3);
+        for (int i = 0; i < coordinates.length; i++) {
+            int delta = coordinates[i] - (i < 2 ? 0 : coordinates[i - 2]);
+            int value = delta < 0 ? ~(delta << 1) : delta << 1;
+            while (value >= 0x20) {
+                encoded.append((char) ((0x20 | (value & 0x1f)) + 63));
+                value >>>= 5;
+            }
+            encoded.append((char) (value + 63));
+        }
+        return encoded.toString();
+    }
+
+    public int size() {
+        return coordinates.length / 2;
+    }
+
+    public double latitude(int vertex) {
+        return coordinates[vertex * 2] / 1e5;
+    }
+
+    public double longitude(int vertex) {
+        return coordinates[vertex * 2 + 1] / 1e5;
+    }
+
+    /** The band to draw at {@code zoom}; {@link #BAND_MAX_ZOOMS}.length means full detail. */
+    public static int bandForZoom(float zoom) {
+        int band = 0;
+        while (band < BAND_MAX_ZOOMS.length && zoom >= BAND_MAX_ZOOMS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    /** Indices of the vertices to draw in {@code band}, first and last always included. */
+    public int[] verticesForBand(int band) {
+        return bandIndices[Math.min(band, bandIndices.length - 1)];
+    }
+
+    private static int[][] buildBands(int[] coordinates) {
+        int n = coordinates.length / 2;
+        int[][] bands = new int[BAND_MAX_ZOOMS.length + 1][];
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) {
+            all[i] = i;
+        }
+        bands[BAND_MAX_ZOOMS.length] = all;
+        if (n <= 2) {
+            Arrays.fill(bands, all);
+            return bands;
+        }
+
+        // Equirectangular projection around the route is plenty at the scale of a pixel
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double cosLat = Math.cos(Math.toRadians(coordinates[0] / 1e5));
+        double metersPerUnit = Math.toRadians(1e-5) * EARTH_RADIUS_M;
+        for (int i = 0; i < n; i++) {
+            y[i] = coordinates[i * 2] * metersPerUnit;
+            x[i] = coordinates[i * 2 + 1] * metersPerUnit * cosLat;
+        }
+        double[] rank = rankVertices(x, y);
+
+        int[] kept = new int[n];
+        for (int band = 0; band < BAND_MAX_ZOOMS.length; band++) {
+            double tolerance = METERS_PER_PIXEL_AT_ZOOM_0 * cosLat / Math.pow(2, BAND_MAX_ZOOMS[band]) * TOLERANCE_PX;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (rank[i] > tolerance) {
+                    kept[count++] = i;
+                }
+            }
+            bands[band] = count == n ? all : Arrays.copyOf(kept, count);
+        }
+        return bands;
+    }
+
+    /**
+     * Douglas-Peucker, iteratively so long routes can't overflow the stack.
+     * Each vertex gets the distance at which it was split off, capped by its
+     * parent's, so a vertex never outranks the one that made it reachable.
+     */
+    static double[] rankVertices(double[] x, double[] y) {
+        int n = x.length;
+        double[] rank = new double[n];
+        rank[0] = Double.POSITIVE_INFINITY;
+        rank[n - 1] = Double.POSITIVE_INFINITY;
+
+        // At most one pending span per vertex
+        int[] firsts = new int[n];
+        int[] lasts = new int[n];
+        double[] caps = new double[n];
+        int top = 0;
+        firsts[top] = 0;
+        lasts[top] = n - 1;
+        caps[top++] = Double.POSITIVE_INFINITY;
+        while (top > 0) {
+            top--;
+            int first = firsts[top];
+            int last = lasts[top];
+            double cap = caps[top];
+            if (last - first < 2) continue;
+
+            int farthest = -1;
+            double maxDistance = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            double split = Math.min(maxDistance, cap);
+            rank[farthest] = split;
+            firsts[top] = first;
+            lasts[top] = farthest;
+            caps[top++] = split;
+            firsts[top] = farthest;
+            lasts[top] = last;
+            caps[top++] = split;
+        }
+        return rank;
+    }
+
+    static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return Math.sqrt(cx * cx + cy * cy);
+    }
+}
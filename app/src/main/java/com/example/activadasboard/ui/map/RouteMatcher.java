@@ -0,0 +1,304 @@
+package com.example.activadasboard.ui.map;
+
+/**
+ * Snaps GPS fixes onto a route's polyline and tracks progress along it: the
+ * current step, distance to the step's end, remaining distance and time, and
+ * whether the rider has left the route.
+ *
+ * Each fix is only projected onto the segments within a window around the
+ * last match, from a little behind it to as far as the rider could have
+ * travelled since the previous fix, so a trip costs about one segment visit
+ * per fix plus one per vertex passed. Only while off the route is the whole
+ * polyline searched, to find where the rider rejoins it.
+ *
+ * Leaving the route needs {@link #OFF_ROUTE_FIXES} fixes in a row further
+ * than {@link #OFF_ROUTE_METERS} (or the fix's accuracy, if worse); coming
+ * back needs one within {@link #ON_ROUTE_METERS}. Not thread safe; feed it
+ * from one thread. No Android types, so it can be replayed against recorded
+ * traces in plain unit tests.
+ */
+public final class RouteMatcher {
+    public enum Event {
+        NONE,
+        OFF_ROUTE,
+        BACK_ON_ROUTE,
+        ARRIVED
+    }
+
+    static final double OFF_ROUTE_METERS = 40;
+    static final double ON_ROUTE_METERS = 20;
+    static final int OFF_ROUTE_FIXES = 3;
+    // Fixes this vague say nothing about where on the road the rider is
+    static final double MAX_ACCURACY_METERS = 50;
+    // The next step becomes current this far before the previous one ends
+    static final double STEP_LEAD_METERS = 20;
+    static final double ARRIVAL_METERS = 20;
+    private static final double BACKTRACK_METERS = 30;
+    private static final double MIN_LOOKAHEAD_METERS = 150;
+    // About 200 km/h; bounds the window after a gap in fixes
+    private static final double MAX_SPEED_MPS = 55;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * RouteGeometry.EARTH_RADIUS_M;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cosLatitudes;
+    // Distance along the route to each vertex
+    private final double[] vertexDistances;
+    private final double[] stepEndDistances;
+    // Time left in the plan from the start of each step; one extra zero at the end
+    private final double[] stepRemainingSeconds;
+    private final double totalDurationSeconds;
+    private final boolean hasStepDurations;
+
+    private int segment = 0;
+    private int step = 0;
+    private double distanceAlongRoute = 0;
+    private double offsetMeters = 0;
+    private boolean offRoute = false;
+    private boolean arrived = false;
+    private int offRouteFixes = 0;
+    private long lastFixTime = Long.MIN_VALUE;
+    private long segmentsExamined = 0;
+    // Result of the last match(), applied by commitMatch()
+    private int matchedSegment;
+    private double matchedDistance;
+
+    /**
+     * @param stepEnds         end of each step as latitude, longitude pairs; NaN where
+     *                         unknown, in which case the step runs to the next known end
+     * @param stepDurations    planned seconds per step; all zero if only the total is known
+     * @param totalDurationSeconds planned seconds for the whole route
+     */
+    public RouteMatcher(RouteGeometry route, double[] stepEnds, long[] stepDurations,
+                        long totalDurationSeconds) {
+        if (route.size() == 0) {
+            throw new IllegalArgumentException("Route has no vertices");
+        }
+        if (stepEnds.length % 2 != 0 || stepEnds.length / 2 != stepDurations.length) {
+            throw new IllegalArgumentException("Need one end and one duration per step");
+        }
+        // A single vertex becomes one zero-length segment
+        int vertices = Math.max(route.size(), 2);
+        latitudes = new double[vertices];
+        longitudes = new double[vertices];
+        cosLatitudes = new double[vertices];
+        vertexDistances = new double[vertices];
+        for (int i = 0; i < vertices; i++) {
+            int vertex = Math.min(i, route.size() - 1);
+            latitudes[i] = route.latitude(vertex);
+            longitudes[i] = route.longitude(vertex);
+            cosLatitudes[i] = Math.cos(Math.toRadians(latitudes[i]));
+            if (i > 0) {
+                vertexDistances[i] = vertexDistances[i - 1] + segmentLength(i - 1);
+            }
+        }
+
+        int steps = Math.max(stepDurations.length, 1);
+        stepEndDistances = new double[steps];
+        locateStepEnds(stepEnds);
+
+        stepRemainingSeconds = new double[steps + 1];
+        long stepTotal = 0;
+        for (int i = stepDurations.length - 1; i >= 0; i--) {
+            stepTotal += Math.max(stepDurations[i], 0);
+            stepRemainingSeconds[i] = stepTotal;
+        }
+        hasStepDurations = stepTotal > 0;
+        this.totalDurationSeconds = totalDurationSeconds;
+    }
+
+    /**
+     * Match a fix. Returns the state change it caused, if any; the getters
+     * reflect the fix afterwards.
+     *
+     * @param accuracyMeters the fix's horizontal accuracy, 0 if unknown
+     * @param timeMs         when the fix was taken
+     */
+    public Event update(double latitude, double longitude, double accuracyMeters, long timeMs) {
+        if (arrived || accuracyMeters > MAX_ACCURACY_METERS) {
+            return Event.NONE;
+        }
+        boolean firstFix = lastFixTime == Long.MIN_VALUE;
+        double elapsedSeconds = firstFix ? 0 : Math.max(timeMs - lastFixTime, 0) / 1000.0;
+        lastFixTime = timeMs;
+
+        if (firstFix) {
+            // Navigation may start part way along the route
+            match(latitude, longitude, 0, segmentCount() - 1);
+            if (offsetMeters <= Math.max(OFF_ROUTE_METERS, accuracyMeters)) {
+                commitMatch();
+            }
+        }
+        if (offRoute) {
+            // Could rejoin anywhere, so look everywhere
+            if (!match(latitude, longitude, 0, segmentCount() - 1) || offsetMeters > ON_ROUTE_METERS) {
+                return Event.NONE;
+            }
+            offRoute = false;
+            offRouteFixes = 0;
+            commitMatch();
+            return Event.BACK_ON_ROUTE;
+        }
+
+        double lookahead = Math.max(MIN_LOOKAHEAD_METERS, elapsedSeconds * MAX_SPEED_MPS);
+        int first = segment;
+        while (first > 0 && vertexDistances[first] > distanceAlongRoute - BACKTRACK_METERS) {
+            first--;
+        }
+        int last = segment;
+        while (last < segmentCount() - 1 && vertexDistances[last + 1] < distanceAlongRoute + lookahead) {
+            last++;
+        }
+        match(latitude, longitude, first, last);
+
+        if (offsetMeters > Math.max(OFF_ROUTE_METERS, accuracyMeters)) {
+            // Hold the last good position until it's clear the rider has left
+            if (++offRouteFixes >= OFF_ROUTE_FIXES) {
+                offRoute = true;
+                return Event.OFF_ROUTE;
+            }
+            return Event.NONE;
+        }
+        offRouteFixes = 0;
+        commitMatch();
+        if (getRemainingDistance() <= ARRIVAL_METERS) {
+            arrived = true;
+            return Event.ARRIVED;
+        }
+        return Event.NONE;
+    }
+
+    public int getStepIndex() {
+        return step;
+    }
+
+    public double getDistanceAlongRoute() {
+        return distanceAlongRoute;
+    }
+
+    public double getDistanceToStepEnd() {
+        return Math.max(stepEndDistances[step] - distanceAlongRoute, 0);
+    }
+
+    public double getRemainingDistance() {
+        return Math.max(getTotalDistance() - distanceAlongRoute, 0);
+    }
+
+    public double getTotalDistance() {
+        return vertexDistances[vertexDistances.length - 1];
+    }
+
+    /** Planned time to the destination from the matched position. */
+    public double getRemainingSeconds() {
+        double total = getTotalDistance();
+        if (!hasStepDurations) {
+            return total > 0 ? totalDurationSeconds * getRemainingDistance() / total : 0;
+        }
+        // The step the rider is actually in, not the one shown ahead of it
+        int current = step;
+        while (current > 0 && stepEndDistances[current - 1] > distanceAlongRoute) {
+            current--;
+        }
+        while (current < stepEndDistances.length - 1 && stepEndDistances[current] <= distanceAlongRoute) {
+            current++;
+        }
+        double start = current == 0 ? 0 : stepEndDistances[current - 1];
+        double length = stepEndDistances[current] - start;
+        double stepSeconds = stepRemainingSeconds[current] - stepRemainingSeconds[current + 1];
+        double fractionLeft = length > 0
+                ? Math.min(Math.max((stepEndDistances[current] - distanceAlongRoute) / length, 0), 1)
+                : 0;
+        return stepSeconds * fractionLeft + stepRemainingSeconds[current + 1];
+    }
+
+    /** Distance from the last fix to the route, even if that fix wasn't accepted. */
+    public double getOffsetMeters() {
+        return offsetMeters;
+    }
+
+    public boolean isOffRoute() {
+        return offRoute;
+    }
+
+    public boolean hasArrived() {
+        return arrived;
+    }
+
+    /** Segment projections done so far, for benchmarking against recorded traces. */
+    public long getSegmentsExamined() {
+        return segmentsExamined;
+    }
+
+    private int segmentCount() {
+        return latitudes.length - 1;
+    }
+
+    /** Project onto segments first..last, keeping the closest; ties go to the earliest. */
+    private boolean match(double latitude, double longitude, int first, int last) {
+        double best = Double.MAX_VALUE;
+        for (int i = first; i <= last; i++) {
+            segmentsExamined++;
+            double cos = cosLatitudes[i];
+            double bx = (longitudes[i + 1] - longitudes[i]) * cos * METERS_PER_DEGREE;
+            double by = (latitudes[i + 1] - latitudes[i]) * METERS_PER_DEGREE;
+            double px = (longitude - longitudes[i]) * cos * METERS_PER_DEGREE;
+            double py = (latitude - latitudes[i]) * METERS_PER_DEGREE;
+            double lengthSquared = bx * bx + by * by;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * bx + py * by) / lengthSquared));
+            double dx = t * bx - px;
+            double dy = t * by - py;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance < best) {
+                best = distance;
+                matchedSegment = i;
+                matchedDistance = vertexDistances[i] + t * (vertexDistances[i + 1] - vertexDistances[i]);
+            }
+        }
+        offsetMeters = best;
+        return best < Double.MAX_VALUE;
+    }
+
+    private void commitMatch() {
+        segment = matchedSegment;
+        distanceAlongRoute = matchedDistance;
+        while (step > 0 && stepEndDistances[step - 1] - distanceAlongRoute > STEP_LEAD_METERS) {
+            step--;
+        }
+        while (step < stepEndDistances.length - 1 && stepEndDistances[step] - distanceAlongRoute <= STEP_LEAD_METERS) {
+            step++;
+        }
+    }
+
+    /** Place each step end on the route, searching on from the previous one so loops resolve in order. */
+    private void locateStepEnds(double[] stepEnds) {
+        int from = 0;
+        double previous = 0;
+        for (int i = 0; i < stepEnds.length / 2; i++) {
+            double latitude = stepEnds[i * 2];
+            double longitude = stepEnds[i * 2 + 1];
+            if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                stepEndDistances[i] = Double.NaN;
+                continue;
+            }
+            match(latitude, longitude, from, segmentCount() - 1);
+            from = matchedSegment;
+            previous = Math.max(previous, matchedDistance);
+            stepEndDistances[i] = previous;
+        }
+        // The last step always ends at the destination; unknown ends run to the next known one
+        stepEndDistances[stepEndDistances.length - 1] = getTotalDistance();
+        for (int i = stepEndDistances.length - 2; i >= 0; i--) {
+            if (Double.isNaN(stepEndDistances[i])) {
+                stepEndDistances[i] = stepEndDistances[i + 1];
+            }
+        }
+        offsetMeters = 0;
+        segmentsExamined = 0;
+    }
+
+    private double segmentLength(int i) {
+        double x = (longitudes[i + 1] - longitudes[i]) * cosLatitudes[i] * METERS_PER_DEGREE;
+        double y = (latitudes[i + 1] - latitudes[i]) * METERS_PER_DEGREE;
+        return Math.sqrt(x * x + y * y);
+    }
+}
@@ -17,6 +17,8 @@ import com.example.activadasboard.data.DataBackupManager;
 import com.example.activadasboard.data.SearchHistory;
 import com.example.activadasboard.service.Esp8266Service;
 
+import java.io.File;
+
 public class SettingsFragment extends Fragment {
 
     private FragmentSettingsBinding binding;
@@ -52,6 +54,9 @@ public class SettingsFragment extends Fragment {
         // Setup WiFi lock switch
         setupWifiLockSwitch();
 
+        // Pipeline latency report
+        setupMetrics();
+
         return root;
     }
 
@@ -165,6 +170,38 @@ public class SettingsFragment extends Fragment {
         }
     }
     
+    private void setupMetrics() {
+        binding.refreshMetricsButton.setOnClickListener(v -> updateMetricsReport());
+        binding.resetMetricsButton.setOnClickListener(v -> {
+            esp8266Service.getMetrics().reset();
+            updateMetricsReport();
+        });
+        binding.dumpMetricsButton.setOnClickListener(v -> dumpMetrics());
+        updateMetricsReport();
+    }
+
+    private void updateMetricsReport() {
+        binding.metricsReport.setText(esp8266Service.getMetricsReport());
+    }
+
+    private void dumpMetrics() {
+        binding.dumpMetricsButton.setEnabled(false);
+        File directory = new File(requireContext().getExternalFilesDir(null), "metrics");
+        esp8266Service.dumpMetrics(directory).whenComplete((file, error) -> {
+            if (getActivity() == null) return;
+            requireActivity().runOnUiThread(() -> {
+                if (binding == null) return;
+                binding.dumpMetricsButton.setEnabled(true);
+                if (error != null) {
+                    binding.metricsStatus.setText("Save failed: " + error.getMessage());
+                } else {
+                    binding.metricsStatus.setText("Saved to " + file.getAbsolutePath());
+                    updateMetricsReport();
+                }
+            });
+        });
+    }
+
     // private void clearSearchHistory() {
     //     new androidx.appcompat.app.AlertDialog.Builder(requireContext())
     //             .setTitle("Clear Search History")
@@ -213,6 +250,15 @@ public class SettingsFragment extends Fragment {
                     Toast.makeText(requireContext(), "Export failed: " + error, Toast.LENGTH_LONG).show();
                 });
             }
+
+            @Override
+            public void onProgress(DataBackupManager.BackupProgress progress) {
+                if (getActivity() == null) return;
+                requireActivity().runOnUiThread(() -> {
+                    if (binding == null) return;
+                    binding.backupStatus.setText("Exporting data... " + progress.getSummary());
+                });
+            }
         });
     }
 } 
\ No newline at end of file
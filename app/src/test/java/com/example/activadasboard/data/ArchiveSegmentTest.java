@@ -0,0 +1,94 @@
+package com.example.activadasboard.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArchiveSegmentTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DashboardData sample(long timestamp, int i) {
+        DashboardData data = new DashboardData();
+        data.timestamp = timestamp;
+        data.speed = (i % 50) * 1.5;
+        data.fuelPercentage = 80 - i / 100.0;
+        data.fuelLiters = 4.321;
+        data.instantEconomy = i % 7 == 0 ? 0 : 42.17;
+        data.totalDistance = 12345.678 + i * 0.012;
+        data.trip1Distance = i * 0.012;
+        data.trip1Started = i > 10;
+        data.trip2Started = i % 300 < 150;
+        data.fuelFillStarted = i == 0;
+        data.gapBefore = i % 500 == 0;
+        data.backfilled = i >= 1000 && i < 1100;
+        return data;
+    }
+
+    @Test
+    public void roundTripsQuantisedSamples() throws Exception {
+        List<DashboardData> input = new ArrayList<>();
+        long start = 1_700_000_000_000L;
+        ArchiveSegmentWriter writer = new ArchiveSegmentWriter();
+        for (int i = 0; i < 3600; i++) {
+            // Mostly 1 Hz with the odd late sample
+            DashboardData data = sample(start + i * 1000L + (i % 97 == 0 ? 37 : 0), i);
+            input.add(data);
+            writer.add(data);
+        }
+        File file = folder.newFile("segment.ats");
+        writer.writeTo(file);
+
+        ArchiveSegmentReader reader = new ArchiveSegmentReader(file);
+        assertEquals(3600, reader.getRowCount());
+        assertEquals(input.get(0).timestamp, reader.getFirstTimestamp());
+        assertEquals(input.get(3599).timestamp, reader.getLastTimestamp());
+
+        List<DashboardData> output = new ArrayList<>();
+        assertEquals(3600, reader.read(Long.MIN_VALUE, Long.MAX_VALUE, output::add));
+        for (int i = 0; i < input.size(); i++) {
+            DashboardData expected = input.get(i);
+            DashboardData actual = output.get(i);
+            assertEquals(expected.timestamp, actual.timestamp);
+            // Numeric columns come back within half a quantisation step
+            assertEquals(expected.speed, actual.speed, 0.0501);
+            assertEquals(expected.fuelPercentage, actual.fuelPercentage, 0.0501);
+            assertEquals(expected.fuelLiters, actual.fuelLiters, 0.00051);
+            assertEquals(expected.instantEconomy, actual.instantEconomy, 0.00501);
+            assertEquals(expected.totalDistance, actual.totalDistance, 0.00051);
+            assertEquals(expected.trip1Distance, actual.trip1Distance, 0.00051);
+            assertEquals(expected.trip1Started, actual.trip1Started);
+            assertEquals(expected.trip2Started, actual.trip2Started);
+            assertEquals(expected.fuelFillStarted, actual.fuelFillStarted);
+            assertEquals(expected.gapBefore, actual.gapBefore);
+            assertEquals(expected.backfilled, actual.backfilled);
+        }
+
+        // An hour of 1 Hz samples should take a small fraction of a SQLite row each
+        assertTrue("segment is " + file.length() + " bytes", file.length() < 3600 * 12);
+    }
+
+    @Test
+    public void readsOnlyTheRequestedRange() throws Exception {
+        long start = 1_700_000_000_000L;
+        ArchiveSegmentWriter writer = new ArchiveSegmentWriter();
+        for (int i = 0; i < 100; i++) {
+            writer.add(sample(start + i * 1000L, i));
+        }
+        File file = folder.newFile("segment.ats");
+        writer.writeTo(file);
+
+        List<DashboardData> output = new ArrayList<>();
+        ArchiveSegmentReader reader = new ArchiveSegmentReader(file);
+        assertEquals(11, reader.read(start + 20_000, start + 30_000, output::add));
+        assertEquals(start + 20_000, output.get(0).timestamp);
+        assertEquals(start + 30_000, output.get(10).timestamp);
+        assertEquals(0, reader.read(start + 200_000, start + 300_000, output::add));
+    }
+}
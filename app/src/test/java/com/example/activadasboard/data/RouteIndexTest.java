@@ -0,0 +1,110 @@
+package com.example.activadasboard.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RouteIndexTest {
+    // One degree of latitude is about 111 km, so 0.001 is about 111 m
+    private static final double LAT = 19.0760;
+    private static final double LNG = 72.8777;
+
+    private static RouteIndex.Entry entry(int id, double originLat, double originLng, String destination,
+                                          int usageCount, long timestamp) {
+        RouteIndex.Entry entry = new RouteIndex.Entry();
+        entry.id = id;
+        entry.originLatitude = originLat;
+        entry.originLongitude = originLng;
+        entry.destinationPlaceId = destination;
+        entry.destinationLatitude = 19.2;
+        entry.destinationLongitude = 72.9;
+        entry.usageCount = usageCount;
+        entry.timestamp = timestamp;
+        return entry;
+    }
+
+    private static RouteIndex.Entry find(RouteIndex index, double lat, double lng, String destination) {
+        return index.findNearest(lat, lng, 500, destination, 0, 0, 100);
+    }
+
+    @Test
+    public void picksTheClosestOriginWithinTheRadius() {
+        RouteIndex index = new RouteIndex();
+        index.warm(() -> Arrays.asList(
+                entry(1, LAT + 0.003, LNG, "dest", 5, 1),   // ~330 m
+                entry(2, LAT + 0.001, LNG, "dest", 1, 1),   // ~110 m
+                entry(3, LAT + 0.010, LNG, "dest", 9, 1),   // ~1.1 km, too far
+                entry(4, LAT, LNG, "other", 9, 1)));        // Somewhere else entirely
+
+        assertEquals(2, find(index, LAT, LNG, "dest").id);
+        assertNull(find(index, LAT + 0.02, LNG, "dest"));
+    }
+
+    @Test
+    public void searchesAcrossCellBoundaries() {
+        RouteIndex index = new RouteIndex();
+        // Just either side of a cell edge
+        double edge = RouteIndex.cell(LAT) * RouteIndex.CELL_DEGREES;
+        index.add(entry(1, edge - 0.0005, LNG, "dest", 1, 1));
+
+        assertEquals(1, find(index, edge + 0.0005, LNG, "dest").id);
+    }
+
+    @Test
+    public void matchesTheDestinationByLocationUnderAnotherPlaceId() {
+        RouteIndex index = new RouteIndex();
+        index.add(entry(1, LAT, LNG, "old-id", 1, 1));
+
+        assertEquals(1, index.findNearest(LAT, LNG, 500, "new-id", 19.2005, 72.9, 100).id);
+        assertNull(index.findNearest(LAT, LNG, 500, "new-id", 19.21, 72.9, 100));
+    }
+
+    @Test
+    public void tiesGoToTheMostUsed() {
+        RouteIndex index = new RouteIndex();
+        index.add(entry(1, LAT, LNG, "dest", 1, 5));
+        index.add(entry(2, LAT, LNG, "dest", 1, 1));
+        assertEquals(1, find(index, LAT, LNG, "dest").id);
+
+        index.markUsed(2, 2);
+        assertEquals(2, find(index, LAT, LNG, "dest").id);
+    }
+
+    @Test
+    public void removalsAreReflected() {
+        RouteIndex index = new RouteIndex();
+        index.add(entry(1, LAT, LNG, "dest", 1, 100));
+        index.add(entry(2, LAT + 0.001, LNG, "dest", 1, 50));
+
+        index.remove(1);
+        assertEquals(2, find(index, LAT, LNG, "dest").id);
+        index.removeOlderThan(60);
+        assertNull(find(index, LAT, LNG, "dest"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void warmsOnlyOnce() {
+        RouteIndex index = new RouteIndex();
+        index.warm(() -> Arrays.asList(entry(1, LAT, LNG, "dest", 1, 1)));
+        index.warm(() -> {
+            throw new AssertionError("loaded twice");
+        });
+        assertTrue(index.isWarm());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void routesSavedBeforeWarmingAreNotDuplicated() {
+        RouteIndex index = new RouteIndex();
+        // Saved while the warm-up thread was still loading, and in its snapshot too
+        index.add(entry(1, LAT, LNG, "dest", 1, 1));
+        index.warm(() -> Arrays.asList(entry(1, LAT, LNG, "dest", 1, 1)));
+        assertEquals(1, index.size());
+
+        index.remove(1);
+        assertNull(find(index, LAT, LNG, "dest"));
+    }
+}
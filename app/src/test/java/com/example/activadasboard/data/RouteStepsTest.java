@@ -0,0 +1,114 @@
+package com.example.activadasboard.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RouteStepsTest {
+
+    private static RouteSteps.Step step(int i) {
+        RouteSteps.Step step = new RouteSteps.Step();
+        step.instructions = "Turn <b>left</b> onto <b>Road " + i + "</b> – towards Café";
+        step.maneuver = i % 3 == 0 ? null : "turn-left";
+        step.distanceText = (i * 10) + " m";
+        step.durationText = "1 min";
+        step.distanceMeters = i * 10L;
+        step.durationSeconds = 60;
+        step.startLatitude = 12.97160 + i * 0.001;
+        step.startLongitude = 77.59460 - i * 0.001;
+        step.endLatitude = 12.97160 + (i + 1) * 0.001;
+        step.endLongitude = 77.59460 - (i + 1) * 0.001;
+        int[] polyline = new int[20];
+        for (int v = 0; v < 10; v++) {
+            polyline[v * 2] = 1297160 + i * 100 + v * 11;
+            polyline[v * 2 + 1] = 7759460 - i * 100 - v * 11;
+        }
+        step.polyline = polyline;
+        return step;
+    }
+
+    private static List<RouteSteps.Step> steps(int count) {
+        List<RouteSteps.Step> steps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            steps.add(step(i));
+        }
+        return steps;
+    }
+
+    @Test
+    public void roundTripsEveryField() {
+        RouteSteps.Step original = step(4);
+        RouteSteps.Step decoded = RouteSteps.parse(RouteSteps.encode(Arrays.asList(original))).step(0);
+
+        assertEquals(original.instructions, decoded.instructions);
+        assertEquals(original.maneuver, decoded.maneuver);
+        assertEquals(original.distanceText, decoded.distanceText);
+        assertEquals(original.durationText, decoded.durationText);
+        assertEquals(40, decoded.distanceMeters);
+        assertEquals(60, decoded.durationSeconds);
+        assertEquals(original.startLatitude, decoded.startLatitude, 1e-9);
+        assertEquals(original.startLongitude, decoded.startLongitude, 1e-9);
+        assertEquals(original.endLatitude, decoded.endLatitude, 1e-9);
+        assertEquals(original.endLongitude, decoded.endLongitude, 1e-9);
+        assertTrue(Arrays.equals(original.polyline, decoded.polyline));
+    }
+
+    @Test
+    public void missingFieldsStayMissing() {
+        RouteSteps.Step bare = new RouteSteps.Step();
+        RouteSteps.Step decoded = RouteSteps.parse(RouteSteps.encode(Arrays.asList(bare))).step(0);
+
+        assertNull(decoded.instructions);
+        assertNull(decoded.maneuver);
+        assertNull(decoded.polyline);
+        assertTrue(Double.isNaN(decoded.startLatitude));
+        assertTrue(Double.isNaN(decoded.endLongitude));
+    }
+
+    @Test
+    public void stepsDecodeLazilyAndOnce() {
+        RouteSteps route = RouteSteps.parse(RouteSteps.encode(steps(5)));
+        assertEquals(5, route.size());
+        RouteSteps.Step last = route.step(4);
+        assertEquals(step(4).instructions, last.instructions);
+        assertSame(last, route.step(4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownVersion() {
+        byte[] data = RouteSteps.encode(steps(1));
+        data[7] = 99; // Low byte of the version
+        RouteSteps.parse(data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsATruncatedStep() {
+        byte[] data = RouteSteps.encode(steps(2));
+        RouteSteps.parse(Arrays.copyOf(data, data.length - 5)).step(1);
+    }
+
+    @Test
+    public void identicalRoutesHashAlike() {
+        byte[] a = RouteSteps.encode(steps(3));
+        byte[] b = RouteSteps.encode(steps(3));
+        byte[] c = RouteSteps.encode(steps(4));
+        assertEquals(RouteSteps.hash("abc", a), RouteSteps.hash("abc", b));
+        assertTrue(RouteSteps.hash("abc", a) != RouteSteps.hash("abd", a));
+        assertTrue(RouteSteps.hash("abc", a) != RouteSteps.hash("abc", c));
+    }
+
+    @Test
+    public void decodesEveryStepOfALongRoute() {
+        // Timing lives in RouteStepsBenchmark, on a device
+        RouteSteps route = RouteSteps.parse(RouteSteps.encode(steps(200)));
+        assertEquals(200, route.size());
+        for (int i = 0; i < route.size(); i++) {
+            assertEquals(step(i).instructions, route.step(i).instructions);
+            assertTrue(Arrays.equals(step(i).polyline, route.step(i).polyline));
+        }
+    }
+}
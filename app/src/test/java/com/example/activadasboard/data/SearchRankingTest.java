@@ -0,0 +1,88 @@
+package com.example.activadasboard.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchRankingTest {
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final long NOW = 1_790_000_000_000L;
+
+    private static double searches(long... times) {
+        double frecency = Double.NEGATIVE_INFINITY;
+        for (long time : times) {
+            frecency = SearchRanking.addSearch(frecency, time);
+        }
+        return frecency;
+    }
+
+    @Test
+    public void aSearchHalfALifeAgoWeighsHalf() {
+        double twoOld = searches(NOW - SearchRanking.HALF_LIFE_MS, NOW - SearchRanking.HALF_LIFE_MS);
+        assertEquals(SearchRanking.frecency(NOW), twoOld, 1e-6);
+    }
+
+    @Test
+    public void incrementalScoresMatchTheSumOfWeights() {
+        long[] times = {NOW - 40 * DAY_MS, NOW - 9 * DAY_MS, NOW - 2 * DAY_MS, NOW};
+        double expected = 0;
+        for (long time : times) {
+            expected += Math.pow(2, (time - NOW) / (double) SearchRanking.HALF_LIFE_MS);
+        }
+        // Scores are relative to the epoch; shift to NOW to compare
+        assertEquals(Math.log(expected), searches(times) - SearchRanking.frecency(NOW), 1e-9);
+    }
+
+    @Test
+    public void frequentBeatsRecentUntilItFades() {
+        double regular = searches(NOW - 10 * DAY_MS, NOW - 9 * DAY_MS, NOW - 8 * DAY_MS, NOW - 7 * DAY_MS);
+        double once = searches(NOW - DAY_MS);
+        assertTrue(regular > once);
+
+        double longAgo = searches(NOW - 200 * DAY_MS, NOW - 199 * DAY_MS, NOW - 198 * DAY_MS);
+        assertTrue(once > longAgo);
+    }
+
+    @Test
+    public void backfillTreatsCountedSearchesAsOneTime() {
+        assertEquals(searches(NOW, NOW, NOW), SearchRanking.frecency(3, NOW), 1e-9);
+        assertEquals(SearchRanking.frecency(NOW), SearchRanking.frecency(0, NOW), 1e-9);
+    }
+
+    private static SearchHistory suggestion(int id, int count, long timestamp, double frecency) {
+        SearchHistory row = new SearchHistory();
+        row.id = id;
+        row.searchCount = count;
+        row.timestamp = timestamp;
+        row.frecency = frecency;
+        return row;
+    }
+
+    @Test
+    public void cachedDestinationsAreScoredByTheirUseCount() {
+        SearchHistory searched = suggestion(7, 2, NOW, searches(NOW, NOW));
+        SearchHistory usedOnce = suggestion(0, 1, NOW, 0);
+        SearchHistory usedOften = suggestion(0, 5, NOW - DAY_MS, 0);
+
+        List<SearchHistory> ranked = SearchRanking.rank(Arrays.asList(usedOnce, searched, usedOften), 2);
+        assertEquals(2, ranked.size());
+        assertSame(usedOften, ranked.get(0));
+        assertSame(searched, ranked.get(1));
+        assertEquals(SearchRanking.frecency(5, NOW - DAY_MS), usedOften.frecency, 1e-9);
+        // A stored search keeps its own score
+        assertEquals(searches(NOW, NOW), searched.frecency, 1e-9);
+    }
+
+    @Test
+    public void matchQueriesArePrefixTermsWithoutOperators() {
+        assertEquals("caf* coffee*", SearchRanking.toMatchQuery("  Caf, coffee"));
+        assertEquals("m* g* road*", SearchRanking.toMatchQuery("M.G. \"Road"));
+        assertEquals("café* 12*", SearchRanking.toMatchQuery("café-12"));
+        assertEquals("a* b* c* d* e* f*", SearchRanking.toMatchQuery("a b c d e f g h"));
+        assertNull(SearchRanking.toMatchQuery(" * - \" "));
+        assertNull(SearchRanking.toMatchQuery(null));
+    }
+}
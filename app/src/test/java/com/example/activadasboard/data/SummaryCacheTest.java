@@ -0,0 +1,99 @@
+package com.example.activadasboard.data;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SummaryCacheTest {
+    private static final long DAY = DashboardRollup.DAY;
+
+    private static TripSummary summary(double distance) {
+        TripSummary summary = new TripSummary();
+        summary.distanceTraveled = distance;
+        return summary;
+    }
+
+    @Test
+    public void repeatedRangeIsServedFromCache() {
+        SummaryCache cache = new SummaryCache(8);
+        AtomicInteger loads = new AtomicInteger();
+        TripSummary first = cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 1000, () -> {
+            loads.incrementAndGet();
+            return summary(12);
+        });
+        TripSummary second = cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 1000, () -> {
+            loads.incrementAndGet();
+            return summary(99);
+        });
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void writesOnlyInvalidateOverlappingRanges() {
+        SummaryCache cache = new SummaryCache(8);
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 1000, () -> summary(1));
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 2000, 3000, () -> summary(2));
+        cache.getOrLoad(SummaryCache.Kind.FUEL, 500, Long.MAX_VALUE, () -> new FuelSummary());
+
+        cache.invalidate(2500, 2600);
+
+        // The second trip and the open-ended fuel summary overlap the write
+        assertEquals(1, cache.size());
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 1000, () -> {
+            loads.incrementAndGet();
+            return summary(1);
+        });
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void rollupRangesAreWidenedByTheirBucket() {
+        SummaryCache cache = new SummaryCache(8);
+        cache.getOrLoad(SummaryCache.Kind.DAILY, 10 * DAY, 12 * DAY, () -> summary(1));
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 10 * DAY, 12 * DAY, () -> summary(2));
+
+        // Just before the range: same day bucket as its start, but not a raw sample inside it
+        cache.invalidate(10 * DAY - 1, 10 * DAY - 1);
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void openEndedRangesDoNotOverflow() {
+        SummaryCache cache = new SummaryCache(8);
+        cache.getOrLoad(SummaryCache.Kind.DAILY, Long.MIN_VALUE, Long.MAX_VALUE, () -> summary(1));
+        cache.invalidate(5, 5);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void loadRacingAWriteIsNotCached() {
+        SummaryCache cache = new SummaryCache(8);
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 1000, () -> {
+            cache.invalidate(100, 100);
+            return summary(1);
+        });
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        SummaryCache cache = new SummaryCache(2);
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 1, () -> summary(1));
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 2, () -> summary(2));
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 1, () -> summary(0)); // Touch the first
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 3, () -> summary(3));
+
+        assertEquals(2, cache.size());
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad(SummaryCache.Kind.TRIP, 0, 1, () -> {
+            loads.incrementAndGet();
+            return summary(1);
+        });
+        assertEquals(0, loads.get());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.activadasboard.service;
+
+import com.example.activadasboard.data.DashboardSample;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class DashboardSampleDecoderTest {
+    // Shaped like fillDashboardJson() in the firmware
+    private static final String PAYLOAD = "{\"speed\":42.5,\"fuelPercentage\":63.2,\"fuelLiters\":3.16,"
+            + "\"instantEconomy\":41.8,\"odometer\":12345.67,"
+            + "\"trip1\":105.4,\"trip1Fuel\":2.31,\"trip1Average\":45.6,\"trip1Started\":true,"
+            + "\"trip2\":12.25,\"trip2Fuel\":0.27,\"trip2Average\":45.37,\"trip2Started\":false,"
+            + "\"fuelFillAverage\":44.1,\"fuelFillDistance\":88.2,\"lastFuelFill\":2.0,"
+            + "\"fuelFillStarted\":true,\"fuelUsedSinceFill\":2.0,\"resetCount\":3}";
+
+    private static DashboardSample decode(String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        DashboardSample sample = new DashboardSample();
+        new DashboardSampleDecoder().decode(bytes, 0, bytes.length, sample);
+        return sample;
+    }
+
+    @Test
+    public void decodesEveryField() throws IOException {
+        DashboardSample sample = decode(PAYLOAD);
+        assertEquals(42.5, sample.speed, 1e-9);
+        assertEquals(63.2, sample.fuelPercentage, 1e-9);
+        assertEquals(3.16, sample.fuelLiters, 1e-9);
+        assertEquals(41.8, sample.instantEconomy, 1e-9);
+        assertEquals(12345.67, sample.odometer, 1e-9);
+        assertEquals(105.4, sample.trip1, 1e-9);
+        assertEquals(2.31, sample.trip1Fuel, 1e-9);
+        assertEquals(45.6, sample.trip1Average, 1e-9);
+        assertTrue(sample.trip1Started);
+        assertEquals(12.25, sample.trip2, 1e-9);
+        assertEquals(0.27, sample.trip2Fuel, 1e-9);
+        assertEquals(45.37, sample.trip2Average, 1e-9);
+        assertFalse(sample.trip2Started);
+        assertEquals(44.1, sample.fuelFillAverage, 1e-9);
+        assertEquals(88.2, sample.fuelFillDistance, 1e-9);
+        assertEquals(2.0, sample.lastFuelFill, 1e-9);
+        assertTrue(sample.fuelFillStarted);
+        assertEquals(2.0, sample.fuelUsedSinceFill, 1e-9);
+        assertEquals(3, sample.resetCount);
+        assertTrue(sample.timestamp > 0);
+    }
+
+    @Test
+    public void readsTheSamePayloadFromAStream() throws IOException {
+        // Longer than the initial read buffer, so it has to grow
+        StringBuilder padded = new StringBuilder(PAYLOAD);
+        padded.setLength(padded.length() - 1);
+        padded.append(",\"nav_instruction\":\"");
+        for (int i = 0; i < 2000; i++) {
+            padded.append('x');
+        }
+        padded.append("\"}");
+        DashboardSample sample = new DashboardSample();
+        new DashboardSampleDecoder().decode(
+                new ByteArrayInputStream(padded.toString().getBytes(StandardCharsets.UTF_8)), sample);
+        assertEquals(42.5, sample.speed, 1e-9);
+        assertEquals(3, sample.resetCount);
+    }
+
+    @Test
+    public void skipsStringsWithEscapes() throws IOException {
+        DashboardSample sample = decode("{\"nav_instruction\":\"Turn \\\"left\\\" \\\\ onto \\u00e9 Rd}\","
+                + "\"spe\\\"ed\":99,\"speed\":30}");
+        assertEquals(30, sample.speed, 1e-9);
+    }
+
+    @Test
+    public void skipsNestedAndUnknownValues() throws IOException {
+        DashboardSample sample = decode("{\"nav\":{\"steps\":[{\"speed\":99},[1,2,\"]}\"]],\"eta\":null},"
+                + "\"lanes\":[true,false],\"unknown\":12.5,\"speed\":18,\"flag\":true}");
+        assertEquals(18, sample.speed, 1e-9);
+        assertEquals(0, sample.fuelPercentage, 1e-9);
+    }
+
+    @Test
+    public void missingFieldsKeepTheirDefaults() throws IOException {
+        DashboardSampleDecoder decoder = new DashboardSampleDecoder();
+        DashboardSample sample = new DashboardSample();
+        byte[] full = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+        decoder.decode(full, 0, full.length, sample);
+
+        // A reused sample doesn't keep the previous frame's values
+        byte[] partial = "{\"speed\":12}".getBytes(StandardCharsets.UTF_8);
+        decoder.decode(partial, 0, partial.length, sample);
+        assertEquals(12, sample.speed, 1e-9);
+        assertEquals(0, sample.odometer, 1e-9);
+        assertFalse(sample.trip1Started);
+        assertEquals(0, sample.resetCount);
+
+        assertEquals(0, decode(" {} ").speed, 1e-9);
+    }
+
+    @Test
+    public void nanAndNullNumbersCountAsMissing() throws IOException {
+        DashboardSample sample = decode("{\"speed\":NaN,\"fuelLiters\":null,\"instantEconomy\":Infinity,"
+                + "\"odometer\":-1.5e2,\"trip1\":5}");
+        assertEquals(0, sample.speed, 1e-9);
+        assertEquals(0, sample.fuelLiters, 1e-9);
+        assertEquals(0, sample.instantEconomy, 1e-9);
+        assertEquals(-150, sample.odometer, 1e-9);
+        assertEquals(5, sample.trip1, 1e-9);
+    }
+
+    @Test
+    public void rejectsMalformedFrames() {
+        String[] frames = {
+            "",
+            "[1,2]",
+            "{\"speed\":42.5",
+            "{\"speed\" 42.5}",
+            "{\"speed\":}",
+            "{\"speed\":42.5,}",
+            "{\"speed\":tru}",
+            "{\"nav\":\"unterminated}",
+            "{\"nav\":{\"steps\":[1,2}",
+        };
+        for (String frame : frames) {
+            try {
+                decode(frame);
+                fail("Accepted " + frame);
+            } catch (IOException expected) {
+                // Counted as a bad frame and the poll moves on
+            }
+        }
+    }
+}
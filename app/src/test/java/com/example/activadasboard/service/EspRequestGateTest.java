@@ -0,0 +1,84 @@
+package com.example.activadasboard.service;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class EspRequestGateTest {
+
+    @Test
+    public void neverLetsTwoRequestsOverlap() throws Exception {
+        EspRequestGate gate = new EspRequestGate();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        // Pollers, command senders and navigation frames all at once
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    EspRequestGate.Permit permit;
+                    try {
+                        permit = gate.acquire(10_000);
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                    try {
+                        if (running.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        Thread.yield();
+                        running.decrementAndGet();
+                        completed.incrementAndGet();
+                    } finally {
+                        permit.close();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400, completed.get());
+        assertEquals(0, overlaps.get());
+        assertEquals(1, gate.getMaxInFlight());
+    }
+
+    @Test
+    public void givesUpWhileAnotherRequestHoldsTheEsp() throws Exception {
+        EspRequestGate gate = new EspRequestGate();
+        EspRequestGate.Permit held = gate.acquire(0);
+        try {
+            gate.acquire(20);
+            fail("Second request should have timed out");
+        } catch (IOException expected) {
+            // The poll fails like any other transport error
+        }
+        held.close();
+        gate.acquire(0).close();
+    }
+
+    @Test
+    public void closingTwiceReleasesOnce() throws Exception {
+        EspRequestGate gate = new EspRequestGate();
+        EspRequestGate.Permit permit = gate.acquire(0);
+        permit.close();
+        permit.close();
+        EspRequestGate.Permit next = gate.acquire(0);
+        try {
+            gate.acquire(0);
+            fail("A double close must not free a second permit");
+        } catch (IOException expected) {
+            // Still held by next
+        }
+        next.close();
+        assertEquals(1, gate.getMaxInFlight());
+    }
+}
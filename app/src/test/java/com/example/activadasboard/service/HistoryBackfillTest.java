@@ -0,0 +1,78 @@
+package com.example.activadasboard.service;
+
+import com.example.activadasboard.data.DashboardData;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistoryBackfillTest {
+    private static final long THRESHOLD = 10_000;
+
+    private static DashboardData before(long timestamp) {
+        DashboardData data = new DashboardData();
+        data.timestamp = timestamp;
+        data.trip1Fuel = 1.25;
+        data.fuelFillStarted = true;
+        return data;
+    }
+
+    @Test
+    public void parsesRowsInsideTheGap() {
+        String body = "8000,452,3125,6250,401,1234567,1050,20\n"
+            + "6000,460,3120,6240,398,1234575,1058,28\n"
+            + "4000,0,3118,6236,0,1234580,1063,33\n";
+        HistoryBackfill.Result result = HistoryBackfill.parse(body, 100_000, before(91_000), 98_000, THRESHOLD);
+
+        assertEquals(3, result.rows.size());
+        DashboardData first = result.rows.get(0);
+        assertEquals(92_000, first.timestamp);
+        assertEquals(45.2, first.speed, 1e-9);
+        assertEquals(3.125, first.fuelLiters, 1e-9);
+        assertEquals(62.5, first.fuelPercentage, 1e-9);
+        assertEquals(40.1, first.instantEconomy, 1e-9);
+        assertEquals(12345.67, first.totalDistance, 1e-9);
+        assertEquals(10.5, first.trip1Distance, 1e-9);
+        assertEquals(0.2, first.trip2Distance, 1e-9);
+        // Fields the history doesn't carry come from the row before the gap
+        assertEquals(1.25, first.trip1Fuel, 1e-9);
+        assertTrue(first.fuelFillStarted);
+        for (DashboardData row : result.rows) {
+            assertTrue(row.backfilled);
+            assertFalse(row.gapBefore);
+        }
+        assertFalse(result.gapRemains);
+    }
+
+    @Test
+    public void skipsRowsOutsideTheGapAndMalformedLines() {
+        String body = "12000,1,1,1,1,1,1,1\n"  // Before the gap, already stored
+            + "garbage\n"
+            + "7000,1,1,1,1,1,1\n"            // Field missing
+            + "6000,1,1,1,1,1,1,1\r\n"
+            + "1000,1,1,1,1,1,1,1\n";        // At or after the gap end, already stored
+        HistoryBackfill.Result result = HistoryBackfill.parse(body, 100_000, before(90_000), 99_000, THRESHOLD);
+
+        assertEquals(1, result.rows.size());
+        assertEquals(94_000, result.rows.get(0).timestamp);
+    }
+
+    @Test
+    public void flagsWhatTheHistoryCouldNotCover() {
+        // The ESP ring only reaches back 20s of a 60s gap
+        String body = "20000,1,1,1,1,1,1,1\n18000,1,1,1,1,1,1,1\n";
+        HistoryBackfill.Result result = HistoryBackfill.parse(body, 100_000, before(40_000), 99_000, THRESHOLD);
+
+        assertEquals(2, result.rows.size());
+        assertTrue(result.rows.get(0).gapBefore);
+        assertFalse(result.rows.get(1).gapBefore);
+        assertTrue(result.gapRemains);
+    }
+
+    @Test
+    public void emptyHistoryLeavesTheGap() {
+        HistoryBackfill.Result result = HistoryBackfill.parse("", 100_000, before(40_000), 99_000, THRESHOLD);
+        assertTrue(result.rows.isEmpty());
+        assertTrue(result.gapRemains);
+    }
+}
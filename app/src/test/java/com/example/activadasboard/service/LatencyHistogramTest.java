@@ -0,0 +1,59 @@
+package com.example.activadasboard.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndCoverEveryValue() {
+        long previousUpper = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long upper = LatencyHistogram.bucketUpperBound(i);
+            assertEquals("bucket " + i + " upper bound", i, LatencyHistogram.bucketIndex(upper));
+            assertEquals("bucket " + i + " lower bound", i, LatencyHistogram.bucketIndex(previousUpper + 1));
+            previousUpper = upper;
+        }
+    }
+
+    @Test
+    public void relativeErrorStaysWithinBucketResolution() {
+        for (long value = 1; value < 1L << 40; value = value * 3 / 2 + 1) {
+            long reported = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value));
+            assertTrue(reported >= value);
+            assertTrue("value " + value + " reported as " + reported, (reported - value) <= value / 16.0);
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.recordMicros(micros);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxMicros());
+        assertEquals(5_000, histogram.getMeanMicros());
+        assertEquals(5_000, histogram.getPercentileMicros(50), 5_000 / 16.0);
+        assertEquals(9_900, histogram.getPercentileMicros(99), 9_900 / 16.0);
+        assertEquals(10_000, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.recordMicros(1_000_001);
+        assertEquals(1_000_001, histogram.getPercentileMicros(50));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.recordNanos(5_000_000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.getPercentileMicros(99));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.activadasboard.service;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Golden-file test: legacy_updates.jsonl holds the JSON objects the app used
+ * to POST to /navigation, expected_frames.txt the frame each one should
+ * produce now ("-" for no frame).
+ */
+public class NavigationFrameEncoderTest {
+
+    private static List<String> readLines(String resource) throws Exception {
+        List<String> lines = new ArrayList<>();
+        InputStream in = NavigationFrameEncoderTest.class.getClassLoader().getResourceAsStream(resource);
+        assertNotNull("Missing test resource " + resource, in);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static NavigationFrameEncoder.Update legacy(String json) throws Exception {
+        return NavigationFrameEncoder.Update.fromLegacyJson(new JSONObject(json));
+    }
+
+    @Test
+    public void matchesGoldenFrames() throws Exception {
+        List<String> updates = readLines("navigation/legacy_updates.jsonl");
+        List<String> expected = readLines("navigation/expected_frames.txt");
+        assertEquals(updates.size(), expected.size());
+
+        NavigationFrameEncoder encoder = new NavigationFrameEncoder();
+        int jsonBytes = 0;
+        int frameBytes = 0;
+        for (int i = 0; i < updates.size(); i++) {
+            // One update a second, as the service sends them
+            String frame = encoder.encode(legacy(updates.get(i)), i * 1000L);
+            assertEquals("Update " + (i + 1), expected.get(i), frame == null ? "-" : frame);
+            jsonBytes += updates.get(i).length();
+            frameBytes += frame == null ? 0 : frame.length();
+        }
+        assertTrue("Frames should be far smaller than the JSON", frameBytes * 5 < jsonBytes);
+    }
+
+    @Test
+    public void resetResendsTheStep() throws Exception {
+        List<String> updates = readLines("navigation/legacy_updates.jsonl");
+        NavigationFrameEncoder encoder = new NavigationFrameEncoder();
+        String first = encoder.encode(legacy(updates.get(0)), 0);
+        assertNull(encoder.encode(legacy(updates.get(0)), 1000));
+
+        encoder.reset();
+        assertEquals(first, encoder.encode(legacy(updates.get(0)), 2000));
+    }
+
+    @Test
+    public void keepsTheNavigationScreenUpWhileNothingChanges() throws Exception {
+        NavigationFrameEncoder.Update stopped = legacy(readLines("navigation/legacy_updates.jsonl").get(0));
+        NavigationFrameEncoder encoder = new NavigationFrameEncoder();
+        assertTrue(encoder.encode(stopped, 0).startsWith("S,"));
+
+        // Waiting at a light for a minute: a bare delta every KEEP_ALIVE_MS, nothing in between
+        int keepAlives = 0;
+        long lastFrame = 0;
+        for (long now = 1000; now <= 60_000; now += 1000) {
+            String frame = encoder.encode(stopped, now);
+            if (frame != null) {
+                assertEquals("D," + stopped.step, frame);
+                assertEquals(NavigationFrameEncoder.KEEP_ALIVE_MS, now - lastFrame);
+                lastFrame = now;
+                keepAlives++;
+            }
+        }
+        assertEquals(6, keepAlives);
+    }
+
+    @Test
+    public void parsesDistanceLikeTheFirmware() {
+        assertEquals(350, NavigationFrameEncoder.parseHumanReadableDistance("350 m"), 0);
+        assertEquals(1200, NavigationFrameEncoder.parseHumanReadableDistance("1.2 km"), 1e-9);
+        assertEquals(0, NavigationFrameEncoder.parseHumanReadableDistance("m"), 0);
+    }
+
+    @Test
+    public void quantisesToWhatTheLcdShows() {
+        assertEquals(0, NavigationFrameEncoder.quantiseBearing(359));
+        assertEquals(10, NavigationFrameEncoder.quantiseDistance(12));
+        assertEquals(1300, NavigationFrameEncoder.quantiseDistance(1260));
+        assertEquals(0, NavigationFrameEncoder.quantiseSpeed(-1));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.activadasboard.ui.map;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RouteGeometryTest {
+
+    @Test
+    public void decodesGoogleReferencePolyline() {
+        RouteGeometry geometry = RouteGeometry.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+        assertEquals(3, geometry.size());
+        assertEquals(38.5, geometry.latitude(0), 1e-9);
+        assertEquals(-120.2, geometry.longitude(0), 1e-9);
+        assertEquals(40.7, geometry.latitude(1), 1e-9);
+        assertEquals(-120.95, geometry.longitude(1), 1e-9);
+        assertEquals(43.252, geometry.latitude(2), 1e-9);
+        assertEquals(-126.453, geometry.longitude(2), 1e-9);
+    }
+
+    @Test
+    public void encodesBackToTheSamePolyline() {
+        String reference = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";
+        assertEquals(reference, RouteGeometry.encode(RouteGeometry.decodeCoordinates(reference)));
+    }
+
+    @Test
+    public void joinsStepPathsSharingTheirEnds() {
+        int[] whole = RouteGeometry.decodeCoordinates("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+        // Two steps meeting at the middle vertex, as Directions returns them
+        String first = RouteGeometry.encode(Arrays.copyOfRange(whole, 0, 4));
+        String second = RouteGeometry.encode(Arrays.copyOfRange(whole, 2, 6));
+        RouteGeometry joined = RouteGeometry.join(Arrays.asList(first, second));
+        assertEquals(3, joined.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(whole[i * 2] / 1e5, joined.latitude(i), 1e-9);
+            assertEquals(whole[i * 2 + 1] / 1e5, joined.longitude(i), 1e-9);
+        }
+        assertEquals(0, RouteGeometry.join(new ArrayList<>()).size());
+
+        // Offline routes hand over their paths already decoded
+        RouteGeometry decoded = RouteGeometry.join(new int[][]{
+                Arrays.copyOfRange(whole, 0, 4), Arrays.copyOfRange(whole, 2, 6)});
+        assertEquals(3, decoded.size());
+        assertEquals(whole[4] / 1e5, decoded.latitude(2), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedPolyline() {
+        RouteGeometry.decode("_p~iF~ps|U_");
+    }
+
+    @Test
+    public void rankingMatchesRecursiveDouglasPeucker() {
+        Random random = new Random(42);
+        int n = 500;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i * 10 + random.nextGaussian() * 3;
+            y[i] = Math.sin(i / 40.0) * 300 + random.nextGaussian() * 3;
+        }
+        double[] rank = RouteGeometry.rankVertices(x, y);
+
+        for (double tolerance : new double[]{0.5, 2, 5, 20, 100, 1000}) {
+            boolean[] expected = new boolean[n];
+            expected[0] = true;
+            expected[n - 1] = true;
+            douglasPeucker(x, y, 0, n - 1, tolerance, expected);
+            for (int i = 0; i < n; i++) {
+                assertEquals("vertex " + i + " at tolerance " + tolerance, expected[i], rank[i] > tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void coarserBandsKeepFewerVerticesAndBothEnds() {
+        // A wiggly road about 30 km long near Bangalore
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            points.add(new double[]{12.9 + i * 0.0001, 77.5 + Math.sin(i / 15.0) * 0.0005});
+        }
+        RouteGeometry geometry = RouteGeometry.decode(encode(points));
+        assertEquals(3000, geometry.size());
+
+        int previous = 0;
+        for (int band = 0; band <= RouteGeometry.BAND_MAX_ZOOMS.length; band++) {
+            int[] vertices = geometry.verticesForBand(band);
+            assertTrue(vertices.length >= previous);
+            assertEquals(0, vertices[0]);
+            assertEquals(geometry.size() - 1, vertices[vertices.length - 1]);
+            previous = vertices.length;
+        }
+        assertTrue(geometry.verticesForBand(0).length < 100);
+        assertEquals(3000, geometry.verticesForBand(RouteGeometry.bandForZoom(20)).length);
+    }
+
+    @Test
+    public void bandsFollowZoom() {
+        assertEquals(0, RouteGeometry.bandForZoom(3));
+        assertEquals(1, RouteGeometry.bandForZoom(6));
+        assertEquals(4, RouteGeometry.bandForZoom(13.5f));
+        assertEquals(RouteGeometry.BAND_MAX_ZOOMS.length, RouteGeometry.bandForZoom(18));
+    }
+
+    private static void douglasPeucker(double[] x, double[] y, int first, int last, double tolerance, boolean[] keep) {
+        if (last - first < 2) return;
+        int farthest = -1;
+        double max = -1;
+        for (int i = first + 1; i < last; i++) {
+            double d = RouteGeometry.segmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+            if (d > max) {
+                max = d;
+                farthest = i;
+            }
+        }
+        if (max > tolerance) {
+            keep[farthest] = true;
+            douglasPeucker(x, y, first, farthest, tolerance, keep);
+            douglasPeucker(x, y, farthest, last, tolerance, keep);
+        }
+    }
+
+    private static String encode(List<double[]> points) {
+        StringBuilder out = new StringBuilder();
+        long lastLat = 0;
+        long lastLng = 0;
+        for (double[] point : points) {
+            long lat = Math.round(point[0] * 1e5);
+            long lng = Math.round(point[1] * 1e5);
+            encodeValue(lat - lastLat, out);
+            encodeValue(lng - lastLng, out);
+            lastLat = lat;
+            lastLng = lng;
+        }
+        return out.toString();
+    }
+
+    private static void encodeValue(long value, StringBuilder out) {
+        value = value < 0 ? ~(value << 1) : value << 1;
+        while (value >= 0x20) {
+            out.append((char) ((0x20 | (value & 0x1f)) + 63));
+            value >>= 5;
+        }
+        out.append((char) (value + 63));
+    }
+}
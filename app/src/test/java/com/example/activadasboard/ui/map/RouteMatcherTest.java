@@ -0,0 +1,137 @@
+package com.example.activadasboard.ui.map;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays trace_detour.csv, fixes recorded along ROUTE: 1000 m north, a
+ * right turn, then 800 m east, with a short detour off the road on the way.
+ */
+public class RouteMatcherTest {
+    private static final String ROUTE = "oodnAgerxMsD?sD?sD?sD?sD?sD?sD?qD?sD?sD??wD?yD?wD?wD?wD?yD?wD?wD";
+    // The turn, and the destination
+    private static final double[] STEP_ENDS = {12.980593, 77.5946, 12.980593, 77.601983};
+    private static final long[] STEP_DURATIONS = {100, 80};
+
+    private static RouteMatcher matcher() {
+        return new RouteMatcher(RouteGeometry.decode(ROUTE), STEP_ENDS, STEP_DURATIONS, 180);
+    }
+
+    private static List<double[]> readTrace(String resource) throws Exception {
+        List<double[]> fixes = new ArrayList<>();
+        InputStream in = RouteMatcherTest.class.getClassLoader().getResourceAsStream(resource);
+        assertNotNull("Missing test resource " + resource, in);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split(",");
+                fixes.add(new double[]{
+                        Double.parseDouble(fields[0]), Double.parseDouble(fields[1]),
+                        Double.parseDouble(fields[2]), Double.parseDouble(fields[3])});
+            }
+        }
+        return fixes;
+    }
+
+    private static RouteMatcher.Event update(RouteMatcher matcher, double[] fix) {
+        return matcher.update(fix[1], fix[2], fix[3], (long) fix[0]);
+    }
+
+    @Test
+    public void replaysADetourWithOneOffRouteEventEachWay() throws Exception {
+        List<double[]> trace = readTrace("navigation/trace_detour.csv");
+        RouteMatcher matcher = matcher();
+        List<Integer> offRoute = new ArrayList<>();
+        List<Integer> backOnRoute = new ArrayList<>();
+        int arrivedAt = -1;
+        int turnAt = -1;
+        double previousRemaining = Double.MAX_VALUE;
+        for (int i = 0; i < trace.size(); i++) {
+            RouteMatcher.Event event = update(matcher, trace.get(i));
+            if (event == RouteMatcher.Event.OFF_ROUTE) offRoute.add(i);
+            if (event == RouteMatcher.Event.BACK_ON_ROUTE) backOnRoute.add(i);
+            if (event == RouteMatcher.Event.ARRIVED) arrivedAt = i;
+            if (turnAt < 0 && matcher.getStepIndex() == 1) turnAt = i;
+            // Noise across the road never makes the route longer
+            assertTrue("remaining grew at fix " + i, matcher.getRemainingDistance() <= previousRemaining + 1e-6);
+            previousRemaining = matcher.getRemainingDistance();
+        }
+
+        // Two fixes past 40 m aren't enough; the third is
+        assertEquals(1, offRoute.size());
+        assertEquals(43, (int) offRoute.get(0));
+        assertEquals(1, backOnRoute.size());
+        assertEquals(47, (int) backOnRoute.get(0));
+        // The turn is 1000 m in, at 10 m/s with six fixes lost to the detour; the
+        // next step is shown STEP_LEAD_METERS early
+        assertEquals(104, turnAt);
+        // ARRIVAL_METERS out, two fixes before the last
+        assertEquals(trace.size() - 3, arrivedAt);
+        assertTrue(matcher.hasArrived());
+    }
+
+    @Test
+    public void examinesAHandfulOfSegmentsPerFix() throws Exception {
+        List<double[]> trace = readTrace("navigation/trace_detour.csv");
+        RouteMatcher matcher = matcher();
+        for (double[] fix : trace) {
+            update(matcher, fix);
+        }
+        // Three to four segments per fix, since the window spans 180 m of 100 m
+        // segments. Only the first fix and the three off-route ones scan all 18.
+        double perFix = (double) matcher.getSegmentsExamined() / trace.size();
+        assertTrue("examined " + perFix + " segments per fix", perFix < 5);
+    }
+
+    @Test
+    public void tracksStepDistanceAndTimeLeft() {
+        RouteMatcher matcher = matcher();
+        assertEquals(1800, matcher.getTotalDistance(), 1);
+
+        // 600 m north of the start, on the road
+        matcher.update(12.97160 + 600 / 111195.0, 77.5946, 5, 0);
+        assertEquals(0, matcher.getStepIndex());
+        assertEquals(400, matcher.getDistanceToStepEnd(), 1);
+        assertEquals(1200, matcher.getRemainingDistance(), 1);
+        // 40% of the first step's 100 s, then all 80 s of the second
+        assertEquals(120, matcher.getRemainingSeconds(), 1);
+    }
+
+    @Test
+    public void fallsBackToTheTotalDurationWithoutStepTimes() {
+        RouteMatcher matcher = new RouteMatcher(RouteGeometry.decode(ROUTE),
+                new double[]{Double.NaN, Double.NaN}, new long[]{0}, 360);
+        matcher.update(12.97160 + 900 / 111195.0, 77.5946, 5, 0);
+        // Unknown step ends run to the destination
+        assertEquals(900, matcher.getDistanceToStepEnd(), 1);
+        assertEquals(180, matcher.getRemainingSeconds(), 1);
+    }
+
+    @Test
+    public void catchesUpAfterAGapInFixes() {
+        RouteMatcher matcher = matcher();
+        matcher.update(12.97160, 77.5946, 5, 0);
+        // A minute later, 600 m on: beyond the usual lookahead but not the time-based one
+        RouteMatcher.Event event = matcher.update(12.97160 + 600 / 111195.0, 77.5946, 5, 60_000);
+        assertEquals(RouteMatcher.Event.NONE, event);
+        assertEquals(600, matcher.getDistanceAlongRoute(), 1);
+    }
+
+    @Test
+    public void ignoresVagueFixes() {
+        RouteMatcher matcher = matcher();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(RouteMatcher.Event.NONE, matcher.update(12.9, 77.7, 500, i * 1000L));
+        }
+        assertFalse(matcher.isOffRoute());
+    }
+}